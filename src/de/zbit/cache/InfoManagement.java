@@ -213,6 +213,28 @@ public abstract class InfoManagement<IDtype extends Comparable<?> & Serializable
     cacheChangedSinceLastLoading=true;
   }
   
+  /**
+   * Thread-safe lookup in the cache.
+   * @param id
+   * @return the cached information or {@code null}.
+   */
+  private ObjectAndTimestamp<INFOtype> getRemembered(IDtype id) {
+    synchronized (rememberedInfos) {
+      return rememberedInfos.get(id);
+    }
+  }
+  
+  /**
+   * Thread-safe lookup in the unsuccessful queries.
+   * @param id
+   * @return true if a query for {@code id} has been unsuccessful.
+   */
+  private boolean isUnsuccessful(IDtype id) {
+    synchronized (unsuccessfulQueries) {
+      return unsuccessfulQueries.contains(id);
+    }
+  }
+  
   /**
    * @return true if and only if rememberedInfos.size() is at least maxListSize.
    */
@@ -314,7 +336,7 @@ public abstract class InfoManagement<IDtype extends Comparable<?> & Serializable
    * @return INFOtype if info could be retrieved successfully, null instead.
    */
   private INFOtype fetchInformationWrapper(IDtype id) {
-    if (unsuccessfulQueries.contains(id))
+    if (isUnsuccessful(id))
     {
       return null; // Don't have to try it again.
     }
@@ -462,7 +484,7 @@ public abstract class InfoManagement<IDtype extends Comparable<?> & Serializable
    * @return INFOtype - the answer.
    */
   public INFOtype getInformation(IDtype id) {
-    ObjectAndTimestamp<INFOtype> o = rememberedInfos.get(id);
+    ObjectAndTimestamp<INFOtype> o = getRemembered(id);
     if (o!=null) {
       return o.getInformation();
     } else {
@@ -508,11 +530,11 @@ public abstract class InfoManagement<IDtype extends Comparable<?> & Serializable
       if (id==null) {
         continue;
       }
-      ObjectAndTimestamp<INFOtype> o = rememberedInfos.get(id);
-      if (o==null && !unsuccessfulQueries.contains(id)) { // Same if-order as below!
+      ObjectAndTimestamp<INFOtype> o = getRemembered(id);
+      if (o==null && !isUnsuccessful(id)) { // Same if-order as below!
         unknownIDs.add(id);
       } else {
-        if (anyCachedInfo==null) {
+        if (anyCachedInfo==null && o!=null) {
           anyCachedInfo=o.getInformation(false);
         }
       }
@@ -549,7 +571,7 @@ public abstract class InfoManagement<IDtype extends Comparable<?> & Serializable
       // Iterate in parallel through ids, infos and filteredIDs
       int infos_i=0;
       for (int i=0; i<ids.length; i++) {
-        ObjectAndTimestamp<INFOtype> o = rememberedInfos.get(ids[i]);
+        ObjectAndTimestamp<INFOtype> o = getRemembered(ids[i]);
         if (o!=null) { // Same if-order as above!
           infos[i] = o.getInformation();
         } else if (unknownIDs.size()>0 && ids[i].equals(filtIDs[infos_i])) {
@@ -567,7 +589,7 @@ public abstract class InfoManagement<IDtype extends Comparable<?> & Serializable
             infos[i] = null;
           }
           infos_i++;
-        } else if (unsuccessfulQueries.contains(ids[i])) {
+        } else if (isUnsuccessful(ids[i])) {
           // Must be below "Newly fetched infos" because it is modified in fetchMultipleInformationWrapper.
           infos[i] = null;
         }
@@ -623,8 +645,8 @@ public abstract class InfoManagement<IDtype extends Comparable<?> & Serializable
       if (id==null) {
         continue;
       }
-      ObjectAndTimestamp<INFOtype> o = rememberedInfos.get(id);
-      if (o==null && !unsuccessfulQueries.contains(id)) { // Same if-order as below!
+      ObjectAndTimestamp<INFOtype> o = getRemembered(id);
+      if (o==null && !isUnsuccessful(id)) { // Same if-order as below!
         unknownIDs.add(id);
       } else {
         containsAtLeastOneID = true;
@@ -0,0 +1,286 @@
+/*
+ * $Id$
+ * $URL$
+ * ---------------------------------------------------------------------
+ * This file is part of the SysBio API library.
+ *
+ * Copyright (C) 2009-2016 by the University of Tuebingen, Germany.
+ *
+ * This library is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation. A copy of the license
+ * agreement is provided in the file named "LICENSE.txt" included with
+ * this software distribution and also available online as
+ * <http://www.gnu.org/licenses/lgpl-3.0-standalone.html>.
+ * ---------------------------------------------------------------------
+ */
+package de.zbit.collection;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import de.zbit.util.EditDistance;
+import de.zbit.util.objectwrapper.ValuePair;
+
+/**
+ * A Burkhard-Keller tree over strings with the Levenshtein distance as metric
+ * (see {@link EditDistance}). It allows to find all strings within a given
+ * distance of a query, or the {@code k} most similar strings, without
+ * aligning the query against every indexed string.
+ *
+ * <p>Typical usage is the matching of names against large synonym lists:
+ * <pre>
+ * BKTree tree = new BKTree();
+ * tree.addAll(synonyms);
+ * List&lt;ValuePair&lt;String, Integer&gt;&gt; best = tree.getMostSimilar("Homo sapiens", 5);
+ * </pre>
+ * {@link de.zbit.util.StringUtil#getMostSimilarString(String, BKTree)} uses
+ * such a tree to find the most similar synonym by alignment costs.</p>
+ *
+ * <p>This class is not thread-safe for concurrent modifications, but
+ * concurrent searches are allowed.</p>
+ *
+ * @version $Rev$
+ * @since 1.4
+ */
+public class BKTree {
+
+  /**
+   * A node in the tree.
+   */
+  private static class Node {
+    /**
+     * The indexed string.
+     */
+    final String term;
+    /**
+     * Distances of {@link #children} to {@link #term}.
+     */
+    int[] childDistance = null;
+    /**
+     * Children of this node.
+     */
+    Node[] children = null;
+    /**
+     * Number of used entries in {@link #children}.
+     */
+    int childCount = 0;
+
+    /**
+     * @param term
+     */
+    Node(String term) {
+      this.term = term;
+    }
+
+    /**
+     * @param distance
+     * @return the child with the given distance or {@code null}.
+     */
+    Node getChild(int distance) {
+      for (int i = 0; i < childCount; i++) {
+        if (childDistance[i] == distance) {
+          return children[i];
+        }
+      }
+      return null;
+    }
+
+    /**
+     * @param distance
+     * @param child
+     */
+    void addChild(int distance, Node child) {
+      if (children == null) {
+        children = new Node[2];
+        childDistance = new int[2];
+      } else if (childCount == children.length) {
+        Node[] newChildren = new Node[childCount * 2];
+        int[] newDistance = new int[childCount * 2];
+        System.arraycopy(children, 0, newChildren, 0, childCount);
+        System.arraycopy(childDistance, 0, newDistance, 0, childCount);
+        children = newChildren;
+        childDistance = newDistance;
+      }
+      children[childCount] = child;
+      childDistance[childCount] = distance;
+      childCount++;
+    }
+  }
+
+  /**
+   * Orders results by distance and then alphabetically.
+   */
+  private static final Comparator<ValuePair<String, Integer>> BY_DISTANCE = new Comparator<ValuePair<String, Integer>>() {
+    /* (non-Javadoc)
+     * @see java.util.Comparator#compare(java.lang.Object, java.lang.Object)
+     */
+    @Override
+    public int compare(ValuePair<String, Integer> o1, ValuePair<String, Integer> o2) {
+      int c = o1.getB().compareTo(o2.getB());
+      return c != 0 ? c : o1.getA().compareTo(o2.getA());
+    }
+  };
+
+  /**
+   * The root of this tree.
+   */
+  private Node root = null;
+
+  /**
+   * Number of distinct indexed strings.
+   */
+  private int size = 0;
+
+  /**
+   * Adds a string to this tree.
+   *
+   * @param term
+   * @return {@code false} if the string was already contained.
+   */
+  public boolean add(String term) {
+    if (term == null) {
+      return false;
+    }
+    if (root == null) {
+      root = new Node(term);
+      size++;
+      return true;
+    }
+    Node node = root;
+    while (true) {
+      int d = EditDistance.levenshtein(term, node.term);
+      if (d == 0) {
+        return false;
+      }
+      Node child = node.getChild(d);
+      if (child == null) {
+        node.addChild(d, new Node(term));
+        size++;
+        return true;
+      }
+      node = child;
+    }
+  }
+
+  /**
+   * Adds all strings to this tree.
+   *
+   * @param terms
+   */
+  public void addAll(Iterable<String> terms) {
+    for (String term : terms) {
+      add(term);
+    }
+  }
+
+  /**
+   * @return the number of distinct indexed strings.
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Returns all indexed strings whose Levenshtein distance to {@code query}
+   * is at most {@code maxDistance}.
+   *
+   * @param query
+   * @param maxDistance
+   * @return pairs of indexed string and distance, sorted by distance.
+   */
+  public List<ValuePair<String, Integer>> search(String query, int maxDistance) {
+    List<ValuePair<String, Integer>> ret = new ArrayList<ValuePair<String, Integer>>();
+    if (root == null) {
+      return ret;
+    }
+    List<Node> stack = new ArrayList<Node>();
+    stack.add(root);
+    while (!stack.isEmpty()) {
+      Node node = stack.remove(stack.size() - 1);
+      int d = EditDistance.levenshtein(query, node.term);
+      if (d <= maxDistance) {
+        ret.add(new ValuePair<String, Integer>(node.term, Integer.valueOf(d)));
+      }
+      // Triangle inequality
+      for (int i = 0; i < node.childCount; i++) {
+        if (Math.abs(node.childDistance[i] - d) <= maxDistance) {
+          stack.add(node.children[i]);
+        }
+      }
+    }
+    Collections.sort(ret, BY_DISTANCE);
+    return ret;
+  }
+
+  /**
+   * Returns the {@code k} indexed strings with the smallest Levenshtein
+   * distance to {@code query}. Subtrees are visited in order of their lower
+   * distance bound and skipped as soon as they cannot contain a better
+   * string than the current {@code k}-th best one.
+   *
+   * @param query
+   * @param k
+   * @return at most {@code k} pairs of indexed string and distance, sorted by
+   *         distance.
+   */
+  public List<ValuePair<String, Integer>> getMostSimilar(String query, int k) {
+    List<ValuePair<String, Integer>> ret = new ArrayList<ValuePair<String, Integer>>();
+    if ((root == null) || (k < 1)) {
+      return ret;
+    }
+    // Current k best results, worst one first
+    PriorityQueue<ValuePair<String, Integer>> best = new PriorityQueue<ValuePair<String, Integer>>(k + 1,
+        Collections.reverseOrder(BY_DISTANCE));
+    // Nodes to visit, as pairs of node and lower bound
+    final List<Node> nodes = new ArrayList<Node>();
+    final List<Integer> bounds = new ArrayList<Integer>();
+    PriorityQueue<Integer> queue = new PriorityQueue<Integer>(16, new Comparator<Integer>() {
+      /* (non-Javadoc)
+       * @see java.util.Comparator#compare(java.lang.Object, java.lang.Object)
+       */
+      @Override
+      public int compare(Integer o1, Integer o2) {
+        return bounds.get(o1.intValue()).compareTo(bounds.get(o2.intValue()));
+      }
+    });
+    nodes.add(root);
+    bounds.add(Integer.valueOf(0));
+    queue.add(Integer.valueOf(0));
+
+    while (!queue.isEmpty()) {
+      int idx = queue.poll().intValue();
+      int radius = best.size() < k ? Integer.MAX_VALUE : best.peek().getB().intValue();
+      if (bounds.get(idx).intValue() > radius) {
+        break;
+      }
+      Node node = nodes.get(idx);
+      nodes.set(idx, null);
+
+      int d = EditDistance.levenshtein(query, node.term);
+      if (d <= radius) {
+        best.add(new ValuePair<String, Integer>(node.term, Integer.valueOf(d)));
+        if (best.size() > k) {
+          best.poll();
+        }
+        radius = best.size() < k ? Integer.MAX_VALUE : best.peek().getB().intValue();
+      }
+      for (int i = 0; i < node.childCount; i++) {
+        int bound = Math.abs(node.childDistance[i] - d);
+        if (bound <= radius) {
+          nodes.add(node.children[i]);
+          bounds.add(Integer.valueOf(bound));
+          queue.add(Integer.valueOf(nodes.size() - 1));
+        }
+      }
+    }
+
+    ret.addAll(best);
+    Collections.sort(ret, BY_DISTANCE);
+    return ret;
+  }
+
+}
@@ -0,0 +1,208 @@
+/*
+ * $Id$
+ * $URL$
+ * ---------------------------------------------------------------------
+ * This file is part of the SysBio API library.
+ *
+ * Copyright (C) 2009-2016 by the University of Tuebingen, Germany.
+ *
+ * This library is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation. A copy of the license
+ * agreement is provided in the file named "LICENSE.txt" included with
+ * this software distribution and also available online as
+ * <http://www.gnu.org/licenses/lgpl-3.0-standalone.html>.
+ * ---------------------------------------------------------------------
+ */
+package de.zbit.collection;
+
+import java.util.Arrays;
+
+/**
+ * A set of primitive {@code long} values, implemented as open addressing hash
+ * table with linear probing. In contrast to a {@link java.util.HashSet} of
+ * {@link Long}s, no object is created per element, which saves memory and
+ * time for large sets, e.g., of pairs of integer identifiers (see
+ * {@link #pair(int, int)}).
+ * 
+ * <p>Elements cannot be removed. This class is not thread-safe for
+ * concurrent modifications, but concurrent calls of
+ * {@link #contains(long)} are allowed.</p>
+ * 
+ * @version $Rev$
+ * @since 1.4
+ */
+public class LongHashSet {
+  
+  /**
+   * Marks empty slots in {@link #table}. The value itself is stored in
+   * {@link #containsEmptyKey}.
+   */
+  private static final long EMPTY = Long.MIN_VALUE;
+  
+  /**
+   * Maximum ratio of used slots, before the table is enlarged.
+   */
+  private static final double LOAD_FACTOR = 0.5d;
+  
+  /**
+   * Packs two integers into one {@code long}, e.g., for an ordered pair of
+   * identifiers.
+   * 
+   * @param a
+   * @param b
+   * @return a key, that is unique for the ordered pair {@code (a, b)}.
+   */
+  public static long pair(int a, int b) {
+    return ((long) a << 32) | (b & 0xffffffffL);
+  }
+  
+  /**
+   * The hash table.
+   */
+  private long[] table;
+  
+  /**
+   * Number of elements in {@link #table}.
+   */
+  private int size;
+  
+  /**
+   * Whether or not {@link #EMPTY} is an element of this set.
+   */
+  private boolean containsEmptyKey;
+  
+  /**
+   * Creates an empty set.
+   */
+  public LongHashSet() {
+    this(16);
+  }
+  
+  /**
+   * @param expectedSize
+   *        number of elements, that can be added without enlarging the
+   *        table.
+   */
+  public LongHashSet(int expectedSize) {
+    super();
+    int capacity = 16;
+    while (capacity * LOAD_FACTOR < expectedSize) {
+      capacity <<= 1;
+    }
+    table = new long[capacity];
+    Arrays.fill(table, EMPTY);
+  }
+  
+  /**
+   * @param value
+   * @return the slot, where the probing for the given value starts.
+   */
+  private static int hash(long value, int mask) {
+    // Spread the bits (finalizer of MurmurHash3)
+    value ^= value >>> 33;
+    value *= 0xff51afd7ed558ccdL;
+    value ^= value >>> 33;
+    return (int) value & mask;
+  }
+  
+  /**
+   * Adds the given value.
+   * 
+   * @param value
+   * @return {@code true} if this set did not already contain the value.
+   */
+  public boolean add(long value) {
+    if (value == EMPTY) {
+      boolean added = !containsEmptyKey;
+      containsEmptyKey = true;
+      return added;
+    }
+    int mask = table.length - 1;
+    int i = hash(value, mask);
+    while (table[i] != EMPTY) {
+      if (table[i] == value) {
+        return false;
+      }
+      i = (i + 1) & mask;
+    }
+    table[i] = value;
+    size++;
+    if (size > table.length * LOAD_FACTOR) {
+      rehash(table.length << 1);
+    }
+    return true;
+  }
+  
+  /**
+   * @param value
+   * @return {@code true} if this set contains the given value.
+   */
+  public boolean contains(long value) {
+    if (value == EMPTY) {
+      return containsEmptyKey;
+    }
+    long[] table = this.table;
+    int mask = table.length - 1;
+    int i = hash(value, mask);
+    while (table[i] != EMPTY) {
+      if (table[i] == value) {
+        return true;
+      }
+      i = (i + 1) & mask;
+    }
+    return false;
+  }
+  
+  /**
+   * @param capacity
+   *        a power of two.
+   */
+  private void rehash(int capacity) {
+    long[] old = table;
+    table = new long[capacity];
+    Arrays.fill(table, EMPTY);
+    int mask = capacity - 1;
+    for (long value : old) {
+      if (value != EMPTY) {
+        int i = hash(value, mask);
+        while (table[i] != EMPTY) {
+          i = (i + 1) & mask;
+        }
+        table[i] = value;
+      }
+    }
+  }
+  
+  /**
+   * @return the number of elements in this set.
+   */
+  public int size() {
+    return containsEmptyKey ? size + 1 : size;
+  }
+  
+  /**
+   * @return {@code true} if this set contains no elements.
+   */
+  public boolean isEmpty() {
+    return size() == 0;
+  }
+  
+  /**
+   * @return all elements in no particular order.
+   */
+  public long[] toArray() {
+    long[] values = new long[size()];
+    int j = 0;
+    if (containsEmptyKey) {
+      values[j++] = EMPTY;
+    }
+    for (long value : table) {
+      if (value != EMPTY) {
+        values[j++] = value;
+      }
+    }
+    return values;
+  }
+  
+}
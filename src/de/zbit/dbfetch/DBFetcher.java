@@ -16,6 +16,19 @@
  */
 package de.zbit.dbfetch;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.TimeoutException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -23,6 +36,7 @@ import java.util.regex.Pattern;
 
 import uk.ac.ebi.webservices.jaxws.WSDbfetchClient;
 import uk.ac.ebi.webservices.jaxws.stubs.wsdbfetch.DbfNoEntryFoundException_Exception;
+import uk.ac.ebi.webservices.jaxws.stubs.wsdbfetch.DbfParamsException_Exception;
 import de.zbit.cache.InfoManagement;
 import de.zbit.exception.UnsuccessfulRetrieveException;
 import de.zbit.util.StringUtil;
@@ -77,6 +91,13 @@ public abstract class DBFetcher extends InfoManagement<String, String> {
    * The actual WSDBFetch client
    */
   private transient WSDbfetchClient dbfetch = new WSDbfetchClient();
+  
+  /**
+   * Idle WSDBFetch clients for batch queries. A client is taken from this
+   * pool for each query and returned afterwards, such that clients are
+   * reused across calls of {@link #fetchMultipleInformations(String[])}.
+   */
+  private transient Queue<WSDbfetchClient> batchClients = new ConcurrentLinkedQueue<WSDbfetchClient>();
 
   /**
    * Displayes a ProgressBar when fetching multiple identifier.
@@ -92,6 +113,38 @@ public abstract class DBFetcher extends InfoManagement<String, String> {
    */
   public static boolean fetchNonMappableIDs = false;
   
+  /**
+   * Maximum number of identifiers in a single batch query.
+   */
+  public static int maxBatchSize = 99;
+  
+  /**
+   * Number of batch queries, that are sent at the same time.
+   */
+  public static int concurrentQueries = 3;
+  
+  /**
+   * Delay in milliseconds before a failed batch query is repeated. The
+   * delay is doubled for every further attempt.
+   */
+  public static long retryDelay = 500;
+  
+  /**
+   * Upper limit for the {@link #retryDelay}.
+   */
+  private static final long MAX_RETRY_DELAY = 8000;
+  
+  /**
+   * Number of attempts to fetch a single identifier in a batch query.
+   */
+  private static final int RETRY_LIMIT = 3;
+  
+  /**
+   * Maximum length of the query string of a batch query. The limit may be
+   * exceeded by the last identifier of a batch.
+   */
+  private static final int MAX_QUERY_LENGTH = 500;
+  
   /**
    * The style to fetch. Usually "Style.RAW".
    * @see Style
@@ -122,6 +175,7 @@ public abstract class DBFetcher extends InfoManagement<String, String> {
   @Override
   protected void cleanupUnserializableObject() {
     dbfetch = null;
+    batchClients = null;
   }
   
   /*
@@ -187,118 +241,332 @@ public abstract class DBFetcher extends InfoManagement<String, String> {
   }
 
   /**
-   * @param ids
-   * @param ret
-   * @param queryString
-   * @param startID
-   * @param endID
+   * Sends a single batch query to WSDbfetch. Overwrite this method to query
+   * another service (e.g., a local stub for testing). Implementations must
+   * be thread-safe, because up to {@link #concurrentQueries} batches are
+   * queried at the same time.
+   * @param queryString comma separated list of identifiers.
+   * @return all entries, separated by {@link #getEntrySeparator()}.
+   * @throws DbfNoEntryFoundException_Exception if none of the identifiers
+   * has been found.
+   * @throws DbfParamsException_Exception if the query is invalid. The
+   * batch will be split and repeated.
+   * @throws Exception on any other error, e.g., if the service is not
+   * available. The query will be repeated, but not split.
    */
-  private void fetchMultipleChecked(String[] ids, String[] ret,
-            String queryString, int startID, int endID) {
-    String entriesStr = "";
-    final int retryLimit=3;
-    int retried = 0;
-    while (retried < retryLimit && (entriesStr == null || entriesStr.length() == 0)) {
+  protected String fetchBatch(String queryString) throws Exception {
+    if (batchClients == null) {
+      restoreUnserializableObject();
+    }
+    WSDbfetchClient client = batchClients.poll();
+    if (client == null) {
+      client = new WSDbfetchClient();
+    }
+    try {
+      return client.fetchBatch(getDbName(), queryString, getFormat(), getStyleString());
+    } finally {
+      batchClients.offer(client);
+    }
+  }
+  
+  /**
+   * A batch query for a range of identifiers.
+   * 
+   * @version $Rev$
+   * @since 1.4
+   */
+  private class Batch implements Callable<Batch> {
+    /**
+     * Index of the first and last identifier of this batch.
+     */
+    private final int startID, endID;
+    /**
+     * Number of previous attempts to query (parts of) this batch.
+     */
+    private final int attempt;
+    /**
+     * Number of previous failed queries of exactly this batch.
+     */
+    private final int failures;
+    /**
+     * Comma separated list of identifiers.
+     */
+    private final String queryString;
+    /**
+     * The fetched entries or {@code null}, if none has been found.
+     */
+    private String entriesStr = null;
+    /**
+     * The reason, why the query failed, or {@code null}.
+     */
+    private Exception error = null;
+    /**
+     * Whether the query failed because of the queried identifiers (e.g.,
+     * an invalid or too long query) rather than because of the service.
+     */
+    private boolean dataError = false;
+    
+    /**
+     * @param ids
+     * @param startID
+     * @param endID
+     * @param attempt
+     * @param failures
+     */
+    public Batch(String[] ids, int startID, int endID, int attempt, int failures) {
+      this.startID = startID;
+      this.endID = endID;
+      this.attempt = attempt;
+      this.failures = failures;
+      StringBuilder sb = new StringBuilder();
+      for (int i = startID; i <= endID; i++) {
+        if ((ids[i] != null) && (ids[i].length() > 0)) {
+          if (sb.length() > 0) sb.append(',');
+          sb.append(ids[i]);
+        }
+      }
+      queryString = sb.toString();
+    }
+    
+    /**
+     * @return the number of identifiers in this batch.
+     */
+    public int size() {
+      return endID - startID + 1;
+    }
+    
+    /* (non-Javadoc)
+     * @see java.util.concurrent.Callable#call()
+     */
+    @Override
+    public Batch call() throws Exception {
+      if (queryString.length() == 0) {
+        return this;
+      }
+      if (attempt > 0) {
+        // Exponential back-off
+        Thread.sleep(Math.min(retryDelay << (attempt - 1), MAX_RETRY_DELAY));
+      }
       try {
-        // I've no idea why, but sometimes the initial restoring call didn't work.
-        if (dbfetch==null) restoreUnserializableObject();
-        entriesStr = dbfetch.fetchBatch(getDbName(), queryString, getFormat(),getStyleString());
+        entriesStr = fetchBatch(queryString);
+        if ((entriesStr == null) || (entriesStr.length() == 0)) {
+          entriesStr = null;
+          error = new UnsuccessfulRetrieveException("Empty result");
+          dataError = true;
+        }
       } catch (DbfNoEntryFoundException_Exception e) {
-      // Propagate to caller.
-      for (int index = startID; index <= endID; index++)
-        ret[index] = null;
-      return;
-        // In older WSDBfetch libraries, DbfNoEntryFoundException was an instance of AxisFault.
-//      } catch (AxisFault e) {
-//        if (e instanceof DbfNoEntryFoundException || e.toString()!=null && e.toString().equalsIgnoreCase("No result found")) {
-//          // Propagate to caller.
-//          for (int index = startID; index <= endID; index++)
-//            ret[index] = null;
-//          return;
-//        } else {
-//          retried++;
-//          if (retried==retryLimit) {
-//            e.printStackTrace();
-//            log.log(Level.FINE, "Attempt " + retried + " to fetch data failed", e);
-//          } else {
-//            log.log(Level.FINE, "Attempt " + retried + " to fetch data failed");
-//          }
-//        }
+        entriesStr = null;
+      } catch (DbfParamsException_Exception e) {
+        error = e;
+        dataError = true;
       } catch (Exception e) {
-        // One of DbfParamsException, DbfConnException, DbfException, 
-        // InputException, RemoteException, ServiceException
-        retried++;
-        if (retried==retryLimit) {
-          e.printStackTrace();
-          log.log(Level.FINE, "Attempt " + retried + " to fetch data failed", e);
+        // One of DbfConnException, DbfException, InputException,
+        // RemoteException, ServiceException
+        error = e;
+      }
+      return this;
+    }
+  }
+  
+  /**
+   * Fetches all ids in batches, with up to {@link #concurrentQueries}
+   * concurrent queries. The size of new batches is halved after every
+   * failed query and doubled (up to {@link #maxBatchSize}) after every
+   * successful query. Failed batches are split and repeated after an
+   * exponentially increasing delay, until a single identifier failed
+   * {@link #RETRY_LIMIT} times. After the first error, that is not caused
+   * by the queried data, batches are no longer split but repeated as a
+   * whole. If such a batch fails {@link #RETRY_LIMIT} times, the service
+   * is considered to be unavailable and no further queries are sent.
+   * @param ids
+   * @param ret the entry for each id.
+   * @param progress might be {@code null}.
+   */
+  private void fetchBatches(String[] ids, String[] ret, AbstractProgressBar progress) {
+    ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, concurrentQueries));
+    CompletionService<Batch> service = new ExecutorCompletionService<Batch>(pool);
+    LinkedList<Batch> retry = new LinkedList<Batch>();
+    int batchSize = Math.max(1, maxBatchSize);
+    int next = 0, running = 0;
+    boolean serviceError = false, serviceDown = false;
+    try {
+      while ((((next < ids.length) || !retry.isEmpty()) && !serviceDown) || (running > 0)) {
+        while ((running < Math.max(1, concurrentQueries)) && ((next < ids.length) || !retry.isEmpty()) && !serviceDown) {
+          Batch batch;
+          if (!retry.isEmpty()) {
+            batch = retry.removeFirst();
+          } else {
+            int end = next;
+            int queryLength = (ids[next] != null) ? ids[next].length() : 0;
+            while ((end + 1 < ids.length) && (end + 1 - next < batchSize) && (queryLength <= MAX_QUERY_LENGTH)) {
+              end++;
+              queryLength += (ids[end] != null) ? ids[end].length() + 1 : 0;
+            }
+            batch = new Batch(ids, next, end, 0, 0);
+            next = end + 1;
+          }
+          service.submit(batch);
+          running++;
+        }
+        
+        Batch batch = service.take().get();
+        running--;
+        if (batch.error == null) {
+          if (batch.entriesStr != null) {
+            mapEntries(ids, ret, batch.entriesStr, batch.startID, batch.endID);
+          }
+          batchSize = Math.min(Math.max(1, maxBatchSize), 2 * batchSize);
         } else {
-          log.log(Level.FINE, "Attempt " + retried + " to fetch data failed");
+          batchSize = Math.max(1, batchSize / 2);
+          serviceError |= !batch.dataError;
+          if ((batch.size() > 1) && !serviceError) {
+            int middle = batch.startID + batch.size() / 2;
+            retry.add(new Batch(ids, batch.startID, middle - 1, batch.attempt + 1, 0));
+            retry.add(new Batch(ids, middle, batch.endID, batch.attempt + 1, 0));
+            continue;
+          } else if (batch.failures + 1 < RETRY_LIMIT) {
+            retry.add(new Batch(ids, batch.startID, batch.endID, batch.attempt + 1, batch.failures + 1));
+            continue;
+          }
+          if (!batch.dataError) {
+            log.log(Level.WARNING, "Service unavailable, giving up to fetch remaining identifiers", batch.error);
+            serviceDown = true;
+          } else {
+            log.log(Level.FINE, "Giving up to fetch " + batch.queryString, batch.error);
+          }
+        }
+        if (progress != null) {
+          // DisplayBar() counts one call itself
+          progress.incrementCallNumber(batch.size() - 1);
+          progress.DisplayBar();
         }
       }
+    } catch (InterruptedException e) {
+      log.log(Level.WARNING, "Interrupted while fetching data", e);
+      Thread.currentThread().interrupt();
+    } catch (ExecutionException e) {
+      // Should not happen, because Batch.call() catches all exceptions.
+      log.log(Level.WARNING, "Could not fetch data", e.getCause());
+    } finally {
+      pool.shutdownNow();
     }
-    if (retried >= retryLimit && (entriesStr == null || entriesStr.length() == 0)) {
-      // Try it protein by protein
-      log.log(Level.FINE, "Falling back on single protein retrievement.");
-      String[] splitt = queryString.split(",");
-      for (int j = 0; j < splitt.length; j++) {
-        try {
-          ret[startID + j] = fetchInformation(splitt[j]);
-        } catch (Exception e) {
-          ret[startID + j] = null;
+  }
+  
+  /**
+   * Maps the entries of a batch query to the queried ids.
+   * @param ids
+   * @param ret the entry for each id.
+   * @param entriesStr the result of the batch query.
+   * @param startID index of the first id of the batch.
+   * @param endID index of the last id of the batch.
+   */
+  private void mapEntries(String[] ids, String[] ret, String entriesStr, int startID, int endID) {
+    // divided by "//" (in Uniprot, but may be different in other dbs!)
+    String[] splitt = entriesStr.split(getEntrySeparator());
+    
+    int queried = 0;
+    for (int index = startID; index <= endID; index++) {
+      if ((ids[index] != null) && (ids[index].length() > 0)) {
+        queried++;
+      }
+    }
+    
+    // optimal case: as many answers as requests
+    if ((splitt.length - 1) == queried && queried == (endID - startID + 1)) { // -1 due to last "\n"
+      int j = 0;
+      for (int index = startID; index <= endID; index++) {
+        ret[index] = complete(splitt[j]);
+        j++;
+      }
+      return;
+    }
+    
+    // Some requests had no results => Mapping.
+    // Index all entries by the words of their check strings, such that
+    // every id has only to be matched against a few candidates.
+    List<String> infos = new ArrayList<String>(splitt.length);
+    List<String> toCheck = new ArrayList<String>(splitt.length);
+    Map<String, List<Integer>> words = new HashMap<String, List<Integer>>();
+    for (String info : splitt) {
+      if (info.length() <= 1) {
+        continue; // last split = "\n"
+      }
+      Integer entry = Integer.valueOf(infos.size());
+      infos.add(info);
+      String check = getCheckStrFromInfo(info);
+      toCheck.add(check);
+      for (String word : getWords(check)) {
+        List<Integer> entries = words.get(word);
+        if (entries == null) {
+          entries = new ArrayList<Integer>(1);
+          words.put(word, entries);
+        } else if (entries.get(entries.size() - 1).equals(entry)) {
+          continue;
         }
+        entries.add(entry);
       }
-    } else {
-      // divided by "//" (in Uniprot, but may be different in other dbs!)
-      String[] splitt = entriesStr.split(getEntrySeparator());
-
-      // optimal case: as many answers as requests
-      if ((splitt.length - 1) == queryString.split(",").length) { // -1 due to last "\n"
-        int j = 0;
-        for (int index = startID; index <= endID; index++) {
-          if (!splitt[j].endsWith(getAppendAtEnd()))
-            splitt[j]+=getAppendAtEnd();//"\n//\n"
-          if (!splitt[j].startsWith(getAppendAtStart()))
-            splitt[j]=getAppendAtStart()+splitt[j];//""
-          
-          ret[index] = splitt[j];
-          j++;
+    }
+    
+    for (int index = startID; index <= endID; index++) {
+      // Has the id already an associated block?
+      if ((ids[index] == null) || (ids[index].length() == 0)
+          || ((ret[index] != null) && (ret[index].length() > 0))) {
+        continue;
+      }
+      String key = null;
+      for (String word : getWords(ids[index])) {
+        if ((key == null) || (word.length() > key.length())) {
+          key = word;
         }
-      } else {
-
-        // Some requests had no results => Mapping.
-        for (String info : splitt) {
-          if (info.length() <= 1)
-            continue; // last split = "\n"
-          
-          String toCheck = getCheckStrFromInfo(info);
-          
-          // Iterate over every ID and try to map the block to the id
-          for (int index = startID; index <= endID; index++) {
-            // Has the id already an associated block?
-            if (ret[index] != null && (ret[index].length() > 0))
-              continue;
-
-            // Does the ID or AC line contain this idText?
-            if (matchIDtoInfo(ids[index], toCheck)) {
-              if (!info.endsWith(getAppendAtEnd()))
-                info+=getAppendAtEnd();
-              if (!info.startsWith(getAppendAtStart()))
-                info=getAppendAtStart()+info;
-              
-              ret[index] = info;
-              
-              // Don't break here. 1:n mapping possible. With break,
-              // we would make an 1:1 mapping.
-              // E.g. when fetching "ENOA_MOUSE" and "P17182" the result
-              // is the same data-block.
-              // break;
-            }
-          }
+      }
+      List<Integer> candidates = (key != null) ? words.get(key) : null;
+      if (candidates == null) {
+        continue;
+      }
+      // Take the first matching block. The same block may be mapped to
+      // multiple ids (1:n mapping). E.g. when fetching "ENOA_MOUSE" and
+      // "P17182" the result is the same data-block.
+      for (Integer entry : candidates) {
+        if (matchIDtoInfo(ids[index], toCheck.get(entry.intValue()))) {
+          ret[index] = complete(infos.get(entry.intValue()));
+          break;
         }
       }
     }
   }
   
+  /**
+   * @param info
+   * @return {@code info} with {@link #getAppendAtStart()} and
+   * {@link #getAppendAtEnd()}.
+   */
+  private String complete(String info) {
+    if (!info.endsWith(getAppendAtEnd()))
+      info+=getAppendAtEnd();//"\n//\n"
+    if (!info.startsWith(getAppendAtStart()))
+      info=getAppendAtStart()+info;//""
+    return info;
+  }
+  
+  /**
+   * @param s
+   * @return all maximal sequences of letters and digits in {@code s},
+   * in upper case.
+   */
+  private static List<String> getWords(String s) {
+    List<String> words = new ArrayList<String>();
+    int start = -1;
+    for (int i = 0; i <= s.length(); i++) {
+      if ((i < s.length()) && Character.isLetterOrDigit(s.charAt(i))) {
+        if (start < 0) start = i;
+      } else if (start >= 0) {
+        words.add(s.substring(start, i).toUpperCase());
+        start = -1;
+      }
+    }
+    return words;
+  }
+  
   /**
    * @return the string to append to each entry to fix missing
    * parts, due to the {@link #getEntrySeparator()}.
@@ -336,9 +604,6 @@ public abstract class DBFetcher extends InfoManagement<String, String> {
       AbstractProgressBar progress) throws TimeoutException,
       UnsuccessfulRetrieveException {
     String[] ret = new String[ids.length];
-    StringBuilder queryString = new StringBuilder();
-    int idsInCurrentQueue = 0;
-    int startID = 0;
     AbstractProgressBar prog = progress;
     
 
@@ -350,22 +615,7 @@ public abstract class DBFetcher extends InfoManagement<String, String> {
       prog.setNumberOfTotalCalls(ids.length);
     }
 
-    final int lastI = ids.length-1;
-    for (int i = 0; i < ids.length; i++) {
-      if (queryString.length()>0) queryString.append(',');
-      queryString.append(ids[i]);
-      idsInCurrentQueue++;
-      if (queryString.length() > 500 || idsInCurrentQueue == 99 || i == lastI) {
-        fetchMultipleChecked(ids, ret, queryString.toString(), startID, i);
-
-        queryString = new StringBuilder();
-        idsInCurrentQueue = 0;
-        startID = i + 1;
-      }
-      if (prog!=null) {
-        prog.DisplayBar();
-      }
-    }
+    fetchBatches(ids, ret, prog);
     
     if (fetchNonMappableIDs) {
       int c = 0;
@@ -460,6 +710,9 @@ public abstract class DBFetcher extends InfoManagement<String, String> {
    * case implemented here performs a simple {@code contains} check.
    * Overwrite this method, if you want to have a different behavior.
    * 
+   * <p>Batch queries only check entries, that contain the longest word
+   * (sequence of letters and digits) of the ID as a word, ignoring case.</p>
+   * 
    * @param id the ID to check
    * @param toCheck the string to check for occurence of the ID
    * @return {@code true}, if the ID can be matched to the string,
@@ -483,6 +736,7 @@ public abstract class DBFetcher extends InfoManagement<String, String> {
   @Override
   protected void restoreUnserializableObject() {
     dbfetch = new WSDbfetchClient();
+    batchClients = new ConcurrentLinkedQueue<WSDbfetchClient>();
   }
 
   /**
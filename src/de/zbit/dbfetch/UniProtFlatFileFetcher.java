@@ -0,0 +1,614 @@
+/*
+ * $Id$
+ * $URL$
+ * ---------------------------------------------------------------------
+ * This file is part of the SysBio API library.
+ *
+ * Copyright (C) 2009-2016 by the University of Tuebingen, Germany.
+ *
+ * This library is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation. A copy of the license
+ * agreement is provided in the file named "LICENSE.txt" included with
+ * this software distribution and also available online as
+ * <http://www.gnu.org/licenses/lgpl-3.0-standalone.html>.
+ * ---------------------------------------------------------------------
+ */
+package de.zbit.dbfetch;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeoutException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.GZIPInputStream;
+
+import de.zbit.exception.UnsuccessfulRetrieveException;
+import de.zbit.io.MappedRecordFile;
+import de.zbit.util.ThreadManager;
+import de.zbit.util.progressbar.AbstractProgressBar;
+
+/**
+ * A {@link UniProtFetcher}, that reads the entries from a local UniProt
+ * flat file (e.g., {@code uniprot_sprot.dat} or {@code uniprot_sprot.dat.gz})
+ * instead of querying WSDbfetch. Hence, it can be passed to, e.g.,
+ * {@link de.zbit.parser.UniProtParser#UniProtParser(UniProtFetcher)}.
+ * 
+ * <p>The flat file is indexed once and the index is stored next to the
+ * (decompressed) flat file, with the extension {@code .idx}. The index maps
+ * every accession and entry name to the position of its entry in the flat
+ * file. Entries are read from memory-mapped segments of the flat file (see
+ * {@link MappedRecordFile}).
+ * Further, the identifiers of the {@link #CROSS_REFERENCES} are extracted
+ * from the {@code DR} lines of every entry during indexing, such that they
+ * are available without parsing the entry (see
+ * {@link #getCrossReferences(String, String)}).</p>
+ * 
+ * @version $Rev$
+ * @since 1.4
+ */
+public class UniProtFlatFileFetcher extends UniProtFetcher {
+  
+  /**
+   * Generated serial version identifier.
+   */
+  private static final long serialVersionUID = 2981355066287408129L;
+  
+  /**
+   * A {@link Logger} for this class.
+   */
+  private static final transient Logger log = Logger.getLogger(UniProtFlatFileFetcher.class.getName());
+  
+  /**
+   * Databases, whose identifiers are extracted from the {@code DR} lines
+   * during indexing.
+   */
+  public static final String[] CROSS_REFERENCES = new String[] {"GeneID", "RefSeq", "Ensembl"};
+  
+  /**
+   * Identifies index files (and their version).
+   */
+  private static final int INDEX_MAGIC = 0x55504931;
+  
+  /**
+   * Number of entries that are parsed by a single task during indexing.
+   */
+  private static final int BATCH_SIZE = 1000;
+  
+  /**
+   * The end of an entry: "\n//\n".
+   */
+  private static final int ENTRY_END = ('\n' << 24) | ('/' << 16) | ('/' << 8) | '\n';
+  
+  /**
+   * The uncompressed flat file.
+   */
+  private final File dataFile;
+  
+  /**
+   * The index of {@link #dataFile}.
+   */
+  private final File indexFile;
+  
+  /**
+   * Maps all accessions and entry names (upper case) to the number of
+   * their entry.
+   */
+  private transient Map<String, Integer> index;
+  
+  /**
+   * Position and length of every entry in {@link #dataFile}.
+   */
+  private transient MappedRecordFile records;
+  
+  /**
+   * For every entry, the identifiers of all {@link #CROSS_REFERENCES}.
+   * Multiple identifiers are separated by a semicolon.
+   */
+  private transient String[][] crossReferences;
+  
+  /**
+   * Indexes the given flat file, using all but one processor.
+   * 
+   * @param file a UniProt flat file, either uncompressed or gzipped.
+   * @throws IOException
+   * @see #UniProtFlatFileFetcher(File, int)
+   */
+  public UniProtFlatFileFetcher(File file) throws IOException {
+    this(file, Math.max(1, ThreadManager.NUMBER_OF_PROCESSORS - 1));
+  }
+  
+  /**
+   * Opens the given flat file. If there is no index for this file, or the
+   * index is older than the flat file, the file is indexed. A gzipped file
+   * is decompressed during indexing, into the same directory, with the
+   * extension {@code .gz} removed.
+   * 
+   * @param file a UniProt flat file, either uncompressed or gzipped.
+   * @param numberOfThreads number of threads to parse the entries during
+   *        indexing.
+   * @throws IOException if the file cannot be read or indexed.
+   */
+  public UniProtFlatFileFetcher(File file, int numberOfThreads) throws IOException {
+    super(1000);
+    boolean gzipped = file.getName().toLowerCase().endsWith(".gz");
+    if (gzipped) {
+      String name = file.getName();
+      dataFile = new File(file.getParentFile(), name.substring(0, name.length() - 3));
+    } else {
+      dataFile = file;
+    }
+    indexFile = new File(dataFile.getPath() + ".idx");
+    
+    if (!indexFile.exists() || !dataFile.exists()
+        || (indexFile.lastModified() < file.lastModified())) {
+      log.info("Indexing " + file);
+      buildIndex(file, gzipped, numberOfThreads);
+      writeIndex();
+    } else {
+      readIndex();
+    }
+    records.map();
+  }
+  
+  /**
+   * @return the number of entries in the flat file.
+   */
+  public int getNumberOfEntries() {
+    return records.size();
+  }
+  
+  /**
+   * @param id an accession or entry name.
+   * @return true if the flat file contains an entry for this identifier.
+   */
+  public boolean contains(String id) {
+    return (id != null) && index.containsKey(id.toUpperCase());
+  }
+  
+  /**
+   * Returns the identifiers of the given database, as extracted from the
+   * {@code DR} lines of an entry. This does not read the entry itself.
+   * 
+   * @param id an accession or entry name.
+   * @param database one of the {@link #CROSS_REFERENCES}.
+   * @return all identifiers, that are referenced by the entry (might be
+   *         empty), or {@code null} if there is no entry for {@code id}.
+   * @throws IllegalArgumentException if {@code database} is none of the
+   *         {@link #CROSS_REFERENCES}.
+   */
+  public String[] getCrossReferences(String id, String database) {
+    int db = Arrays.asList(CROSS_REFERENCES).indexOf(database);
+    if (db < 0) {
+      throw new IllegalArgumentException("Unsupported database " + database);
+    }
+    Integer nr = (id == null) ? null : index.get(id.toUpperCase());
+    if (nr == null) {
+      return null;
+    }
+    String refs = crossReferences[nr.intValue()][db];
+    return (refs.length() == 0) ? new String[0] : refs.split(";");
+  }
+  
+  /* (non-Javadoc)
+   * @see de.zbit.dbfetch.DBFetcher#fetchInformation(java.lang.String)
+   */
+  @Override
+  protected String fetchInformation(String id) throws TimeoutException, UnsuccessfulRetrieveException {
+    Integer nr = (id == null) ? null : index.get(id.toUpperCase());
+    if (nr == null) {
+      throw new UnsuccessfulRetrieveException();
+    }
+    return removeUnrequiredInformation(readEntry(nr.intValue()));
+  }
+  
+  /* (non-Javadoc)
+   * @see de.zbit.dbfetch.DBFetcher#fetchMultipleInformations(java.lang.String[], de.zbit.util.progressbar.AbstractProgressBar)
+   */
+  @Override
+  protected String[] fetchMultipleInformations(String[] ids, AbstractProgressBar progress)
+    throws TimeoutException, UnsuccessfulRetrieveException {
+    if (progress != null) {
+      progress.setNumberOfTotalCalls(ids.length);
+    }
+    String[] ret = new String[ids.length];
+    for (int i = 0; i < ids.length; i++) {
+      Integer nr = (ids[i] == null) ? null : index.get(ids[i].toUpperCase());
+      if (nr != null) {
+        ret[i] = removeUnrequiredInformation(readEntry(nr.intValue()));
+      }
+      if (progress != null) {
+        progress.DisplayBar();
+      }
+    }
+    return ret;
+  }
+  
+  /**
+   * @param nr number of the entry.
+   * @return the complete entry, including the terminating "//" line.
+   */
+  private String readEntry(int nr) {
+    return toString(records.read(nr));
+  }
+  
+  /**
+   * UniProt flat files are plain ASCII.
+   * @param bytes
+   * @return
+   */
+  private static String toString(byte[] bytes) {
+    char[] chars = new char[bytes.length];
+    for (int i = 0; i < bytes.length; i++) {
+      chars[i] = (char) (bytes[i] & 0xff);
+    }
+    return new String(chars);
+  }
+  
+  /**
+   * An entry of the flat file.
+   * 
+   * @version $Rev$
+   * @since 1.4
+   */
+  private static class Entry {
+    /**
+     * Position in the uncompressed flat file.
+     */
+    private final long offset;
+    /**
+     * The raw entry. Released after parsing.
+     */
+    private byte[] data;
+    /**
+     * Length of {@link #data}.
+     */
+    private final int length;
+    /**
+     * Accessions and entry name (upper case).
+     */
+    private String[] keys;
+    /**
+     * Identifiers of all {@link UniProtFlatFileFetcher#CROSS_REFERENCES}.
+     */
+    private String[] crossReferences;
+    
+    /**
+     * @param offset
+     * @param data
+     */
+    public Entry(long offset, byte[] data) {
+      this.offset = offset;
+      this.data = data;
+      this.length = data.length;
+    }
+    
+    /**
+     * Extracts the {@link #keys} and {@link #crossReferences} from the
+     * {@code ID}, {@code AC} and {@code DR} lines.
+     */
+    public void parse() {
+      String text = UniProtFlatFileFetcher.toString(data);
+      data = null;
+      Set<String> keys = new LinkedHashSet<String>();
+      List<Set<String>> refs = new ArrayList<Set<String>>(CROSS_REFERENCES.length);
+      for (int i = 0; i < CROSS_REFERENCES.length; i++) {
+        refs.add(new LinkedHashSet<String>());
+      }
+      
+      int start = 0;
+      while (start < text.length()) {
+        int end = text.indexOf('\n', start);
+        if (end < 0) {
+          end = text.length();
+        }
+        if (text.startsWith("ID   ", start)) {
+          String line = text.substring(start + 5, end).trim();
+          int space = line.indexOf(' ');
+          keys.add((space < 0 ? line : line.substring(0, space)).toUpperCase());
+        } else if (text.startsWith("AC   ", start)) {
+          for (String ac : text.substring(start + 5, end).split(";")) {
+            ac = ac.trim();
+            if (ac.length() > 0) {
+              keys.add(ac.toUpperCase());
+            }
+          }
+        } else if (text.startsWith("DR   ", start)) {
+          // DR   RESOURCE_ABBREVIATION; RESOURCE_IDENTIFIER; OPTIONAL_INFORMATION_1[; ...].
+          String[] columns = text.substring(start + 5, end).split(";");
+          int db = Arrays.asList(CROSS_REFERENCES).indexOf(columns[0].trim());
+          if (db >= 0) {
+            for (int i = 1; i < columns.length; i++) {
+              String column = columns[i].trim();
+              // Remove, e.g., "[P12345-2]" isoform specifications
+              int space = column.indexOf(' ');
+              if (space > 0) {
+                column = column.substring(0, space);
+              }
+              if (column.endsWith(".")) {
+                column = column.substring(0, column.length() - 1);
+              }
+              if ((column.length() > 0) && !column.equals("-")) {
+                refs.get(db).add(column);
+              }
+            }
+          }
+        }
+        start = end + 1;
+      }
+      
+      this.keys = keys.toArray(new String[keys.size()]);
+      crossReferences = new String[CROSS_REFERENCES.length];
+      for (int i = 0; i < crossReferences.length; i++) {
+        StringBuilder sb = new StringBuilder();
+        for (String ref : refs.get(i)) {
+          if (sb.length() > 0) {
+            sb.append(';');
+          }
+          sb.append(ref);
+        }
+        crossReferences[i] = sb.toString();
+      }
+    }
+  }
+  
+  /**
+   * Reads all entries of the given flat file and parses them with
+   * {@code numberOfThreads} threads. A gzipped file is decompressed to
+   * {@link #dataFile} on the fly.
+   * 
+   * @param file
+   * @param gzipped
+   * @param numberOfThreads
+   * @throws IOException
+   */
+  private void buildIndex(File file, boolean gzipped, int numberOfThreads) throws IOException {
+    index = new HashMap<String, Integer>();
+    records = new MappedRecordFile(dataFile);
+    crossReferences = new String[1024][];
+    
+    InputStream in = new BufferedInputStream(new FileInputStream(file), 1 << 16);
+    OutputStream copy = null;
+    ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, numberOfThreads));
+    LinkedList<Future<List<Entry>>> pending = new LinkedList<Future<List<Entry>>>();
+    try {
+      if (gzipped) {
+        in = new GZIPInputStream(in, 1 << 16);
+        copy = new BufferedOutputStream(new FileOutputStream(dataFile), 1 << 16);
+      }
+      
+      byte[] buffer = new byte[1 << 16];
+      ByteArrayOutputStream entry = new ByteArrayOutputStream(1 << 14);
+      List<Entry> batch = new ArrayList<Entry>(BATCH_SIZE);
+      long position = 0;
+      int last = 0;
+      int n;
+      while ((n = in.read(buffer)) >= 0) {
+        if (copy != null) {
+          copy.write(buffer, 0, n);
+        }
+        int from = 0;
+        for (int i = 0; i < n; i++) {
+          last = (last << 8) | (buffer[i] & 0xff);
+          if (last == ENTRY_END) {
+            entry.write(buffer, from, i + 1 - from);
+            from = i + 1;
+            batch.add(new Entry(position, entry.toByteArray()));
+            position += entry.size();
+            entry.reset();
+            if (batch.size() == BATCH_SIZE) {
+              pending.add(submit(pool, batch));
+              batch = new ArrayList<Entry>(BATCH_SIZE);
+              // Bound the number of entries in memory
+              while (pending.size() > 2 * numberOfThreads) {
+                add(get(pending.removeFirst()));
+              }
+            }
+          }
+        }
+        entry.write(buffer, from, n - from);
+      }
+      if (toString(entry.toByteArray()).trim().length() > 0) {
+        // Last entry without terminating "//" line
+        batch.add(new Entry(position, entry.toByteArray()));
+      }
+      if (!batch.isEmpty()) {
+        pending.add(submit(pool, batch));
+      }
+      while (!pending.isEmpty()) {
+        add(get(pending.removeFirst()));
+      }
+    } finally {
+      pool.shutdownNow();
+      in.close();
+      if (copy != null) {
+        copy.close();
+      }
+    }
+  }
+  
+  /**
+   * @param pool
+   * @param batch
+   * @return the parsed batch.
+   */
+  private static Future<List<Entry>> submit(ExecutorService pool, final List<Entry> batch) {
+    return pool.submit(new Callable<List<Entry>>() {
+      /* (non-Javadoc)
+       * @see java.util.concurrent.Callable#call()
+       */
+      @Override
+      public List<Entry> call() throws Exception {
+        for (Entry entry : batch) {
+          entry.parse();
+        }
+        return batch;
+      }
+    });
+  }
+  
+  /**
+   * @param future
+   * @return the result of {@code future}.
+   * @throws IOException if the computation failed or has been interrupted.
+   */
+  private static <T> T get(Future<T> future) throws IOException {
+    try {
+      return future.get();
+    } catch (ExecutionException e) {
+      IOException ex = new IOException("Could not parse UniProt entries.");
+      ex.initCause(e.getCause());
+      throw ex;
+    } catch (InterruptedException e) {
+      IOException ex = new IOException("Interrupted while indexing UniProt entries.");
+      ex.initCause(e);
+      throw ex;
+    }
+  }
+  
+  /**
+   * Adds parsed entries to the index, in the order of the flat file. If an
+   * identifier occurs in multiple entries (e.g., secondary accessions), the
+   * first entry is used.
+   * 
+   * @param entries
+   */
+  private void add(List<Entry> entries) {
+    for (Entry entry : entries) {
+      add(entry.offset, entry.length, entry.keys, entry.crossReferences);
+    }
+  }
+  
+  /**
+   * @param offset
+   * @param length
+   * @param keys
+   * @param refs
+   */
+  private void add(long offset, int length, String[] keys, String[] refs) {
+    int i = records.add(offset, length);
+    if (i == crossReferences.length) {
+      crossReferences = Arrays.copyOf(crossReferences, 2 * i);
+    }
+    Integer nr = Integer.valueOf(i);
+    for (String key : keys) {
+      if (!index.containsKey(key)) {
+        index.put(key, nr);
+      }
+    }
+    crossReferences[i] = refs;
+  }
+  
+  /**
+   * Writes the index to a temporary file, which then replaces
+   * {@link #indexFile}. Hence, the index is never partially written.
+   * 
+   * @throws IOException
+   */
+  private void writeIndex() throws IOException {
+    int size = records.size();
+    // Invert the index, to store the keys per entry.
+    List<List<String>> keys = new ArrayList<List<String>>(size);
+    for (int i = 0; i < size; i++) {
+      keys.add(new ArrayList<String>(2));
+    }
+    for (Map.Entry<String, Integer> e : index.entrySet()) {
+      keys.get(e.getValue().intValue()).add(e.getKey());
+    }
+    
+    File tmp = MappedRecordFile.getTemporaryFile(indexFile);
+    DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp), 1 << 16));
+    try {
+      out.writeInt(INDEX_MAGIC);
+      out.writeInt(size);
+      for (int i = 0; i < size; i++) {
+        out.writeLong(records.getOffset(i));
+        out.writeInt(records.getLength(i));
+        out.writeShort(keys.get(i).size());
+        for (String key : keys.get(i)) {
+          out.writeUTF(key);
+        }
+        for (String refs : crossReferences[i]) {
+          out.writeUTF(refs);
+        }
+      }
+    } finally {
+      out.close();
+    }
+    MappedRecordFile.replace(tmp, indexFile);
+  }
+  
+  /**
+   * Reads the index from {@link #indexFile}.
+   * 
+   * @throws IOException
+   */
+  private void readIndex() throws IOException {
+    DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile), 1 << 16));
+    try {
+      if (in.readInt() != INDEX_MAGIC) {
+        throw new IOException("Invalid index file " + indexFile);
+      }
+      int size = in.readInt();
+      index = new HashMap<String, Integer>(2 * size);
+      records = new MappedRecordFile(dataFile, size);
+      crossReferences = new String[size][];
+      for (int i = 0; i < size; i++) {
+        records.add(in.readLong(), in.readInt());
+        Integer nr = Integer.valueOf(i);
+        int keys = in.readUnsignedShort();
+        for (int j = 0; j < keys; j++) {
+          index.put(in.readUTF(), nr);
+        }
+        crossReferences[i] = new String[CROSS_REFERENCES.length];
+        for (int j = 0; j < CROSS_REFERENCES.length; j++) {
+          crossReferences[i][j] = in.readUTF();
+        }
+      }
+    } finally {
+      in.close();
+    }
+  }
+  
+  /**
+   * Re-opens the index and the flat file after deserialization.
+   * 
+   * @param in
+   * @throws IOException
+   * @throws ClassNotFoundException
+   */
+  private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+    in.defaultReadObject();
+    try {
+      readIndex();
+      records.map();
+    } catch (IOException e) {
+      log.log(Level.SEVERE, "Could not open " + dataFile, e);
+      throw e;
+    }
+  }
+  
+}
@@ -22,7 +22,6 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.net.HttpURLConnection;
 import java.net.URL;
 import java.net.URLConnection;
 import java.util.logging.Logger;
@@ -125,38 +124,47 @@ public class FileDownload {
       }
     }
     
+    HttpClient.Response response = null;
+    boolean complete = false;
     try {
-      URL url = new URL(address);
+      long contentLength;
       int status = 0;
-      if (address.toLowerCase().startsWith("http:")) {
-        status = ((HttpURLConnection) url.openConnection()).getResponseCode();
+      if (HttpClient.isHttp(address)) {
+        // One pooled, keep-alive connection for status and content.
+        response = HttpClient.getDefault().open(address);
+        status = response.getStatus();
+        if (status>=400) {
+          //log.warning("Failed: HTTP error (code " + status + ").");
+          System.err.println("Failed: HTTP error (code " + status + ").");
+          // This should not logged to warning. Errors include not-existing KEGG IDs and such.
+          
+          complete = true;
+          return; //404 und sowas ... >400 nur error codes. Normal:200 =>OK
+        }
+        in = response.getInputStream();
+        contentLength = response.getContentLength();
       } else { //if (address.toLowerCase().startsWith("ftp:"))
-        url.openConnection(); //status = ((URLConnection) url.openConnection()).getResponseCode();
-      }
-      
-      if (status>=400) {
-        //log.warning("Failed: HTTP error (code " + status + ").");
-        System.err.println("Failed: HTTP error (code " + status + ").");
-        // This should not logged to warning. Errors include not-existing KEGG IDs and such.
-        
-        return; //404 und sowas ... >400 nur error codes. Normal:200 =>OK
+        conn = new URL(address).openConnection();
+        in = conn.getInputStream();
+        contentLength = conn.getContentLength();
       }
       FileDownload.status = status;
+      if (in == null) {
+        complete = true;
+        return;
+      }
       
-      conn = url.openConnection();
-      
-      in = conn.getInputStream();
-      byte[] buffer = new byte[1024];
+      byte[] buffer = new byte[HttpClient.BUFFER_SIZE];
       int numRead;
       long numWritten = 0;
       
       final int reportEveryXKB = 50; // Set progressbar every X kb. = StepSize
       //guiOperations.SetProgressBarMAXThreadlike(Math.max(conn.getContentLength(), in.available()), ProgressBar);
-      if (verbose && progress!=null) progress.setNumberOfTotalCalls((long)((double)Math.max(conn.getContentLength(), in.available())/(double)(buffer.length*reportEveryXKB)));
+      if (verbose && progress!=null) progress.setNumberOfTotalCalls((long)((double)Math.max(contentLength, in.available())/(double)(1024*reportEveryXKB)));
       
-      int calls = 0;
+      long nextReport = 0;
       while ((numRead = in.read(buffer)) != -1) {
-        if (verbose && progress!=null && (calls%reportEveryXKB) == 0) {
+        if (verbose && progress!=null && (numWritten >= nextReport)) {
           if (Thread.currentThread().isInterrupted()) break;
           double mb = (Math.round(numWritten/1024.0/1024.0*10.0)/10.0);
           //if (ProgressBar!=null) guiOperations.SetProgressBarVALUEThreadlike((int)numWritten, true, ProgressBar);
@@ -165,17 +173,23 @@ public class FileDownload {
           //System.out.println((Math.round(numWritten/1024/1024)));
           
           progress.DisplayBar(String.format("(%s MB)", mb));
+          nextReport = numWritten + 1024*reportEveryXKB;
         }
         
         out.write(buffer, 0, numRead);
         numWritten += numRead;
-        calls++;
       }
-      //System.out.println(address + " \t " + calls  + " \t " + (numWritten/1024.0/1024.0));
+      complete = (numRead == -1);
+      //System.out.println(address + " \t " + (numWritten/1024.0/1024.0));
       
     } finally {
       try {
-        if (in != null) in.close();
+        if (response != null) {
+          // Do not read the rest, if the download has been interrupted
+          if (complete) response.close();
+          else response.disconnect();
+        }
+        else if (in != null) in.close();
         if (out != null) out.close();
         if (conn != null) conn = null;
       } catch (IOException ioe) {}
@@ -183,6 +197,19 @@ public class FileDownload {
     return;
   }
   
+  /**
+   * @param address
+   * @return the length of the content at the given address, or -1 if it
+   * is unknown.
+   * @throws IOException
+   */
+  private static long getContentLength(String address) throws IOException {
+    if (HttpClient.isHttp(address)) {
+      return HttpClient.getDefault().getContentLength(address);
+    }
+    return new URL(address).openConnection().getContentLength();
+  }
+  
   /**
    * 
    * @param address
@@ -193,13 +220,12 @@ public class FileDownload {
    */
   public static String download(String address, String localFileName) {
     OutputStream out = null;
-    Integer targetFileSize = null;
+    Long targetFileSize = null;
     
     // If file already exists, look if it is complete and skip re-downloading it.
     try {
       if (new File(localFileName).exists()) {
-        URL url = new URL(address);
-        if (targetFileSize==null) targetFileSize = url.openConnection().getContentLength();
+        if (targetFileSize==null) targetFileSize = getContentLength(address);
         // REMARK: targetFileSize is often -1 if server can not give this info
         if (targetFileSize!=null && targetFileSize.longValue() ==new File(localFileName).length()) {
           System.out.println("File already exists and file length matches. Not downloading it again.");
@@ -223,8 +249,7 @@ public class FileDownload {
       // If file already exists, look if it is complete and skip re-downloading it.
       try {
         if (new File(localFileName).exists()) {
-          URL url = new URL(address);
-          if (targetFileSize==null) targetFileSize = url.openConnection().getContentLength();
+          if (targetFileSize==null) targetFileSize = getContentLength(address);
           // REMARK: targetFileSize is often -1 if server can not give this info
           if (targetFileSize!=null && targetFileSize.longValue() ==new File(localFileName).length()) {
             System.out.println("File already exists and file length matches. Not downloading it again.");
@@ -282,26 +307,28 @@ public class FileDownload {
     boolean ret = false;
     while (true) {
       if (ret) break;
+      HttpClient.Response response = null;
+      boolean complete = false;
       try {
-        URL url = new URL(address);
         int status = 0;
-        if (address.toLowerCase().startsWith("http:"))
-          status = ((HttpURLConnection) url.openConnection()).getResponseCode();
-        else //if (address.toLowerCase().startsWith("ftp:"))
-          url.openConnection(); //status = ((URLConnection) url.openConnection()).getResponseCode();
-        
-        if (status>=400) {
-          System.out.println("Failed: HTTP error (code " + status + ").");          
-          break; //404 und sowas ... >400 nur error codes. Normal:200 =>OK
+        if (HttpClient.isHttp(address)) {
+          response = HttpClient.getDefault().open(address);
+          status = response.getStatus();
+          if (status>=400) {
+            System.out.println("Failed: HTTP error (code " + status + ").");          
+            complete = true;
+            break; //404 und sowas ... >400 nur error codes. Normal:200 =>OK
+          }
+          in = response.getInputStream();
+        } else { //if (address.toLowerCase().startsWith("ftp:"))
+          conn = new URL(address).openConnection();
+          in = conn.getInputStream();
         }
         FileDownload.status = status;
-        conn = url.openConnection();
-        
-        in = conn.getInputStream();
         
         byte[] buffer = new byte[1024];
         int reads = 0;
-        while ((in.read(buffer)) != -1) {
+        while (!(complete = (in.read(buffer) == -1))) {
           String read = new String(buffer).trim();
           //if (read.contains("HTML") && read.contains(">") && read.contains("<")) return true;
           if (read.toUpperCase().replace(" ", "").contains("<HTML>")) {ret=true; break;}
@@ -318,7 +345,12 @@ public class FileDownload {
         
       } finally {
         try {
-          if (in != null) in.close();
+          if (response != null) {
+            // Only a few KB have been read, do not read the rest.
+            if (complete) response.close();
+            else response.disconnect();
+          }
+          else if (in != null) in.close();
           if (conn != null) conn = null;
         } catch (IOException ioe) {}
         if (retry >=2 || ret) break;
@@ -27,17 +27,26 @@ import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.FileReader;
 import java.io.FileWriter;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.io.OutputStream;
+import java.io.RandomAccessFile;
 import java.lang.reflect.Array;
 import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
-import java.util.LinkedList;
+import java.util.Comparator;
 import java.util.List;
+import java.util.PriorityQueue;
 import java.util.Random;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.regex.Pattern;
 
+import de.zbit.util.ThreadManager;
 import de.zbit.util.Utils;
 
 /**
@@ -266,7 +275,8 @@ public class FileTools {
    * reads the whole infile into memory, shuffles it, and then writes it again.
    * This means that input and output file may be the same, but this could lead
    * to data loss when overwriting has already started but is then aborted
-   * somehow.
+   * somehow. For files that do not fit into memory, use
+   * {@link #shuffleFileExternal(String, String, Random, long)}.
    * 
    * @param inFileName
    * @param outFileName
@@ -281,7 +291,7 @@ public class FileTools {
     }
     
     String line = "";
-    List<String> lines = new LinkedList<String>();
+    List<String> lines = new ArrayList<String>();
     BufferedReader br = new BufferedReader(new FileReader(inFileName));
     
     // read the file
@@ -335,6 +345,563 @@ public class FileTools {
     br.close();
   }
 
+  /**
+   * Default number of bytes used for buffered reading and writing in the
+   * disk-backed file operations of this class.
+   */
+  private static final int EXTERNAL_BUFFER_SIZE = 1 << 20;
+  
+  /**
+   * Upper bound for the number of temporary files that
+   * {@link #shuffleFileExternal(String, String, Random, long)} keeps open
+   * at the same time.
+   */
+  private static final int MAX_BUCKETS = 256;
+  
+  /**
+   * Shuffles the lines of a file that may be too large to fit into memory.
+   * In a first pass, every line is appended to one of several randomly chosen
+   * temporary bucket files. In a second pass, each bucket is read, shuffled
+   * in memory and appended to the output file. This results in a uniformly
+   * random permutation of all lines, while at most about
+   * {@code maxBytesInMemory} bytes of text are held in memory at once.
+   * At most {@link #MAX_BUCKETS} bucket files are used. Buckets that are
+   * still too large for the memory limit are shuffled recursively.
+   * 
+   * <p>If the input file is smaller than {@code maxBytesInMemory}, this
+   * method simply calls {@link #shuffleFile(String, String, Random)}.</p>
+   * 
+   * @param inFileName
+   * @param outFileName must not be the same as {@code inFileName}.
+   * @param rnd if {@code null}, a new {@link Random} instance will be used.
+   * @param maxBytesInMemory approximate upper bound of file content (in bytes)
+   *        to keep in memory at once.
+   * @throws IOException
+   */
+  public static void shuffleFileExternal(String inFileName, String outFileName,
+    Random rnd, long maxBytesInMemory) throws IOException {
+    File in = new File(inFileName);
+    if (in.length() <= maxBytesInMemory) {
+      shuffleFile(inFileName, outFileName, rnd);
+      return;
+    }
+    if (rnd == null) {
+      rnd = new Random();
+    }
+    
+    // Use twice the minimal number of buckets, to be on the safe side in
+    // case the random scatter is unbalanced.
+    int numBuckets = (int) Math.min(MAX_BUCKETS,
+      ((in.length() / Math.max(1, maxBytesInMemory)) + 1) * 2);
+    File tmpDir = new File(outFileName).getAbsoluteFile().getParentFile();
+    File[] buckets = new File[numBuckets];
+    BufferedWriter[] writers = new BufferedWriter[numBuckets];
+    int bucketBuffer = Math.max(8192, EXTERNAL_BUFFER_SIZE / numBuckets);
+    try {
+      for (int i = 0; i < numBuckets; i++) {
+        buckets[i] = File.createTempFile(in.getName(), ".bucket" + i + ".tmp", tmpDir);
+        buckets[i].deleteOnExit();
+        writers[i] = new BufferedWriter(new FileWriter(buckets[i]), bucketBuffer);
+      }
+      
+      // Pass 1: random scatter
+      BufferedReader br = new BufferedReader(new FileReader(in), EXTERNAL_BUFFER_SIZE);
+      try {
+        String line;
+        while ((line = br.readLine()) != null) {
+          writers[rnd.nextInt(numBuckets)].append(line).append('\n');
+        }
+      } finally {
+        br.close();
+      }
+      for (int i = 0; i < numBuckets; i++) {
+        writers[i].close();
+        writers[i] = null;
+      }
+      
+      // Pass 2: shuffle each bucket in memory
+      BufferedWriter bw = new BufferedWriter(new FileWriter(outFileName), EXTERNAL_BUFFER_SIZE);
+      try {
+        for (int i = 0; i < numBuckets; i++) {
+          long bucketLength = buckets[i].length();
+          if ((bucketLength > maxBytesInMemory) && (bucketLength < in.length())) {
+            // Too many buckets would be required: shuffle this one recursively
+            File shuffled = File.createTempFile(in.getName(), ".shuffled" + i + ".tmp", tmpDir);
+            try {
+              shuffleFileExternal(buckets[i].getPath(), shuffled.getPath(), rnd, maxBytesInMemory);
+              BufferedReader sr = new BufferedReader(new FileReader(shuffled), EXTERNAL_BUFFER_SIZE);
+              try {
+                String line;
+                while ((line = sr.readLine()) != null) {
+                  bw.append(line).append('\n');
+                }
+              } finally {
+                sr.close();
+              }
+            } finally {
+              if (!shuffled.delete()) {
+                shuffled.deleteOnExit();
+              }
+            }
+          } else {
+            List<String> lines = readLines(buckets[i]);
+            Collections.shuffle(lines, rnd);
+            for (String s : lines) {
+              bw.append(s).append('\n');
+            }
+          }
+          if (!buckets[i].delete()) {
+            buckets[i].deleteOnExit();
+          }
+        }
+      } finally {
+        bw.close();
+      }
+    } finally {
+      for (int i = 0; i < numBuckets; i++) {
+        if (writers[i] != null) {
+          try {
+            writers[i].close();
+          } catch (IOException e) {
+            // Nothing to do, we are cleaning up anyway.
+          }
+        }
+        if ((buckets[i] != null) && buckets[i].exists()) {
+          buckets[i].delete();
+        }
+      }
+    }
+  }
+  
+  /**
+   * Sorts the lines of a (possibly very large) file by the content of one
+   * column, using an external merge sort. The input is read in chunks of
+   * about {@code maxBytesInMemory / (numberOfThreads + 1)} bytes. Each chunk
+   * is sorted in parallel by a {@link ThreadManager} and written to a
+   * temporary run file. Finally, all runs are merged into the output file.
+   * The sort is stable, i.e., lines with equal keys keep their relative order.
+   * 
+   * @param inFileName
+   * @param outFileName may be the same as {@code inFileName}, since the output
+   *        is written only after the input has been read completely.
+   * @param column the column that contains the sort key (zero based). Use any
+   *        negative number to sort by the whole line.
+   * @param separator the column separator, e.g., {@code "\t"}. Lines that do
+   *        not have enough columns get an empty key.
+   * @param comparator used to compare the keys. If {@code null}, the natural
+   *        {@link String} order is used.
+   * @param maxBytesInMemory approximate upper bound of file content (in bytes)
+   *        to keep in memory at once.
+   * @param numberOfThreads number of runs to sort in parallel.
+   * @throws IOException
+   */
+  public static void sortFileExternal(String inFileName, String outFileName,
+    final int column, final String separator, Comparator<String> comparator,
+    long maxBytesInMemory, int numberOfThreads) throws IOException {
+    
+    final Comparator<String> keyComparator = comparator != null ? comparator : new Comparator<String>() {
+      /* (non-Javadoc)
+       * @see java.util.Comparator#compare(java.lang.Object, java.lang.Object)
+       */
+      @Override
+      public int compare(String o1, String o2) {
+        return o1.compareTo(o2);
+      }
+    };
+    numberOfThreads = Math.max(1, numberOfThreads);
+    long chunkSize = Math.max(1 << 16, maxBytesInMemory / (numberOfThreads + 1));
+    File in = new File(inFileName);
+    File tmpDir = new File(outFileName).getAbsoluteFile().getParentFile();
+    
+    final List<File> runs = Collections.synchronizedList(new ArrayList<File>());
+    final AtomicReference<Throwable> error = new AtomicReference<Throwable>();
+    // Do not read further ahead than the workers can handle
+    final Semaphore inFlight = new Semaphore(numberOfThreads);
+    ThreadManager manager = new ThreadManager(numberOfThreads);
+    
+    // Pass 1: generate sorted runs
+    BufferedReader br = new BufferedReader(new FileReader(in), EXTERNAL_BUFFER_SIZE);
+    try {
+      String line;
+      List<String> chunk = new ArrayList<String>();
+      long bytes = 0;
+      int runNumber = 0;
+      while ((error.get() == null) && ((line = br.readLine()) != null)) {
+        chunk.add(line);
+        // Rough estimate of the memory required by a String
+        bytes += 2 * line.length() + 40;
+        if (bytes >= chunkSize) {
+          acquire(inFlight, inFileName);
+          File run = File.createTempFile(in.getName(), ".run" + (runNumber++) + ".tmp", tmpDir);
+          run.deleteOnExit();
+          runs.add(run);
+          manager.addToPool(createSortRunTask(chunk, run, column, separator, keyComparator, error, inFlight));
+          chunk = new ArrayList<String>();
+          bytes = 0;
+        }
+      }
+      if ((error.get() == null) && (chunk.size() > 0)) {
+        acquire(inFlight, inFileName);
+        File run = File.createTempFile(in.getName(), ".run" + runNumber + ".tmp", tmpDir);
+        run.deleteOnExit();
+        runs.add(run);
+        manager.addToPool(createSortRunTask(chunk, run, column, separator, keyComparator, error, inFlight));
+      }
+    } finally {
+      br.close();
+      manager.awaitTermination();
+    }
+    
+    try {
+      Throwable t = error.get();
+      if (t instanceof IOException) {
+        throw (IOException) t;
+      } else if (t != null) {
+        IOException e = new IOException("Could not sort " + inFileName);
+        e.initCause(t);
+        throw e;
+      }
+      // Pass 2: k-way merge of all runs
+      mergeSortedRuns(runs, new File(outFileName), column, separator, keyComparator);
+    } finally {
+      for (File run : runs) {
+        if (run.exists() && !run.delete()) {
+          run.deleteOnExit();
+        }
+      }
+    }
+  }
+  
+  /**
+   * Acquires a permit from the given {@link Semaphore}.
+   * 
+   * @param semaphore
+   * @param inFileName only used for the error message.
+   * @throws IOException if the current thread is interrupted.
+   */
+  private static void acquire(Semaphore semaphore, String inFileName) throws IOException {
+    try {
+      semaphore.acquire();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while sorting " + inFileName);
+    }
+  }
+  
+  /**
+   * Creates a task that sorts the given chunk of lines by the key in the given
+   * column and writes it to {@code run}. The first exception of any task is
+   * reported in {@code error}. When the task is done, it releases one permit
+   * of {@code inFlight}.
+   * 
+   * @param chunk
+   * @param run
+   * @param column
+   * @param separator
+   * @param keyComparator
+   * @param error
+   * @param inFlight
+   * @return
+   */
+  private static Runnable createSortRunTask(final List<String> chunk, final File run,
+    final int column, final String separator, final Comparator<String> keyComparator,
+    final AtomicReference<Throwable> error, final Semaphore inFlight) {
+    return new Runnable() {
+      /* (non-Javadoc)
+       * @see java.lang.Runnable#run()
+       */
+      @Override
+      public void run() {
+        try {
+          sort();
+        } catch (IOException e) {
+          error.compareAndSet(null, e);
+        } catch (RuntimeException e) {
+          error.compareAndSet(null, e);
+        } finally {
+          inFlight.release();
+        }
+      }
+      
+      /**
+       * Sorts the chunk and writes it to the run file.
+       * 
+       * @throws IOException
+       */
+      private void sort() throws IOException {
+        // Extract every key only once
+        final String[] keys = new String[chunk.size()];
+        Integer[] order = new Integer[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+          keys[i] = getColumn(chunk.get(i), column, separator);
+          order[i] = Integer.valueOf(i);
+        }
+        // Arrays.sort on objects is a stable merge sort
+        Arrays.sort(order, new Comparator<Integer>() {
+          /* (non-Javadoc)
+           * @see java.util.Comparator#compare(java.lang.Object, java.lang.Object)
+           */
+          @Override
+          public int compare(Integer o1, Integer o2) {
+            return keyComparator.compare(keys[o1.intValue()], keys[o2.intValue()]);
+          }
+        });
+        BufferedWriter bw = new BufferedWriter(new FileWriter(run), EXTERNAL_BUFFER_SIZE);
+        try {
+          for (Integer i : order) {
+            bw.append(chunk.get(i.intValue())).append('\n');
+          }
+        } finally {
+          bw.close();
+        }
+      }
+    };
+  }
+  
+  /**
+   * Merges the given sorted run files into {@code out}. Ties are broken by the
+   * index of the run in the list, which keeps the overall sort stable.
+   * 
+   * @param runs
+   * @param out
+   * @param column
+   * @param separator
+   * @param keyComparator
+   * @throws IOException
+   */
+  private static void mergeSortedRuns(List<File> runs, File out, final int column,
+    final String separator, final Comparator<String> keyComparator) throws IOException {
+    final BufferedReader[] readers = new BufferedReader[runs.size()];
+    final String[] current = new String[runs.size()];
+    final String[] currentKey = new String[runs.size()];
+    PriorityQueue<Integer> queue = new PriorityQueue<Integer>(Math.max(1, runs.size()), new Comparator<Integer>() {
+      /* (non-Javadoc)
+       * @see java.util.Comparator#compare(java.lang.Object, java.lang.Object)
+       */
+      @Override
+      public int compare(Integer o1, Integer o2) {
+        int c = keyComparator.compare(currentKey[o1.intValue()], currentKey[o2.intValue()]);
+        return c != 0 ? c : o1.compareTo(o2);
+      }
+    });
+    int readerBuffer = Math.max(8192, EXTERNAL_BUFFER_SIZE / Math.max(1, runs.size()));
+    BufferedWriter bw = null;
+    try {
+      for (int i = 0; i < readers.length; i++) {
+        readers[i] = new BufferedReader(new FileReader(runs.get(i)), readerBuffer);
+        current[i] = readers[i].readLine();
+        if (current[i] != null) {
+          currentKey[i] = getColumn(current[i], column, separator);
+          queue.add(Integer.valueOf(i));
+        }
+      }
+      bw = new BufferedWriter(new FileWriter(out), EXTERNAL_BUFFER_SIZE);
+      while (!queue.isEmpty()) {
+        Integer head = queue.poll();
+        int i = head.intValue();
+        bw.append(current[i]).append('\n');
+        current[i] = readers[i].readLine();
+        if (current[i] != null) {
+          currentKey[i] = getColumn(current[i], column, separator);
+          queue.add(head);
+        }
+      }
+    } finally {
+      for (BufferedReader reader : readers) {
+        if (reader != null) {
+          reader.close();
+        }
+      }
+      if (bw != null) {
+        bw.close();
+      }
+    }
+  }
+  
+  /**
+   * Extracts the content of the given column from a line without splitting
+   * the whole line.
+   * 
+   * @param line
+   * @param column zero based column index or a negative number for the whole
+   *        line.
+   * @param separator
+   * @return the column content or an empty {@link String} if the line has
+   *         not enough columns.
+   */
+  private static String getColumn(String line, int column, String separator) {
+    if (column < 0) {
+      return line;
+    }
+    int start = 0;
+    for (int i = 0; i < column; i++) {
+      int pos = line.indexOf(separator, start);
+      if (pos < 0) {
+        return "";
+      }
+      start = pos + separator.length();
+    }
+    int end = line.indexOf(separator, start);
+    return end < 0 ? line.substring(start) : line.substring(start, end);
+  }
+  
+  /**
+   * Reads all lines of a file into an {@link ArrayList}.
+   * 
+   * @param f
+   * @return
+   * @throws IOException
+   */
+  private static List<String> readLines(File f) throws IOException {
+    List<String> lines = new ArrayList<String>();
+    BufferedReader br = new BufferedReader(new FileReader(f), EXTERNAL_BUFFER_SIZE);
+    try {
+      String line;
+      while ((line = br.readLine()) != null) {
+        lines.add(line);
+      }
+    } finally {
+      br.close();
+    }
+    return lines;
+  }
+  
+  /**
+   * Calculates byte offsets that divide a file into (at most) {@code parts}
+   * slices of about the same size. Each offset is moved forward to the start
+   * of the next line, such that every slice contains only complete lines.
+   * The slices can then be read in parallel with
+   * {@link #openFileSlice(File, long, long)}.
+   * 
+   * @param file
+   * @param parts the desired number of slices.
+   * @return a sorted array of offsets, starting with {@code 0} and ending with
+   *         the file length. Slice {@code i} ranges from {@code offsets[i]}
+   *         (inclusive) to {@code offsets[i + 1]} (exclusive). Duplicate
+   *         offsets (e.g., for very long lines) are removed, so the number
+   *         of slices may be smaller than {@code parts}.
+   * @throws IOException
+   */
+  public static long[] splitFileAtLineBoundaries(File file, int parts) throws IOException {
+    long length = file.length();
+    parts = (int) Math.max(1, Math.min(parts, length));
+    long[] offsets = new long[parts + 1];
+    int count = 1;
+    offsets[0] = 0;
+    RandomAccessFile raf = new RandomAccessFile(file, "r");
+    try {
+      byte[] buffer = new byte[8192];
+      for (int i = 1; i < parts; i++) {
+        long pos = Math.max(length * i / parts, offsets[count - 1]);
+        // Search the beginning of the next line
+        raf.seek(pos);
+        boolean found = false;
+        int read;
+        while (!found && ((read = raf.read(buffer)) > 0)) {
+          for (int j = 0; j < read; j++) {
+            if (buffer[j] == '\n') {
+              pos += j + 1;
+              found = true;
+              break;
+            }
+          }
+          if (!found) {
+            pos += read;
+          }
+        }
+        if (!found || (pos >= length)) {
+          break;
+        }
+        if (pos > offsets[count - 1]) {
+          offsets[count++] = pos;
+        }
+      }
+    } finally {
+      raf.close();
+    }
+    offsets[count++] = length;
+    if (count < offsets.length) {
+      offsets = Arrays.copyOf(offsets, count);
+    }
+    return offsets;
+  }
+  
+  /**
+   * Opens a reader on the bytes from {@code start} (inclusive) to {@code end}
+   * (exclusive) of the given file. Use
+   * {@link #splitFileAtLineBoundaries(File, int)} to get offsets that are
+   * aligned to line boundaries.
+   * 
+   * @param file
+   * @param start
+   * @param end
+   * @return
+   * @throws IOException
+   */
+  public static BufferedReader openFileSlice(File file, long start, final long end) throws IOException {
+    final FileInputStream fis = new FileInputStream(file);
+    fis.getChannel().position(start);
+    final long[] remaining = new long[] {Math.max(0, end - start)};
+    InputStream slice = new FilterInputStream(fis) {
+      /* (non-Javadoc)
+       * @see java.io.FilterInputStream#read()
+       */
+      @Override
+      public int read() throws IOException {
+        if (remaining[0] <= 0) {
+          return -1;
+        }
+        int b = super.read();
+        if (b >= 0) {
+          remaining[0]--;
+        }
+        return b;
+      }
+      
+      /* (non-Javadoc)
+       * @see java.io.FilterInputStream#read(byte[], int, int)
+       */
+      @Override
+      public int read(byte[] b, int off, int len) throws IOException {
+        if (remaining[0] <= 0) {
+          return -1;
+        }
+        int read = super.read(b, off, (int) Math.min(len, remaining[0]));
+        if (read > 0) {
+          remaining[0] -= read;
+        }
+        return read;
+      }
+      
+      /* (non-Javadoc)
+       * @see java.io.FilterInputStream#skip(long)
+       */
+      @Override
+      public long skip(long n) throws IOException {
+        long skipped = super.skip(Math.min(n, remaining[0]));
+        remaining[0] -= skipped;
+        return skipped;
+      }
+      
+      /* (non-Javadoc)
+       * @see java.io.FilterInputStream#available()
+       */
+      @Override
+      public int available() throws IOException {
+        return (int) Math.min(super.available(), remaining[0]);
+      }
+      
+      /* (non-Javadoc)
+       * @see java.io.FilterInputStream#markSupported()
+       */
+      @Override
+      public boolean markSupported() {
+        return false;
+      }
+    };
+    return new BufferedReader(new InputStreamReader(slice), EXTERNAL_BUFFER_SIZE);
+  }
+
   /**
    * Removes the file extension from any filename.
    * @param name
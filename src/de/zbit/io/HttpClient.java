@@ -0,0 +1,454 @@
+/*
+ * $Id$
+ * $URL$
+ * ---------------------------------------------------------------------
+ * This file is part of the SysBio API library.
+ *
+ * Copyright (C) 2009-2016 by the University of Tuebingen, Germany.
+ *
+ * This library is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation. A copy of the license
+ * agreement is provided in the file named "LICENSE.txt" included with
+ * this software distribution and also available online as
+ * <http://www.gnu.org/licenses/lgpl-3.0-standalone.html>.
+ * ---------------------------------------------------------------------
+ */
+package de.zbit.io;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.Semaphore;
+import java.util.logging.Logger;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * A shared HTTP client for many small requests, e.g., to the KEGG REST API
+ * (see {@link de.zbit.kegg.api.KeggAdaptor}) and for downloads with
+ * {@link FileDownload}.
+ * 
+ * <p>Every request uses exactly one connection, whose response is read
+ * completely, such that the connection is kept alive and re-used by the
+ * next request to the same host (instead of a new TCP and, possibly, TLS
+ * handshake). In-memory requests with {@link #get(String)} are sent
+ * gzip-compressed, downloads (see {@link #open(String)}) are not, such
+ * that, e.g., compressed files are stored as they are. Responses are copied
+ * with large buffers. The number of concurrent requests is limited and
+ * identical concurrent {@link #get(String)} requests are only sent
+ * once.</p>
+ * 
+ * @version $Rev$
+ * @since 1.4
+ */
+public class HttpClient {
+  
+  /**
+   * A {@link Logger} for this class.
+   */
+  private static final transient Logger log = Logger.getLogger(HttpClient.class.getName());
+  
+  /**
+   * Size of buffers to copy responses.
+   */
+  public static final int BUFFER_SIZE = 1 << 16;
+  
+  /**
+   * Default maximum number of concurrent requests.
+   */
+  public static final int DEFAULT_MAX_CONCURRENT_REQUESTS = 8;
+  
+  /**
+   * Default timeout in milliseconds to establish a connection.
+   */
+  public static final int DEFAULT_CONNECT_TIMEOUT = 30000;
+  
+  /**
+   * Default timeout in milliseconds to wait for data.
+   */
+  public static final int DEFAULT_READ_TIMEOUT = 120000;
+  
+  /**
+   * Maximum number of bytes, that are skipped to drain a response before
+   * closing it.
+   */
+  private static final int MAX_DRAIN = 1 << 20;
+  
+  static {
+    // Number of idle connections per host, that are kept alive.
+    if (System.getProperty("http.maxConnections") == null) {
+      System.setProperty("http.maxConnections", Integer.toString(DEFAULT_MAX_CONCURRENT_REQUESTS));
+    }
+  }
+  
+  /**
+   * The client, used by {@link FileDownload} and
+   * {@link de.zbit.kegg.api.KeggAdaptor}.
+   */
+  private static HttpClient defaultClient;
+  
+  /**
+   * @return the shared client.
+   */
+  public static synchronized HttpClient getDefault() {
+    if (defaultClient == null) {
+      defaultClient = new HttpClient();
+    }
+    return defaultClient;
+  }
+  
+  /**
+   * Replaces the shared client, e.g., to change the number of concurrent
+   * requests or the timeouts.
+   * 
+   * @param client
+   */
+  public static synchronized void setDefault(HttpClient client) {
+    defaultClient = client;
+  }
+  
+  /**
+   * @param address
+   * @return {@code true} if the given address is an HTTP(S) URL.
+   */
+  public static boolean isHttp(String address) {
+    String lower = address.toLowerCase();
+    return lower.startsWith("http:") || lower.startsWith("https:");
+  }
+  
+  /**
+   * An open response. Must be closed or disconnected to allow further
+   * requests.
+   * 
+   * @version $Rev$
+   * @since 1.4
+   */
+  public class Response implements Closeable {
+    /**
+     * 
+     */
+    private final HttpURLConnection connection;
+    /**
+     * The HTTP status code.
+     */
+    private final int status;
+    /**
+     * The raw (possibly compressed) response.
+     */
+    private final InputStream raw;
+    /**
+     * The (decompressed) response.
+     */
+    private InputStream in;
+    /**
+     * 
+     */
+    private boolean closed = false;
+    
+    /**
+     * @param connection
+     * @param gzip whether the response has been requested gzip-compressed
+     *        and must be decompressed.
+     * @throws IOException
+     */
+    private Response(HttpURLConnection connection, boolean gzip) throws IOException {
+      this.connection = connection;
+      status = connection.getResponseCode();
+      InputStream raw = (status >= 400) ? connection.getErrorStream() : connection.getInputStream();
+      this.raw = raw;
+      in = raw;
+      if (gzip && (raw != null) && "gzip".equalsIgnoreCase(connection.getContentEncoding())) {
+        in = new GZIPInputStream(raw, BUFFER_SIZE);
+      }
+    }
+    
+    /**
+     * @return the HTTP status code, e.g., 200 for OK. Values &gt;= 400 are
+     *         errors.
+     */
+    public int getStatus() {
+      return status;
+    }
+    
+    /**
+     * @return the length of the (possibly compressed) response, or -1 if it
+     *         is unknown.
+     */
+    public long getContentLength() {
+      String length = connection.getHeaderField("Content-Length");
+      try {
+        return (length == null) ? -1 : Long.parseLong(length.trim());
+      } catch (NumberFormatException e) {
+        return -1;
+      }
+    }
+    
+    /**
+     * @return the response body, decompressed if it has been requested
+     *         gzip-compressed. For errors, this is the error message of the
+     *         server (might be {@code null}).
+     */
+    public InputStream getInputStream() {
+      return in;
+    }
+    
+    /**
+     * Reads the remaining response, such that the connection can be
+     * re-used, and releases the request.
+     * 
+     * @see java.io.Closeable#close()
+     */
+    public void close() throws IOException {
+      if (closed) {
+        return;
+      }
+      closed = true;
+      try {
+        if (raw != null) {
+          byte[] buffer = new byte[BUFFER_SIZE];
+          int drained = 0, n;
+          while ((drained < MAX_DRAIN) && ((n = raw.read(buffer)) >= 0)) {
+            drained += n;
+          }
+          if (drained >= MAX_DRAIN) {
+            // Not worth reading the rest.
+            connection.disconnect();
+          }
+          in.close();
+        }
+      } finally {
+        permits.release();
+      }
+    }
+    
+    /**
+     * Closes the connection without reading the remaining response, and
+     * releases the request. Use this instead of {@link #close()}, if only
+     * the beginning of a (possibly large) response is needed.
+     */
+    public void disconnect() {
+      if (closed) {
+        return;
+      }
+      closed = true;
+      try {
+        connection.disconnect();
+      } finally {
+        permits.release();
+      }
+    }
+  }
+  
+  /**
+   * Limits the number of concurrent requests.
+   */
+  private final Semaphore permits;
+  
+  /**
+   * Running {@link #get(String)} requests by address.
+   */
+  private final ConcurrentHashMap<String, FutureTask<byte[]>> inFlight = new ConcurrentHashMap<String, FutureTask<byte[]>>();
+  
+  /**
+   * Timeout in milliseconds to establish a connection.
+   */
+  private final int connectTimeout;
+  
+  /**
+   * Timeout in milliseconds to wait for data.
+   */
+  private final int readTimeout;
+  
+  /**
+   * Creates a client with the default limits.
+   */
+  public HttpClient() {
+    this(DEFAULT_MAX_CONCURRENT_REQUESTS, DEFAULT_CONNECT_TIMEOUT, DEFAULT_READ_TIMEOUT);
+  }
+  
+  /**
+   * @param maxConcurrentRequests maximum number of requests, that are sent
+   *        at the same time. Further requests wait.
+   * @param connectTimeout timeout in milliseconds to establish a connection
+   *        (0 for none).
+   * @param readTimeout timeout in milliseconds to wait for data (0 for none).
+   */
+  public HttpClient(int maxConcurrentRequests, int connectTimeout, int readTimeout) {
+    super();
+    permits = new Semaphore(Math.max(1, maxConcurrentRequests), true);
+    this.connectTimeout = connectTimeout;
+    this.readTimeout = readTimeout;
+  }
+  
+  /**
+   * Sends a GET request. The response is not requested compressed, i.e.,
+   * its body is exactly the content at the given address. The returned
+   * response must be closed or disconnected.
+   * 
+   * @param address an HTTP(S) URL.
+   * @return the response.
+   * @throws IOException
+   */
+  public Response open(String address) throws IOException {
+    return open(address, "GET", false);
+  }
+  
+  /**
+   * @param address
+   * @param method
+   * @param gzip whether to request and decompress a gzip-compressed
+   *        response.
+   * @return
+   * @throws IOException
+   */
+  private Response open(String address, String method, boolean gzip) throws IOException {
+    URLConnection conn = new URL(address).openConnection();
+    if (!(conn instanceof HttpURLConnection)) {
+      throw new IOException("Not an HTTP URL: " + address);
+    }
+    HttpURLConnection connection = (HttpURLConnection) conn;
+    connection.setRequestMethod(method);
+    connection.setConnectTimeout(connectTimeout);
+    connection.setReadTimeout(readTimeout);
+    // Lengths of HEAD requests must refer to the uncompressed content.
+    connection.setRequestProperty("Accept-Encoding", gzip ? "gzip" : "identity");
+    try {
+      permits.acquire();
+    } catch (InterruptedException e) {
+      InterruptedIOException ex = new InterruptedIOException("Interrupted while waiting to request " + address);
+      ex.initCause(e);
+      throw ex;
+    }
+    try {
+      return new Response(connection, gzip);
+    } catch (IOException e) {
+      permits.release();
+      connection.disconnect();
+      throw e;
+    } catch (RuntimeException e) {
+      permits.release();
+      throw e;
+    }
+  }
+  
+  /**
+   * Copies the content at the given address into the given stream, without
+   * decompressing it. The stream is not closed.
+   * 
+   * @param address an HTTP(S) URL.
+   * @param out
+   * @return the HTTP status code. Nothing is copied for errors
+   *         (&gt;= 400).
+   * @throws IOException
+   */
+  public int download(String address, OutputStream out) throws IOException {
+    return download(address, out, false);
+  }
+  
+  /**
+   * @param address
+   * @param out
+   * @param gzip whether to request and decompress a gzip-compressed
+   *        response.
+   * @return the HTTP status code.
+   * @throws IOException
+   * @see #download(String, OutputStream)
+   */
+  private int download(String address, OutputStream out, boolean gzip) throws IOException {
+    Response response = open(address, "GET", gzip);
+    try {
+      if ((response.getStatus() < 400) && (response.getInputStream() != null)) {
+        byte[] buffer = new byte[BUFFER_SIZE];
+        InputStream in = response.getInputStream();
+        int n;
+        while ((n = in.read(buffer)) >= 0) {
+          out.write(buffer, 0, n);
+        }
+      }
+      return response.getStatus();
+    } finally {
+      response.close();
+    }
+  }
+  
+  /**
+   * Returns the response to the given address. The response is requested
+   * gzip-compressed and decompressed. If the same address is already
+   * requested by another thread, its result is returned instead of sending
+   * the request again.
+   * 
+   * @param address an HTTP(S) URL.
+   * @return the response body, or {@code null} if the server answered with
+   *         an error (e.g., 404 for unknown KEGG identifiers). The array
+   *         might be shared with other callers and must not be modified.
+   * @throws IOException
+   */
+  public byte[] get(final String address) throws IOException {
+    FutureTask<byte[]> task = new FutureTask<byte[]>(new Callable<byte[]>() {
+      /* (non-Javadoc)
+       * @see java.util.concurrent.Callable#call()
+       */
+      @Override
+      public byte[] call() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(BUFFER_SIZE);
+        int status = download(address, out, true);
+        if (status >= 400) {
+          log.fine("HTTP error " + status + " for " + address);
+          return null;
+        }
+        return out.toByteArray();
+      }
+    });
+    FutureTask<byte[]> running = inFlight.putIfAbsent(address, task);
+    if (running == null) {
+      running = task;
+      try {
+        task.run();
+      } finally {
+        inFlight.remove(address, task);
+      }
+    }
+    try {
+      return running.get();
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof IOException) {
+        throw (IOException) e.getCause();
+      }
+      IOException ex = new IOException("Could not request " + address);
+      ex.initCause(e.getCause());
+      throw ex;
+    } catch (InterruptedException e) {
+      InterruptedIOException ex = new InterruptedIOException("Interrupted while requesting " + address);
+      ex.initCause(e);
+      throw ex;
+    }
+  }
+  
+  /**
+   * Sends a HEAD request.
+   * 
+   * @param address an HTTP(S) URL.
+   * @return the (uncompressed) length of the content at the given address,
+   *         or -1 if it is unknown or the server answered with an error.
+   * @throws IOException
+   */
+  public long getContentLength(String address) throws IOException {
+    Response response = open(address, "HEAD", false);
+    try {
+      return (response.getStatus() >= 400) ? -1 : response.getContentLength();
+    } finally {
+      response.close();
+    }
+  }
+  
+}
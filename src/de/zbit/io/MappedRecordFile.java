@@ -0,0 +1,228 @@
+/*
+ * $Id$
+ * $URL$
+ * ---------------------------------------------------------------------
+ * This file is part of the SysBio API library.
+ *
+ * Copyright (C) 2009-2016 by the University of Tuebingen, Germany.
+ *
+ * This library is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation. A copy of the license
+ * agreement is provided in the file named "LICENSE.txt" included with
+ * this software distribution and also available online as
+ * <http://www.gnu.org/licenses/lgpl-3.0-standalone.html>.
+ * ---------------------------------------------------------------------
+ */
+package de.zbit.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Reads records (e.g., the entries of a flat file) from memory-mapped
+ * segments of a file. Every record is given by its position and length in
+ * the file, and identified by its number, in the order in which the records
+ * have been added. Records must be added in ascending order of their
+ * positions, but a record might be contained in a previous record (e.g., a
+ * row in a table).
+ *
+ * <p>The file is mapped into segments of at most {@link #MAX_SEGMENT_SIZE}
+ * bytes, without splitting any record, by {@link #map()}. Records, that have
+ * been added afterwards, cannot be read before the next call of
+ * {@link #map()}.</p>
+ *
+ * <p>This class is not synchronized, except for {@link #read(int)}, which
+ * might be called concurrently, as long as no records are added or
+ * mapped.</p>
+ *
+ * @version $Rev$
+ * @since 1.4
+ */
+public class MappedRecordFile {
+
+  /**
+   * Maximum size of a single memory-mapped segment.
+   */
+  public static final long MAX_SEGMENT_SIZE = 1L << 30;
+
+  /**
+   * The file, that contains the records.
+   */
+  private final File file;
+
+  /**
+   * Position of every record in {@link #file}.
+   */
+  private long[] offsets;
+
+  /**
+   * Length in bytes of every record.
+   */
+  private int[] lengths;
+
+  /**
+   * Number of records.
+   */
+  private int size = 0;
+
+  /**
+   * Memory-mapped segments of {@link #file}. Each record is contained in
+   * exactly one segment.
+   */
+  private MappedByteBuffer[] segments = new MappedByteBuffer[0];
+
+  /**
+   * Start position of every segment in {@link #file}.
+   */
+  private long[] segmentStart = new long[0];
+
+  /**
+   * @param file
+   */
+  public MappedRecordFile(File file) {
+    this(file, 1024);
+  }
+
+  /**
+   * @param file
+   * @param capacity the expected number of records.
+   */
+  public MappedRecordFile(File file, int capacity) {
+    super();
+    this.file = file;
+    offsets = new long[Math.max(capacity, 16)];
+    lengths = new int[offsets.length];
+  }
+
+  /**
+   * @return the file, that contains the records.
+   */
+  public File getFile() {
+    return file;
+  }
+
+  /**
+   * @return the number of records.
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * @param nr number of a record.
+   * @return the position of the record in the file.
+   */
+  public long getOffset(int nr) {
+    return offsets[nr];
+  }
+
+  /**
+   * @param nr number of a record.
+   * @return the length in bytes of the record.
+   */
+  public int getLength(int nr) {
+    return lengths[nr];
+  }
+
+  /**
+   * @param offset position of the record in the file.
+   * @param length in bytes.
+   * @return the number of the new record.
+   */
+  public int add(long offset, int length) {
+    if (size == offsets.length) {
+      offsets = Arrays.copyOf(offsets, 2 * size);
+      lengths = Arrays.copyOf(lengths, 2 * size);
+    }
+    offsets[size] = offset;
+    lengths[size] = length;
+    return size++;
+  }
+
+  /**
+   * Maps the file into segments of at most {@link #MAX_SEGMENT_SIZE} bytes,
+   * without splitting any record. This must be called again, after records
+   * have been added.
+   *
+   * @throws IOException
+   */
+  public void map() throws IOException {
+    List<Long> starts = new ArrayList<Long>();
+    List<MappedByteBuffer> mapped = new ArrayList<MappedByteBuffer>();
+    RandomAccessFile raf = new RandomAccessFile(file, "r");
+    try {
+      FileChannel channel = raf.getChannel();
+      long start = 0, end = 0;
+      for (int i = 0; i < size; i++) {
+        long recordEnd = offsets[i] + lengths[i];
+        if ((recordEnd - start > MAX_SEGMENT_SIZE) && (end > start) && (offsets[i] >= end)) {
+          starts.add(Long.valueOf(start));
+          mapped.add(channel.map(FileChannel.MapMode.READ_ONLY, start, end - start));
+          start = offsets[i];
+        }
+        end = Math.max(end, recordEnd);
+      }
+      starts.add(Long.valueOf(start));
+      mapped.add(channel.map(FileChannel.MapMode.READ_ONLY, start, end - start));
+    } finally {
+      // The mappings remain valid after closing the file.
+      raf.close();
+    }
+    segments = mapped.toArray(new MappedByteBuffer[mapped.size()]);
+    segmentStart = new long[starts.size()];
+    for (int i = 0; i < segmentStart.length; i++) {
+      segmentStart[i] = starts.get(i).longValue();
+    }
+  }
+
+  /**
+   * @param nr number of a record.
+   * @return the record.
+   */
+  public byte[] read(int nr) {
+    int s = Arrays.binarySearch(segmentStart, offsets[nr]);
+    if (s < 0) {
+      s = -s - 2;
+    }
+    // Duplicates are required, because positions are not thread-safe.
+    ByteBuffer buffer = segments[s].duplicate();
+    buffer.position((int) (offsets[nr] - segmentStart[s]));
+    byte[] record = new byte[lengths[nr]];
+    buffer.get(record);
+    return record;
+  }
+
+  /**
+   * @param file
+   * @return the temporary file, to which a new version of {@code file} is
+   *         written before {@link #replace(File, File)}, i.e.,
+   *         {@code file} with the extension {@code .tmp}.
+   */
+  public static File getTemporaryFile(File file) {
+    return new File(file.getPath() + ".tmp");
+  }
+
+  /**
+   * Replaces {@code file} by {@code tmp}, such that {@code file} is never
+   * partially written (e.g., an index, while the program is killed).
+   *
+   * @param tmp a completely written file.
+   * @param file
+   * @throws IOException if {@code tmp} cannot be renamed.
+   */
+  public static void replace(File tmp, File file) throws IOException {
+    // Renaming onto an existing file fails on some platforms.
+    if (!tmp.renameTo(file) && (!file.delete() || !tmp.renameTo(file))) {
+      throw new IOException("Could not rename " + tmp + " to " + file);
+    }
+  }
+
+}
@@ -74,15 +74,25 @@ public class PatternForColumnGuessing {
       // Count for every column the number of matches
       
       if (pat.matcher(line[j]).matches()) {
-        matches[j]++;
-        if (matches[j]>matchesMax) {
-          matchesMax = matches[j];
-          matchesMaxColumn=j;
-        }
+        countMatch(j);
       }
     }
   }
   
+  /**
+   * Increments the counter for the given column. Use this method if the
+   * match has been determined elsewhere (e.g., by an
+   * {@link de.zbit.util.IdentifierClassifier}).
+   * @param column
+   */
+  public void countMatch(int column) {
+    matches[column]++;
+    if (matches[column]>matchesMax) {
+      matchesMax = matches[column];
+      matchesMaxColumn=column;
+    }
+  }
+  
   /**
    * 
    * @return the maximum number of matches in any column.
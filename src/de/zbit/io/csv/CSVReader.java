@@ -23,10 +23,13 @@ import java.io.IOException;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -35,6 +38,9 @@ import java.util.regex.Pattern;
 
 import de.zbit.io.OpenFile;
 import de.zbit.io.PatternForColumnGuessing;
+import de.zbit.util.DatabaseIdentifiers;
+import de.zbit.util.DatabaseIdentifiers.IdentifierDatabases;
+import de.zbit.util.IdentifierClassifier;
 import de.zbit.util.Reflect;
 import de.zbit.util.StringUtil;
 import de.zbit.util.progressbar.AbstractProgressBar;
@@ -1203,6 +1209,9 @@ public class CSVReader implements Cloneable, Closeable, Serializable {
   /**
    * See #getColumnByMatchingContent(String, int, int)
    * <p>This is the same, just with matching multiple regular expressions at once.
+   * Expressions that are equal to the expression of an {@link IdentifierDatabases}
+   * (see {@link DatabaseIdentifiers#getRegularExpressionForIdentifier(IdentifierDatabases, boolean)})
+   * are evaluated together by an {@link IdentifierClassifier}.
    * @see #getColumnByMatchingContent(String, int, int)
    * @param regex
    * @param patternOptions
@@ -1224,6 +1233,12 @@ public class CSVReader implements Cloneable, Closeable, Serializable {
         unmatchedPatterns.add(pat[i]);
       }
     }
+    Map<IdentifierDatabases, List<PatternForColumnGuessing>> byDatabase = getPatternsByDatabase(regex, pat, patternOptions);
+    IdentifierClassifier classifier = byDatabase.isEmpty() ? null : new IdentifierClassifier(byDatabase.keySet());
+    Set<PatternForColumnGuessing> classified = new HashSet<PatternForColumnGuessing>();
+    for (List<PatternForColumnGuessing> list : byDatabase.values()) {
+      classified.addAll(list);
+    }
     
     // Disable the progress bar
     boolean tempDisplayProgres = displayProgress;
@@ -1267,10 +1282,15 @@ public class CSVReader implements Cloneable, Closeable, Serializable {
       }
       
       // Match against patterns and remove finished ones
+      if (classifier!=null) {
+        countDatabaseMatches(line, classifier, byDatabase, unmatchedPatterns);
+      }
       Iterator<PatternForColumnGuessing> it = unmatchedPatterns.iterator();
       while (it.hasNext()) {
         PatternForColumnGuessing p = it.next();
-        p.countMatches(line);
+        if (!classified.contains(p)) {
+          p.countMatches(line);
+        }
         if (p.getMaximumNumberOfMatchesInAnyColumn()>=threshold) {
           it.remove();
         }
@@ -1293,6 +1313,65 @@ public class CSVReader implements Cloneable, Closeable, Serializable {
     return pat;
   }
   
+  /**
+   * Finds all regular expressions that are equal to the expression of an
+   * {@link IdentifierDatabases}.
+   * @param regex
+   * @param pat the compiled {@code regex}.
+   * @param patternOptions if not {@code 0}, an empty map is returned, because
+   * the options might change the meaning of the expressions.
+   * @return all elements of {@code pat}, grouped by database.
+   */
+  private static Map<IdentifierDatabases, List<PatternForColumnGuessing>> getPatternsByDatabase(
+    String[] regex, PatternForColumnGuessing[] pat, int patternOptions) {
+    Map<IdentifierDatabases, List<PatternForColumnGuessing>> ret = new EnumMap<IdentifierDatabases, List<PatternForColumnGuessing>>(IdentifierDatabases.class);
+    if (patternOptions!=0) {
+      return ret;
+    }
+    Map<String, IdentifierDatabases> databases = new HashMap<String, IdentifierDatabases>();
+    for (IdentifierDatabases db : IdentifierDatabases.values()) {
+      String dbRegEx = DatabaseIdentifiers.getRegularExpressionForIdentifier(db, false);
+      if (dbRegEx!=null && !databases.containsKey(dbRegEx)) {
+        databases.put(dbRegEx, db);
+      }
+    }
+    for (int i=0; i<regex.length; i++) {
+      IdentifierDatabases db = regex[i]!=null ? databases.get(regex[i]) : null;
+      if (db!=null) {
+        List<PatternForColumnGuessing> list = ret.get(db);
+        if (list==null) {
+          list = new ArrayList<PatternForColumnGuessing>();
+          ret.put(db, list);
+        }
+        list.add(pat[i]);
+      }
+    }
+    return ret;
+  }
+  
+  /**
+   * Classifies every column of {@code line} and increments the counters of all
+   * unfinished patterns of the matching databases.
+   * @param line
+   * @param classifier
+   * @param byDatabase see {@link #getPatternsByDatabase(String[], PatternForColumnGuessing[], int)}
+   * @param unmatchedPatterns patterns that should still be counted.
+   */
+  private static void countDatabaseMatches(String[] line, IdentifierClassifier classifier,
+    Map<IdentifierDatabases, List<PatternForColumnGuessing>> byDatabase,
+    Set<PatternForColumnGuessing> unmatchedPatterns) {
+    for (int j=0; j<line.length; j++) {
+      if (line[j]==null) continue;
+      for (IdentifierDatabases db : classifier.classify(line[j])) {
+        for (PatternForColumnGuessing p : byDatabase.get(db)) {
+          if (unmatchedPatterns.contains(p)) {
+            p.countMatch(j);
+          }
+        }
+      }
+    }
+  }
+  
   
   /**
    * Reads and returns a complete column.
@@ -0,0 +1,275 @@
+/*
+ * $Id$
+ * $URL$
+ * ---------------------------------------------------------------------
+ * This file is part of the SysBio API library.
+ *
+ * Copyright (C) 2009-2016 by the University of Tuebingen, Germany.
+ *
+ * This library is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation. A copy of the license
+ * agreement is provided in the file named "LICENSE.txt" included with
+ * this software distribution and also available online as
+ * <http://www.gnu.org/licenses/lgpl-3.0-standalone.html>.
+ * ---------------------------------------------------------------------
+ */
+package de.zbit.io.filefilter;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+
+import de.zbit.io.OpenFile;
+import de.zbit.io.fileformat.FormatDescription;
+import de.zbit.io.fileformat.FormatIdentification;
+import de.zbit.io.filefilter.SBFileFilter.FileType;
+
+/**
+ * Reads the head of a file once and evaluates the magic bytes (see
+ * {@link FormatIdentification}) and the line patterns of all
+ * {@link FileType}s (see {@link FileType#getLinePattern()}) against this
+ * single buffer. Gzipped files are decompressed in memory, from the same
+ * buffer. Only the results are kept, not the head itself.
+ * 
+ * <p>Probes are cached by the path, size and modification time of a file.
+ * Hence, repeatedly checking the files of a directory, e.g., in a file
+ * chooser, reads every file only once.</p>
+ * 
+ * @version $Rev$
+ * @since 1.4
+ */
+public class FileHeadProbe {
+  
+  /**
+   * A {@link Logger} for this class.
+   */
+  private static final transient Logger log = Logger.getLogger(FileHeadProbe.class.getName());
+  
+  /**
+   * The number of bytes (and characters of the decompressed content), that
+   * are read from the head of a file.
+   */
+  public static final int HEAD_SIZE = 1 << 16;
+  
+  /**
+   * Maximum number of cached probes.
+   */
+  private static final int CACHE_SIZE = 2048;
+  
+  /**
+   * Cached probes by absolute path, size and modification time (see
+   * {@link #getKey(File)}), least recently used first.
+   */
+  private static final Map<String, FileHeadProbe> cache = new LinkedHashMap<String, FileHeadProbe>(64, 0.75f, true) {
+    private static final long serialVersionUID = 4133390434335599101L;
+    
+    /* (non-Javadoc)
+     * @see java.util.LinkedHashMap#removeEldestEntry(java.util.Map.Entry)
+     */
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<String, FileHeadProbe> eldest) {
+      return size() > CACHE_SIZE;
+    }
+  };
+  
+  /**
+   * Compiled line patterns of all {@link FileType}s. Contains {@code null}
+   * for types without pattern.
+   */
+  private static final Map<FileType, Pattern> linePatterns = new EnumMap<FileType, Pattern>(FileType.class);
+  
+  /**
+   * Returns the probe of the given file. The file is only read, if it has
+   * not been probed before or if it has been changed since then.
+   * 
+   * @param file
+   * @return the probe of the given file.
+   */
+  public static FileHeadProbe probe(File file) {
+    String key = getKey(file);
+    FileHeadProbe probe;
+    synchronized (cache) {
+      probe = cache.get(key);
+    }
+    if (probe != null) {
+      return probe;
+    }
+    probe = new FileHeadProbe(file);
+    synchronized (cache) {
+      cache.put(key, probe);
+    }
+    return probe;
+  }
+  
+  /**
+   * @param file
+   * @return the key of the given file in the {@link #cache}, which changes
+   *         whenever the file is modified.
+   */
+  private static String getKey(File file) {
+    return file.getAbsolutePath() + '\n' + file.length() + '\n' + file.lastModified();
+  }
+  
+  /**
+   * Removes all cached probes.
+   */
+  public static void clearCache() {
+    synchronized (cache) {
+      cache.clear();
+    }
+  }
+  
+  /**
+   * @param type
+   * @return the (cached) line pattern of the given type.
+   * @see FileType#getLinePattern()
+   */
+  static Pattern getLinePattern(FileType type) {
+    synchronized (linePatterns) {
+      if (!linePatterns.containsKey(type)) {
+        linePatterns.put(type, type.getLinePattern());
+      }
+      return linePatterns.get(type);
+    }
+  }
+  
+  /**
+   * The format, that is identified by the magic bytes of the file.
+   */
+  private final FormatDescription format;
+  
+  /**
+   * All {@link FileType}s with a line pattern, that matches the head of the
+   * file.
+   */
+  private final EnumSet<FileType> matchingTypes = EnumSet.noneOf(FileType.class);
+  
+  /**
+   * Reads the head of the given file and evaluates all patterns.
+   * 
+   * @param file
+   */
+  private FileHeadProbe(File file) {
+    byte[] bytes = new byte[0];
+    if (file.isFile()) {
+      try {
+        bytes = readHead(new FileInputStream(file), HEAD_SIZE);
+      } catch (IOException e) {
+        log.log(Level.FINE, "Could not read " + file, e);
+      }
+    }
+    format = FormatIdentification.identify(bytes);
+    
+    String shortName = (format != null) ? format.getShortName() : null;
+    String text = null;
+    try {
+      if ("GZ".equalsIgnoreCase(shortName)
+          || ((format == null) && file.getName().toLowerCase().endsWith(".gz"))) {
+        // Decompress as much as possible from the head.
+        text = new String(readHead(new GZIPInputStream(new ByteArrayInputStream(bytes)), HEAD_SIZE));
+      } else if ("ZIP".equalsIgnoreCase(shortName) || "BZ2".equalsIgnoreCase(shortName)) {
+        text = readHead(file);
+      }
+    } catch (IOException e) {
+      log.log(Level.FINE, "Could not decompress " + file, e);
+    }
+    String head = (text != null) ? text : new String(bytes);
+    for (FileType type : FileType.values()) {
+      Pattern pattern = getLinePattern(type);
+      if ((pattern != null) && pattern.matcher(head).find()) {
+        matchingTypes.add(type);
+      }
+    }
+  }
+  
+  /**
+   * Reads up to {@code max} bytes from the given stream and closes it.
+   * A truncated stream (e.g., the head of a gzipped file) is read as far
+   * as possible.
+   * 
+   * @param in
+   * @param max
+   * @return
+   * @throws IOException
+   */
+  private static byte[] readHead(InputStream in, int max) throws IOException {
+    byte[] buffer = new byte[max];
+    int read = 0;
+    try {
+      int n;
+      while ((read < max) && ((n = in.read(buffer, read, max - read)) >= 0)) {
+        read += n;
+      }
+    } catch (EOFException e) {
+      // Truncated compressed stream
+    } finally {
+      in.close();
+    }
+    if (read < max) {
+      byte[] ret = new byte[read];
+      System.arraycopy(buffer, 0, ret, 0, read);
+      return ret;
+    }
+    return buffer;
+  }
+  
+  /**
+   * Reads the head of an archive through {@link OpenFile}.
+   * 
+   * @param file
+   * @return
+   * @throws IOException
+   */
+  private static String readHead(File file) throws IOException {
+    boolean oldVerbose = OpenFile.isVerbose();
+    OpenFile.setVerbose(false);
+    BufferedReader br = OpenFile.openFile(file.getAbsolutePath());
+    OpenFile.setVerbose(oldVerbose);
+    if (br == null) {
+      return null;
+    }
+    try {
+      char buffer[] = new char[HEAD_SIZE];
+      int read = 0, n;
+      while ((read < HEAD_SIZE) && ((n = br.read(buffer, read, HEAD_SIZE - read)) >= 0)) {
+        read += n;
+      }
+      return new String(buffer, 0, read);
+    } finally {
+      br.close();
+    }
+  }
+  
+  /**
+   * @return the format of the file, as identified by its magic bytes, or
+   *         {@code null} if the format is unknown.
+   */
+  public FormatDescription getFormat() {
+    return format;
+  }
+  
+  /**
+   * @param type
+   * @return {@code true} if the first {@link #HEAD_SIZE} characters of the
+   *         (decompressed) file match the line pattern of the given type or
+   *         if this type has no line pattern.
+   * @see FileType#getLinePattern()
+   */
+  public boolean matches(FileType type) {
+    return (getLinePattern(type) == null) || matchingTypes.contains(type);
+  }
+  
+}
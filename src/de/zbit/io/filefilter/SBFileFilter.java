@@ -16,9 +16,7 @@
  */
 package de.zbit.io.filefilter;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
@@ -33,7 +31,6 @@ import java.util.regex.Pattern;
 import javax.swing.filechooser.FileFilter;
 
 import de.zbit.io.FileTools;
-import de.zbit.io.OpenFile;
 import de.zbit.util.ResourceManager;
 import de.zbit.util.StringUtil;
 import de.zbit.util.objectwrapper.ValuePairUncomparable;
@@ -360,14 +357,6 @@ public class SBFileFilter extends GeneralFileFilter {
    */
   public static final Logger log = Logger.getLogger(SBFileFilter.class.getName());
   
-  /**
-   * The maximal number of characters to check for characteristic identifier in
-   * files. If the first {@link #MAX_CHARACTERS_TO_PARSE} do not contain a defined
-   * pattern for the given file type, the file cannot be recognized as a valid
-   * file of this type.
-   */
-  private static final int MAX_CHARACTERS_TO_PARSE = 512;
-  
   /**
    * 
    * @param file
@@ -382,8 +371,8 @@ public class SBFileFilter extends GeneralFileFilter {
   }
   
   /**
-   * This method opens the given file and parses the first
-   * {@link #MAX_CHARACTERS_TO_PARSE} characters. If a line pattern for the given expected
+   * This method checks the first {@link FileHeadProbe#HEAD_SIZE} characters
+   * of the given file. If a line pattern for the given expected
    * {@link FileType} is available (see {@link FileType#getLinePattern()}), it
    * then tries to match the String read so far to the pattern. In case it finds the
    * expected pattern, this method will return {@code true}.
@@ -392,41 +381,11 @@ public class SBFileFilter extends GeneralFileFilter {
    * @param type
    * @return {@code true} if the given {@link File} matches the line
    *         pattern of the given {@link FileType}
+   * @see FileHeadProbe
    */
   private static boolean checkFileHead(File file, FileType type) {
-    Pattern pattern = type.getLinePattern();
-    boolean retVal = pattern == null;
-    if (!retVal) {
-      boolean oldVerbose = OpenFile.isVerbose();
-      OpenFile.setVerbose(false);
-      BufferedReader br = OpenFile.openFile(file.getAbsolutePath());
-      Matcher matcher;
-      try {
-        int bytesRead;
-        char chunk[] = new char[128];
-        StringBuilder line = new StringBuilder();
-        for (int i = 0; br.ready() && (i < MAX_CHARACTERS_TO_PARSE) && !retVal; i++) {
-          bytesRead = br.read(chunk);
-          if (bytesRead > 0) {
-            line.append(new String(chunk, 0, bytesRead));
-            matcher = pattern.matcher(line.toString());
-            retVal = matcher.find();
-          }
-        }
-      } catch (Throwable e) {
-        return false;
-      } finally {
-        try {
-          if (br != null) {
-            br.close();
-          }
-        } catch (IOException e) {
-          return false;
-        }
-        OpenFile.setVerbose(oldVerbose);
-      }
-    }
-    return retVal;
+    // Do not read files, if there is nothing to check.
+    return (FileHeadProbe.getLinePattern(type) == null) || FileHeadProbe.probe(file).matches(type);
   }
   
   /**
@@ -19,7 +19,6 @@ package de.zbit.io.fileformat;
 import java.io.BufferedInputStream;
 import java.io.BufferedReader;
 import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
@@ -86,16 +85,15 @@ public class FormatIdentification {
     if (ret.markSupported()) {
       ret.mark(minBufferSize+2);
     }
-    ByteArrayOutputStream out = new ByteArrayOutputStream();
-    int s; int bytesRead = 0;
-    while (((s = ret.read()) != -1) && (bytesRead < (minBufferSize+1))) {
-      out.write(s);
-      bytesRead++;
+    byte[] data = new byte[minBufferSize];
+    int n, bytesRead = 0;
+    while ((bytesRead < data.length) && ((n = ret.read(data, bytesRead, data.length - bytesRead)) != -1)) {
+      bytesRead += n;
     }
     if (ret.markSupported()) {
       ret.reset();
     }
-    return identify(out.toByteArray());
+    return identify(trim(data, bytesRead));
   }
   
   /**
@@ -108,16 +106,41 @@ public class FormatIdentification {
     if (ret.markSupported()) {
       ret.mark(minBufferSize+2);
     }
-    ByteArrayOutputStream out = new ByteArrayOutputStream();
-    int s; int bytesRead=0;
-    while ((s = ret.read()) != -1 && bytesRead<(minBufferSize+1)) {
-      out.write(s);
-      bytesRead++;
+    char[] chars = new char[minBufferSize];
+    int n, charsRead = 0;
+    while ((charsRead < chars.length) && ((n = ret.read(chars, charsRead, chars.length - charsRead)) != -1)) {
+      charsRead += n;
     }
     if (ret.markSupported()) {
       ret.reset();
     }
-    return identify(out.toByteArray());
+    byte[] data = new byte[charsRead];
+    for (int i = 0; i < charsRead; i++) {
+      data[i] = (byte) chars[i];
+    }
+    return identify(data);
+  }
+  
+  /**
+   * @param data
+   * @param length
+   * @return the first {@code length} bytes of {@code data}.
+   */
+  private static byte[] trim(byte[] data, int length) {
+    if (length >= data.length) {
+      return data;
+    }
+    byte[] ret = new byte[Math.max(0, length)];
+    System.arraycopy(data, 0, ret, 0, ret.length);
+    return ret;
+  }
+  
+  /**
+   * @return the number of bytes, that are required to identify any known
+   * format.
+   */
+  public static int getMinBufferSize() {
+    return minBufferSize;
   }
   
   /**
@@ -38,6 +38,7 @@ import de.zbit.kegg.api.cache.KeggInfoManagement;
 import de.zbit.kegg.parser.pathway.Pathway;
 import de.zbit.kegg.parser.pathway.Reaction;
 import de.zbit.kegg.parser.pathway.ReactionComponent;
+import de.zbit.util.MolecularFormula;
 
 /**
  * Static class to check atom balances of KEGG reactions.
@@ -242,16 +243,16 @@ public final class AtomBalanceCheck {
    */
   public static AtomCheckResult<Reaction> checkAtomBalance(KeggInfoManagement manager, Reaction r,
     int replacement) {
-    Map<String, Integer> atomsLeft = countAtoms(manager, r.getSubstrates(), replacement);
-    Map<String, Integer> atomsRight = countAtoms(manager, r.getProducts(), replacement);
-    if (((atomsLeft == null) || (atomsLeft.size() == 0))
-        || ((atomsRight == null) || (atomsRight.size() == 0))) {
+    MolecularFormula.Counter atomsLeft = count(manager, r.getSubstrates(), replacement);
+    MolecularFormula.Counter atomsRight = count(manager, r.getProducts(), replacement);
+    if (((atomsLeft == null) || atomsLeft.isEmpty())
+        || ((atomsRight == null) || atomsRight.isEmpty())) {
       logger.log(level, MessageFormat.format("Couldn't check atom balance of reaction {0}.", r.getName()));
       return null;
     }
     Map<String, Integer> defect = calculateDefect(r.getName(), atomsLeft, atomsRight);
     
-    return new AtomCheckResult<Reaction>(r, atomsLeft, atomsRight, defect);
+    return new AtomCheckResult<Reaction>(r, atomsLeft.toMap(), atomsRight.toMap(), defect);
   }
   
   
@@ -260,40 +261,14 @@ public final class AtomBalanceCheck {
    * @param reactionIdentifier
    * @param atomsLeft
    * @param atomsRight
-   * @return
+   * @return the number of atoms on the left minus the number of atoms
+   * on the right side, for each element with a different number.
    */
   private static Map<String, Integer> calculateDefect(String reactionIdentifier,
-    Map<String, Integer> atomsLeft, Map<String, Integer> atomsRight) {
-    Map<String, Integer> defect;
-    defect = new TreeMap<String, Integer>();
-    for (String key : atomsLeft.keySet()) {
-      if (!atomsRight.containsKey(key)) {
-        defect.put(key, atomsLeft.get(key));
-      } else {
-        int left = atomsLeft.get(key).intValue();
-        int right = atomsRight.get(key);
-        if (left != right) {
-          defect.put(key, Integer.valueOf((left - right)));
-        }
-      }
-    }
-    for (String key : atomsRight.keySet()) {
-      if (!atomsLeft.containsKey(key)) {
-        defect.put(key, atomsRight.get(key));
-      } else {
-        int left = atomsLeft.get(key).intValue(), right = atomsRight.get(key);
-        if (left != right) {
-          defect.put(key, Integer.valueOf((left - right)));
-        }
-      }
-    }
+    MolecularFormula.Counter atomsLeft, MolecularFormula.Counter atomsRight) {
+    Map<String, Integer> defect = atomsLeft.difference(atomsRight);
     
     if (defect.size() > 0) {
-      //      System.out.println(String.format("Detected incorrect atom balance in reaction %s:", r.getName()));
-      //      System.out.println(String.format(
-      //          "%s\natoms left:  %s\natoms right:  %s\ndefect:  %s\n",
-      //          r.getEquation(), atomsLeft.toString(), atomsRight
-      //              .toString(), defect.toString()));
       logger.log(level, MessageFormat.format("Detected incorrect atom balance in reaction ''{0}'': {1}", reactionIdentifier, defect.toString()));
     }
     return defect;
@@ -306,15 +281,15 @@ public final class AtomBalanceCheck {
    * @return
    */
   public static AtomCheckResult<org.sbml.jsbml.Reaction> checkAtomBalance(org.sbml.jsbml.Reaction r, int replacement) {
-    Map<String, Integer> atomsLeft = countAtoms(r.getListOfReactants(), replacement);
-    Map<String, Integer> atomsRight = countAtoms(r.getListOfProducts(), replacement);
-    if (((atomsLeft == null) || (atomsLeft.size() == 0))
-        || ((atomsRight == null) || (atomsRight.size() == 0))) {
+    MolecularFormula.Counter atomsLeft = count(r.getListOfReactants(), replacement);
+    MolecularFormula.Counter atomsRight = count(r.getListOfProducts(), replacement);
+    if (((atomsLeft == null) || atomsLeft.isEmpty())
+        || ((atomsRight == null) || atomsRight.isEmpty())) {
       logger.log(level, MessageFormat.format("Couldn't check atom balance of reaction {0}.", r.getId()));
       return null;
     }
     Map<String, Integer> defect = calculateDefect(r.getName(), atomsLeft, atomsRight);
-    return new AtomCheckResult<org.sbml.jsbml.Reaction>(r, atomsLeft, atomsRight, defect);
+    return new AtomCheckResult<org.sbml.jsbml.Reaction>(r, atomsLeft.toMap(), atomsRight.toMap(), defect);
   }
   
   /**
@@ -327,81 +302,83 @@ public final class AtomBalanceCheck {
    * @return
    */
   public static Map<String, Integer> countAtoms(KeggInfoManagement manager,
+    List<ReactionComponent> listOfSpecRefs, int replacement) {
+    MolecularFormula.Counter atomCount = count(manager, listOfSpecRefs, replacement);
+    return atomCount == null ? new TreeMap<String, Integer>() : atomCount.toMap();
+  }
+  
+  /**
+   * 
+   * @param manager
+   * @param listOfSpecRefs
+   * @param replacement
+   * @return the sum of all atoms or {@code null} if the formula of any
+   * component is not available.
+   */
+  private static MolecularFormula.Counter count(KeggInfoManagement manager,
     List<ReactionComponent> listOfSpecRefs, int replacement) {
     /* TODO: Does this work correctly for (n+1)?
      * Consider, e.g. rn:R04241 "C00002 + C03541(n) + C00025 <=> C00008 + C00009 + C03541(n+1)"!
      * 
      */
-    Map<String, Integer> atomCount = new TreeMap<String, Integer>();
+    MolecularFormula.Counter atomCount = new MolecularFormula.Counter();
     for (ReactionComponent component : listOfSpecRefs) {
       KeggInfos infos = KeggInfos.get(KeggInfos.appendPrefix(component.getName()), manager);
       
       
       if ((infos == null) || !infos.queryWasSuccessfull()) {
-        atomCount.clear();
-        break;
+        return null;
       }
       
       // Component.getName() might be a glycan and the chemical formula is only given for compounds
       // => Look if we have synonym identifers for KEGG compound and refetch
       String formula = infos.getFormulaDirectOrFromSynonym(manager);
       if (formula != null) {
-        countAtoms(replacement, atomCount, component.getStoichiometry() == null ? 1d : component.getStoichiometry().doubleValue(), formula);
+        atomCount.add(MolecularFormula.compile(formula, replacement),
+          component.getStoichiometry() == null ? 1d : component.getStoichiometry().doubleValue());
       } else {
-        atomCount.clear();
-        break;
+        return null;
       }
       
     }
-    // if (atomCount.containsKey("R"))
-    // atomCount.clear();
     return atomCount;
   }
   
-  
   /**
    * 
+   * @param listOfSpeciesReferences
    * @param replacement
-   * @param atomCount
-   * @param stoichiometricCoefficient
-   * @param formula
+   * @return
    */
-  private static void countAtoms(int replacement,
-    Map<String, Integer> atomCount, double stoichiometricCoefficient, String formula) {
-    // TODO: consider better replacement.
-    Map<String, Integer> count = countAtoms(stoichiometricCoefficient, formula, replacement);
-    for (String key : count.keySet()) {
-      if (!atomCount.containsKey(key)) {
-        atomCount.put(key, Integer.valueOf(0));
-      }
-      atomCount.put(key, Integer.valueOf(atomCount.get(key).intValue() + count.get(key).intValue()));
-    }
+  public static Map<String, Integer> countAtoms(ListOf<SpeciesReference> listOfSpeciesReferences, int replacement) {
+    MolecularFormula.Counter atomCount = count(listOfSpeciesReferences, replacement);
+    return atomCount == null ? new TreeMap<String, Integer>() : atomCount.toMap();
   }
   
   /**
    * 
    * @param listOfSpeciesReferences
    * @param replacement
-   * @return
+   * @return the sum of all atoms or {@code null} if the formula of any
+   * species is not available.
    */
-  public static Map<String, Integer> countAtoms(ListOf<SpeciesReference> listOfSpeciesReferences, int replacement) {
+  private static MolecularFormula.Counter count(ListOf<SpeciesReference> listOfSpeciesReferences, int replacement) {
     Model model = listOfSpeciesReferences.getModel();
-    Map<String, Integer> atomCount = new TreeMap<String, Integer>();
+    MolecularFormula.Counter atomCount = new MolecularFormula.Counter();
     for (SpeciesReference specRef : listOfSpeciesReferences) {
       Species species = model.getSpecies(specRef.getSpecies());
       if (species != null) {
         // getExtension does not create the extension (in contrast to getPlugin).
         FBCSpeciesPlugin specPlug = (FBCSpeciesPlugin) species.getExtension("fbc");
         if ((specPlug != null) && (specPlug.isSetChemicalFormula()) && !Double.isNaN(specRef.getStoichiometry())) {
-          countAtoms(replacement, atomCount, specRef.getStoichiometry(), specPlug.getChemicalFormula().trim());
+          atomCount.add(MolecularFormula.compile(specPlug.getChemicalFormula().trim(), replacement),
+            specRef.getStoichiometry());
         } else {
-          atomCount.clear();
-          break;
+          return null;
         }
       } else {
         logger.severe(MessageFormat.format("No species set for speciesReference ''{0}''.", specRef.getId()));
-        atomCount.clear();
-        break;
+        return null;
       }
     }
     return atomCount;
@@ -414,117 +391,11 @@ public final class AtomBalanceCheck {
    * @param replacement
    *            used if "n" occurs in the formula (as number of atoms).
    * @return
+   * @see MolecularFormula
    */
   public static Map<String, Integer> countAtoms(double stoichiometry,
     String formula, int replacement) {
-    Map<String, Integer> atomCount = new TreeMap<String, Integer>();
-    StringBuilder name = new StringBuilder(), number = new StringBuilder();
-    StringBuilder newFormula = new StringBuilder();
-    boolean brackets = false;
-    boolean digitAfter = false;
-    for (int i = 0; i < formula.length(); i++) {
-      char c = formula.charAt(i);
-      if (Character.isLetterOrDigit(c)) {
-        if (brackets) {
-          name.append(c);
-        } else {
-          if (digitAfter) {
-            if (Character.isUpperCase(c)) {
-              if (number.length() == 0) {
-                number.append(1);
-              }
-              Map<String, Integer> inlay = countAtoms(1,
-                name.toString(), replacement);
-              for (String key : inlay.keySet()) {
-                if (!atomCount.containsKey(key)) {
-                  atomCount.put(key, Integer.valueOf(0));
-                }
-                int mult = number.toString().contains("n") ? replacement
-                    : Integer.parseInt(number.toString());
-                int val = (int) (stoichiometry
-                    * inlay.get(key).intValue() * mult);
-                atomCount.put(key, Integer.valueOf(val));
-              }
-              digitAfter = false;
-              // Do not output something here... if it is important, log it below info!
-              //System.out.printf("cut:\t%s\t%s", name, number);
-            } else {
-              number.append(c);
-            }
-          }
-          if (!digitAfter) {
-            newFormula.append(c);
-          }
-        }
-      } else if (c == '(') {
-        brackets = true;
-        digitAfter = false;
-        name = new StringBuilder();
-        number = new StringBuilder();
-      } else if (c == ')') {
-        brackets = false;
-        digitAfter = true;
-      }
-    }
-    for (char c : newFormula.toString().toCharArray()) {
-      if (Character.isLetterOrDigit(c)) {
-        if (Character.isUpperCase(c)) {
-          if (name.length() > 0) {
-            if (number.length() == 0) {
-              number.append(1);
-            }
-            if (digitAfter) {
-              Map<String, Integer> inlay = countAtoms(1,
-                name.toString(), replacement);
-              for (String key : inlay.keySet()) {
-                if (!atomCount.containsKey(key)) {
-                  atomCount.put(key, Integer.valueOf(0));
-                }
-                int mult = number.toString().contains("n") ? replacement
-                    : Integer.parseInt(number.toString());
-                int val = (int) (stoichiometry
-                    * inlay.get(key).intValue() * mult);
-                atomCount.put(key, Integer.valueOf(val));
-              }
-              digitAfter = false;
-            } else {
-              String key = name.toString();
-              if (atomCount.containsKey(key)) {
-                atomCount.put(key, (int) (atomCount.get(key)
-                    .intValue() + stoichiometry
-                    * Integer.parseInt(number.toString())));
-              } else {
-                int num = number.toString().contains("n") ? num = replacement
-                    : Integer.parseInt(number.toString());
-                atomCount.put(key, (int) (stoichiometry * num));
-              }
-            }
-          }
-          name = new StringBuilder(Character.toString(c));
-          number = new StringBuilder();
-        } else if (Character.isDigit(c)) {
-          number.append(Character.toString(c));
-        } else {
-          name.append(c);
-        }
-      }
-    }
-    if (name.length() > 0) {
-      String key = name.toString();
-      if (number.length() == 0) {
-        number.append(1);
-      }
-      if (atomCount.containsKey(key)) {
-        atomCount.put(key, atomCount.get(key).intValue()
-          + (int) (stoichiometry * Integer.parseInt(number
-            .toString())));
-      } else {
-        int num = number.toString().contains("n") ? num = replacement
-            : Integer.parseInt(number.toString());
-        atomCount.put(key, (int) (stoichiometry * num));
-      }
-    }
-    return atomCount;
+    return MolecularFormula.compile(formula, replacement).toMap(stoichiometry);
   }
   
 }
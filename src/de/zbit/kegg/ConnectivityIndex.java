@@ -0,0 +1,497 @@
+/*
+ * $Id$
+ * $URL$
+ * ---------------------------------------------------------------------
+ * This file is part of the SysBio API library.
+ *
+ * Copyright (C) 2009-2016 by the University of Tuebingen, Germany.
+ *
+ * This library is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation. A copy of the license
+ * agreement is provided in the file named "LICENSE.txt" included with
+ * this software distribution and also available online as
+ * <http://www.gnu.org/licenses/lgpl-3.0-standalone.html>.
+ * ---------------------------------------------------------------------
+ */
+package de.zbit.kegg;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import de.zbit.kegg.parser.pathway.Entry;
+import de.zbit.kegg.parser.pathway.GraphicsType;
+import de.zbit.kegg.parser.pathway.Pathway;
+import de.zbit.kegg.parser.pathway.Reaction;
+import de.zbit.kegg.parser.pathway.ReactionComponent;
+import de.zbit.kegg.parser.pathway.Relation;
+import de.zbit.kegg.parser.pathway.SubType;
+
+/**
+ * An index over the reactions and relations of a {@link Pathway}, that
+ * answers orphan, degree and connected component queries for
+ * {@link Entry}s without iterating over all reactions and relations.
+ * The index is built in one pass over the pathway.
+ *
+ * <p>{@link #isOrphan(Entry, boolean, boolean)} returns the same results as
+ * {@link KeggTools#isOrphan(Pathway, Entry, boolean, boolean)}. Reaction
+ * components are matched to entries by id and by case-insensitive name,
+ * relations by id.</p>
+ *
+ * <p>Removals of entries must be reported via {@link #removeEntry(Entry)}.
+ * Other changes to the pathway after the creation of this index are not
+ * reflected.</p>
+ *
+ * @version $Rev$
+ * @since 1.4
+ */
+public class ConnectivityIndex {
+
+  /**
+   * The indexed pathway.
+   */
+  private final Pathway pathway;
+
+  /**
+   * Reactions by the ids of their substrates and products.
+   */
+  private final Map<Integer, Set<Reaction>> reactionsById = new HashMap<Integer, Set<Reaction>>();
+
+  /**
+   * Reactions by the lower case names of their substrates and products.
+   */
+  private final Map<String, Set<Reaction>> reactionsByName = new HashMap<String, Set<Reaction>>();
+
+  /**
+   * Number of relations that reference an entry id as entry1, entry2
+   * or subtype value.
+   */
+  private final Map<Integer, Integer> relationCount = new HashMap<Integer, Integer>();
+
+  /**
+   * Group nodes by the ids of their components.
+   */
+  private final Map<Integer, List<Entry>> groupsByComponent = new HashMap<Integer, List<Entry>>();
+
+  /**
+   * Entries, that have been removed via {@link #removeEntry(Entry)}.
+   */
+  private final Set<Entry> removed = Collections.newSetFromMap(new IdentityHashMap<Entry, Boolean>());
+
+  /**
+   * Connected components, by entry. Computed lazily and reset on
+   * every removal.
+   */
+  private Map<Entry, Integer> componentOf = null;
+
+  /**
+   * Members of each component in {@link #componentOf}.
+   */
+  private List<List<Entry>> components = null;
+
+  /**
+   * Builds the index for the given pathway.
+   * @param p
+   */
+  public ConnectivityIndex(Pathway p) {
+    super();
+    this.pathway = p;
+
+    for (Reaction r : p.getReactions()) {
+      indexReactionComponents(r, r.getSubstrates());
+      indexReactionComponents(r, r.getProducts());
+    }
+
+    for (Relation r : p.getRelations()) {
+      for (Integer id : getReferencedIds(r)) {
+        Integer count = relationCount.get(id);
+        relationCount.put(id, Integer.valueOf(count == null ? 1 : count.intValue() + 1));
+      }
+    }
+
+    for (Entry e : p.getEntries()) {
+      if (e.hasComponents()) {
+        for (Integer id : e.getComponents()) {
+          List<Entry> groups = groupsByComponent.get(id);
+          if (groups == null) {
+            groups = new ArrayList<Entry>(1);
+            groupsByComponent.put(id, groups);
+          }
+          groups.add(e);
+        }
+      }
+    }
+  }
+
+  /**
+   * @param r
+   * @param rcs substrates or products of {@code r}.
+   */
+  private void indexReactionComponents(Reaction r, Collection<ReactionComponent> rcs) {
+    for (ReactionComponent rc : rcs) {
+      if (rc.isSetID()) {
+        add(reactionsById, rc.getId(), r);
+      }
+      if (rc.getName() != null) {
+        add(reactionsByName, rc.getName().toLowerCase(Locale.ENGLISH), r);
+      }
+    }
+  }
+
+  /**
+   * @param <K>
+   * @param map
+   * @param key
+   * @param r
+   */
+  private static <K> void add(Map<K, Set<Reaction>> map, K key, Reaction r) {
+    Set<Reaction> set = map.get(key);
+    if (set == null) {
+      set = new HashSet<Reaction>();
+      map.put(key, set);
+    }
+    set.add(r);
+  }
+
+  /**
+   * @param r
+   * @return all entry ids referenced by the relation as entry1, entry2
+   * or (numeric) subtype value.
+   */
+  private static Set<Integer> getReferencedIds(Relation r) {
+    Set<Integer> ids = new HashSet<Integer>();
+    ids.add(Integer.valueOf(r.getEntry1()));
+    ids.add(Integer.valueOf(r.getEntry2()));
+    for (SubType st : r.getSubtypes()) {
+      try {
+        ids.add(Integer.valueOf(Integer.parseInt(st.getValue())));
+      } catch (Exception e) {
+        // Not an entry reference (e.g., "-->")
+      }
+    }
+    return ids;
+  }
+
+  /**
+   * @return the indexed pathway.
+   */
+  public Pathway getPathway() {
+    return pathway;
+  }
+
+  /**
+   * @param entry
+   * @return all reactions in which {@code entry} occurs as substrate
+   * or product.
+   */
+  public Set<Reaction> getReactions(Entry entry) {
+    Set<Reaction> ret = new HashSet<Reaction>();
+    if (entry.isSetID()) {
+      Set<Reaction> byId = reactionsById.get(Integer.valueOf(entry.getId()));
+      if (byId != null) {
+        ret.addAll(byId);
+      }
+    }
+    if (entry.getName() != null) {
+      Set<Reaction> byName = reactionsByName.get(entry.getName().toLowerCase(Locale.ENGLISH));
+      if (byName != null) {
+        ret.addAll(byName);
+      }
+    }
+    return ret;
+  }
+
+  /**
+   * @param entry
+   * @return {@code true} if {@code entry} occurs in any reaction as
+   * substrate or product.
+   */
+  public boolean isInReaction(Entry entry) {
+    return (entry.isSetID() && reactionsById.containsKey(Integer.valueOf(entry.getId())))
+        || (entry.getName() != null && reactionsByName.containsKey(entry.getName().toLowerCase(Locale.ENGLISH)));
+  }
+
+  /**
+   * @param entry
+   * @return number of relations that reference {@code entry}.
+   */
+  public int getRelationCount(Entry entry) {
+    Integer count = relationCount.get(Integer.valueOf(entry.getId()));
+    return count == null ? 0 : count.intValue();
+  }
+
+  /**
+   * @param entry
+   * @return the number of reactions (as substrate or product) and
+   * relations, in which {@code entry} occurs. Removed entries have
+   * a degree of 0.
+   */
+  public int getDegree(Entry entry) {
+    if (removed.contains(entry)) {
+      return 0;
+    }
+    return getReactions(entry).size() + getRelationCount(entry);
+  }
+
+  /**
+   * Returns true if and only if entry is an orphan in the pathway.
+   * @param entry
+   * @param considerRelations
+   * @param considerReactions
+   * @return
+   * @see KeggTools#isOrphan(Pathway, Entry, boolean, boolean)
+   */
+  public boolean isOrphan(Entry entry, boolean considerRelations, boolean considerReactions) {
+    // Look if it is an enzyme (or other reaction modifier)
+    if (considerReactions && entry.hasReaction()) {
+      return false;
+    }
+
+    if (considerRelations && entry.hasGraphics() && entry.getGraphics().getType() == GraphicsType.line) {
+      // See KeggTools#isOrphan()
+      return false;
+    }
+
+    if ((considerReactions && isInReaction(entry)) ||
+        (considerRelations && relationCount.containsKey(Integer.valueOf(entry.getId())))) {
+      return false;
+    }
+
+    // Look if it is an component (i.e. a member of a group which is not an orphan)!
+    List<Entry> groups = groupsByComponent.get(Integer.valueOf(entry.getId()));
+    if (groups != null) {
+      for (Entry group : groups) {
+        if (!removed.contains(group) && !isOrphan(group, considerRelations, considerReactions)) {
+          return false;
+        }
+      }
+    }
+
+    // Make an exception for pathway titles
+    try {
+      if (entry.getName().startsWith("path:") && entry.getGraphics().getName().startsWith("TITLE:")) {
+        return false;
+      }
+    } catch (Exception e) {
+      // Entry has no graphics or such. Not important.
+    }
+
+    return true;
+  }
+
+  /**
+   * Reports the removal of an {@link Entry} from the pathway. This
+   * should be called before the entry is actually removed (e.g., via
+   * {@link Pathway#removeEntries(Collection)}).
+   * @param entry
+   */
+  public void removeEntry(Entry entry) {
+    if (removed.add(entry)) {
+      componentOf = null;
+      components = null;
+    }
+  }
+
+  /**
+   * Returns the connected component of an entry. Entries are connected,
+   * if they occur in the same reaction (as substrate, product or
+   * modifier), in the same relation or if one is a component of the
+   * other (group node).
+   * @param entry
+   * @return index of the component in {@link #getConnectedComponents()}
+   * or -1 if the entry is not (or no longer) contained in the pathway.
+   */
+  public int getComponent(Entry entry) {
+    computeComponents();
+    Integer c = componentOf.get(entry);
+    return c == null ? -1 : c.intValue();
+  }
+
+  /**
+   * @return all connected components of the pathway, ordered by their
+   * first entry in {@link Pathway#getEntries()}.
+   * @see #getComponent(Entry)
+   */
+  public List<List<Entry>> getConnectedComponents() {
+    computeComponents();
+    return components;
+  }
+
+  /**
+   * Computes {@link #componentOf} and {@link #components} with a
+   * union-find structure, if required.
+   */
+  private void computeComponents() {
+    if (componentOf != null) {
+      return;
+    }
+
+    // Index all remaining entries
+    List<Entry> entries = new ArrayList<Entry>();
+    Map<Entry, Integer> position = new IdentityHashMap<Entry, Integer>();
+    Map<Integer, List<Integer>> byId = new HashMap<Integer, List<Integer>>();
+    Map<String, List<Integer>> byName = new HashMap<String, List<Integer>>();
+    for (Entry e : pathway.getEntries()) {
+      if (removed.contains(e) || position.containsKey(e)) {
+        continue;
+      }
+      Integer pos = Integer.valueOf(entries.size());
+      entries.add(e);
+      position.put(e, pos);
+      addPosition(byId, Integer.valueOf(e.getId()), pos);
+      if (e.getName() != null) {
+        addPosition(byName, e.getName().toLowerCase(Locale.ENGLISH), pos);
+      }
+    }
+
+    int[] parent = new int[entries.size()];
+    for (int i = 0; i < parent.length; i++) {
+      parent[i] = i;
+    }
+
+    // Reactions
+    for (Reaction r : pathway.getReactions()) {
+      List<Integer> members = new ArrayList<Integer>();
+      for (ReactionComponent rc : r.getSubstrates()) {
+        addMembers(members, rc, byId, byName);
+      }
+      for (ReactionComponent rc : r.getProducts()) {
+        addMembers(members, rc, byId, byName);
+      }
+      Collection<Entry> modifiers = pathway.getReactionModifiers(r.getName());
+      if (modifiers != null) {
+        for (Entry e : modifiers) {
+          Integer pos = position.get(e);
+          if (pos != null) {
+            members.add(pos);
+          }
+        }
+      }
+      union(parent, members);
+    }
+
+    // Relations
+    for (Relation r : pathway.getRelations()) {
+      List<Integer> members = new ArrayList<Integer>();
+      for (Integer id : getReferencedIds(r)) {
+        List<Integer> l = byId.get(id);
+        if (l != null) {
+          members.addAll(l);
+        }
+      }
+      union(parent, members);
+    }
+
+    // Group nodes
+    for (Entry e : entries) {
+      if (e.hasComponents()) {
+        List<Integer> members = new ArrayList<Integer>();
+        members.add(position.get(e));
+        for (Integer id : e.getComponents()) {
+          List<Integer> l = byId.get(id);
+          if (l != null) {
+            members.addAll(l);
+          }
+        }
+        union(parent, members);
+      }
+    }
+
+    // Collect components
+    componentOf = new IdentityHashMap<Entry, Integer>();
+    components = new ArrayList<List<Entry>>();
+    Map<Integer, Integer> rootToComponent = new HashMap<Integer, Integer>();
+    for (int i = 0; i < parent.length; i++) {
+      Integer root = Integer.valueOf(find(parent, i));
+      Integer c = rootToComponent.get(root);
+      if (c == null) {
+        c = Integer.valueOf(components.size());
+        rootToComponent.put(root, c);
+        components.add(new ArrayList<Entry>());
+      }
+      components.get(c.intValue()).add(entries.get(i));
+      componentOf.put(entries.get(i), c);
+    }
+  }
+
+  /**
+   * @param <K>
+   * @param map
+   * @param key
+   * @param pos
+   */
+  private static <K> void addPosition(Map<K, List<Integer>> map, K key, Integer pos) {
+    List<Integer> l = map.get(key);
+    if (l == null) {
+      l = new ArrayList<Integer>(1);
+      map.put(key, l);
+    }
+    l.add(pos);
+  }
+
+  /**
+   * Adds the positions of all entries, that match the reaction
+   * component by id or by name.
+   * @param members
+   * @param rc
+   * @param byId
+   * @param byName
+   */
+  private static void addMembers(List<Integer> members, ReactionComponent rc,
+    Map<Integer, List<Integer>> byId, Map<String, List<Integer>> byName) {
+    List<Integer> l = rc.isSetID() ? byId.get(rc.getId()) : null;
+    if (l != null) {
+      members.addAll(l);
+    }
+    l = rc.getName() != null ? byName.get(rc.getName().toLowerCase(Locale.ENGLISH)) : null;
+    if (l != null) {
+      members.addAll(l);
+    }
+  }
+
+  /**
+   * Joins all given elements into one set.
+   * @param parent
+   * @param members
+   */
+  private static void union(int[] parent, List<Integer> members) {
+    if (members.size() < 2) {
+      return;
+    }
+    int root = find(parent, members.get(0).intValue());
+    for (int i = 1; i < members.size(); i++) {
+      int other = find(parent, members.get(i).intValue());
+      if (other != root) {
+        parent[other] = root;
+      }
+    }
+  }
+
+  /**
+   * @param parent
+   * @param i
+   * @return the representative of the set containing {@code i}.
+   */
+  private static int find(int[] parent, int i) {
+    int root = i;
+    while (parent[root] != root) {
+      root = parent[root];
+    }
+    // Path compression
+    while (parent[i] != root) {
+      int next = parent[i];
+      parent[i] = root;
+      i = next;
+    }
+    return root;
+  }
+
+}
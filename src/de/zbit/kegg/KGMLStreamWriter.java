@@ -0,0 +1,408 @@
+/*
+ * $Id$
+ * $URL$
+ * ---------------------------------------------------------------------
+ * This file is part of the SysBio API library.
+ *
+ * Copyright (C) 2009-2016 by the University of Tuebingen, Germany.
+ *
+ * This library is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation. A copy of the license
+ * agreement is provided in the file named "LICENSE.txt" included with
+ * this software distribution and also available online as
+ * <http://www.gnu.org/licenses/lgpl-3.0-standalone.html>.
+ * ---------------------------------------------------------------------
+ */
+package de.zbit.kegg;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Logger;
+
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+import de.zbit.kegg.parser.KeggStreamParser;
+import de.zbit.kegg.parser.pathway.Entry;
+import de.zbit.kegg.parser.pathway.Pathway;
+import de.zbit.kegg.parser.pathway.Reaction;
+import de.zbit.kegg.parser.pathway.ReactionComponent;
+import de.zbit.kegg.parser.pathway.Relation;
+import de.zbit.kegg.parser.pathway.SubType;
+import de.zbit.kegg.parser.pathway.ext.EntryExtended;
+import de.zbit.util.ThreadManager;
+
+/**
+ * Writes a {@link Pathway} as KGML with a StAX {@link XMLStreamWriter}. In
+ * contrast to {@link KGMLWriter#writeKGMLFileFromDoc(org.w3c.dom.Document, String)},
+ * the entries, relations and reactions are written directly from the
+ * {@link Pathway} model, without creating an intermediate DOM tree. This is
+ * the counterpart of {@link KeggStreamParser}.
+ *
+ * <p>All methods are thread-safe and share one {@link XMLOutputFactory}.
+ * Use {@link #write(List, File, boolean, int)} to write many pathways in
+ * parallel.</p>
+ *
+ * @version $Rev$
+ * @since 1.4
+ */
+public class KGMLStreamWriter {
+
+  /**
+   * A {@link Logger} for this class.
+   */
+  private static final transient Logger log = Logger.getLogger(KGMLStreamWriter.class.getName());
+
+  /**
+   * The document type of KGML files.
+   */
+  public static final String DOCTYPE = "<!DOCTYPE pathway SYSTEM \"http://www.genome.jp/kegg/xml/KGML_v0.7.1_.dtd\">";
+
+  /**
+   * The factory that is shared by all threads. Calls to
+   * {@link XMLOutputFactory#createXMLStreamWriter(OutputStream, String)} are
+   * synchronized on this object.
+   */
+  private static final XMLOutputFactory factory = XMLOutputFactory.newInstance();
+
+  /**
+   * Number of spaces per level of indentation, as used by {@link KGMLWriter}.
+   */
+  private static final int INDENT = 4;
+
+  /**
+   * Hidden, because this class contains only static methods.
+   */
+  private KGMLStreamWriter() {
+    super();
+  }
+
+  /**
+   * Writes the given pathway to a file. Missing parent directories are
+   * created.
+   *
+   * @param keggPW
+   * @param fileName
+   * @param writeEntryExtended if is set true the extended KGML is written for {@link EntryExtended},
+   * otherwise the basic KGML is written with normal {@link Entry}
+   * @throws IOException
+   * @throws XMLStreamException
+   */
+  public static void write(Pathway keggPW, String fileName, boolean writeEntryExtended)
+      throws IOException, XMLStreamException {
+    File outFile = new File(fileName);
+    if (outFile.getParentFile() != null) {
+      // Just ensure that the directory is available.
+      outFile.getParentFile().mkdirs();
+    }
+    OutputStream out = new BufferedOutputStream(new FileOutputStream(outFile));
+    try {
+      write(keggPW, out, writeEntryExtended);
+    } finally {
+      out.close();
+    }
+    log.info("File '" + fileName + "' saved!");
+  }
+
+  /**
+   * Writes the given pathway to a stream. The stream is flushed, but not
+   * closed.
+   *
+   * @param keggPW
+   * @param out
+   * @param writeEntryExtended if is set true the extended KGML is written for {@link EntryExtended},
+   * otherwise the basic KGML is written with normal {@link Entry}
+   * @throws XMLStreamException
+   */
+  public static void write(Pathway keggPW, OutputStream out, boolean writeEntryExtended)
+      throws XMLStreamException {
+    XMLStreamWriter writer;
+    synchronized (factory) {
+      writer = factory.createXMLStreamWriter(out, "UTF-8");
+    }
+    try {
+      write(keggPW, writer, writeEntryExtended);
+    } finally {
+      writer.close();
+    }
+  }
+
+  /**
+   * Writes many pathways in parallel into the given directory. The file
+   * names are created by {@link KGMLWriter#createFileName(Pathway)}.
+   *
+   * @param pathways
+   * @param directory
+   * @param writeEntryExtended
+   * @param numberOfThreads maximum number of files to write at the same time.
+   * @return the files, to which the pathways have been written, in the same
+   * order as {@code pathways}.
+   * @throws IOException if any pathway could not be written. Use
+   * {@link Throwable#getCause()} to get the original exception.
+   */
+  public static List<File> write(List<Pathway> pathways, File directory,
+    final boolean writeEntryExtended, int numberOfThreads) throws IOException {
+    ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, Math.min(numberOfThreads, pathways.size())));
+    List<Future<File>> futures = new ArrayList<Future<File>>(pathways.size());
+    try {
+      for (final Pathway keggPW : pathways) {
+        final File file = new File(directory, KGMLWriter.createFileName(keggPW));
+        futures.add(pool.submit(new Callable<File>() {
+          /* (non-Javadoc)
+           * @see java.util.concurrent.Callable#call()
+           */
+          @Override
+          public File call() throws Exception {
+            write(keggPW, file.getPath(), writeEntryExtended);
+            return file;
+          }
+        }));
+      }
+      List<File> ret = new ArrayList<File>(futures.size());
+      for (int i = 0; i < futures.size(); i++) {
+        try {
+          ret.add(futures.get(i).get());
+        } catch (ExecutionException e) {
+          IOException ex = new IOException("Could not write " + pathways.get(i).getName());
+          ex.initCause(e.getCause());
+          throw ex;
+        } catch (InterruptedException e) {
+          IOException ex = new IOException("Interrupted while writing " + pathways.get(i).getName());
+          ex.initCause(e);
+          throw ex;
+        }
+      }
+      return ret;
+    } finally {
+      pool.shutdownNow();
+    }
+  }
+
+  /**
+   * Writes many pathways in parallel, using all but one processor.
+   *
+   * @param pathways
+   * @param directory
+   * @param writeEntryExtended
+   * @return
+   * @throws IOException
+   * @see #write(List, File, boolean, int)
+   */
+  public static List<File> write(List<Pathway> pathways, File directory,
+    boolean writeEntryExtended) throws IOException {
+    return write(pathways, directory, writeEntryExtended, Math.max(1, ThreadManager.NUMBER_OF_PROCESSORS - 1));
+  }
+
+  /**
+   * Writes the complete document, including the document type.
+   *
+   * @param keggPW
+   * @param writer
+   * @param writeEntryExtended
+   * @throws XMLStreamException
+   */
+  private static void write(Pathway keggPW, XMLStreamWriter writer, boolean writeEntryExtended)
+      throws XMLStreamException {
+    writer.writeStartDocument("UTF-8", "1.0");
+    newLine(writer, 0);
+    writer.writeDTD(DOCTYPE);
+    newLine(writer, 0);
+
+    // root element pathway
+    ArrayList<Entry> entries = keggPW.getEntries();
+    ArrayList<Relation> relations = keggPW.getRelations();
+    ArrayList<Reaction> reactions = keggPW.getReactions();
+    boolean empty = ((entries == null) || entries.isEmpty())
+        && ((relations == null) || relations.isEmpty())
+        && ((reactions == null) || reactions.isEmpty());
+    if (empty) {
+      writer.writeEmptyElement("pathway");
+    } else {
+      writer.writeStartElement("pathway");
+    }
+    writeAttributes(writer, keggPW.getKGMLAttributes());
+    if (writeEntryExtended && keggPW.isSetAdditionalText()) {
+      writer.writeAttribute("additionalText", keggPW.getAdditionalText());
+    }
+
+    // kegg entries
+    if (entries != null) {
+      for (Entry entry : entries) {
+        writeEntry(writer, entry, writeEntryExtended);
+      }
+    }
+
+    // kegg relations
+    if (relations != null) {
+      for (Relation relation : relations) {
+        newLine(writer, 1);
+        boolean hasChildren = relation.isSetSubTypes();
+        startElement(writer, "relation", hasChildren);
+        writeAttributes(writer, relation.getKGMLAttributes());
+        if (hasChildren) {
+          for (SubType subtype : relation.getSubtypes()) {
+            newLine(writer, 2);
+            writer.writeEmptyElement("subtype");
+            writeAttributes(writer, subtype.getKGMLAttributes());
+          }
+          newLine(writer, 1);
+          writer.writeEndElement();
+        }
+      }
+    }
+
+    // kegg reactions
+    if (reactions != null) {
+      for (Reaction reaction : reactions) {
+        newLine(writer, 1);
+        boolean hasChildren = reaction.isSetProduct() || reaction.isSetSubstrate();
+        startElement(writer, "reaction", hasChildren);
+        writeAttributes(writer, reaction.getKGMLAttributes());
+        if (hasChildren) {
+          if (reaction.isSetProduct()) {
+            for (ReactionComponent product : reaction.getProducts()) {
+              writeReactionComponent(writer, "product", product);
+            }
+          }
+          if (reaction.isSetSubstrate()) {
+            for (ReactionComponent substrate : reaction.getSubstrates()) {
+              writeReactionComponent(writer, "substrate", substrate);
+            }
+          }
+          newLine(writer, 1);
+          writer.writeEndElement();
+        }
+      }
+    }
+
+    if (!empty) {
+      newLine(writer, 0);
+      writer.writeEndElement();
+    }
+    newLine(writer, 0);
+    writer.writeEndDocument();
+    writer.flush();
+  }
+
+  /**
+   * Writes one entry with its components and graphics.
+   *
+   * @param writer
+   * @param entry
+   * @param writeEntryExtended
+   * @throws XMLStreamException
+   */
+  private static void writeEntry(XMLStreamWriter writer, Entry entry, boolean writeEntryExtended)
+      throws XMLStreamException {
+    Map<String, String> entryMap;
+    if (entry instanceof EntryExtended) {
+      entryMap = ((EntryExtended) entry).getKGMLAttributes(writeEntryExtended);
+    } else {
+      entryMap = entry.getKGMLAttributes();
+    }
+    newLine(writer, 1);
+    boolean hasChildren = entry.isSetComponent() || entry.isSetGraphics();
+    startElement(writer, "entry", hasChildren);
+    writeAttributes(writer, entryMap);
+    if (hasChildren) {
+      if (entry.isSetComponent()) {
+        for (int component : entry.getComponents()) {
+          newLine(writer, 2);
+          writer.writeEmptyElement("component");
+          writer.writeAttribute("id", String.valueOf(component));
+        }
+      }
+      if (entry.isSetGraphics()) {
+        newLine(writer, 2);
+        writer.writeEmptyElement("graphics");
+        writeAttributes(writer, entry.getGraphics().getKGMLAttributes());
+      }
+      newLine(writer, 1);
+      writer.writeEndElement();
+    }
+  }
+
+  /**
+   * Writes a product or substrate of a reaction.
+   *
+   * @param writer
+   * @param name either "product" or "substrate"
+   * @param component
+   * @throws XMLStreamException
+   */
+  private static void writeReactionComponent(XMLStreamWriter writer, String name,
+    ReactionComponent component) throws XMLStreamException {
+    newLine(writer, 2);
+    boolean hasAlt = component.isSetAlt();
+    startElement(writer, name, hasAlt);
+    writeAttributes(writer, component.getKGMLAttributes());
+    if (hasAlt) {
+      newLine(writer, 3);
+      writer.writeEmptyElement("alt");
+      writer.writeAttribute("name", component.getAlt().getName());
+      newLine(writer, 2);
+      writer.writeEndElement();
+    }
+  }
+
+  /**
+   * @param writer
+   * @param name
+   * @param hasChildren whether the element will contain other elements.
+   * @throws XMLStreamException
+   */
+  private static void startElement(XMLStreamWriter writer, String name, boolean hasChildren)
+      throws XMLStreamException {
+    if (hasChildren) {
+      writer.writeStartElement(name);
+    } else {
+      writer.writeEmptyElement(name);
+    }
+  }
+
+  /**
+   * @param writer
+   * @param attributes might be {@code null}.
+   * @throws XMLStreamException
+   */
+  private static void writeAttributes(XMLStreamWriter writer, Map<String, String> attributes)
+      throws XMLStreamException {
+    if (attributes != null) {
+      for (Map.Entry<String, String> att : attributes.entrySet()) {
+        if (att.getValue() != null) {
+          writer.writeAttribute(att.getKey(), att.getValue());
+        }
+      }
+    }
+  }
+
+  /**
+   * Starts a new line with the given level of indentation.
+   *
+   * @param writer
+   * @param level
+   * @throws XMLStreamException
+   */
+  private static void newLine(XMLStreamWriter writer, int level) throws XMLStreamException {
+    StringBuilder sb = new StringBuilder(1 + level * INDENT);
+    sb.append('\n');
+    for (int i = 0; i < level * INDENT; i++) {
+      sb.append(' ');
+    }
+    writer.writeCharacters(sb.toString());
+  }
+
+}
@@ -19,13 +19,9 @@ package de.zbit.kegg;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.util.ArrayList;
-import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.stream.XMLStreamException;
 import javax.xml.transform.OutputKeys;
 import javax.xml.transform.Transformer;
@@ -35,21 +31,18 @@ import javax.xml.transform.dom.DOMSource;
 import javax.xml.transform.stream.StreamResult;
 
 import org.w3c.dom.Document;
-import org.w3c.dom.Element;
 
 import de.zbit.kegg.parser.pathway.Entry;
 import de.zbit.kegg.parser.pathway.EntryType;
-import de.zbit.kegg.parser.pathway.Pathway;
-import de.zbit.kegg.parser.pathway.Reaction;
-import de.zbit.kegg.parser.pathway.ReactionComponent;
-import de.zbit.kegg.parser.pathway.Relation;
-import de.zbit.kegg.parser.pathway.SubType;
 import de.zbit.kegg.parser.pathway.ext.EntryExtended;
 import de.zbit.util.StringUtil;
 
 /**
  * This class writes an kgml file out of a pathway element
  * 
+ * The pathway is written by {@link KGMLStreamWriter}, without building a
+ * DOM tree first.
+ * 
  * BE CAREFULL UP TO NOW THERE IS NO CHECK IF THE DOCUMENT IS CORRECT
  * 
  * 
@@ -143,13 +136,11 @@ public class KGMLWriter {
       log.info("Relations.size(): " + keggPW.getRelations().size());
       
       
-      Document doc = null;
       try {
-        doc = createDocument(keggPW, writeEntryExtended);
-      } catch (ParserConfigurationException e) {
-        log.log(Level.SEVERE, "Could not create a document from the KEGG pathway.", e);
+        KGMLStreamWriter.write(keggPW, fileName, writeEntryExtended);
+      } catch (Exception e) {
+        log.log(Level.SEVERE, "Could not write the KEGG pathway to '" + fileName + "'.", e);
       }
-      writeKGMLFileFromDoc(doc, fileName);
     }
   }
   
@@ -192,137 +183,4 @@ public class KGMLWriter {
     }
   }
   
-  /**
-   * 
-   * @param keggPW
-   * @param writeEntryExtended if is set true the extended KGML is written for {@link EntryExtended},
-   * otherwise the basic KGML is written with normal {@link Entry}
-   * @return
-   * @throws ParserConfigurationException
-   */
-  private static Document createDocument(Pathway keggPW, boolean writeEntryExtended) throws ParserConfigurationException {
-    DocumentBuilderFactory docFactory = DocumentBuilderFactory.newInstance();
-    DocumentBuilder docBuilder = docFactory.newDocumentBuilder();
-    Document doc = docBuilder.newDocument();
-    
-    // root element pathway
-    Element rootElement = doc.createElement("pathway");
-    Map<String, String> attributes = keggPW.getKGMLAttributes();
-    for (java.util.Map.Entry<String, String> att : attributes.entrySet()) {
-      rootElement.setAttribute(att.getKey(), att.getValue());
-    }
-    if(writeEntryExtended && keggPW.isSetAdditionalText()) {
-      rootElement.setAttribute("additionalText", keggPW.getAdditionalText());
-    }
-    doc.appendChild(rootElement);
-    
-    // kegg entries
-    ArrayList<Entry>  entries = keggPW.getEntries();
-    if(entries.size()>0) {
-      for (Entry entry : entries) {
-        Element newChild = doc.createElement("entry");
-        Map<String, String> entryMap = null;
-        if(writeEntryExtended) {
-          try{
-            entryMap = ((EntryExtended)entry).getKGMLAttributes();
-          } catch (ClassCastException e) {
-            entryMap = entry.getKGMLAttributes();
-          }
-        } else {
-          if (entry instanceof EntryExtended) {
-            entryMap = ((EntryExtended) entry).getKGMLAttributes(false);
-          } else {
-            entryMap = entry.getKGMLAttributes();
-          }
-        }
-        for (java.util.Map.Entry<String, String> att : entryMap.entrySet()) {
-          newChild.setAttribute(att.getKey(), att.getValue());
-        }
-        
-        if (entry.isSetComponent()) {
-          for (int component : entry.getComponents()) {
-            Element newChild2 = doc.createElement("component");
-            newChild2.setAttribute("id", String.valueOf(component));
-            newChild.appendChild(newChild2);
-          }
-        }
-        
-        if (entry.isSetGraphics()) {
-          Element newChild2 = doc.createElement("graphics");
-          for (java.util.Map.Entry<String, String> graphic : entry.getGraphics().getKGMLAttributes().entrySet()) {
-            newChild2.setAttribute(graphic.getKey(), graphic.getValue());
-          }
-          newChild.appendChild(newChild2);
-        }
-        
-        rootElement.appendChild(newChild);
-      }
-    }
-    
-    // kegg relations
-    ArrayList<Relation>  relations = keggPW.getRelations();
-    if(relations!=null && relations.size()>0) {
-      for (Relation relation : relations) {
-        Element newChild = doc.createElement("relation");
-        for (java.util.Map.Entry<String, String> att : relation.getKGMLAttributes().entrySet()) {
-          newChild.setAttribute(att.getKey(), att.getValue());
-        }
-        if (relation.isSetSubTypes()) {
-          for (SubType subtype : relation.getSubtypes()) {
-            Element newChild2 = doc.createElement("subtype");
-            for (java.util.Map.Entry<String, String> att1 : (subtype.getKGMLAttributes()).entrySet()) {
-              newChild2.setAttribute(att1.getKey(), att1.getValue());
-            }
-            newChild.appendChild(newChild2);
-          }
-        }
-        
-        rootElement.appendChild(newChild);
-      }
-    }
-    
-    // kegg reactions
-    ArrayList<Reaction>  reactions = keggPW.getReactions();
-    if(reactions.size()>0) {
-      for (Reaction reaction : reactions) {
-        Element newChild = doc.createElement("reaction");
-        for (java.util.Map.Entry<String, String> att : (reaction.getKGMLAttributes()).entrySet()) {
-          newChild.setAttribute(att.getKey(), att.getValue());
-        }
-        if (reaction.isSetProduct()) {
-          for (ReactionComponent product : reaction.getProducts()) {
-            Element newChild2 = doc.createElement("product");
-            for (java.util.Map.Entry<String, String> att1 : (product.getKGMLAttributes()).entrySet()) {
-              newChild2.setAttribute(att1.getKey(), att1.getValue());
-              if (product.isSetAlt()) {
-                Element newChild3 = doc.createElement("alt");
-                newChild3.setAttribute("name", product.getAlt().getName());
-                newChild2.appendChild(newChild3);
-              }
-            }
-            newChild.appendChild(newChild2);
-          }
-        }
-        if (reaction.isSetSubstrate()) {
-          for (ReactionComponent substrate : reaction.getSubstrates()) {
-            Element newChild2 = doc.createElement("substrate");
-            for (java.util.Map.Entry<String, String> att1 : (substrate.getKGMLAttributes()).entrySet()) {
-              newChild2.setAttribute(att1.getKey(), att1.getValue());
-              if (substrate.isSetAlt()) {
-                Element newChild3 = doc.createElement("alt");
-                newChild3.setAttribute("name", substrate.getAlt().getName());
-                newChild2.appendChild(newChild3);
-              }
-            }
-            newChild.appendChild(newChild2);
-          }
-        }
-        rootElement.appendChild(newChild);
-      }
-    }
-    
-    
-    return doc;
-  }
-  
 }
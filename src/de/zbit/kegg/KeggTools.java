@@ -16,11 +16,14 @@
  */
 package de.zbit.kegg;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.logging.Level;
@@ -30,6 +33,7 @@ import java.util.regex.Pattern;
 
 import de.zbit.kegg.api.KeggInfos;
 import de.zbit.kegg.api.cache.KeggInfoManagement;
+import de.zbit.kegg.api.cache.KeggPrefetcher;
 import de.zbit.kegg.parser.pathway.Entry;
 import de.zbit.kegg.parser.pathway.EntryType;
 import de.zbit.kegg.parser.pathway.GraphicsType;
@@ -50,6 +54,16 @@ import de.zbit.util.progressbar.AbstractProgressBar;
 public class KeggTools {
   public static final transient Logger log = Logger.getLogger(KeggTools.class.getName());
   
+  /**
+   * Separates the reactants in KEGG reaction equations.
+   */
+  private static final Pattern REACTANT_SEPARATOR = Pattern.compile(Pattern.quote(" + "));
+  
+  /**
+   * Separates, e.g., the enzymes of a KEGG reaction.
+   */
+  private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+  
   /**
    * Retrieves all Equations and Enzymes for all reactions in the pathway.
    * Looks, which of them is already contained in the pathway and adds all
@@ -301,70 +315,79 @@ public class KeggTools {
    */
   public static void preFetchInformation(Pathway p, KeggInfoManagement manager, boolean autocompleteReactions,
     AbstractProgressBar progress) {
+    preFetchInformation(Collections.singleton(p), manager, autocompleteReactions, progress);
+  }
+  
+  /**
+   * Builds the cache for all reactions and entries in all given pathways.
+   * The KEGG identifiers of all pathways are united, such that every
+   * identifier is fetched only once, even if it occurs in many pathways.
+   * @param pathways The source pathways
+   * @param manager The cache
+   * @param autocompleteReactions Set to true, if you plan to call
+   * {@link #autocompleteReactions(Pathway, KeggInfoManagement)} afterwars.
+   * @param progress might be null
+   * @see #preFetchInformation(Pathway, KeggInfoManagement, boolean, AbstractProgressBar)
+   */
+  public static void preFetchInformation(Collection<Pathway> pathways, KeggInfoManagement manager,
+    boolean autocompleteReactions, AbstractProgressBar progress) {
     // PreFetch infos. Enormous performance improvement!
     Collection<String> preFetchIDs = new HashSet<String>();
-    preFetchIDs.add("gn:" + p.getOrg());
-    preFetchIDs.add(p.getName());
-    for (Entry entry : p.getEntries()) {
-      for (String ko_id : entry.getName().split(" ")) {
-        if (!ko_id.contains(":")) // all valid kegg ids contain a doublepoint.
-          continue; // "undefined" = group node, which contains "Components"
-        preFetchIDs.add(ko_id);
-      }
-    }
-    for (Reaction r : p.getReactions()) {
-      for (String ko_id : r.getName().split(" ")) {
-        preFetchIDs.add(ko_id);
+    // Fetch all ids. If reactions should be autocompleted, also fetch all
+    // enzymes and reactants of every reaction, even if they are not in the
+    // KGML document, as soon as the reaction is available.
+    final Set<String> reactionIDs = new HashSet<String>();
+    for (Pathway p : pathways) {
+      preFetchIDs.add("gn:" + p.getOrg());
+      preFetchIDs.add(p.getName());
+      for (Entry entry : p.getEntries()) {
+        for (String ko_id : entry.getName().split(" ")) {
+          if (!ko_id.contains(":")) // all valid kegg ids contain a doublepoint.
+            continue; // "undefined" = group node, which contains "Components"
+          preFetchIDs.add(ko_id);
+        }
       }
-    }
-    manager.precacheIDs(preFetchIDs.toArray(new String[preFetchIDs.size()]), progress);
-    
-    
-    if (autocompleteReactions) {
-      // Also prefetch all Enzymes, and reactants of every reaction, even if
-      // it's not in the KGML document.
-      preFetchIDs.clear();
       for (Reaction r : p.getReactions()) {
         for (String ko_id : r.getName().split(" ")) {
-          KeggInfos infos = KeggInfos.get(ko_id, manager);
-
-          if (infos.getEquation()!=null) {
-            String[] reactants = infos.getEquation().replace("<=>", " + ").trim().split(Pattern.quote(" + "));
-            for (String reactant : reactants) {
-              reactant = removeReactantPrefixAndSuffix(reactant.trim());
-              
-              if (!reactant.contains(":")) {
-                reactant = KeggInfos.appendPrefix(reactant);
-              }
-              
-              //if (!preFetchIDs.contains(reactant)) 
-              preFetchIDs.add(reactant);
-            }
-          }
-          if (infos.getEnzymes()!=null) {
-            String[] enzymes = infos.getEnzymes().trim().replaceAll("\\s+", " ").split(" ");
-            for (String string : enzymes) {
-              String toAdd = "EC:"+string;
-              //if (!preFetchIDs.contains(toAdd))
-              preFetchIDs.add(toAdd);
-            }
+          preFetchIDs.add(ko_id);
+          if (autocompleteReactions) {
+            reactionIDs.add(ko_id);
           }
-          
         }
       }
-      manager.precacheIDs(preFetchIDs.toArray(new String[preFetchIDs.size()]), progress);
+    }
+    
+    KeggPrefetcher fetcher = new KeggPrefetcher(manager, new KeggPrefetcher.Listener() {
+      /* (non-Javadoc)
+       * @see de.zbit.kegg.api.cache.KeggPrefetcher.Listener#fetched(java.lang.String, de.zbit.kegg.api.cache.KeggPrefetcher)
+       */
+      @Override
+      public void fetched(String id, KeggPrefetcher fetcher) {
+        if (reactionIDs.contains(id)) {
+          fetcher.submit(getReactantAndEnzymeIDs(fetcher.get(id)));
+        }
+      }
+    }, progress);
+    fetcher.submit(preFetchIDs);
+    try {
+      fetcher.awaitCompletion();
+    } catch (InterruptedException e) {
+      log.log(Level.WARNING, "Prefetching of KEGG information has been interrupted.", e);
+      Thread.currentThread().interrupt();
     }
     
     // Add Synonyms to list. This step is MANDATORY AND VERY IMPORTANT
-    for (Entry entry: p.getEntries()) {
-      for (String ko_id : entry.getName().split(" ")) {
-        // We should have cached information about all entries!
-        KeggInfos reaInfo = KeggInfos.get(ko_id, manager);
-        
-        if (reaInfo!=null && reaInfo.getSameAs()!=null) {
-          for (String id : reaInfo.getSameAs().split("\\s")) {
-            if (id!=null && id.trim().length()>0) {
-              p.putEntrySynonymsInNameMap(entry, id);
+    for (Pathway p : pathways) {
+      for (Entry entry: p.getEntries()) {
+        for (String ko_id : entry.getName().split(" ")) {
+          // We should have cached information about all entries!
+          KeggInfos reaInfo = KeggInfos.get(ko_id, manager);
+          
+          if (reaInfo!=null && reaInfo.getSameAs()!=null) {
+            for (String id : reaInfo.getSameAs().split("\\s")) {
+              if (id!=null && id.trim().length()>0) {
+                p.putEntrySynonymsInNameMap(entry, id);
+              }
             }
           }
         }
@@ -376,6 +399,32 @@ public class KeggTools {
     // -------------------------
   }
   
+  /**
+   * @param infos information about a reaction.
+   * @return the KEGG ids of all reactants (from the equation) and all
+   * enzymes (with "EC:" prefix) of the reaction.
+   */
+  private static Collection<String> getReactantAndEnzymeIDs(KeggInfos infos) {
+    Collection<String> ids = new ArrayList<String>();
+    if (infos.getEquation()!=null) {
+      String[] reactants = REACTANT_SEPARATOR.split(infos.getEquation().replace("<=>", " + ").trim());
+      for (String reactant : reactants) {
+        reactant = removeReactantPrefixAndSuffix(reactant.trim());
+        
+        if (!reactant.contains(":")) {
+          reactant = KeggInfos.appendPrefix(reactant);
+        }
+        ids.add(reactant);
+      }
+    }
+    if (infos.getEnzymes()!=null) {
+      for (String enzyme : WHITESPACE.split(infos.getEnzymes().trim())) {
+        ids.add("EC:"+enzyme);
+      }
+    }
+    return ids;
+  }
+  
   /**
    * Retrieves the Kegg Enzyme IDs for the given entry.
    * You should precache this in the manager!
@@ -460,8 +509,8 @@ public class KeggTools {
    * @param p
    */
   public static void removeWhiteNodes(Pathway p) {
-    for (int i=0; i<p.getEntries().size(); i++) {
-      Entry entry = p.getEntries().get(i);
+    List<Entry> toRemove = new ArrayList<Entry>();
+    for (Entry entry : p.getEntries()) {
       if ( // 1. Has a white background
           entry.hasGraphics() && entry.getGraphics().isSetBGcolor() &&          
           entry.getGraphics().getBgcolor().toLowerCase().trim().endsWith("ffffff")
@@ -470,10 +519,10 @@ public class KeggTools {
           // 3. Is not a line (line are always drawn on white background)
           && (entry.getGraphics().getType()!=GraphicsType.line && 
               !entry.getGraphics().getFgcolor().toLowerCase().trim().endsWith("ffffff"))) {
-        p.removeEntry(i);
-        i--;
+        toRemove.add(entry);
       }
     }
+    p.removeEntries(toRemove);
   }
   
   /**
@@ -489,21 +538,23 @@ public class KeggTools {
    * as well.
    */
   public static void removeOrphans(Pathway p, boolean considerRelations, boolean considerReactions) {
-    for (int i=0; i<p.getEntries().size(); i++) {
-      Entry entry = p.getEntries().get(i);
+    ConnectivityIndex index = new ConnectivityIndex(p);
+    List<Entry> toRemove = new ArrayList<Entry>();
+    for (Entry entry : p.getEntries()) {
       
       
       // Remove it
-      if (isOrphan(p, entry, considerRelations, considerReactions)) {
-        p.removeEntry(i);
-        i--;
+      if (index.isOrphan(entry, considerRelations, considerReactions)) {
+        toRemove.add(entry);
       }
     }
-    
+    p.removeEntries(toRemove);
   }
   
   /**
    * Returns true if and only if entry is an orphan in p.
+   * <p>This method iterates over all reactions and relations. Use a
+   * {@link ConnectivityIndex} to test many entries.</p>
    * @param p
    * @param entry
    * @param considerRelations
@@ -615,13 +666,13 @@ public class KeggTools {
    * @param p
    */
   public static void removePathwayEntries(Pathway p) {
-    for (int i=0; i<p.getEntries().size(); i++) {
-      Entry e = p.getEntries().get(i);
+    List<Entry> toRemove = new ArrayList<Entry>();
+    for (Entry e : p.getEntries()) {
       if (e.getType().equals(EntryType.map)) {
-        p.removeEntry(i);
-        i--;
+        toRemove.add(e);
       }
     }
+    p.removeEntries(toRemove);
   }
 
   /**
@@ -16,9 +16,7 @@
  */
 package de.zbit.kegg.api;
 
-import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.StringReader;
 import java.rmi.RemoteException;
@@ -27,7 +25,7 @@ import java.util.List;
 import java.util.concurrent.TimeoutException;
 
 import keggapi.Definition;
-import de.zbit.io.FileDownload;
+import de.zbit.io.HttpClient;
 import de.zbit.kegg.api.cache.KeggFunctionManagement;
 import de.zbit.kegg.api.cache.KeggInfoManagement;
 import de.zbit.util.StringUtil;
@@ -314,13 +312,12 @@ public class KeggAdaptor {
       }
     }
     
-    // Get the requested information
-    ByteArrayOutputStream bs = new ByteArrayOutputStream();
-    BufferedOutputStream out = new BufferedOutputStream(bs);
-    FileDownload.download(address.toString(), out, false);
+    // Get the requested information over a pooled keep-alive connection.
+    // Identical concurrent queries are only sent once.
+    byte[] result = HttpClient.getDefault().get(address.toString());
     
-    // Return the result
-    return bs.toString();
+    // Return the result (KEGG answers with an error for unknown identifiers)
+    return (result == null) ? "" : new String(result);
   }
 
 
@@ -0,0 +1,953 @@
+/*
+ * $Id$
+ * $URL$
+ * ---------------------------------------------------------------------
+ * This file is part of the SysBio API library.
+ *
+ * Copyright (C) 2009-2016 by the University of Tuebingen, Germany.
+ *
+ * This library is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation. A copy of the license
+ * agreement is provided in the file named "LICENSE.txt" included with
+ * this software distribution and also available online as
+ * <http://www.gnu.org/licenses/lgpl-3.0-standalone.html>.
+ * ---------------------------------------------------------------------
+ */
+package de.zbit.kegg.api;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Logger;
+
+import de.zbit.io.MappedRecordFile;
+import de.zbit.io.OpenFile;
+
+/**
+ * A local mirror of the KEGG REST API (see {@link KeggAdaptor}), that is
+ * built from bulk flat-file dumps. It answers the operations {@code get},
+ * {@code find}, {@code list}, {@code conv} and {@code link} without network
+ * access. Use a {@link KeggMirrorAdaptor} to pass a mirror to, e.g.,
+ * {@link de.zbit.kegg.api.cache.KeggInfoManagement}.
+ * 
+ * <p>The following dumps can be imported:
+ * <ul>
+ * <li>Flat files in DBGET format (e.g., {@code hsa}, {@code compound},
+ * {@code reaction}, {@code pathway}), with entries terminated by a
+ * {@code ///} line: {@link #importEntries(String, String)}.</li>
+ * <li>Tables as returned by {@code list/<database>}, e.g., {@code list/hsa},
+ * {@code list/compound}, {@code list/pathway/hsa} or
+ * {@code list/organism}: {@link #importList(String, String)}.</li>
+ * <li>Tables as returned by {@code conv/<target>/<source>} and
+ * {@code link/<target>/<source>}: {@link #importConv(String, String, String)}
+ * and {@link #importLink(String, String, String)}.</li>
+ * </ul>
+ * All dumps might be compressed (see {@link OpenFile#openFile(String)}).</p>
+ * 
+ * <p>The mirror is stored in a directory, which contains a data file with
+ * all imported entries and tables and an index file. The index maps every
+ * entry identifier (lower case, e.g., {@code hsa:10458} or
+ * {@code cpd:c00001}) and every table to its position in the data file, and
+ * the identifiers in the rows of every table to the positions of these rows.
+ * Entries, tables and rows are read from memory-mapped segments of the data
+ * file (see {@link MappedRecordFile}). Importing an entry or table, that
+ * already exists, replaces it.</p>
+ * 
+ * <p>{@link #query(String, String...)} returns {@code null} for queries,
+ * that cannot be answered, because the respective database has not been
+ * imported. An empty string is returned, if the database has been imported,
+ * but there is no result (as KEGG does).</p>
+ * 
+ * @version $Rev$
+ * @since 1.4
+ */
+public class KeggMirror {
+  
+  /**
+   * A {@link Logger} for this class.
+   */
+  private static final transient Logger log = Logger.getLogger(KeggMirror.class.getName());
+  
+  /**
+   * Identifies index files (and their version).
+   */
+  private static final int INDEX_MAGIC = 0x4b4d4932;
+  
+  /**
+   * Name of the data file in the mirror directory.
+   */
+  public static final String DATA_FILE = "kegg.dat";
+  
+  /**
+   * Name of the index file in the mirror directory.
+   */
+  public static final String INDEX_FILE = "kegg.idx";
+  
+  /**
+   * Dumps and results are UTF-8.
+   */
+  private static final Charset UTF8 = Charset.forName("UTF-8");
+  
+  /**
+   * Maps database names to the prefixes of their identifiers.
+   */
+  private static final Map<String, String> PREFIXES = new HashMap<String, String>();
+  
+  /**
+   * Names and prefixes of all KEGG databases, that are not organisms.
+   */
+  private static final Set<String> DATABASES = new HashSet<String>();
+  
+  static {
+    String[][] prefixes = new String[][] {
+        {"pathway", "path"}, {"brite", "br"}, {"module", "md"}, {"orthology", "ko"},
+        {"genome", "gn"}, {"compound", "cpd"}, {"glycan", "gl"}, {"reaction", "rn"},
+        {"rclass", "rc"}, {"enzyme", "ec"}, {"network", "ne"}, {"variant", "var"},
+        {"disease", "ds"}, {"drug", "dr"}, {"dgroup", "dg"}, {"environ", "ev"}
+    };
+    for (String[] p : prefixes) {
+      PREFIXES.put(p[0], p[1]);
+      DATABASES.add(p[0]);
+      DATABASES.add(p[1]);
+    }
+    DATABASES.addAll(Arrays.asList("genes", "organism", "ligand", "kegg", "t"));
+  }
+  
+  /**
+   * The mirror directory.
+   */
+  private final File directory;
+  
+  /**
+   * Contains all entries and tables.
+   */
+  private final File dataFile;
+  
+  /**
+   * All records (entries, tables and rows of tables) in {@link #dataFile}.
+   */
+  private MappedRecordFile records;
+  
+  /**
+   * The index of {@link #dataFile}.
+   */
+  private final File indexFile;
+  
+  /**
+   * Maps entry identifiers (lower case, with prefix) to their record.
+   */
+  private final Map<String, Integer> entries = new HashMap<String, Integer>();
+  
+  /**
+   * Prefixes of all imported entries, e.g., {@code hsa} or {@code cpd}.
+   */
+  private final Set<String> entryPrefixes = new HashSet<String>();
+  
+  /**
+   * Maps table names (e.g., {@code list/hsa} or {@code link/pathway/hsa})
+   * to their record.
+   */
+  private final Map<String, Integer> tables = new HashMap<String, Integer>();
+  
+  /**
+   * Indices of the rows of tables, by table name, built during import. Every
+   * index maps identifiers (lower case, with prefix) to the numbers of the
+   * records of their rows, in the order of the table. The rows of
+   * {@code list} tables are indexed by their first column, those of
+   * {@code conv} and {@code link} tables by both columns. The number of a
+   * row, that is indexed by its second column, is stored as its complement
+   * ({@code ~nr}), because both columns must be swapped.
+   */
+  private final Map<String, Map<String, int[]>> rowIndices = new HashMap<String, Map<String, int[]>>();
+  
+  /**
+   * Opens the mirror in the given directory. The directory is created, if
+   * it does not exist.
+   * 
+   * @param directory
+   * @throws IOException if an existing mirror cannot be read.
+   */
+  public KeggMirror(File directory) throws IOException {
+    super();
+    this.directory = directory;
+    if (!directory.exists() && !directory.mkdirs()) {
+      throw new IOException("Could not create " + directory);
+    }
+    dataFile = new File(directory, DATA_FILE);
+    indexFile = new File(directory, INDEX_FILE);
+    records = new MappedRecordFile(dataFile);
+    if (indexFile.exists() && dataFile.exists()) {
+      readIndex();
+      records.map();
+    }
+  }
+  
+  /**
+   * @return the mirror directory.
+   */
+  public File getDirectory() {
+    return directory;
+  }
+  
+  /**
+   * @return the number of imported entries.
+   */
+  public synchronized int getNumberOfEntries() {
+    return entries.size();
+  }
+  
+  /**
+   * @param id an entry identifier, e.g., {@code hsa:10458} or {@code C00001}.
+   * @return {@code true} if this mirror contains an entry for this
+   *         identifier.
+   */
+  public synchronized boolean contains(String id) {
+    return getEntry(id) != null;
+  }
+  
+  /**
+   * @param database a database name or prefix, e.g., {@code compound},
+   *        {@code cpd} or {@code hsa}.
+   * @return the prefix of identifiers of this database, in lower case.
+   */
+  private static String getPrefix(String database) {
+    database = database.toLowerCase(Locale.ENGLISH);
+    String prefix = PREFIXES.get(database);
+    return (prefix != null) ? prefix : database;
+  }
+  
+  /**
+   * @param database
+   * @return {@code true} if the given database is not a KEGG database, i.e.,
+   *         most probably an organism code.
+   */
+  private static boolean isOrganism(String database) {
+    return !DATABASES.contains(database.toLowerCase(Locale.ENGLISH));
+  }
+  
+  /**
+   * Guesses the database of an identifier without prefix.
+   * 
+   * @param id e.g., "C00001", "R00010" or "hsa00010" (lower case).
+   * @return the prefix of the database of this identifier, or {@code null}
+   *         if it is unknown.
+   */
+  private static String guessPrefix(String id) {
+    int letters = 0;
+    while ((letters < id.length()) && Character.isLetter(id.charAt(letters))) {
+      letters++;
+    }
+    if ((letters == 0) || (letters == id.length())) {
+      return null;
+    } else if (letters > 2) {
+      // e.g., map00010, hsa00010
+      return "path";
+    } else if (letters == 2) {
+      return id.startsWith("rc") ? "rc" : null;
+    }
+    switch (id.charAt(0)) {
+      case 'c': return "cpd";
+      case 'r': return "rn";
+      case 'g': return "gl";
+      case 'd': return "dr";
+      case 'k': return "ko";
+      case 'm': return "md";
+      case 'h': return "ds";
+      default: return null;
+    }
+  }
+  
+  /**
+   * @param id
+   * @param prefix used if {@code id} has no prefix (might be {@code null}).
+   * @return the identifier in lower case, with the prefix of its database
+   *         (e.g., {@code cpd:c00001} for {@code compound:C00001}).
+   */
+  private static String normalize(String id, String prefix) {
+    id = id.trim().toLowerCase(Locale.ENGLISH);
+    int colon = id.indexOf(':');
+    if (colon > 0) {
+      String db = id.substring(0, colon);
+      String p = getPrefix(db);
+      return p.equals(db) ? id : p + id.substring(colon);
+    }
+    return (prefix != null) ? prefix + ':' + id : id;
+  }
+  
+  /**
+   * @param id a normalized identifier.
+   * @return the prefix of {@code id}, or {@code null} if it has none.
+   */
+  private static String prefixOf(String id) {
+    int colon = id.indexOf(':');
+    return (colon > 0) ? id.substring(0, colon) : null;
+  }
+  
+  /**
+   * Answers a KEGG REST query.
+   * 
+   * @param operation one of {@code get}, {@code find}, {@code list},
+   *        {@code conv}, {@code link}.
+   * @param arguments as for {@link KeggAdaptor#get(String, String...)}.
+   * @return the answer of the query, an empty string if there is no result,
+   *         or {@code null} if the query cannot be answered from this
+   *         mirror.
+   */
+  public String query(String operation, String... arguments) {
+    if ((arguments == null) || (arguments.length == 0)) {
+      return null;
+    }
+    operation = operation.toLowerCase(Locale.ENGLISH);
+    if (operation.equals("get")) {
+      return (arguments.length == 1) ? get(arguments[0]) : null;
+    } else if (operation.equals("list")) {
+      if (arguments.length == 1) {
+        return list(arguments[0]);
+      } else if (arguments.length == 2) {
+        return getTable("list/" + arguments[0] + '/' + arguments[1]);
+      }
+    } else if (operation.equals("find")) {
+      return (arguments.length == 2) ? find(arguments[0], arguments[1]) : null;
+    } else if (operation.equals("conv") || operation.equals("link")) {
+      return (arguments.length == 2) ? pairs(operation, arguments[0], arguments[1]) : null;
+    }
+    return null;
+  }
+  
+  /**
+   * @param ids one or more identifiers, separated by '+'.
+   * @return the entries in the order of {@code ids}, or {@code null} if the
+   *         database of any identifier has not been imported.
+   */
+  public String get(String ids) {
+    StringBuilder sb = new StringBuilder();
+    for (String id : ids.split("[+ ]")) {
+      if (id.length() == 0) {
+        continue;
+      }
+      byte[] entry;
+      synchronized (this) {
+        entry = getEntry(id);
+        if (entry == null) {
+          String prefix = prefixOf(normalize(id, guessPrefix(id.toLowerCase(Locale.ENGLISH))));
+          if ((prefix == null) || !entryPrefixes.contains(prefix)) {
+            return null;
+          }
+          continue;
+        }
+      }
+      sb.append(new String(entry, UTF8));
+    }
+    return sb.toString();
+  }
+  
+  /**
+   * Must be called within a synchronized block.
+   * 
+   * @param id
+   * @return the entry for the given identifier, or {@code null}.
+   */
+  private byte[] getEntry(String id) {
+    String key = normalize(id, null);
+    Integer nr = entries.get(key);
+    if ((nr == null) && (key.indexOf(':') < 0)) {
+      String prefix = guessPrefix(key);
+      if (prefix != null) {
+        nr = entries.get(prefix + ':' + key);
+      }
+    }
+    return (nr == null) ? null : records.read(nr.intValue());
+  }
+  
+  /**
+   * @param name
+   * @return the table with the given name, or {@code null}.
+   */
+  private String getTable(String name) {
+    byte[] table;
+    synchronized (this) {
+      Integer nr = tables.get(name.toLowerCase(Locale.ENGLISH));
+      if (nr == null) {
+        return null;
+      }
+      table = records.read(nr.intValue());
+    }
+    return new String(table, UTF8);
+  }
+  
+  /**
+   * Answers {@code list/<database>} and {@code list/<dbentries>}.
+   * 
+   * @param argument
+   * @return
+   */
+  private String list(String argument) {
+    if ((argument.indexOf(':') < 0) && (argument.indexOf('+') < 0)) {
+      String table = getTable("list/" + argument);
+      if ((table != null) || isOrganism(argument)) {
+        return table;
+      }
+      // e.g., list/cpd instead of list/compound
+      for (Map.Entry<String, String> e : PREFIXES.entrySet()) {
+        if (e.getValue().equals(argument.toLowerCase(Locale.ENGLISH))) {
+          return getTable("list/" + e.getKey());
+        }
+      }
+      return null;
+    }
+    StringBuilder sb = new StringBuilder();
+    for (String id : argument.split("[+ ]")) {
+      if (id.length() == 0) {
+        continue;
+      }
+      String key = normalize(id, guessPrefix(id.toLowerCase(Locale.ENGLISH)));
+      String prefix = prefixOf(key);
+      List<String> candidates = getTables("list", prefix);
+      if (candidates.isEmpty()) {
+        return null;
+      }
+      for (String table : candidates) {
+        List<String> rows = getRows(table, key);
+        if (!rows.isEmpty()) {
+          for (String row : rows) {
+            sb.append(row).append('\n');
+          }
+          break;
+        }
+      }
+    }
+    return sb.toString();
+  }
+  
+  /**
+   * Answers {@code find/<database>/<query>}, by searching all rows of the
+   * {@code list} tables of the database for all keywords of the query.
+   * 
+   * @param database a database or {@code genes} for all organisms.
+   * @param query keywords, separated by '+'.
+   * @return
+   */
+  private String find(String database, String query) {
+    List<String> candidates = new ArrayList<String>();
+    String prefix = getPrefix(database);
+    synchronized (this) {
+      for (String table : tables.keySet()) {
+        if (table.startsWith("list/") && (table.indexOf('/', 5) < 0)) {
+          String db = table.substring(5);
+          if (prefix.equals("genes") ? isOrganism(db) : getPrefix(db).equals(prefix)) {
+            candidates.add(table);
+          }
+        }
+      }
+    }
+    if (candidates.isEmpty()) {
+      return null;
+    }
+    List<String> keywords = new ArrayList<String>();
+    for (String keyword : query.toLowerCase(Locale.ENGLISH).split("[+ ]")) {
+      if (keyword.length() > 0) {
+        keywords.add(keyword);
+      }
+    }
+    StringBuilder sb = new StringBuilder();
+    for (String table : candidates) {
+      String content = getTable(table);
+      if (content == null) {
+        continue;
+      }
+      int start = 0;
+      while (start < content.length()) {
+        int end = content.indexOf('\n', start);
+        if (end < 0) {
+          end = content.length();
+        }
+        String row = content.substring(start, end);
+        String lower = row.toLowerCase(Locale.ENGLISH);
+        boolean matches = row.length() > 0;
+        for (int i = 0; matches && (i < keywords.size()); i++) {
+          matches = lower.contains(keywords.get(i));
+        }
+        if (matches) {
+          sb.append(row).append('\n');
+        }
+        start = end + 1;
+      }
+    }
+    return sb.toString();
+  }
+  
+  /**
+   * Answers {@code conv/<target>/<source>} and
+   * {@code link/<target>/<source>}.
+   * 
+   * @param operation {@code conv} or {@code link}.
+   * @param target a database.
+   * @param source a database or identifiers, separated by '+'.
+   * @return
+   */
+  private String pairs(String operation, String target, String source) {
+    if ((source.indexOf(':') < 0) && (source.indexOf('+') < 0)) {
+      String table = getTable(operation + '/' + target + '/' + source);
+      if (table == null) {
+        // The same table in the other direction
+        table = getTable(operation + '/' + source + '/' + target);
+        if (table != null) {
+          StringBuilder sb = new StringBuilder(table.length());
+          for (String row : table.split("\n")) {
+            int tab = row.indexOf('\t');
+            if (tab > 0) {
+              sb.append(row.substring(tab + 1)).append('\t').append(row.substring(0, tab)).append('\n');
+            }
+          }
+          table = sb.toString();
+        }
+      }
+      return table;
+    }
+    List<String> candidates = getTables(operation, null);
+    if (candidates.isEmpty()) {
+      return null;
+    }
+    String prefix = getPrefix(target);
+    StringBuilder sb = new StringBuilder();
+    for (String id : source.split("[+ ]")) {
+      if (id.length() == 0) {
+        continue;
+      }
+      String key = normalize(id, null);
+      for (String table : candidates) {
+        for (String row : getRows(table, key)) {
+          String other = normalize(row.substring(row.indexOf('\t') + 1), null);
+          String p = prefixOf(other);
+          if ((p != null) && (prefix.equals("genes") ? isOrganism(p) : p.equals(prefix))) {
+            sb.append(row).append('\n');
+          }
+        }
+      }
+    }
+    return sb.toString();
+  }
+  
+  /**
+   * @param operation {@code list}, {@code conv} or {@code link}.
+   * @param prefix for {@code list}, the prefix of the identifiers in the
+   *        tables. Ignored otherwise.
+   * @return names of all tables of the given operation, that might contain
+   *         the identifiers.
+   */
+  private synchronized List<String> getTables(String operation, String prefix) {
+    List<String> candidates = new ArrayList<String>();
+    String start = operation + '/';
+    for (String table : tables.keySet()) {
+      if (table.startsWith(start)) {
+        if (prefix != null) {
+          // e.g. list/pathway/hsa for path:hsa00010
+          int end = table.indexOf('/', start.length());
+          String db = table.substring(start.length(), end < 0 ? table.length() : end);
+          if (!getPrefix(db).equals(prefix)) {
+            continue;
+          }
+        }
+        candidates.add(table);
+      }
+    }
+    return candidates;
+  }
+  
+  /**
+   * @param table
+   * @param key a normalized identifier.
+   * @return all rows of the given table, that contain the identifier (see
+   *         {@link #rowIndices}), such that the identifier is in the first
+   *         column, in the order of the table.
+   */
+  private synchronized List<String> getRows(String table, String key) {
+    Map<String, int[]> index = rowIndices.get(table);
+    int[] nrs = (index == null) ? null : index.get(key);
+    if (nrs == null) {
+      return new ArrayList<String>(0);
+    }
+    List<String> rows = new ArrayList<String>(nrs.length);
+    for (int nr : nrs) {
+      if (nr >= 0) {
+        rows.add(new String(records.read(nr), UTF8));
+      } else {
+        String row = new String(records.read(~nr), UTF8);
+        int tab = row.indexOf('\t');
+        String b = row.substring(tab + 1);
+        int end = b.indexOf('\t');
+        if (end > 0) {
+          b = b.substring(0, end);
+        }
+        rows.add(b + '\t' + row.substring(0, tab));
+      }
+    }
+    return rows;
+  }
+  
+  /**
+   * Imports a flat file in DBGET format, as returned by {@code get}. Every
+   * entry must start with an {@code ENTRY} line and end with a {@code ///}
+   * line.
+   * 
+   * @param fileName the dump, e.g., {@code hsa} or {@code compound}.
+   * @param database the database or organism of the entries, e.g.,
+   *        {@code hsa} or {@code compound}. Used as prefix of the identifiers
+   *        in the {@code ENTRY} lines.
+   * @return the number of imported entries.
+   * @throws IOException
+   */
+  public synchronized int importEntries(String fileName, String database) throws IOException {
+    log.info("Importing entries of " + database + " from " + fileName);
+    String prefix = getPrefix(database);
+    BufferedReader in = open(fileName);
+    long position = dataFile.length();
+    OutputStream out = new BufferedOutputStream(new FileOutputStream(dataFile, true), 1 << 16);
+    int count = 0;
+    try {
+      StringBuilder entry = new StringBuilder();
+      String key = null;
+      String line;
+      while ((line = in.readLine()) != null) {
+        if ((entry.length() == 0) && (line.trim().length() == 0)) {
+          continue;
+        }
+        entry.append(line).append('\n');
+        if ((key == null) && line.startsWith("ENTRY")) {
+          // ENTRY       10458             CDS       T01001
+          // ENTRY       EC 1.1.1.1                  Enzyme
+          String[] columns = line.substring(5).trim().split("\\s+");
+          if (columns.length > 0) {
+            String id = columns[0];
+            if (id.equalsIgnoreCase("EC") && (columns.length > 1)) {
+              id = columns[1];
+            }
+            key = normalize(id, prefix);
+          }
+        } else if (line.startsWith("///")) {
+          if (key != null) {
+            byte[] bytes = entry.toString().getBytes(UTF8);
+            out.write(bytes);
+            entries.put(key, Integer.valueOf(records.add(position, bytes.length)));
+            entryPrefixes.add(prefixOf(key));
+            position += bytes.length;
+            count++;
+          } else {
+            log.warning("Skipping entry without ENTRY line in " + fileName);
+          }
+          entry.setLength(0);
+          key = null;
+        }
+      }
+    } finally {
+      in.close();
+      out.close();
+    }
+    commit();
+    log.info("Imported " + count + " entries");
+    return count;
+  }
+  
+  /**
+   * Imports a table as returned by {@code list/<database>}.
+   * 
+   * @param fileName the dump.
+   * @param database e.g., {@code hsa}, {@code compound}, {@code organism} or
+   *        {@code pathway/hsa}.
+   * @throws IOException
+   */
+  public void importList(String fileName, String database) throws IOException {
+    importTable(fileName, "list/" + database);
+  }
+  
+  /**
+   * Imports a table as returned by {@code conv/<target>/<source>}.
+   * 
+   * @param fileName the dump.
+   * @param target e.g., {@code hsa}
+   * @param source e.g., {@code ncbi-geneid}
+   * @throws IOException
+   */
+  public void importConv(String fileName, String target, String source) throws IOException {
+    importTable(fileName, "conv/" + target + '/' + source);
+  }
+  
+  /**
+   * Imports a table as returned by {@code link/<target>/<source>}.
+   * 
+   * @param fileName the dump.
+   * @param target e.g., {@code pathway}
+   * @param source e.g., {@code hsa}
+   * @throws IOException
+   */
+  public void importLink(String fileName, String target, String source) throws IOException {
+    importTable(fileName, "link/" + target + '/' + source);
+  }
+  
+  /**
+   * Imports a table and indexes its rows (see {@link #rowIndices}).
+   * 
+   * @param fileName
+   * @param name
+   * @throws IOException
+   */
+  private synchronized void importTable(String fileName, String name) throws IOException {
+    log.info("Importing " + name + " from " + fileName);
+    name = name.toLowerCase(Locale.ENGLISH);
+    boolean list = name.startsWith("list/");
+    String prefix = null;
+    if (list) {
+      // Identifiers in list tables might be given without prefix.
+      int end = name.indexOf('/', 5);
+      prefix = getPrefix(name.substring(5, end < 0 ? name.length() : end));
+    }
+    BufferedReader in = open(fileName);
+    ByteArrayOutputStream table = new ByteArrayOutputStream(1 << 16);
+    // Start, length and identifiers of every row
+    List<Long> rowStart = new ArrayList<Long>();
+    List<Integer> rowLength = new ArrayList<Integer>();
+    List<String[]> rowKeys = new ArrayList<String[]>();
+    try {
+      String line;
+      while ((line = in.readLine()) != null) {
+        if (line.length() == 0) {
+          continue;
+        }
+        byte[] bytes = line.getBytes(UTF8);
+        int tab = line.indexOf('\t');
+        if (tab > 0) {
+          String a = line.substring(0, tab);
+          String b = null;
+          if (!list) {
+            b = line.substring(tab + 1);
+            int end = b.indexOf('\t');
+            if (end > 0) {
+              b = b.substring(0, end);
+            }
+            b = normalize(b, null);
+          }
+          rowStart.add(Long.valueOf(table.size()));
+          rowLength.add(Integer.valueOf(bytes.length));
+          rowKeys.add(new String[] {normalize(a, prefix), b});
+        }
+        table.write(bytes);
+        table.write('\n');
+      }
+    } finally {
+      in.close();
+    }
+    long position = dataFile.length();
+    OutputStream out = new FileOutputStream(dataFile, true);
+    try {
+      table.writeTo(out);
+    } finally {
+      out.close();
+    }
+    tables.put(name, Integer.valueOf(records.add(position, table.size())));
+    
+    Map<String, List<Integer>> rows = new HashMap<String, List<Integer>>();
+    for (int i = 0; i < rowStart.size(); i++) {
+      int nr = records.add(position + rowStart.get(i).longValue(), rowLength.get(i).intValue());
+      String[] keys = rowKeys.get(i);
+      put(rows, keys[0], nr);
+      if (keys[1] != null) {
+        put(rows, keys[1], ~nr);
+      }
+    }
+    Map<String, int[]> index = new HashMap<String, int[]>(2 * rows.size());
+    for (Map.Entry<String, List<Integer>> e : rows.entrySet()) {
+      int[] nrs = new int[e.getValue().size()];
+      for (int i = 0; i < nrs.length; i++) {
+        nrs[i] = e.getValue().get(i).intValue();
+      }
+      index.put(e.getKey(), nrs);
+    }
+    rowIndices.put(name, index);
+    commit();
+  }
+  
+  /**
+   * @param rows
+   * @param key
+   * @param nr
+   */
+  private static void put(Map<String, List<Integer>> rows, String key, int nr) {
+    List<Integer> nrs = rows.get(key);
+    if (nrs == null) {
+      nrs = new ArrayList<Integer>(1);
+      rows.put(key, nrs);
+    }
+    nrs.add(Integer.valueOf(nr));
+  }
+  
+  /**
+   * @param fileName
+   * @return a reader for the given (possibly compressed) file.
+   * @throws FileNotFoundException
+   */
+  private static BufferedReader open(String fileName) throws FileNotFoundException {
+    BufferedReader in = OpenFile.openFile(fileName);
+    if (in == null) {
+      throw new FileNotFoundException(fileName);
+    }
+    return in;
+  }
+  
+  /**
+   * Writes the index and maps the data file again, after an import.
+   * 
+   * @throws IOException
+   */
+  private void commit() throws IOException {
+    writeIndex();
+    records.map();
+  }
+  
+  /**
+   * Writes the index to a temporary file, which then replaces
+   * {@link #indexFile}. Hence, the index is never partially written.
+   * 
+   * @throws IOException
+   */
+  private void writeIndex() throws IOException {
+    File tmp = MappedRecordFile.getTemporaryFile(indexFile);
+    DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp), 1 << 16));
+    try {
+      out.writeInt(INDEX_MAGIC);
+      out.writeInt(records.size());
+      for (int i = 0; i < records.size(); i++) {
+        out.writeLong(records.getOffset(i));
+        out.writeInt(records.getLength(i));
+      }
+      for (Map<String, Integer> map : Arrays.asList(entries, tables)) {
+        out.writeInt(map.size());
+        for (Map.Entry<String, Integer> e : map.entrySet()) {
+          out.writeUTF(e.getKey());
+          out.writeInt(e.getValue().intValue());
+        }
+      }
+      out.writeInt(rowIndices.size());
+      for (Map.Entry<String, Map<String, int[]>> table : rowIndices.entrySet()) {
+        out.writeUTF(table.getKey());
+        out.writeInt(table.getValue().size());
+        for (Map.Entry<String, int[]> e : table.getValue().entrySet()) {
+          out.writeUTF(e.getKey());
+          out.writeInt(e.getValue().length);
+          for (int nr : e.getValue()) {
+            out.writeInt(nr);
+          }
+        }
+      }
+    } finally {
+      out.close();
+    }
+    MappedRecordFile.replace(tmp, indexFile);
+  }
+  
+  /**
+   * Reads the index from {@link #indexFile}.
+   * 
+   * @throws IOException
+   */
+  private void readIndex() throws IOException {
+    DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile), 1 << 16));
+    try {
+      if (in.readInt() != INDEX_MAGIC) {
+        throw new IOException("Invalid index file " + indexFile);
+      }
+      int size = in.readInt();
+      records = new MappedRecordFile(dataFile, size);
+      for (int i = 0; i < size; i++) {
+        records.add(in.readLong(), in.readInt());
+      }
+      for (Map<String, Integer> map : Arrays.asList(entries, tables)) {
+        int n = in.readInt();
+        for (int i = 0; i < n; i++) {
+          map.put(in.readUTF(), Integer.valueOf(in.readInt()));
+        }
+      }
+      int n = in.readInt();
+      for (int i = 0; i < n; i++) {
+        String table = in.readUTF();
+        int keys = in.readInt();
+        Map<String, int[]> index = new HashMap<String, int[]>(2 * keys);
+        for (int j = 0; j < keys; j++) {
+          String key = in.readUTF();
+          int[] nrs = new int[in.readInt()];
+          for (int k = 0; k < nrs.length; k++) {
+            nrs[k] = in.readInt();
+          }
+          index.put(key, nrs);
+        }
+        rowIndices.put(table, index);
+      }
+    } finally {
+      in.close();
+    }
+    for (String key : entries.keySet()) {
+      entryPrefixes.add(prefixOf(key));
+    }
+  }
+  
+  /**
+   * Imports dumps into a mirror.
+   * 
+   * @param args the mirror directory, followed by any number of imports:
+   *        <ul>
+   *        <li>{@code entries <file> <database>}</li>
+   *        <li>{@code list <file> <database>}</li>
+   *        <li>{@code conv <file> <target> <source>}</li>
+   *        <li>{@code link <file> <target> <source>}</li>
+   *        </ul>
+   * @throws IOException
+   */
+  public static void main(String[] args) throws IOException {
+    if (args.length < 1) {
+      System.err.println("Usage: KeggMirror <directory> [entries|list <file> <database>] [conv|link <file> <target> <source>] ...");
+      return;
+    }
+    KeggMirror mirror = new KeggMirror(new File(args[0]));
+    int i = 1;
+    while (i + 2 < args.length) {
+      String type = args[i];
+      if (type.equals("entries")) {
+        mirror.importEntries(args[i + 1], args[i + 2]);
+        i += 3;
+      } else if (type.equals("list")) {
+        mirror.importList(args[i + 1], args[i + 2]);
+        i += 3;
+      } else if ((type.equals("conv") || type.equals("link")) && (i + 3 < args.length)) {
+        if (type.equals("conv")) {
+          mirror.importConv(args[i + 1], args[i + 2], args[i + 3]);
+        } else {
+          mirror.importLink(args[i + 1], args[i + 2], args[i + 3]);
+        }
+        i += 4;
+      } else {
+        System.err.println("Invalid argument " + type);
+        return;
+      }
+    }
+    System.out.println(mirror.getNumberOfEntries() + " entries in " + mirror.getDirectory());
+  }
+  
+}
@@ -0,0 +1,102 @@
+/*
+ * $Id$
+ * $URL$
+ * ---------------------------------------------------------------------
+ * This file is part of the SysBio API library.
+ *
+ * Copyright (C) 2009-2016 by the University of Tuebingen, Germany.
+ *
+ * This library is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation. A copy of the license
+ * agreement is provided in the file named "LICENSE.txt" included with
+ * this software distribution and also available online as
+ * <http://www.gnu.org/licenses/lgpl-3.0-standalone.html>.
+ * ---------------------------------------------------------------------
+ */
+package de.zbit.kegg.api;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.logging.Logger;
+
+/**
+ * A {@link KeggAdaptor}, that answers all queries from a local
+ * {@link KeggMirror} instead of the KEGG REST API. Since all other methods
+ * of {@link KeggAdaptor} use {@link #get(String, String...)}, an instance
+ * can be used wherever a {@link KeggAdaptor} is expected, e.g.:
+ * <pre>
+ * KeggInfoManagement manager = new KeggInfoManagement(10000,
+ *   new KeggMirrorAdaptor(new KeggMirror(new File("kegg-mirror"))));
+ * </pre>
+ * 
+ * <p>Queries, that cannot be answered from the mirror (e.g., databases that
+ * have not been imported, or the {@code info} operation), are passed to an
+ * optional fallback adaptor. Without fallback, they return an empty string,
+ * as KEGG does for unknown identifiers.</p>
+ * 
+ * @version $Rev$
+ * @since 1.4
+ */
+public class KeggMirrorAdaptor extends KeggAdaptor {
+  
+  /**
+   * A {@link Logger} for this class.
+   */
+  private static final transient Logger log = Logger.getLogger(KeggMirrorAdaptor.class.getName());
+  
+  /**
+   * The local mirror.
+   */
+  private final KeggMirror mirror;
+  
+  /**
+   * Answers queries, that are not contained in the {@link #mirror}. Might be
+   * {@code null}.
+   */
+  private final KeggAdaptor fallback;
+  
+  /**
+   * Answers all queries from the given mirror, without network access.
+   * 
+   * @param mirror
+   */
+  public KeggMirrorAdaptor(KeggMirror mirror) {
+    this(mirror, null);
+  }
+  
+  /**
+   * @param mirror
+   * @param fallback answers queries, that are not contained in the mirror,
+   *        e.g., {@code new KeggAdaptor()}. Might be {@code null}.
+   */
+  public KeggMirrorAdaptor(KeggMirror mirror, KeggAdaptor fallback) {
+    super();
+    this.mirror = mirror;
+    this.fallback = fallback;
+  }
+  
+  /**
+   * @return the local mirror.
+   */
+  public KeggMirror getMirror() {
+    return mirror;
+  }
+  
+  /* (non-Javadoc)
+   * @see de.zbit.kegg.api.KeggAdaptor#get(java.lang.String, java.lang.String[])
+   */
+  @Override
+  public String get(String operation, String... arguments) throws IOException {
+    String result = mirror.query(operation, arguments);
+    if (result == null) {
+      if (fallback != null) {
+        return fallback.get(operation, arguments);
+      }
+      log.fine("Not contained in the mirror: " + operation + ' ' + Arrays.toString(arguments));
+      return "";
+    }
+    return result;
+  }
+  
+}
@@ -0,0 +1,290 @@
+/*
+ * $Id$
+ * $URL$
+ * ---------------------------------------------------------------------
+ * This file is part of the SysBio API library.
+ *
+ * Copyright (C) 2009-2016 by the University of Tuebingen, Germany.
+ *
+ * This library is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation. A copy of the license
+ * agreement is provided in the file named "LICENSE.txt" included with
+ * this software distribution and also available online as
+ * <http://www.gnu.org/licenses/lgpl-3.0-standalone.html>.
+ * ---------------------------------------------------------------------
+ */
+package de.zbit.kegg.api.cache;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import de.zbit.kegg.api.KeggInfos;
+import de.zbit.util.progressbar.AbstractProgressBar;
+
+/**
+ * Fetches KEGG identifiers into a {@link KeggInfoManagement} with a fixed
+ * number of concurrent workers. Identifiers are queued and fetched in
+ * batches of {@link #BATCH_SIZE}, the maximum number of identifiers that
+ * KEGG allows per query. Since {@link KeggInfoManagement} is not
+ * thread-safe, all accesses to the manager are synchronized on it, i.e.,
+ * only one query runs at a time, whereas the listener is called
+ * concurrently.
+ *
+ * <p>A {@link Listener} is informed about every fetched identifier, as soon
+ * as its batch arrives, and may {@link #submit(Collection)} further
+ * identifiers (e.g., the reactants of a reaction). Those are fetched together
+ * with all other pending identifiers, such that dependent queries do not have
+ * to wait for a whole round of queries to finish. Every identifier is only
+ * fetched once.</p>
+ *
+ * <p>Typical usage:
+ * <pre>
+ * KeggPrefetcher fetcher = new KeggPrefetcher(manager, listener, null);
+ * fetcher.submit(ids);
+ * fetcher.awaitCompletion();
+ * </pre></p>
+ *
+ * @version $Rev$
+ * @since 1.4
+ */
+public class KeggPrefetcher {
+
+  /**
+   * A {@link Logger} for this class.
+   */
+  private static final transient Logger log = Logger.getLogger(KeggPrefetcher.class.getName());
+
+  /**
+   * Maximum number of identifiers per query. Since 2013-01-01, KEGG
+   * limited the amount of ids that can be retrieved simultaneously to 10.
+   */
+  public static final int BATCH_SIZE = 10;
+
+  /**
+   * Default number of concurrently processed batches.
+   */
+  public static final int DEFAULT_CONCURRENT_QUERIES = 3;
+
+  /**
+   * Is informed about every fetched identifier.
+   *
+   * @version $Rev$
+   * @since 1.4
+   */
+  public static interface Listener {
+    /**
+     * Called once for every submitted identifier, after it has been
+     * fetched (or found in the cache). May be called concurrently from
+     * multiple threads.
+     *
+     * @param id the submitted identifier. Use
+     *        {@link KeggPrefetcher#get(String)} to get the information
+     *        from the manager.
+     * @param fetcher the calling instance, to submit dependent
+     *        identifiers.
+     */
+    public void fetched(String id, KeggPrefetcher fetcher);
+  }
+
+  /**
+   * The cache to fill.
+   */
+  private final KeggInfoManagement manager;
+
+  /**
+   * Optional listener.
+   */
+  private final Listener listener;
+
+  /**
+   * Optional progress bar.
+   */
+  private final AbstractProgressBar progress;
+
+  /**
+   * Maximum number of concurrently processed batches.
+   */
+  private final int concurrentQueries;
+
+  /**
+   * Executes the queries.
+   */
+  private final ExecutorService executor;
+
+  /**
+   * All identifiers, that have ever been submitted.
+   */
+  private final Set<String> submitted = new HashSet<String>();
+
+  /**
+   * Identifiers, waiting to be fetched.
+   */
+  private final LinkedList<String> pending = new LinkedList<String>();
+
+  /**
+   * Number of running queries.
+   */
+  private int running = 0;
+
+  /**
+   * @param manager the cache to fill.
+   * @param listener optional listener (might be {@code null}).
+   * @param progress optional progress bar (might be {@code null}).
+   */
+  public KeggPrefetcher(KeggInfoManagement manager, Listener listener, AbstractProgressBar progress) {
+    this(manager, listener, progress, DEFAULT_CONCURRENT_QUERIES);
+  }
+
+  /**
+   * @param manager the cache to fill.
+   * @param listener optional listener (might be {@code null}).
+   * @param progress optional progress bar (might be {@code null}).
+   * @param concurrentQueries maximum number of batches, that are processed
+   *        concurrently.
+   */
+  public KeggPrefetcher(KeggInfoManagement manager, Listener listener, AbstractProgressBar progress,
+    int concurrentQueries) {
+    super();
+    this.manager = manager;
+    this.listener = listener;
+    this.progress = progress;
+    this.concurrentQueries = Math.max(1, concurrentQueries);
+    executor = Executors.newFixedThreadPool(this.concurrentQueries);
+    if (progress != null) {
+      progress.setNumberOfTotalCalls(0);
+      progress.setCallNr(0);
+    }
+  }
+
+  /**
+   * @return the cache, that is filled by this instance. Accesses must be
+   *         synchronized on the returned instance, while this instance is
+   *         running.
+   */
+  public KeggInfoManagement getManager() {
+    return manager;
+  }
+
+  /**
+   * @param id
+   * @return the information about the given identifier from the manager.
+   * @see KeggInfos#get(String, KeggInfoManagement)
+   */
+  public KeggInfos get(String id) {
+    synchronized (manager) {
+      return KeggInfos.get(id, manager);
+    }
+  }
+
+  /**
+   * Queues the given identifiers for fetching. Identifiers, that have been
+   * submitted before, as well as {@code null} and empty identifiers are
+   * ignored.
+   *
+   * @param ids
+   */
+  public void submit(Collection<String> ids) {
+    synchronized (this) {
+      int added = 0;
+      for (String id : ids) {
+        if ((id != null) && (id.length() > 0) && submitted.add(id)) {
+          pending.add(id);
+          added++;
+        }
+      }
+      if (progress != null) {
+        synchronized (progress) {
+          progress.setNumberOfTotalCalls(progress.getNumberOfTotalCalls() + added);
+        }
+      }
+      schedule();
+    }
+  }
+
+  /**
+   * Starts as many queries as possible. Must be called within a
+   * synchronized block.
+   */
+  private void schedule() {
+    while (!pending.isEmpty() && (running < concurrentQueries)) {
+      final List<String> batch = new ArrayList<String>(BATCH_SIZE);
+      while (!pending.isEmpty() && (batch.size() < BATCH_SIZE)) {
+        batch.add(pending.removeFirst());
+      }
+      running++;
+      executor.execute(new Runnable() {
+        /* (non-Javadoc)
+         * @see java.lang.Runnable#run()
+         */
+        @Override
+        public void run() {
+          try {
+            fetch(batch);
+          } catch (Throwable t) {
+            log.log(Level.WARNING, "Could not prefetch " + batch, t);
+          } finally {
+            synchronized (KeggPrefetcher.this) {
+              running--;
+              schedule();
+              KeggPrefetcher.this.notifyAll();
+            }
+          }
+        }
+      });
+    }
+  }
+
+  /**
+   * Fetches one batch and informs the {@link #listener}.
+   *
+   * @param batch
+   */
+  private void fetch(List<String> batch) {
+    synchronized (manager) {
+      manager.precacheIDs(batch.toArray(new String[batch.size()]));
+    }
+    if (listener != null) {
+      for (String id : batch) {
+        listener.fetched(id, this);
+      }
+    }
+    if (progress != null) {
+      synchronized (progress) {
+        // DisplayBar() counts one call itself
+        progress.incrementCallNumber(batch.size() - 1);
+        progress.DisplayBar();
+      }
+    }
+  }
+
+  /**
+   * Blocks until all submitted (and dependent) identifiers have been
+   * fetched and shuts this instance down afterwards.
+   *
+   * @throws InterruptedException
+   */
+  public void awaitCompletion() throws InterruptedException {
+    try {
+      synchronized (this) {
+        while (!pending.isEmpty() || (running > 0)) {
+          wait();
+        }
+      }
+    } finally {
+      executor.shutdown();
+    }
+    if (progress != null) {
+      progress.finished();
+    }
+  }
+
+}
@@ -0,0 +1,439 @@
+/*
+ * $Id$
+ * $URL$
+ * ---------------------------------------------------------------------
+ * This file is part of the SysBio API library.
+ *
+ * Copyright (C) 2009-2016 by the University of Tuebingen, Germany.
+ *
+ * This library is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation. A copy of the license
+ * agreement is provided in the file named "LICENSE.txt" included with
+ * this software distribution and also available online as
+ * <http://www.gnu.org/licenses/lgpl-3.0-standalone.html>.
+ * ---------------------------------------------------------------------
+ */
+package de.zbit.kegg.io;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import de.zbit.kegg.KeggTools;
+import de.zbit.kegg.api.cache.KeggInfoManagement;
+import de.zbit.kegg.parser.KeggStreamParser;
+import de.zbit.kegg.parser.pathway.Pathway;
+import de.zbit.util.ThreadManager;
+import de.zbit.util.progressbar.AbstractProgressBar;
+
+/**
+ * Translates many KGML files with a bounded number of concurrent
+ * {@link KEGGtranslator}s. A batch is processed in three phases:
+ * <ol>
+ * <li>All input files are parsed in parallel.</li>
+ * <li>The KEGG identifiers of all parsed pathways are united and fetched
+ * once into the shared {@link KeggInfoManagement} (see
+ * {@link KeggTools#preFetchInformation(java.util.Collection, KeggInfoManagement, boolean, AbstractProgressBar)}).</li>
+ * <li>All pathways are translated in parallel. Every worker thread uses
+ * its own translator from the {@link TranslatorFactory}, because translators
+ * keep state about the last translation.</li>
+ * </ol>
+ * Parsing and translation of a single file may be limited by a
+ * {@link #setTimeout(long) timeout}. Files, that could not be parsed or
+ * translated in time, are logged and reported as failed, without aborting
+ * the whole batch.
+ *
+ * @version $Rev$
+ * @since 1.4
+ */
+public class KEGGtranslatorBatch {
+  
+  /**
+   * A {@link Logger} for this class.
+   */
+  private static final transient Logger log = Logger.getLogger(KEGGtranslatorBatch.class.getName());
+  
+  /**
+   * Interval in milliseconds, in which running tasks are checked for
+   * exceeding the {@link #timeout}.
+   */
+  private static final long POLL_INTERVAL = 500;
+  
+  /**
+   * Creates the translators for the worker threads.
+   *
+   * @version $Rev$
+   * @since 1.4
+   */
+  public static interface TranslatorFactory {
+    /**
+     * Called once for every worker thread.
+     * @param manager the cache, shared by all workers. Translators should
+     * use this instance, in order to benefit from the prefetched information.
+     * @return a new translator.
+     */
+    public KEGGtranslator<?> createTranslator(KeggInfoManagement manager);
+  }
+  
+  /**
+   * A task, that remembers when it has been started.
+   *
+   * @version $Rev$
+   * @since 1.4
+   */
+  static abstract class TimedTask<T> implements Callable<T> {
+    /**
+     * Start time in milliseconds or 0, if the task has not yet been started.
+     */
+    private volatile long started = 0;
+    
+    /* (non-Javadoc)
+     * @see java.util.concurrent.Callable#call()
+     */
+    @Override
+    public T call() throws Exception {
+      started = System.currentTimeMillis();
+      return process();
+    }
+    
+    /**
+     * @param timeout in milliseconds
+     * @return true if this task is running for longer than {@code timeout}.
+     */
+    public boolean isTimedOut(long timeout) {
+      long s = started;
+      return (s > 0) && (System.currentTimeMillis() - s > timeout);
+    }
+    
+    /**
+     * The actual work.
+     * @return
+     * @throws Exception
+     */
+    protected abstract T process() throws Exception;
+  }
+  
+  /**
+   * Creates the translators.
+   */
+  private final TranslatorFactory factory;
+  
+  /**
+   * The cache, shared by all translators.
+   */
+  private final KeggInfoManagement manager;
+  
+  /**
+   * Maximum number of files to process at the same time.
+   */
+  private int numberOfThreads = Math.max(1, ThreadManager.NUMBER_OF_PROCESSORS - 1);
+  
+  /**
+   * Maximum time in milliseconds to parse or translate a single file.
+   * A value &lt;= 0 means no limit.
+   */
+  private long timeout = 0;
+  
+  /**
+   * Passed to {@link KeggTools#preFetchInformation(java.util.Collection, KeggInfoManagement, boolean, AbstractProgressBar)}.
+   */
+  private boolean autocompleteReactions = true;
+  
+  /**
+   * Optional progress bar.
+   */
+  private AbstractProgressBar progress = null;
+  
+  /**
+   * @param factory creates one translator for every worker thread.
+   * @param manager the cache, shared by all translators.
+   */
+  public KEGGtranslatorBatch(TranslatorFactory factory, KeggInfoManagement manager) {
+    super();
+    this.factory = factory;
+    this.manager = manager;
+  }
+  
+  /**
+   * @return the cache, shared by all translators.
+   */
+  public KeggInfoManagement getManager() {
+    return manager;
+  }
+  
+  /**
+   * @return the maximum number of files to process at the same time.
+   */
+  public int getNumberOfThreads() {
+    return numberOfThreads;
+  }
+  
+  /**
+   * @param numberOfThreads the maximum number of files to process at the
+   * same time.
+   */
+  public void setNumberOfThreads(int numberOfThreads) {
+    this.numberOfThreads = Math.max(1, numberOfThreads);
+  }
+  
+  /**
+   * @return the maximum time in milliseconds to parse or translate a
+   * single file.
+   */
+  public long getTimeout() {
+    return timeout;
+  }
+  
+  /**
+   * Sets the maximum time to parse or translate a single file. The worker
+   * of a file, that exceeds this limit, is interrupted and the file is
+   * reported as failed. Please note that a translator, that ignores the
+   * interrupt, keeps its worker busy until it finishes.
+   * @param timeout in milliseconds. A value &lt;= 0 means no limit.
+   */
+  public void setTimeout(long timeout) {
+    this.timeout = timeout;
+  }
+  
+  /**
+   * @return whether reactants and enzymes of all reactions are prefetched.
+   */
+  public boolean isAutocompleteReactions() {
+    return autocompleteReactions;
+  }
+  
+  /**
+   * @param autocompleteReactions set to true, if the translators
+   * autocomplete reactions.
+   */
+  public void setAutocompleteReactions(boolean autocompleteReactions) {
+    this.autocompleteReactions = autocompleteReactions;
+  }
+  
+  /**
+   * @param progress is informed about every parsed and translated file
+   * (might be {@code null}).
+   */
+  public void setProgressBar(AbstractProgressBar progress) {
+    this.progress = progress;
+  }
+  
+  /**
+   * Translates all KGML files ({@code *.xml} or {@code *.kgml}) in the
+   * given directory.
+   * @param inDir directory containing KGML files.
+   * @param outDir directory to write the translated files to.
+   * @param extension file extension of the translated files, without dot
+   * (e.g., "sbml.xml").
+   * @return see {@link #translate(Map)}
+   */
+  public Map<String, Boolean> translate(File inDir, File outDir, String extension) {
+    File[] files = inDir.listFiles(new FileFilter() {
+      /* (non-Javadoc)
+       * @see java.io.FileFilter#accept(java.io.File)
+       */
+      @Override
+      public boolean accept(File f) {
+        String name = f.getName().toLowerCase();
+        return f.isFile() && (name.endsWith(".xml") || name.endsWith(".kgml"));
+      }
+    });
+    if (files == null) {
+      log.warning("Cannot list files in " + inDir);
+      return Collections.emptyMap();
+    }
+    Arrays.sort(files);
+    Map<String, String> in2out = new LinkedHashMap<String, String>();
+    for (File f : files) {
+      String name = f.getName();
+      name = name.substring(0, name.lastIndexOf('.')) + '.' + extension;
+      in2out.put(f.getPath(), new File(outDir, name).getPath());
+    }
+    return translate(in2out);
+  }
+  
+  /**
+   * Translates all given KGML files.
+   * @param in2out maps every input file to the output file.
+   * @return a map from every input file to {@code true} if and only if it
+   * has successfully been translated, in the same order as {@code in2out}.
+   */
+  public Map<String, Boolean> translate(Map<String, String> in2out) {
+    final List<String> inFiles = new ArrayList<String>(in2out.keySet());
+    Map<String, Boolean> ret = new LinkedHashMap<String, Boolean>();
+    for (String inFile : inFiles) {
+      ret.put(inFile, Boolean.FALSE);
+    }
+    if (inFiles.isEmpty()) {
+      return ret;
+    }
+    if (progress != null) {
+      progress.reset();
+      progress.setNumberOfTotalCalls(2 * inFiles.size());
+    }
+    
+    final ThreadLocal<KEGGtranslator<?>> translator = new ThreadLocal<KEGGtranslator<?>>() {
+      /* (non-Javadoc)
+       * @see java.lang.ThreadLocal#initialValue()
+       */
+      @Override
+      protected KEGGtranslator<?> initialValue() {
+        return factory.createTranslator(manager);
+      }
+    };
+    ExecutorService pool = Executors.newFixedThreadPool(Math.min(numberOfThreads, inFiles.size()));
+    try {
+      // 1. Parse all files
+      List<TimedTask<Pathway>> parseTasks = new ArrayList<TimedTask<Pathway>>(inFiles.size());
+      for (final String inFile : inFiles) {
+        parseTasks.add(new TimedTask<Pathway>() {
+          /* (non-Javadoc)
+           * @see de.zbit.kegg.io.KEGGtranslatorBatch.TimedTask#process()
+           */
+          @Override
+          protected Pathway process() throws Exception {
+            List<Pathway> pathways = KeggStreamParser.parse(inFile);
+            if (pathways.isEmpty()) {
+              throw new IllegalArgumentException("No pathway in " + inFile);
+            } else if (pathways.size() > 1) {
+              log.warning("Translating only the first of " + pathways.size() + " pathways in " + inFile);
+            }
+            return pathways.get(0);
+          }
+        });
+      }
+      List<Pathway> pathways = invokeAll(pool, inFiles, parseTasks, "parse");
+      
+      // 2. Fetch the information about all pathways at once
+      List<Pathway> parsed = new ArrayList<Pathway>(pathways.size());
+      for (Pathway p : pathways) {
+        if (p != null) {
+          parsed.add(p);
+        }
+      }
+      if (!parsed.isEmpty()) {
+        KeggTools.preFetchInformation(parsed, manager, autocompleteReactions, null);
+      }
+      if (Thread.currentThread().isInterrupted()) {
+        return ret;
+      }
+      
+      // 3. Translate
+      List<String> toTranslate = new ArrayList<String>(parsed.size());
+      List<TimedTask<Boolean>> translateTasks = new ArrayList<TimedTask<Boolean>>(parsed.size());
+      for (int i = 0; i < inFiles.size(); i++) {
+        final Pathway p = pathways.get(i);
+        if (p == null) {
+          continue;
+        }
+        final String outFile = in2out.get(inFiles.get(i));
+        toTranslate.add(inFiles.get(i));
+        translateTasks.add(new TimedTask<Boolean>() {
+          /* (non-Javadoc)
+           * @see de.zbit.kegg.io.KEGGtranslatorBatch.TimedTask#process()
+           */
+          @Override
+          protected Boolean process() throws Exception {
+            return Boolean.valueOf(translator.get().translate(p, outFile));
+          }
+        });
+      }
+      List<Boolean> success = invokeAll(pool, toTranslate, translateTasks, "translate");
+      for (int i = 0; i < toTranslate.size(); i++) {
+        if (Boolean.TRUE.equals(success.get(i))) {
+          ret.put(toTranslate.get(i), Boolean.TRUE);
+        }
+      }
+    } finally {
+      pool.shutdownNow();
+      if (progress != null) {
+        progress.finished();
+      }
+    }
+    return ret;
+  }
+  
+  /**
+   * Executes all tasks in the given pool and cancels those, that exceed the
+   * {@link #timeout}. Running tasks are checked at least every
+   * {@link #POLL_INTERVAL} milliseconds, also while other tasks keep
+   * finishing. Failed tasks are logged.
+   * @param pool
+   * @param inFiles the file processed by each task (for logging).
+   * @param tasks
+   * @param action name of the action (for logging).
+   * @return the result of every task, in the same order as {@code tasks}.
+   * The result of a failed or cancelled task is {@code null}.
+   */
+  <T> List<T> invokeAll(ExecutorService pool, List<String> inFiles, List<TimedTask<T>> tasks, String action) {
+    CompletionService<T> service = new ExecutorCompletionService<T>(pool);
+    List<Future<T>> futures = new ArrayList<Future<T>>(tasks.size());
+    Map<Future<T>, Integer> index = new HashMap<Future<T>, Integer>();
+    for (TimedTask<T> task : tasks) {
+      Future<T> f = service.submit(task);
+      index.put(f, Integer.valueOf(futures.size()));
+      futures.add(f);
+    }
+    
+    List<T> ret = new ArrayList<T>(Collections.<T>nCopies(tasks.size(), null));
+    int done = 0;
+    long lastCheck = System.currentTimeMillis();
+    try {
+      while (done < tasks.size()) {
+        Future<T> f = service.poll(POLL_INTERVAL, TimeUnit.MILLISECONDS);
+        if ((timeout > 0) && (System.currentTimeMillis() - lastCheck >= POLL_INTERVAL)) {
+          lastCheck = System.currentTimeMillis();
+          for (int i = 0; i < tasks.size(); i++) {
+            if (!futures.get(i).isDone() && tasks.get(i).isTimedOut(timeout)) {
+              log.warning(String.format("Could not %s %s within %d ms.", action, inFiles.get(i), timeout));
+              futures.get(i).cancel(true);
+            }
+          }
+        }
+        if (f == null) {
+          continue;
+        }
+        done++;
+        int i = index.get(f).intValue();
+        try {
+          ret.set(i, f.get());
+        } catch (CancellationException e) {
+          // Timeout has already been logged
+        } catch (ExecutionException e) {
+          log.log(Level.WARNING, String.format("Could not %s %s.", action, inFiles.get(i)), e.getCause());
+        }
+        if (progress != null) {
+          synchronized (progress) {
+            progress.DisplayBar();
+          }
+        }
+      }
+    } catch (InterruptedException e) {
+      log.log(Level.WARNING, "Batch translation has been interrupted.", e);
+      for (Future<T> f : futures) {
+        f.cancel(true);
+      }
+      Thread.currentThread().interrupt();
+    }
+    return ret;
+  }
+  
+}
@@ -22,10 +22,13 @@ import java.io.Reader;
 import java.io.StringReader;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLStreamException;
 
 import org.w3c.dom.Document;
 import org.w3c.dom.NamedNodeMap;
@@ -55,6 +58,11 @@ import de.zbit.util.DatabaseIdentifiers.IdentifierDatabases;
  * @since 1.0
  */
 public class KeggParser extends DefaultHandler {
+  /**
+   * A {@link Logger} for this class.
+   */
+  private static final transient Logger log = Logger.getLogger(KeggParser.class.getName());
+  
   /**
    * if silent=false, a few debugging outputs will occur during parsing.
    */
@@ -68,7 +76,14 @@ public class KeggParser extends DefaultHandler {
   public static boolean offlineVersion=false;
   
   /**
-   * Parse kgml files.
+   * If true, {@link #parse(String)} uses the {@link KeggStreamParser},
+   * which builds the {@link Pathway} directly without an intermediate DOM.
+   * The DOM parser is used as fallback if streaming fails.
+   */
+  public static boolean useStreamingParser=true;
+  
+  /**
+   * Parse kgml files. See {@link #useStreamingParser}.
    * @param filename
    * @return all pathways in the given kgml file.
    * Usually, there is only one pathway per file, so the size of the
@@ -77,6 +92,17 @@ public class KeggParser extends DefaultHandler {
    * other exceptions, if errors occur while parsing the xml-document.
    */
   public static List<Pathway> parse(String filename) throws Exception {
+    if (useStreamingParser) {
+      try {
+        return KeggStreamParser.parse(filename);
+      } catch (XMLStreamException e) {
+        log.log(Level.FINE, "Could not stream " + filename + ", falling back to the DOM parser.", e);
+      } catch (RuntimeException e) {
+        // E.g., unknown enumeration constants in the document
+        log.log(Level.FINE, "Could not stream " + filename + ", falling back to the DOM parser.", e);
+      }
+    }
+    
     InputSource inS = new InputSource(new BufferedReader(OpenFile.openFile(filename)));
     List<Pathway> l = null;
     try {
@@ -350,7 +376,7 @@ public class KeggParser extends DefaultHandler {
    * group node.
    * @param p
    */
-  private static void createGroupNodeBackReferences(Pathway p) {
+  static void createGroupNodeBackReferences(Pathway p) {
     for (Entry e:p.getEntries()) {
       if (e.hasComponents()) {
         for (Integer c: e.getComponents()) {
@@ -468,38 +494,40 @@ public class KeggParser extends DefaultHandler {
    * @return 0 if any error occurs, or the int value, represented by {@code attribute}.
    */
   public static int getNodeValueInt(NamedNodeMap n, String attribute) {
-    int number = 0;
-    boolean error = false;
-    Exception ex = null;
     if (n.getNamedItem(attribute)!=null) {
-      try {
-        number = Integer.parseInt(getNodeValue(n, attribute));
-        error = false; // Parsing was succesfull.
-      } catch (Exception e) {
-        error = true;
-        ex=e;
-        System.err.println("Error while parsing int '" + attribute + "' => " + getNodeValue(n, attribute));
-      }
-      if (error) {
-        // In old kegg definitions, number is often e.g. "04010hsa" instead of "04010".
-        // Removing the "hsa" fixes the problem in a compatibility-mode-way.
-        // I think it's still better than throwing errors.
-        String s = getNodeValue(n, attribute);
-        for (int i=0; i<s.length(); i++) {
-          if (!Character.isDigit(s.charAt(i))) {
-            s = s.replace(Character.toString(s.charAt(i)), "");
-            i--;
-          }
-        }
-        if (s.length()>0) {
-          number = Integer.parseInt(s);
-          System.err.println("Going into compatibility mode and returning '" + number + "'.");
-        } else {
-          if (ex!=null) {
-            ex.printStackTrace();
-          }
+      return parseInt(attribute, getNodeValue(n, attribute));
+    }
+    return 0;
+  }
+  
+  /**
+   * Parses the value of an integer attribute. In compatibility mode,
+   * all non-digits are removed from invalid values.
+   * @param attribute name of the attribute (for error messages).
+   * @param s value of the attribute.
+   * @return 0 if any error occurs, or the int value, represented by {@code s}.
+   */
+  static int parseInt(String attribute, String s) {
+    int number = 0;
+    try {
+      number = Integer.parseInt(s);
+    } catch (Exception e) {
+      System.err.println("Error while parsing int '" + attribute + "' => " + s);
+      // In old kegg definitions, number is often e.g. "04010hsa" instead of "04010".
+      // Removing the "hsa" fixes the problem in a compatibility-mode-way.
+      // I think it's still better than throwing errors.
+      for (int i=0; i<s.length(); i++) {
+        if (!Character.isDigit(s.charAt(i))) {
+          s = s.replace(Character.toString(s.charAt(i)), "");
+          i--;
         }
       }
+      if (s.length()>0) {
+        number = Integer.parseInt(s);
+        System.err.println("Going into compatibility mode and returning '" + number + "'.");
+      } else {
+        e.printStackTrace();
+      }
     }
     return number;
   }
@@ -0,0 +1,557 @@
+/*
+ * $Id$
+ * $URL$
+ * ---------------------------------------------------------------------
+ * This file is part of the SysBio API library.
+ *
+ * Copyright (C) 2009-2016 by the University of Tuebingen, Germany.
+ *
+ * This library is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation. A copy of the license
+ * agreement is provided in the file named "LICENSE.txt" included with
+ * this software distribution and also available online as
+ * <http://www.gnu.org/licenses/lgpl-3.0-standalone.html>.
+ * ---------------------------------------------------------------------
+ */
+package de.zbit.kegg.parser;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Logger;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLResolver;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import de.zbit.io.OpenFile;
+import de.zbit.kegg.parser.pathway.Entry;
+import de.zbit.kegg.parser.pathway.EntryType;
+import de.zbit.kegg.parser.pathway.Graphics;
+import de.zbit.kegg.parser.pathway.GraphicsType;
+import de.zbit.kegg.parser.pathway.Pathway;
+import de.zbit.kegg.parser.pathway.Reaction;
+import de.zbit.kegg.parser.pathway.ReactionComponent;
+import de.zbit.kegg.parser.pathway.ReactionType;
+import de.zbit.kegg.parser.pathway.Relation;
+import de.zbit.kegg.parser.pathway.RelationType;
+import de.zbit.kegg.parser.pathway.SubType;
+import de.zbit.kegg.parser.pathway.ext.EntryExtended;
+import de.zbit.kegg.parser.pathway.ext.EntryTypeExtended;
+import de.zbit.util.DatabaseIdentifiers.IdentifierDatabases;
+import de.zbit.util.ThreadManager;
+
+/**
+ * Parses a Kegg Pathway (in KGML (*.xml) format) with a StAX
+ * {@link XMLStreamReader}. In contrast to the DOM-based methods of
+ * {@link KeggParser}, the {@link Pathway} model is built directly while
+ * reading the document, without creating an intermediate DOM tree.
+ * The document type definition is never downloaded.
+ *
+ * <p>All methods are thread-safe and share one {@link XMLInputFactory}.
+ * Use {@link #parse(List, int)} to parse many KGML files in parallel.</p>
+ *
+ * @version $Rev$
+ * @since 1.4
+ */
+public class KeggStreamParser {
+
+  /**
+   * A {@link Logger} for this class.
+   */
+  private static final transient Logger log = Logger.getLogger(KeggStreamParser.class.getName());
+
+  /**
+   * The factory that is shared by all threads. Calls to
+   * {@link XMLInputFactory#createXMLStreamReader(Reader)} are synchronized
+   * on this object.
+   */
+  private static final XMLInputFactory factory = createFactory();
+
+  /**
+   * Hidden, because this class contains only static methods.
+   */
+  private KeggStreamParser() {
+    super();
+  }
+
+  /**
+   * @return an {@link XMLInputFactory} that does not load external
+   * document type definitions.
+   */
+  private static XMLInputFactory createFactory() {
+    XMLInputFactory f = XMLInputFactory.newInstance();
+    f.setProperty(XMLInputFactory.IS_COALESCING, Boolean.TRUE);
+    f.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+    f.setXMLResolver(new XMLResolver() {
+      /* (non-Javadoc)
+       * @see javax.xml.stream.XMLResolver#resolveEntity(java.lang.String, java.lang.String, java.lang.String, java.lang.String)
+       */
+      @Override
+      public Object resolveEntity(String publicID, String systemID, String baseURI, String namespace) {
+        // Never go online to fetch the KGML DTD
+        return new ByteArrayInputStream(new byte[0]);
+      }
+    });
+    return f;
+  }
+
+  /**
+   * Parse a kgml file.
+   * @param filename
+   * @return all pathways in the given kgml file.
+   * Usually, there is only one pathway per file, so the size of the
+   * collection should always be 1.
+   * @throws IOException if the file could not be read.
+   * @throws XMLStreamException if the file is no valid XML document.
+   */
+  public static List<Pathway> parse(String filename) throws IOException, XMLStreamException {
+    BufferedReader in = OpenFile.openFile(filename);
+    if (in == null) {
+      throw new IOException("Could not open " + filename);
+    }
+    try {
+      return parse(in);
+    } finally {
+      in.close();
+    }
+  }
+
+  /**
+   * Parse kgml documents from a reader. The reader is not closed.
+   * @param in
+   * @return all pathways in the given kgml document.
+   * @throws IOException
+   * @throws XMLStreamException
+   */
+  public static List<Pathway> parse(Reader in) throws IOException, XMLStreamException {
+    if (!in.markSupported()) {
+      in = new BufferedReader(in);
+    }
+
+    // Remove invalid XML code in older KGML versions
+    in.mark(1024);
+    char[] head = new char[1024];
+    int read = in.read(head);
+    in.reset();
+    if (read > 0) {
+      String s = new String(head, 0, read);
+      int pos = s.indexOf("SYSTEM");
+      if (pos > 0) {
+        double version = 0;
+        try {
+          version = KeggParser.parseNextDouble(s.substring(pos), s.substring(pos).indexOf('v'), true);
+        } catch (NumberFormatException e) {
+          // Unknown version, don't care.
+        }
+        if ((version > 0) && (version <= 0.5)) {
+          StringBuilder sb = new StringBuilder();
+          char[] buffer = new char[8192];
+          int len;
+          while ((len = in.read(buffer)) > 0) {
+            sb.append(buffer, 0, len);
+          }
+          in = new StringReader(sb.toString().replace("&keywords=", ""));
+        }
+      }
+    }
+
+    XMLStreamReader reader;
+    synchronized (factory) {
+      reader = factory.createXMLStreamReader(in);
+    }
+    try {
+      return parse(reader);
+    } finally {
+      reader.close();
+    }
+  }
+
+  /**
+   * Parses many kgml files in parallel.
+   * @param filenames
+   * @param numberOfThreads maximum number of files to parse at the same time.
+   * @return a map from each filename to the pathways in this file, in the
+   * same order as {@code filenames}.
+   * @throws IOException if any file could not be read or parsed. Use
+   * {@link Throwable#getCause()} to get the original exception.
+   */
+  public static Map<String, List<Pathway>> parse(List<String> filenames, int numberOfThreads) throws IOException {
+    ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, Math.min(numberOfThreads, filenames.size())));
+    Map<String, Future<List<Pathway>>> futures = new LinkedHashMap<String, Future<List<Pathway>>>();
+    try {
+      for (final String filename : filenames) {
+        futures.put(filename, pool.submit(new Callable<List<Pathway>>() {
+          /* (non-Javadoc)
+           * @see java.util.concurrent.Callable#call()
+           */
+          @Override
+          public List<Pathway> call() throws Exception {
+            return parse(filename);
+          }
+        }));
+      }
+      Map<String, List<Pathway>> ret = new LinkedHashMap<String, List<Pathway>>();
+      for (Map.Entry<String, Future<List<Pathway>>> f : futures.entrySet()) {
+        try {
+          ret.put(f.getKey(), f.getValue().get());
+        } catch (ExecutionException e) {
+          IOException ex = new IOException("Could not parse " + f.getKey());
+          ex.initCause(e.getCause());
+          throw ex;
+        } catch (InterruptedException e) {
+          IOException ex = new IOException("Interrupted while parsing " + f.getKey());
+          ex.initCause(e);
+          throw ex;
+        }
+      }
+      return ret;
+    } finally {
+      pool.shutdownNow();
+    }
+  }
+
+  /**
+   * Parses many kgml files in parallel, using all but one processor.
+   * @param filenames
+   * @return
+   * @throws IOException
+   * @see #parse(List, int)
+   */
+  public static Map<String, List<Pathway>> parse(List<String> filenames) throws IOException {
+    return parse(filenames, Math.max(1, ThreadManager.NUMBER_OF_PROCESSORS - 1));
+  }
+
+  /**
+   * Builds the pathways from a StAX reader.
+   * @param reader
+   * @return
+   * @throws XMLStreamException
+   */
+  private static List<Pathway> parse(XMLStreamReader reader) throws XMLStreamException {
+    List<Pathway> pathways = new ArrayList<Pathway>();
+    double version = 0;
+    String comment = null;
+    while (reader.hasNext()) {
+      int event = reader.next();
+      if (event == XMLStreamConstants.DTD) {
+        // e.g. <!DOCTYPE pathway SYSTEM "http://www.genome.jp/kegg/xml/KGML_v0.6.1_.dtd">
+        String doctype = reader.getText();
+        if (doctype != null) {
+          int pos = doctype.lastIndexOf('v');
+          try {
+            version = KeggParser.parseNextDouble(doctype, pos, true);
+          } catch (NumberFormatException e) {
+            version = 0;
+          }
+        }
+      } else if ((event == XMLStreamConstants.COMMENT) && (comment == null) && pathways.isEmpty()) {
+        // e.g. "Creation date: Mar 16 2007 16:05:56 +0900 (JST)"
+        comment = reader.getText();
+        if (comment != null) {
+          comment = comment.trim();
+          if (comment.length() < 1) {
+            comment = null;
+          }
+        }
+      } else if ((event == XMLStreamConstants.START_ELEMENT) && reader.getLocalName().equalsIgnoreCase("pathway")) {
+        Map<String, String> att = getAttributes(reader);
+        Pathway p = new Pathway(get(att, "name"), get(att, "org"),
+          getInt(att, "number"), get(att, "title"), get(att, "image"),
+          get(att, "link"), get(att, "additionalText"));
+        parsePathway(reader, p);
+        p.setVersion(version);
+        p.setComment(comment);
+
+        // Creates back references of group nodes
+        KeggParser.createGroupNodeBackReferences(p);
+        pathways.add(p);
+      }
+    }
+
+    if (version > 0 && version < 0.7) {
+      log.warning("Your kgml document is rather old. It is written in kgml version " + version + ".");
+    } else if (version >= 0.8) {
+      log.warning("Your kgml document is rather new. It is written in kgml version " + version + ".");
+    }
+    return pathways;
+  }
+
+  /**
+   * Parses all children of the current pathway element.
+   * @param reader positioned at the start of a pathway element.
+   * @param p
+   * @throws XMLStreamException
+   */
+  private static void parsePathway(XMLStreamReader reader, Pathway p) throws XMLStreamException {
+    while (reader.hasNext()) {
+      int event = reader.next();
+      if (event == XMLStreamConstants.END_ELEMENT) {
+        return;
+      } else if (event != XMLStreamConstants.START_ELEMENT) {
+        continue;
+      }
+      String name = reader.getLocalName();
+      Map<String, String> att = getAttributes(reader);
+      if (name.equalsIgnoreCase("entry") || name.equalsIgnoreCase("entryExtended")) {
+        p.addEntry(parseEntry(reader, p, att));
+      } else if (name.equalsIgnoreCase("reaction")) {
+        Reaction r = new Reaction(p, getInt(att, "id"), get(att, "name"), ReactionType.valueOf(get(att, "type")));
+        parseReaction(reader, r);
+        p.addReaction(r);
+      } else if (name.equalsIgnoreCase("relation")) {
+        Relation r = new Relation(getInt(att, "entry1"), getInt(att, "entry2"), RelationType.valueOf(get(att, "type")));
+        parseRelation(reader, r);
+        p.addRelation(r);
+      } else {
+        skipElement(reader);
+      }
+    }
+  }
+
+  /**
+   * Creates an {@link Entry} or {@link EntryExtended} and parses its
+   * children.
+   * @param reader positioned at the start of an entry element.
+   * @param p
+   * @param att attributes of the entry element.
+   * @return
+   * @throws XMLStreamException
+   */
+  private static Entry parseEntry(XMLStreamReader reader, Pathway p, Map<String, String> att) throws XMLStreamException {
+    // Determine extended attributes
+    String extGeneType = getNullIfEmpty(att, "geneType");
+    String extCompartment = getNullIfEmpty(att, "compartment");
+    Map<IdentifierDatabases, String> extDBIdentifiers = null;
+    for (IdentifierDatabases dbName : IdentifierDatabases.values()) {
+      String id = getNullIfEmpty(att, dbName.toString());
+      if (id != null) {
+        if (extDBIdentifiers == null) {
+          extDBIdentifiers = new LinkedHashMap<IdentifierDatabases, String>();
+        }
+        extDBIdentifiers.put(dbName, id);
+      }
+    }
+
+    // Do we need an EntryExtended?
+    Entry e;
+    EntryType type = EntryType.valueOf(get(att, "type"));
+    if ((extGeneType != null) || (extCompartment != null) || (extDBIdentifiers != null)) {
+      EntryExtended ext = new EntryExtended(p, getInt(att, "id"), get(att, "name"), type, get(att, "link"), get(att, "reaction"));
+      ext.setCompartment(extCompartment);
+      if (extGeneType != null) {
+        try {
+          ext.setGeneType(EntryTypeExtended.valueOf(extGeneType));
+        } catch (Exception ex) {
+          log.warning("Invalid EntryExtendedType: " + extGeneType);
+        }
+      }
+      if (extDBIdentifiers != null) {
+        for (Map.Entry<IdentifierDatabases, String> id : extDBIdentifiers.entrySet()) {
+          ext.addDatabaseIdentifier(id.getKey(), id.getValue());
+        }
+      }
+      e = ext;
+    } else {
+      // Nope, just a simple plain KGML entry.
+      e = new Entry(p, getInt(att, "id"), get(att, "name"), type, get(att, "link"), get(att, "reaction"));
+    }
+
+    List<Integer> components = null;
+    while (reader.hasNext()) {
+      int event = reader.next();
+      if (event == XMLStreamConstants.END_ELEMENT) {
+        break;
+      } else if (event != XMLStreamConstants.START_ELEMENT) {
+        continue;
+      }
+      String name = reader.getLocalName();
+      Map<String, String> childAtt = getAttributes(reader);
+      if (name.equalsIgnoreCase("component")) { // 0 .. *
+        if (components == null) {
+          components = new ArrayList<Integer>();
+        }
+        components.add(getInt(childAtt, "id"));
+      } else if (name.equals("graphics")) { // 0 .. 1 unfortunately, kegg itself does not stick to 0..1
+        Graphics g = new Graphics(get(childAtt, "name"), getInt(childAtt, "x"), getInt(childAtt, "y"),
+          GraphicsType.valueOf(get(childAtt, "type")), getInt(childAtt, "width"), getInt(childAtt, "height"),
+          get(childAtt, "fgcolor"), get(childAtt, "bgcolor"), (type == EntryType.gene) || (type == EntryType.genes));
+        String coords = get(childAtt, "coords");
+        if (coords.contains(",")) {
+          // e.g. coords="1677,525,1677,616" = x1,y2,x2,y2,...
+          g.setCoordsString(coords);
+        }
+        e.addGraphics(g);
+      }
+      skipElement(reader);
+    }
+    if (components != null) {
+      e.addComponents(components);
+    }
+    return e;
+  }
+
+  /**
+   * Parses substrates and products of a reaction.
+   * @param reader positioned at the start of a reaction element.
+   * @param r
+   * @throws XMLStreamException
+   */
+  private static void parseReaction(XMLStreamReader reader, Reaction r) throws XMLStreamException {
+    while (reader.hasNext()) {
+      int event = reader.next();
+      if (event == XMLStreamConstants.END_ELEMENT) {
+        return;
+      } else if (event != XMLStreamConstants.START_ELEMENT) {
+        continue;
+      }
+      String name = reader.getLocalName();
+      if (name.equalsIgnoreCase("substrate") || name.equals("product")) {
+        Map<String, String> att = getAttributes(reader);
+        ReactionComponent rc = parseReactionComponent(reader, att);
+        // Attribute id is since 7.1
+        try {
+          rc.setId(Integer.parseInt(get(att, "id")));
+        } catch (NumberFormatException e) {
+          // id attribute might not be set (old KGML document)
+        }
+        if (name.equalsIgnoreCase("substrate")) {
+          r.addSubstrate(rc);
+        } else {
+          r.addProduct(rc);
+        }
+      } else {
+        skipElement(reader);
+      }
+    }
+  }
+
+  /**
+   * Parses a {@link ReactionComponent} and its (nested) alternatives.
+   * @param reader positioned at the start of a substrate, product or alt
+   * element.
+   * @param att attributes of this element.
+   * @return
+   * @throws XMLStreamException
+   */
+  private static ReactionComponent parseReactionComponent(XMLStreamReader reader, Map<String, String> att) throws XMLStreamException {
+    ReactionComponent rc = new ReactionComponent(getInt(att, "id"), get(att, "name"));
+    while (reader.hasNext()) {
+      int event = reader.next();
+      if (event == XMLStreamConstants.END_ELEMENT) {
+        break;
+      } else if (event != XMLStreamConstants.START_ELEMENT) {
+        continue;
+      }
+      if (reader.getLocalName().equalsIgnoreCase("alt")) {
+        rc.setAlt(parseReactionComponent(reader, getAttributes(reader)));
+      } else {
+        skipElement(reader);
+      }
+    }
+    return rc;
+  }
+
+  /**
+   * Parses the subtypes of a relation.
+   * @param reader positioned at the start of a relation element.
+   * @param r
+   * @throws XMLStreamException
+   */
+  private static void parseRelation(XMLStreamReader reader, Relation r) throws XMLStreamException {
+    while (reader.hasNext()) {
+      int event = reader.next();
+      if (event == XMLStreamConstants.END_ELEMENT) {
+        return;
+      } else if (event != XMLStreamConstants.START_ELEMENT) {
+        continue;
+      }
+      if (reader.getLocalName().equalsIgnoreCase("subtype")) {
+        Map<String, String> att = getAttributes(reader);
+        r.addSubtype(new SubType(get(att, "name"), get(att, "value")));
+      }
+      skipElement(reader);
+    }
+  }
+
+  /**
+   * Skips the current element, including all its children.
+   * @param reader positioned at the start of an element.
+   * @throws XMLStreamException
+   */
+  private static void skipElement(XMLStreamReader reader) throws XMLStreamException {
+    int depth = 1;
+    while ((depth > 0) && reader.hasNext()) {
+      int event = reader.next();
+      if (event == XMLStreamConstants.START_ELEMENT) {
+        depth++;
+      } else if (event == XMLStreamConstants.END_ELEMENT) {
+        depth--;
+      }
+    }
+  }
+
+  /**
+   * @param reader positioned at the start of an element.
+   * @return all attributes of the current element.
+   */
+  private static Map<String, String> getAttributes(XMLStreamReader reader) {
+    int count = reader.getAttributeCount();
+    Map<String, String> att = new HashMap<String, String>(Math.max(4, count * 2));
+    for (int i = 0; i < count; i++) {
+      att.put(reader.getAttributeLocalName(i), reader.getAttributeValue(i));
+    }
+    return att;
+  }
+
+  /**
+   * @param att
+   * @param attribute
+   * @return the attribute value or an empty {@link String}, if the attribute
+   * is not set.
+   * @see KeggParser#getNodeValue(org.w3c.dom.NamedNodeMap, String)
+   */
+  private static String get(Map<String, String> att, String attribute) {
+    String value = att.get(attribute);
+    return value == null ? "" : value;
+  }
+
+  /**
+   * @param att
+   * @param attribute
+   * @return the attribute value or {@code null}, if the attribute is not
+   * set or empty.
+   * @see KeggParser#getNodeValue(org.w3c.dom.NamedNodeMap, String, boolean)
+   */
+  private static String getNullIfEmpty(Map<String, String> att, String attribute) {
+    String value = att.get(attribute);
+    return (value == null) || (value.trim().length() < 1) ? null : value;
+  }
+
+  /**
+   * @param att
+   * @param attribute
+   * @return the integer value of the attribute or 0.
+   * @see KeggParser#getNodeValueInt(org.w3c.dom.NamedNodeMap, String)
+   */
+  private static int getInt(Map<String, String> att, String attribute) {
+    String value = att.get(attribute);
+    return value == null ? 0 : KeggParser.parseInt(attribute, value);
+  }
+
+}
@@ -95,6 +95,17 @@ public class Entry {
    */
   protected final static String removedNodeName = "REMOVEDNODE";
   
+  /**
+   * Cached result of {@link Pathway#getNameKeys(String)} for
+   * {@link #nameKeysSource}.
+   */
+  private transient String[] nameKeys = null;
+  
+  /**
+   * The name, for which {@link #nameKeys} have been computed.
+   */
+  private transient String nameKeysSource = null;
+  
   /**
    * 
    * <p>Note: This does not (and should not) add this entry to the
@@ -246,6 +257,20 @@ public class Entry {
     return name;
   }
   
+  /**
+   * @return the whole name and all space separated identifiers
+   * in it (see {@link Pathway#getNameKeys(String)}). The result
+   * is cached until the name changes and must not be modified.
+   */
+  String[] getNameKeys() {
+    String current = getName();
+    if (nameKeys==null || nameKeysSource!=current) {
+      nameKeys = Pathway.getNameKeys(current);
+      nameKeysSource = current;
+    }
+    return nameKeys;
+  }
+  
   /**
    * Returns the reaction directly annotated in this entry
    * in the KGML file.
@@ -18,8 +18,10 @@ package de.zbit.kegg.parser.pathway;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
@@ -120,6 +122,12 @@ public class Pathway {
 	 */
 	private Map<Integer, Entry> idMap = new HashMap<Integer, Entry>();
 	
+	/**
+	 * All {@link Entry} instances in {@link #entries}, for constant time
+	 * membership tests.
+	 */
+	private Set<Entry> entrySet = Collections.newSetFromMap(new IdentityHashMap<Entry, Boolean>());
+	
   /**
    * Contains names of entries and the entry itself.
    */
@@ -211,7 +219,7 @@ public class Pathway {
 	 * @param e
 	 */
 	public void addEntry(Entry e) {
-	  if (entries.contains(e)) return;
+	  if (containsEntry(e)) return;
 	  
 	  idMap.put(e.getId(), e);
 	  putEntryInNameMap(e);
@@ -220,6 +228,52 @@ public class Pathway {
 	  maxId=Math.max(maxId, e.getId());
 	  
 		entries.add(e);
+		entrySet.add(e);
+	}
+	
+	/**
+	 * Tests if this pathway contains the given entry, or an entry that
+	 * {@link Entry#equals(Object)} it. Runs in constant time, unless
+	 * the entry has no id or multiple entries share its id.
+	 * @param e
+	 * @return
+	 */
+	public boolean containsEntry(Entry e) {
+	  if (entrySet.contains(e)) return true;
+	  if (e.isSetID()) {
+	    // Equal entries must have the same id
+	    Entry other = idMap.get(e.getId());
+	    if (other==null) return false;
+	    if (other.equals(e)) return true;
+	  }
+	  return entries.contains(e);
+	}
+	
+	/**
+	 * Splits a name, that may contain multiple identifiers (e.g.
+	 * "hsa:12345 hsa:23456"), into the keys used for the internal
+	 * name maps.
+	 * @param name
+	 * @return the whole name, followed by all trimmed, non-empty,
+	 * space separated parts (only if the name contains a space).
+	 */
+	static String[] getNameKeys(String name) {
+	  if (name==null || name.indexOf(' ')<0) {
+	    return new String[]{name};
+	  }
+	  ArrayList<String> keys = new ArrayList<String>();
+	  keys.add(name);
+	  int start = 0;
+	  while (start<=name.length()) {
+	    int end = name.indexOf(' ', start);
+	    if (end<0) end = name.length();
+	    String key = name.substring(start, end).trim();
+	    if (key.length()>0) {
+	      keys.add(key);
+	    }
+	    start = end+1;
+	  }
+	  return keys.toArray(new String[keys.size()]);
 	}
 	
 	/**
@@ -227,17 +281,9 @@ public class Pathway {
 	 * @param e
 	 */
 	void putEntryInNameMap(Entry e) {
-	  // Put whole name
-	  Utils.addToMapOfSets(nameMap, e.getName(), e);
-	  
-	  // Put splitted name (as whole name may be "hsa:12345 hsa:23456")
-	  if (e.getName().contains(" ")) {
-	    for (String ko_id:e.getName().split(" ")) {
-	      ko_id = ko_id.trim();
-	      if (ko_id.length()>0) {
-	        Utils.addToMapOfSets(nameMap, ko_id, e);
-	      }
-	    }
+	  // Put whole and splitted name (as whole name may be "hsa:12345 hsa:23456")
+	  for (String key:e.getNameKeys()) {
+	    Utils.addToMapOfSets(nameMap, key, e);
 	  }
 	}
 	
@@ -262,19 +308,8 @@ public class Pathway {
 	 * @param e
 	 */
 	void removeEntryFromNameMap(Entry e) {
-	  Set<String> toRemove = new HashSet<String>();
-	  // Put whole name
-	  toRemove.add(e.getName());
-	  
-	  // Put splitted name (as whole name may be "hsa:12345 hsa:23456")
-	  for (String ko_id:e.getName().split(" ")) {
-	    ko_id = ko_id.trim();
-	    if (ko_id.length()>0) {
-	      toRemove.add(ko_id);
-	    }
-	  }
-	  
-	  Utils.removeFromMapOfSets(nameMap, e, toRemove.toArray(new String[0]));
+	  // Remove whole and splitted name (as whole name may be "hsa:12345 hsa:23456")
+	  Utils.removeFromMapOfSets(nameMap, e, e.getNameKeys());
 	}
 	
 	
@@ -317,10 +352,7 @@ public class Pathway {
    */
   private void removeReactionModifier(Entry entry) {
     if (entry.hasReaction()) {
-      for (String reaction : entry.getReactions()) {
-        Collection<Entry> l = reactionModifiers.get(reaction);
-        if (l!=null) l.remove(entry);
-      }
+      Utils.removeFromMapOfSets(reactionModifiers, entry, entry.getReactions());
     }
   }
 
@@ -634,6 +666,7 @@ public class Pathway {
    * @param e
    */
   public void removeEntry(Entry e) {
+    if (!containsEntry(e)) return;
     removeEntry(entries.indexOf(e));
   }
   /**
@@ -647,9 +680,7 @@ public class Pathway {
     Entry e = entries.get(index);
     
     // Update internal reference-maps and lists
-    idMap.remove(e.getId());
-    nameMap.remove(e.getName());
-    removeReactionModifier(e);
+    unregisterEntry(e);
     if (maxId==e.getId()) {
       resetMaxId(e);
     }
@@ -657,9 +688,74 @@ public class Pathway {
     // Really remove this entry from our list
     entries.remove(index);
     
-    e.setName(Entry.removedNodeName);
+    markRemoved(e);
     e=null;
   }
+  
+  /**
+   * Removes all given entries from this pathway. This is equivalent
+   * to calling {@link #removeEntry(Entry)} for each entry, but the
+   * {@link #entries} list is compacted only once. Hence, removing
+   * many entries takes linear instead of quadratic time.
+   * @param toRemove entries of this pathway. Other entries are ignored.
+   */
+  public void removeEntries(Collection<Entry> toRemove) {
+    Set<Entry> remove = Collections.newSetFromMap(new IdentityHashMap<Entry, Boolean>());
+    boolean maxIdRemoved = false;
+    for (Entry e: toRemove) {
+      if (entrySet.contains(e) && remove.add(e)) {
+        unregisterEntry(e);
+        maxIdRemoved |= (e.getId()==maxId);
+      }
+    }
+    if (remove.isEmpty()) return;
+    
+    // Compact the list in one pass
+    int size = 0;
+    for (int i=0; i<entries.size(); i++) {
+      Entry e = entries.get(i);
+      if (!remove.contains(e)) {
+        entries.set(size++, e);
+      }
+    }
+    entries.subList(size, entries.size()).clear();
+    
+    if (maxIdRemoved) {
+      maxId = 0;
+      for (Entry e:entries) {
+        maxId = Math.max(maxId, e.getId());
+      }
+    }
+    
+    for (Entry e: remove) {
+      markRemoved(e);
+    }
+  }
+  
+  /**
+   * Renames a removed entry to {@link Entry#removedNodeName}, without
+   * putting it into the name map again.
+   * @param e
+   */
+  private void markRemoved(Entry e) {
+    e.setName(Entry.removedNodeName);
+    removeEntryFromNameMap(e);
+  }
+  
+  /**
+   * Removes the entry from all internal reference-maps, but not
+   * from the {@link #entries} list.
+   * @param e
+   */
+  private void unregisterEntry(Entry e) {
+    // Another entry may share the id or the name
+    if (idMap.get(e.getId())==e) {
+      idMap.remove(e.getId());
+    }
+    removeEntryFromNameMap(e);
+    removeReactionModifier(e);
+    entrySet.remove(e);
+  }
 
   /**
    * Get a list with ALL reactions in which this {@link Entry}
@@ -675,18 +771,10 @@ public class Pathway {
   public Collection<Reaction> getReactionsForEntry(Entry entry) {
     
     Set<Reaction> ret = new HashSet<Reaction>();
-    Collection<Reaction> comp = reactionComponents.get(entry.getName());
-    if (comp!=null) ret.addAll(comp);
-    
-    // Put splitted name (as whole name may be "hsa:12345 hsa:23456")
-    if (entry.getName().contains(" ")) {
-      for (String name:entry.getName().split(" ")) {
-        name = name.trim();
-        if (name.length()>0) {
-          comp = reactionComponents.get(name);
-          if (comp!=null) ret.addAll(comp);
-        }
-      }
+    // Whole and splitted name (as whole name may be "hsa:12345 hsa:23456")
+    for (String name:entry.getNameKeys()) {
+      Collection<Reaction> comp = reactionComponents.get(name);
+      if (comp!=null) ret.addAll(comp);
     }
     
     return ret;
@@ -699,17 +787,9 @@ public class Pathway {
    * @param reaction
    */
   void registerReactionComponent(ReactionComponent rc, Reaction reaction) {
-    // Put whole name
-    Utils.addToMapOfSets(reactionComponents, rc.getName(), reaction);
-    
-    // Put splitted name (as whole name may be "hsa:12345 hsa:23456")
-    if (rc.getName().contains(" ")) {
-      for (String name:rc.getName().split(" ")) {
-        name = name.trim();
-        if (name.length()>0) {
-          Utils.addToMapOfSets(reactionComponents, name, reaction);
-        }
-      }
+    // Put whole and splitted name (as whole name may be "hsa:12345 hsa:23456")
+    for (String name:getNameKeys(rc.getName())) {
+      Utils.addToMapOfSets(reactionComponents, name, reaction);
     }
   }
   
@@ -720,21 +800,8 @@ public class Pathway {
    * @param reaction
    */
   void unregisterReactionComponent(ReactionComponent rc, Reaction reaction) {
-    Set<String> toRemove = new HashSet<String>();
-    // Put whole name
-    toRemove.add(rc.getName());
-    
-    // Put splitted name (as whole name may be "hsa:12345 hsa:23456")
-    if (rc.getName().contains(" ")) {
-      for (String name:rc.getName().split(" ")) {
-        name = name.trim();
-        if (name.length()>0) {
-          toRemove.add(name);
-        }
-      }
-    }
-    
-    Utils.removeFromMapOfSets(reactionComponents, reaction, toRemove.toArray(new String[0]));
+    // Remove whole and splitted name (as whole name may be "hsa:12345 hsa:23456")
+    Utils.removeFromMapOfSets(reactionComponents, reaction, getNameKeys(rc.getName()));
   }
 
   /**
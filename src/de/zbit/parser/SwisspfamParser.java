@@ -24,13 +24,20 @@ import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipOutputStream;
 
 import de.zbit.io.OpenFile;
+import de.zbit.util.ThreadManager;
 
 /**
  * @author Finja B&uml;chel
@@ -51,21 +58,57 @@ public class SwisspfamParser {
   
   public static final Logger log = Logger.getLogger(SwisspfamParser.class.getName());
   /**
+   * Minimal number of lines, that are parsed in one task. Tasks are only
+   * split at the beginning of a protein record.
+   */
+  private static final int LINES_PER_TASK = 5000;
+  
+  /**
+   * Minimal number of lines per task of this parser. Only tests use smaller
+   * tasks, to split small files into several tasks.
+   */
+  int linesPerTask = LINES_PER_TASK;
+  
+  /**
+   * Parses the file using all but one processor.
    * 
    * @param in, input file from SwissPfam
    * @param out, output file (tab delimited) <br>
    * containing : UniProt ID, [UniProtAC], Pfam ID, [domain start in amino acid sequence],
    * [domain end in amino acid sequence]
+   * @see #parseFile(String, String, String, boolean, boolean, boolean, int)
    */
   public void parseFile(String in, String out, boolean includeAC, boolean includeBPNo, boolean includePBDomains) {
-    log.info("Start parsing file: " + in + ", outFile: " + out + ", includeAC: " + includeAC + ", includeBPNo: " + includeBPNo);
-    String line = "", protein = "", ac = "", pfamID = "";
+    parseFile(in, out, null, includeAC, includeBPNo, includePBDomains, Math.max(1, ThreadManager.NUMBER_OF_PROCESSORS - 1));
+  }
+  
+  /**
+   * Reads the input as a stream of protein records, i.e., a header line
+   * starting with '>' and the following domain lines. The records are
+   * parsed in parallel and written in the order of the input file.
+   * 
+   * @param in, input file from SwissPfam
+   * @param out, output file (tab delimited) <br>
+   * containing : UniProt ID, [UniProtAC], Pfam ID, [domain start in amino acid sequence],
+   * [domain end in amino acid sequence]
+   * @param species uniprot species identifier, i.e. "_HUMAN", or "_MOUSE".
+   * Only proteins of this species are written. If {@code null}, all proteins
+   * are written.
+   * @param numberOfThreads maximum number of threads, that parse records.
+   * @see #getSpeciesProtDomFile(String, String, String)
+   */
+  public void parseFile(String in, String out, String species, boolean includeAC,
+    final boolean includeBPNo, final boolean includePBDomains, int numberOfThreads) {
+    log.info("Start parsing file: " + in + ", outFile: " + out + ", species: " + species + ", includeAC: " + includeAC + ", includeBPNo: " + includeBPNo);
+    final boolean writeAC = includeAC;
+    numberOfThreads = Math.max(1, numberOfThreads);
+    ExecutorService pool = Executors.newFixedThreadPool(numberOfThreads);
+    LinkedList<Future<String>> futures = new LinkedList<Future<String>>();
     try {
       BufferedReader br = OpenFile.openFile(in);
       BufferedWriter bw = new BufferedWriter(new FileWriter(out));
-      int start = -1, end = -1;
       
-      line = br.readLine();
+      String line = br.readLine();
       log.fine("line: '" + line + "'");
       
       //  >006L_IIV6        |============================================| Q91G88.1 352 a.a.
@@ -75,91 +118,180 @@ public class SwisspfamParser {
       //  >11011_ASFM2      |================================================| P0C9J5.1 286 a.a.
       //  v110             2 __________________         __________________    (87) PF01639.10 Viral family 110  1-111 165-274
       
+      // Lines before the first header belong to an unnamed protein
+      boolean skip = (species != null) && !"".endsWith(species);
+      List<String> chunk = new ArrayList<String>(linesPerTask);
       while ((line = br.readLine()) != null) {
-        log.fine("line: '" + line + "'");
-        if(line.isEmpty()) {log.fine("in erster if");continue;}
-        if (line.substring(0, 1).equals(">")) {
-          // get uniprot id
-          start = 0;
-          end = line.indexOf(' ', start + 1);
-          if (end > 0) {
-            protein = line.substring(1, end);
-          } else {
-            protein = "";
-          }
-          
-          // get accession id
-          start = line.indexOf('|', 0);
-          start = line.indexOf('|', start + 1);
-          end = line.indexOf('.', start + 1);
-          
-          if (start > 0 && end > 0) {
-            ac = line.substring(start + 2, end);
-          } else {
-            ac = "";
-          }
-          log.fine("uniprotId: '" + protein + "', ac: '" + ac + "'");
+        if (line.isEmpty()) {
+          continue;
         }
-        else{
-          start = line.indexOf(')', 1);
-          end = line.indexOf('.', start+2); // PF id
-          if (end < 0)
-          {
-            end = line.indexOf(' ', start+2); // PB id
-            //            if((start+2 - end) < 0)
-            //              end = line.indexOf(' ', end); // PB id
-          }
-          
-          if (start > 0 && end > 0) {
-            pfamID = line.substring(start + 2, end);
-          } else {
-            pfamID = "";
-          }
-          
-          while(line.indexOf("  ", end+1) > 0) {
-            end = line.indexOf("  ", end+1);
-          }
-          
-          if(pfamID.startsWith("PF") || (pfamID.startsWith("PB") && includePBDomains)) {
-            if(includeBPNo) {
-              List<int[]> number = parseNumbers(end, line);
-              for (int[] is : number) {
-                bw.append(protein + "\t");  //protein id
-                if(includeAC)
-                {
-                  bw.append(ac + "\t");     //protein ac
-                }
-                
-                bw.append(pfamID + "\t");   //pfam id
-                bw.append(is[0] + "\t" + is[1]); // begin \t end
-                bw.append("\n");
-              }
-            }
-            else{
-              bw.append(protein + "\t");  //protein id
-              if(includeAC)
-              {
-                bw.append(ac + "\t");     //protein ac
-              }
-              
-              bw.append(pfamID + "\t");   //pfam id
-              bw.append("\n");
+        if (line.charAt(0) == '>') {
+          // filter by species before the record is parsed
+          skip = (species != null) && !getProteinId(line).endsWith(species);
+          if (chunk.size() >= linesPerTask) {
+            futures.add(submit(pool, chunk, writeAC, includeBPNo, includePBDomains));
+            chunk = new ArrayList<String>(linesPerTask);
+            // limit the number of parsed records, that wait for being written
+            while (futures.size() > 2 * numberOfThreads) {
+              bw.append(get(futures.removeFirst()));
             }
           }
-          log.fine("else finished");
+        }
+        if (!skip) {
+          chunk.add(line);
         }
       }
+      if (!chunk.isEmpty()) {
+        futures.add(submit(pool, chunk, writeAC, includeBPNo, includePBDomains));
+      }
+      while (!futures.isEmpty()) {
+        bw.append(get(futures.removeFirst()));
+      }
       
       br.close();
       bw.close();
     } catch (IOException e) {
       e.printStackTrace();
+    } finally {
+      pool.shutdownNow();
     }
     
     log.info("Parsing ready");
   }
   
   /**
+   * @param pool
+   * @param lines
+   * @param includeAC
+   * @param includeBPNo
+   * @param includePBDomains
+   * @return the parsed lines, in the output format.
+   */
+  private Future<String> submit(ExecutorService pool, final List<String> lines, final boolean includeAC,
+    final boolean includeBPNo, final boolean includePBDomains) {
+    return pool.submit(new Callable<String>() {
+      /* (non-Javadoc)
+       * @see java.util.concurrent.Callable#call()
+       */
+      @Override
+      public String call() throws Exception {
+        return parseRecords(lines, includeAC, includeBPNo, includePBDomains);
+      }
+    });
+  }
+  
+  /**
+   * @param future
+   * @return the result of the given future.
+   * @throws IOException if the records could not be parsed.
+   */
+  private static String get(Future<String> future) throws IOException {
+    try {
+      return future.get();
+    } catch (ExecutionException e) {
+      IOException ex = new IOException("Could not parse protein records");
+      ex.initCause(e.getCause());
+      throw ex;
+    } catch (InterruptedException e) {
+      IOException ex = new IOException("Interrupted while parsing protein records");
+      ex.initCause(e);
+      throw ex;
+    }
+  }
+  
+  /**
+   * @param header a line starting with '>'.
+   * @return the uniprot id of the protein.
+   */
+  private static String getProteinId(String header) {
+    int end = header.indexOf(' ', 1);
+    return (end > 0) ? header.substring(1, end) : "";
+  }
+  
+  /**
+   * Parses complete protein records. Lines in front of the first header
+   * line are assigned to a protein without id.
+   * 
+   * @param lines
+   * @param includeAC
+   * @param includeBPNo
+   * @param includePBDomains
+   * @return the output lines for the given records.
+   */
+  private String parseRecords(List<String> lines, boolean includeAC, boolean includeBPNo, boolean includePBDomains) {
+    StringBuilder sb = new StringBuilder(lines.size() * 32);
+    String protein = "", ac = "", pfamID = "";
+    int start = -1, end = -1;
+    for (String line : lines) {
+      if (line.charAt(0) == '>') {
+        // get uniprot id
+        protein = getProteinId(line);
+        
+        // get accession id
+        start = line.indexOf('|', 0);
+        start = line.indexOf('|', start + 1);
+        end = line.indexOf('.', start + 1);
+        
+        if (start > 0 && end > 0) {
+          ac = line.substring(start + 2, end);
+        } else {
+          ac = "";
+        }
+      }
+      else{
+        start = line.indexOf(')', 1);
+        end = line.indexOf('.', start+2); // PF id
+        if (end < 0)
+        {
+          end = line.indexOf(' ', start+2); // PB id
+        }
+        
+        if (start > 0 && end > 0) {
+          pfamID = line.substring(start + 2, end);
+        } else {
+          pfamID = "";
+        }
+        
+        while(line.indexOf("  ", end+1) > 0) {
+          end = line.indexOf("  ", end+1);
+        }
+        
+        if(pfamID.startsWith("PF") || (pfamID.startsWith("PB") && includePBDomains)) {
+          if(includeBPNo) {
+            List<int[]> number = parseNumbers(end, line);
+            for (int[] is : number) {
+              sb.append(protein).append('\t');  //protein id
+              if(includeAC)
+              {
+                sb.append(ac).append('\t');     //protein ac
+              }
+              
+              sb.append(pfamID).append('\t');   //pfam id
+              sb.append(is[0]).append('\t').append(is[1]); // begin \t end
+              sb.append('\n');
+            }
+          }
+          else{
+            sb.append(protein).append('\t');  //protein id
+            if(includeAC)
+            {
+              sb.append(ac).append('\t');     //protein ac
+            }
+            
+            sb.append(pfamID).append('\t');   //pfam id
+            sb.append('\n');
+          }
+        }
+      }
+    }
+    return sb.toString();
+  }
+  
+  /**
+   * Filters an output file of
+   * {@link #parseFile(String, String, boolean, boolean, boolean)}. Use
+   * {@link #parseFile(String, String, String, boolean, boolean, boolean, int)}
+   * to filter while parsing the swisspfam file.
    * 
    * @param in input file
    * @param out output file
@@ -171,10 +303,15 @@ public class SwisspfamParser {
       BufferedReader br = new BufferedReader(new FileReader(in));
       BufferedWriter bw = new BufferedWriter(new FileWriter(out));
       String line = "";
+      int length = species.length();
       while((line=br.readLine())!= null) {
-        String[]split = line.split("\t");
-        if(split[0].endsWith(species)) {
-          bw.append(line + "\n");
+        // the protein id ends at the first tab
+        int end = line.indexOf('\t');
+        if (end < 0) {
+          end = line.length();
+        }
+        if((end >= length) && line.regionMatches(end - length, species, 0, length)) {
+          bw.append(line).append('\n');
         }
       }
       br.close();
@@ -18,11 +18,22 @@ package de.zbit.parser;
 
 import java.io.BufferedWriter;
 import java.io.FileWriter;
+import java.io.IOException;
 import java.text.DecimalFormat;
-
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import de.zbit.collection.LongHashSet;
 import de.zbit.io.csv.CSVReader;
-import de.zbit.util.SortedArrayList;
-import de.zbit.util.objectwrapper.ValuePair;
+import de.zbit.util.ThreadManager;
 
 /**
  * 
@@ -54,6 +65,10 @@ import de.zbit.util.objectwrapper.ValuePair;
  *             <Column 22>  Number of Networks domain spaces the interacting domains was present in
  *             <Column 23>  Interaction present in Ipfam or 3DID (1 = Yes, 0 = No)
  *             <Column 24>  Reliability score for the interaction
+ * 
+ * Domains are encoded as consecutive integer ids, domain spaces as
+ * {@link BitSet}s of those ids and interactions as {@link LongHashSet}s of
+ * pairs of ids (see {@link LongHashSet#pair(int, int)}).
  *             
  * @author Finja B&uml;chel
  * @version $Rev$
@@ -61,27 +76,68 @@ import de.zbit.util.objectwrapper.ValuePair;
  */
 public class UniDomIntParser {
 
-  private static SortedArrayList<String> D_ref;
-  private static SortedArrayList<ValuePair<String, String>> I_ref;
-  private static SortedArrayList<ValuePair<String, String>> I_me;
-  private static SortedArrayList<ValuePair<String, String>> I_himap;
-  private static SortedArrayList<ValuePair<String, String>> I_rcdp;
-  private static SortedArrayList<ValuePair<String, String>> I_dima;
-  private static SortedArrayList<ValuePair<String, String>> I_pValue;
-  private static SortedArrayList<ValuePair<String, String>> I_dpea;
-  private static SortedArrayList<ValuePair<String, String>> I_rdff;
-  private static SortedArrayList<ValuePair<String, String>> I_inter;
-  private static SortedArrayList<ValuePair<String, String>> I_lp;
-
-  double w_me;
-  double w_himap;
-  double w_rcdp;
-  double w_dima;
-  double w_pValue;
-  double w_dpea;
-  double w_rdff;
-  double w_inter;
-  double w_lp;
+  /**
+   * Names of the networks in the UniDomInt file, in the order of their
+   * columns.
+   */
+  private static final String[] NETWORK_NAMES = {"ME", "HIMAP", "RCDP", "DIMA", "P-value", "DPEA", "RDFF", "Interdom", "LP"};
+  
+  /**
+   * Column of the first network's interactions.
+   */
+  private static final int FIRST_INTERACTION_COLUMN = 2;
+  
+  /**
+   * Column of the first network's domain space.
+   */
+  private static final int FIRST_DOMAIN_SPACE_COLUMN = 12;
+  
+  /**
+   * Number of rows, that are scored in one task.
+   */
+  private static final int ROWS_PER_TASK = 10000;
+  
+  /**
+   * Domain space and interactions of one predicted network.
+   * 
+   * @version $Rev$
+   * @since 1.4
+   */
+  private static class Network {
+    /**
+     * 
+     */
+    private final String name;
+    /**
+     * Ids of all domains in the domain space of this network.
+     */
+    private final BitSet D = new BitSet();
+    /**
+     * All interactions of this network.
+     */
+    private final LongHashSet I = new LongHashSet();
+    /**
+     * The weighted overlap with the reference network.
+     */
+    private double w;
+    
+    /**
+     * @param name
+     */
+    public Network(String name) {
+      this.name = name;
+    }
+  }
+  
+  /**
+   * Maps each domain to its id.
+   */
+  private final Map<String, Integer> domainIds = new HashMap<String, Integer>();
+  
+  private BitSet D_ref;
+  private LongHashSet I_ref;
+  
+  private Network[] networks;
 
   double sum_ofAllw; 
 
@@ -97,169 +153,155 @@ public class UniDomIntParser {
    */
   private void init(String referenceFile, String interactionFile) {
     readAndSetReferenceNetwork(referenceFile);
+    networks = readNetworkFile(interactionFile);
 
-    SortedArrayList[] me = readNetworkFile    (interactionFile, "me",     2, 12);
-    I_me = me[1];
-    SortedArrayList[] himap = readNetworkFile (interactionFile, "himap",  3, 13);
-    I_himap = himap[1];
-    SortedArrayList[] rcdp = readNetworkFile  (interactionFile, "rcdp",   4, 14);
-    I_rcdp = rcdp[1];
-    SortedArrayList[] dima = readNetworkFile  (interactionFile, "dima",   5, 15);
-    I_dima = dima[1];
-    SortedArrayList[] pValue = readNetworkFile(interactionFile, "pValue", 6, 16);
-    I_pValue = pValue[1];
-    SortedArrayList[] dpea = readNetworkFile  (interactionFile, "dpea",   7, 17);
-    I_dpea = dpea[1];
-    SortedArrayList[] rdff = readNetworkFile  (interactionFile, "rdff",   8, 18);
-    I_rdff = rdff[1];
-    SortedArrayList[] inter = readNetworkFile (interactionFile, "inter",  9, 19);
-    I_inter = inter[1];
-    SortedArrayList[] lp = readNetworkFile    (interactionFile, "lp",    10, 20);
-    I_lp = lp[1];
-
-    w_me     = calculateW(me, "ME");
-    w_himap  = calculateW(himap, "HIMAP");
-    w_rcdp   = calculateW(rcdp, "RCDP");
-    w_dima   = calculateW(dima, "DIMA");
-    w_pValue = calculateW(pValue, "P-value");
-    w_dpea   = calculateW(dpea, "DPEA");
-    w_rdff   = calculateW(rdff, "RDFF");
-    w_inter  = calculateW(inter, "Interdom");
-    w_lp     = calculateW(lp, "LP");
-
-    sum_ofAllw = w_me + w_himap  + w_rcdp + w_dima + w_pValue + w_dpea + w_rdff + w_inter + w_lp;
+    sum_ofAllw = 0d;
+    for (Network network : networks) {
+      network.w = calculateW(network);
+      sum_ofAllw += network.w;
+    }
   }
 
   /**
-   * The class reads the file and saves the domains and interactions in an SortedArray
+   * @param domain
+   * @return the id of the given domain. A new id is assigned to unknown
+   *         domains.
+   */
+  private int getDomainId(String domain) {
+    Integer id = domainIds.get(domain);
+    if (id == null) {
+      id = Integer.valueOf(domainIds.size());
+      domainIds.put(domain, id);
+    }
+    return id.intValue();
+  }
+
+  /**
+   * The class reads the file and saves the domains and interactions
    * @param fileName of the reference file containing domain interactions of iPfam and 3did
    */
 
   private void readAndSetReferenceNetwork(String fileName) {
     CSVReader reader = new CSVReader(fileName);
     String[][] data = reader.getData();
-    D_ref = new SortedArrayList<String>();
-    I_ref = new SortedArrayList<ValuePair<String, String>>();
+    D_ref = new BitSet();
+    I_ref = new LongHashSet(data.length);
 
-    //    BufferedWriter bw = new BufferedWriter(new FileWriter(filename));
     for(int i=1;i<data.length; i++) {
-      if(!D_ref.contains(data[i][0]))
-        D_ref.add(data[i][0]);
-      if(!D_ref.contains(data[i][1]))
-        D_ref.add(data[i][1]);
-      ValuePair<String, String> sb = new ValuePair<String, String>(data[i][0], data[i][1]);
-      if(!I_ref.contains(sb)) {
-        I_ref.add(sb);
-      }
+      int a = getDomainId(data[i][0]);
+      int b = getDomainId(data[i][1]);
+      D_ref.set(a);
+      D_ref.set(b);
+      I_ref.add(LongHashSet.pair(a, b));
     }
 
-    //    System.out.println("D_ref:\t" + D_ref.size() + "\tI_ref:\t" + I_ref.size());
+    //    System.out.println("D_ref:\t" + D_ref.cardinality() + "\tI_ref:\t" + I_ref.size());
   }
 
   /**
+   * Reads the domain spaces and interactions of all networks in one pass.
+   * The interaction of the i-th network is in column
+   * {@link #FIRST_INTERACTION_COLUMN} + i, whether both domains occur in the
+   * network in column {@link #FIRST_DOMAIN_SPACE_COLUMN} + i.
    * 
    * @param fileName of the unidomint file
-   * @param networkname
-   * @param pos1, position where to find the interaction
-   * @param pos2, position where to find if both domains occur in the network
-   * @return new SortedArrayList[]{D_ref, I_ref};
+   * @return all networks in the order of {@link #NETWORK_NAMES}.
    */
-  private SortedArrayList[] readNetworkFile(String fileName, String networkname, int pos1, int pos2) {
+  private Network[] readNetworkFile(String fileName) {
     CSVReader reader = new CSVReader(fileName);
     String[][] data = reader.getData();
-    SortedArrayList<String> D = new SortedArrayList<String>();
-    SortedArrayList<ValuePair<String, String>> I = new SortedArrayList<ValuePair<String, String>>();
+    Network[] networks = new Network[NETWORK_NAMES.length];
+    for (int k = 0; k < networks.length; k++) {
+      networks[k] = new Network(NETWORK_NAMES[k]);
+    }
 
-    SortedArrayList<ValuePair<String, String>> temp = new SortedArrayList<ValuePair<String, String>>();
+    LongHashSet temp = new LongHashSet(data.length);
 
     for(int i=0;i<data.length; i++) {
-      ValuePair<String, String> sb = new ValuePair<String, String>(data[i][0], data[i][1]);
-      if(!temp.contains(sb))
-        temp.add(sb);
-      else
+      int a = getDomainId(data[i][0]);
+      int b = getDomainId(data[i][1]);
+      long sb = LongHashSet.pair(a, b);
+      if(!temp.add(sb))
         System.out.println("Double occurrence of domain pair " + data[i][0] + " " + data[i][1]);
 
+      for (int k = 0; k < networks.length; k++) {
+        if(data[i][FIRST_DOMAIN_SPACE_COLUMN + k].equals("1")) {
+          networks[k].D.set(a);
+          networks[k].D.set(b);
 
-      if(data[i][pos2].equals("1")) {
-        if(!D.contains(data[i][0]))
-          D.add(data[i][0]);
-
-        if(!D.contains(data[i][1]))
-          D.add(data[i][1]);
-
-
-        if(data[i][pos1].equals("1")) {
-          if(!I.contains(sb)) {
-            I.add(sb);
-          }
-          else{
-            System.out.println("Double occurrence of interaction " + data[i][0] + " " + data[i][1]);
+          if(data[i][FIRST_INTERACTION_COLUMN + k].equals("1")) {
+            if(!networks[k].I.add(sb)) {
+              System.out.println("Double occurrence of interaction " + data[i][0] + " " + data[i][1]);
+            }
           }
         }
       }
     }
 
-    return new SortedArrayList[]{D, I};
+    return networks;
   }
 
-  /** @param ref SortedArrayList[]{D, I}
-   * @param me SortedArrayList[]{D, I}
-   * @return
+  /**
+   * @param pair
+   * @param domains
+   * @return {@code true} if both domains of the given pair are in the given
+   *         set.
    */
-  private double calculateW(SortedArrayList[] me, String networkName) {
-    SortedArrayList<String> D_me  = me[0];
-    SortedArrayList<ValuePair<String, String>> I_me  = me[1];
+  private static boolean containsBoth(BitSet domains, long pair) {
+    return domains.get((int) (pair >>> 32)) && domains.get((int) pair);
+  }
 
-    SortedArrayList<String>   D_ref_D_me = new SortedArrayList<String>();
-    SortedArrayList<ValuePair<String, String>> I_ref_me = new SortedArrayList<ValuePair<String, String>>();
-    SortedArrayList<ValuePair<String, String>> I_me_ref = new SortedArrayList<ValuePair<String, String>>();
-    SortedArrayList<ValuePair<String, String>> intersection_ref_me = new SortedArrayList<ValuePair<String, String>>();
+  /**
+   * The potentially shared interactions are those interactions of one
+   * network, whose domains are both in the intersection of the domain spaces.
+   * Hence, they are counted by filtering the interactions of both networks,
+   * instead of enumerating all pairs of domains in the intersection.
+   * 
+   * @param me
+   * @return the weighted overlap of the given network with the reference
+   *         network.
+   */
+  private double calculateW(Network me) {
+    String networkName = me.name;
+    BitSet D_me = me.D;
+    LongHashSet I_me = me.I;
 
     // create intersection of domain spaces
-    for (String domain : D_me) {
-      if(D_ref.contains(domain) && !D_ref_D_me.contains(domain))
-        D_ref_D_me.add(domain);
-    }
-
-    // create potentially shared interactions
-    for (int i = 0; i < D_ref_D_me.size(); i++) {
-      for (int j = 0; j < D_ref_D_me.size(); j++) {
-        ValuePair<String, String> sb = new ValuePair<String, String>(D_ref_D_me.get(i), D_ref_D_me.get(j));
-
-        if(I_ref.contains(sb)) {
-          if (!I_ref_me.contains(sb))
-            I_ref_me.add(sb);
-        }
-        if(I_me.contains(sb)) {
-          if (!I_me_ref.contains(sb))
-            I_me_ref.add(sb);
-        }
+    BitSet D_ref_D_me = (BitSet) D_ref.clone();
+    D_ref_D_me.and(D_me);
+
+    // count potentially shared interactions and the intersection of interaction spaces
+    int I_ref_me = 0, I_me_ref = 0, intersection_ref_me = 0;
+    for (long sb : I_ref.toArray()) {
+      if (containsBoth(D_ref_D_me, sb)) {
+        I_ref_me++;
+      }
+      if (I_me.contains(sb)) {
+        intersection_ref_me++;
       }
     }
-
-    // create intersection of interaction spaces
-    for (ValuePair<String, String> sb : I_ref) {
-      if(I_me.contains(sb) && !intersection_ref_me.contains(sb))
-        intersection_ref_me.add(sb);
+    for (long sb : I_me.toArray()) {
+      if (containsBoth(D_ref_D_me, sb)) {
+        I_me_ref++;
+      }
     }
 
     // calculation of the weighted overlap wo
-    double numerator   = (double)(2*(intersection_ref_me.size())); 
-    double denominator = (double)(I_ref_me.size() + I_me_ref.size());
+    double numerator   = (double)(2*intersection_ref_me); 
+    double denominator = (double)(I_ref_me + I_me_ref);
     double wo = numerator/denominator;
 
-    double precision = (double)((double)intersection_ref_me.size()/(double)I_me.size());
+    double precision = (double)((double)intersection_ref_me/(double)I_me.size());
 
     DecimalFormat df = new DecimalFormat("0.00");
-    //    System.out.println(df.format(1.1257444d));
 
     System.out.println( networkName + "\n" +
               "I_"+networkName+":"                + "\t" + I_me.size() + "\n" +  
-              "D_"+networkName+":"                + "\t" + D_me.size() + "\n" + 
-              "D_ref_"+networkName+":"            + "\t" + D_ref_D_me.size() + "\n" +
-              "I_intersection:"                   + "\t" + intersection_ref_me.size() + "\n" + 
-              "I_ref_"+networkName+":"            + "\t" + I_ref_me.size() + "\n" + 
-              "I_"+networkName+"_ref:"            + "\t" + I_me_ref.size() + "\n" + 
+              "D_"+networkName+":"                + "\t" + D_me.cardinality() + "\n" + 
+              "D_ref_"+networkName+":"            + "\t" + D_ref_D_me.cardinality() + "\n" +
+              "I_intersection:"                   + "\t" + intersection_ref_me + "\n" + 
+              "I_ref_"+networkName+":"            + "\t" + I_ref_me + "\n" + 
+              "I_"+networkName+"_ref:"            + "\t" + I_me_ref + "\n" + 
               "w_"+networkName+":"                + "\t" + df.format(wo*100) + "\n" +
               "precision:"                        + "\t" + df.format(precision*100) + "\n");
 
@@ -267,53 +309,102 @@ public class UniDomIntParser {
   }
 
   /**
+   * Must only be called after {@link #init(String, String)}, since it does
+   * not modify this instance, it can be called concurrently.
+   * 
    * @param domain1
    * @param domain2
    */
   private double getreliabilityScore(String domain1, String domain2) {
-    ValuePair<String, String> sb = new ValuePair<String, String>(domain1, domain2);
+    Integer a = domainIds.get(domain1);
+    Integer b = domainIds.get(domain2);
     double sum = 0.0;
-    if(I_me.contains(sb)) {
-      sum+= w_me;
-    }
-    if(I_himap.contains(sb)) {
-      sum+= w_himap;
-    }
-    if(I_rcdp.contains(sb)) {
-      sum+= w_rcdp;
-    }
-    if(I_dima.contains(sb)) {
-      sum+= w_dima;
-    }
-    if(I_pValue.contains(sb)) {
-      sum+= w_pValue;
-    }
-    if(I_dpea.contains(sb)) {
-      sum+= w_dpea;
-    }
-    if(I_rdff.contains(sb)) {
-      sum+= w_rdff;
-    }
-    if(I_inter.contains(sb)) {
-      sum+= w_inter;
-    }
-    if(I_lp.contains(sb)) {
-      sum+= w_lp;
+    if ((a != null) && (b != null)) {
+      long sb = LongHashSet.pair(a.intValue(), b.intValue());
+      for (Network network : networks) {
+        if(network.I.contains(sb)) {
+          sum+= network.w;
+        }
+      }
     }
     
     return sum/sum_ofAllw;
   }
 
+  /**
+   * Calculates the reliability scores of all rows in parallel.
+   * 
+   * @param data
+   * @param numberOfThreads
+   * @return the reliability score of each row.
+   * @throws IOException
+   */
+  private double[] getreliabilityScores(final String[][] data, int numberOfThreads) throws IOException {
+    final double[] scores = new double[data.length];
+    int tasks = (data.length + ROWS_PER_TASK - 1) / ROWS_PER_TASK;
+    ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, Math.min(numberOfThreads, tasks)));
+    List<Future<Void>> futures = new ArrayList<Future<Void>>(tasks);
+    try {
+      for (int t = 0; t < tasks; t++) {
+        final int start = t * ROWS_PER_TASK;
+        final int end = Math.min(data.length, start + ROWS_PER_TASK);
+        futures.add(pool.submit(new Callable<Void>() {
+          /* (non-Javadoc)
+           * @see java.util.concurrent.Callable#call()
+           */
+          @Override
+          public Void call() throws Exception {
+            for (int i = start; i < end; i++) {
+              scores[i] = getreliabilityScore(data[i][0], data[i][1]);
+            }
+            return null;
+          }
+        }));
+      }
+      for (Future<Void> f : futures) {
+        try {
+          f.get();
+        } catch (ExecutionException e) {
+          IOException ex = new IOException("Could not calculate reliability scores");
+          ex.initCause(e.getCause());
+          throw ex;
+        } catch (InterruptedException e) {
+          IOException ex = new IOException("Interrupted while calculating reliability scores");
+          ex.initCause(e);
+          throw ex;
+        }
+      }
+    } finally {
+      pool.shutdownNow();
+    }
+    return scores;
+  }
+
 
   /**
+   * Calculates the scores using all but one processor.
+   * 
    * @param interactionFile
    * @param outputFileName, will look like
    * domain1 \t domain2 \t iPfam3did \t ME \t HIMAP \t RCDP \t DIMA \t pValue \t DPEA \t RDFF \t Inter \t LP \t predictionScore
+   * @see #writeUniDomIntFileWithNewPredictionScores(String, String, int)
    */
   public void writeUniDomIntFileWithNewPredictionScores(String domainFileName, String outputFileName) {
+    writeUniDomIntFileWithNewPredictionScores(domainFileName, outputFileName, Math.max(1, ThreadManager.NUMBER_OF_PROCESSORS - 1));
+  }
+
+  /**
+   * @param interactionFile
+   * @param outputFileName, will look like
+   * domain1 \t domain2 \t iPfam3did \t ME \t HIMAP \t RCDP \t DIMA \t pValue \t DPEA \t RDFF \t Inter \t LP \t predictionScore
+   * @param numberOfThreads maximum number of threads, that calculate the
+   * scores.
+   */
+  public void writeUniDomIntFileWithNewPredictionScores(String domainFileName, String outputFileName, int numberOfThreads) {
     CSVReader reader = new CSVReader(domainFileName);
     String[][] data = reader.getData();
     try{
+      double[] scores = getreliabilityScores(data, numberOfThreads);
       BufferedWriter bw = new BufferedWriter(new FileWriter(outputFileName));
       for(int i=0;i<data.length; i++) {
         String domain1 = data[i][0];
@@ -330,7 +421,7 @@ public class UniDomIntParser {
         bw.append(data[i][8] + "\t");
         bw.append(data[i][9] + "\t");
         bw.append(data[i][10] + "\t");
-        bw.append(String.valueOf(getreliabilityScore(domain1, domain2)));
+        bw.append(String.valueOf(scores[i]));
         
         bw.append("\n");
       }
@@ -18,6 +18,7 @@ package de.zbit.sbml.gui;
 
 import java.beans.PropertyChangeEvent;
 import java.text.MessageFormat;
+import java.util.ArrayList;
 import java.util.Enumeration;
 import java.util.List;
 import java.util.ResourceBundle;
@@ -58,6 +59,11 @@ public class SBMLNode extends DefaultMutableTreeNode implements TreeNodeChangeLi
    */
   private static final ResourceBundle bundle = ResourceManager.getBundle("de.zbit.sbml.locales.ElementNames");
 
+  /**
+   * Localization for the labels of pages, see {@link #setPageSize(int)}.
+   */
+  private static final ResourceBundle messages = ResourceManager.getBundle("de.zbit.sbml.locales.Messages");
+
   /**
    * A {@link Logger} for this class.
    */
@@ -73,6 +79,13 @@ public class SBMLNode extends DefaultMutableTreeNode implements TreeNodeChangeLi
    */
   private static boolean showInvisible = false;
 
+  /**
+   * Maximum number of elements of a {@link ListOf} that are displayed
+   * directly below its node. Longer lists are split into pages of this
+   * size.
+   */
+  private static int pageSize = 100;
+
   /**
    * Helper method, necessary because the tree might hide some nodes... Index
    * determination of child elements is therefore a bit more complicated.
@@ -103,6 +116,15 @@ public class SBMLNode extends DefaultMutableTreeNode implements TreeNodeChangeLi
     return -1;
   }
 
+  /**
+   *
+   * @return the maximum number of elements per page.
+   * @see #setPageSize(int)
+   */
+  public static int getPageSize() {
+    return pageSize;
+  }
+
   /**
    *
    * @return
@@ -119,6 +141,22 @@ public class SBMLNode extends DefaultMutableTreeNode implements TreeNodeChangeLi
     SBMLNode.showInvisible = showInvisible;
   }
 
+  /**
+   * Sets the maximum number of elements, that are displayed directly below
+   * a {@link ListOf}. Longer lists are split into pages of this size, such
+   * that the nodes of huge lists are only created when a page is expanded.
+   * Affects only nodes whose children have not yet been created.
+   *
+   * @param pageSize
+   *        a positive number.
+   */
+  public static void setPageSize(int pageSize) {
+    if (pageSize < 1) {
+      throw new IllegalArgumentException(Integer.toString(pageSize));
+    }
+    SBMLNode.pageSize = pageSize;
+  }
+
 
   private Class<? extends TreeNode> acceptedType;
 
@@ -127,6 +165,19 @@ public class SBMLNode extends DefaultMutableTreeNode implements TreeNodeChangeLi
    */
   private boolean boldFont, expanded, isVisible;
 
+  /**
+   * Whether or not the child nodes have already been created. Children are
+   * created on first access only.
+   */
+  private boolean childrenLoaded;
+
+  /**
+   * For a page of a {@link ListOf}, the indices of the first (inclusive) and
+   * last (exclusive) child of the list on this page. Both are {@code -1} for
+   * all other nodes.
+   */
+  private int firstIndex = -1, lastIndex = -1;
+
   /**
    * Memorizes the result of the {@link #toString()} method.
    */
@@ -169,17 +220,11 @@ public class SBMLNode extends DefaultMutableTreeNode implements TreeNodeChangeLi
     boldFont = false;
     expanded = false;
     this.isVisible = isVisible;
+    childrenLoaded = false;
 
     if (node == null) {
       return;
     }
-    for (int i = 0; i < node.getChildCount(); i++) {
-      TreeNode child = node.getChildAt(i);
-      if (acceptedType.isAssignableFrom(child.getClass())) {
-        SBMLNode newChild = new SBMLNode(child, isVisible, acceptedType);
-        add(newChild);
-      }
-    }
     stringRepresentation = null;
     if (node instanceof TreeNodeWithChangeSupport) {
       TreeNodeWithChangeSupport n = (TreeNodeWithChangeSupport) node;
@@ -190,6 +235,126 @@ public class SBMLNode extends DefaultMutableTreeNode implements TreeNodeChangeLi
     }
   }
 
+  /**
+   * Creates a page of a {@link ListOf}.
+   *
+   * @param listOf
+   * @param firstIndex
+   * @param lastIndex
+   * @param isVisible
+   */
+  private SBMLNode(TreeNodeWithChangeSupport listOf, int firstIndex, int lastIndex, boolean isVisible) {
+    super(listOf);
+    acceptedType = SBase.class;
+    boldFont = false;
+    expanded = false;
+    this.isVisible = isVisible;
+    childrenLoaded = false;
+    this.firstIndex = firstIndex;
+    this.lastIndex = lastIndex;
+  }
+
+  /**
+   * Creates the child nodes, if this has not been done before.
+   */
+  private synchronized void loadChildren() {
+    if (childrenLoaded) {
+      return;
+    }
+    childrenLoaded = true;
+    TreeNode node = getUserObject();
+    if (node == null) {
+      return;
+    }
+    int first = 0, last = node.getChildCount();
+    if (isPage()) {
+      first = Math.min(firstIndex, last);
+      last = Math.min(lastIndex, last);
+    } else if ((node instanceof ListOf<?>) && (last > pageSize)) {
+      for (int i = 0; i < last; i += pageSize) {
+        super.insert(new SBMLNode(getUserObject(), i, Math.min(i + pageSize, last), isVisible), super.getChildCount());
+      }
+      return;
+    }
+    for (int i = first; i < last; i++) {
+      TreeNode child = node.getChildAt(i);
+      if (acceptedType.isAssignableFrom(child.getClass())) {
+        super.insert(new SBMLNode(child, isVisible, acceptedType), super.getChildCount());
+      }
+    }
+  }
+
+  /**
+   * Discards all child nodes, such that they are created again on next
+   * access.
+   */
+  private synchronized void unloadChildren() {
+    if (children != null) {
+      for (Object child : children) {
+        removeListeners((SBMLNode) child);
+      }
+    }
+    super.removeAllChildren();
+    childrenLoaded = false;
+  }
+
+  /**
+   * Unregisters the given node and all its created descendants from their
+   * user objects, such that discarded nodes are not notified anymore.
+   * Elements, that have already been removed from their parent, are
+   * skipped, because they might currently notify their listeners.
+   *
+   * @param node
+   */
+  private static void removeListeners(SBMLNode node) {
+    if (!node.isPage() && (node.getUserObject() != null)
+        && (node.getUserObject().getParent() != null)) {
+      node.getUserObject().removeTreeNodeChangeListener(node);
+    }
+    if (node.children != null) {
+      for (Object child : node.children) {
+        removeListeners((SBMLNode) child);
+      }
+    }
+  }
+
+  /**
+   *
+   * @return {@code true} if the child nodes of this node have already been
+   *         created.
+   */
+  public boolean isChildrenLoaded() {
+    return childrenLoaded;
+  }
+
+  /**
+   *
+   * @return {@code true} if this node groups a part of the elements of a
+   *         {@link ListOf} (see {@link #setPageSize(int)}). In this case,
+   *         {@link #getUserObject()} returns the list.
+   */
+  public boolean isPage() {
+    return firstIndex >= 0;
+  }
+
+  /**
+   *
+   * @return the elements of the {@link ListOf}, that are displayed on this
+   *         page, or an empty list, if this node is not a page.
+   * @see #isPage()
+   */
+  public List<TreeNode> getPageElements() {
+    List<TreeNode> elements = new ArrayList<TreeNode>();
+    if (isPage()) {
+      TreeNode listOf = getUserObject();
+      int last = Math.min(lastIndex, listOf.getChildCount());
+      for (int i = firstIndex; i < last; i++) {
+        elements.add(listOf.getChildAt(i));
+      }
+    }
+    return elements;
+  }
+
   /**
    *
    */
@@ -228,6 +393,7 @@ public class SBMLNode extends DefaultMutableTreeNode implements TreeNodeChangeLi
    */
   @Override
   public TreeNode getChildAt(int index) {
+    loadChildren();
     if (isShowInvisible()) {
       return super.getChildAt(index);
     }
@@ -257,6 +423,7 @@ public class SBMLNode extends DefaultMutableTreeNode implements TreeNodeChangeLi
    */
   @Override
   public int getChildCount() {
+    loadChildren();
     if (isShowInvisible()) {
       return super.getChildCount();
     }
@@ -274,6 +441,46 @@ public class SBMLNode extends DefaultMutableTreeNode implements TreeNodeChangeLi
     return count;
   }
 
+  /* (non-Javadoc)
+   * @see javax.swing.tree.DefaultMutableTreeNode#children()
+   */
+  @Override
+  @SuppressWarnings("rawtypes")
+  public Enumeration children() {
+    loadChildren();
+    return super.children();
+  }
+
+  /* (non-Javadoc)
+   * @see javax.swing.tree.DefaultMutableTreeNode#getIndex(javax.swing.tree.TreeNode)
+   */
+  @Override
+  public int getIndex(TreeNode aChild) {
+    loadChildren();
+    return super.getIndex(aChild);
+  }
+
+  /* (non-Javadoc)
+   * @see javax.swing.tree.DefaultMutableTreeNode#isLeaf()
+   */
+  @Override
+  public boolean isLeaf() {
+    if (childrenLoaded) {
+      return super.isLeaf();
+    }
+    // Avoid creating the children only to find out that there are some
+    TreeNode node = getUserObject();
+    if (node != null) {
+      int last = isPage() ? Math.min(lastIndex, node.getChildCount()) : node.getChildCount();
+      for (int i = isPage() ? firstIndex : 0; i < last; i++) {
+        if (acceptedType.isAssignableFrom(node.getChildAt(i).getClass())) {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+
   /* (non-Javadoc)
    * @see javax.swing.tree.DefaultMutableTreeNode#getUserObject()
    */
@@ -317,20 +524,26 @@ public class SBMLNode extends DefaultMutableTreeNode implements TreeNodeChangeLi
 
     // Add the new node to this tree
     TreeNode parent = node.getParent();
-    if (parent == getUserObject()) {
+    if ((parent == getUserObject()) && childrenLoaded) {
+      // The new node inherits the listeners of its parent
+      if (node instanceof TreeNodeWithChangeSupport) {
+        TreeNodeWithChangeSupport n = (TreeNodeWithChangeSupport) node;
+        if (!n.isRoot() && n.getListOfTreeNodeChangeListeners().contains(this)) {
+          logger.finer(MessageFormat.format("Removing parent node {0} from list of listeners in {1}.", this, n));
+          n.removeTreeNodeChangeListener(this);
+        }
+      }
+      if ((super.getChildCount() > 0) && ((SBMLNode) super.getChildAt(0)).isPage()) {
+        // Pages have to be recomputed, which happens on next access
+        unloadChildren();
+        return;
+      }
       boolean hasChild = false;
       // Check if the node is already in the tree
       for (int i = 0; !hasChild && (i < getChildCount()); i++) {
         hasChild |= ((SBMLNode) getChildAt(i)).getUserObject() == node;
       }
       if (!hasChild) {
-        if (node instanceof TreeNodeWithChangeSupport) {
-          TreeNodeWithChangeSupport n = (TreeNodeWithChangeSupport) node;
-          if (!n.isRoot() && n.getListOfTreeNodeChangeListeners().contains(this)) {
-            logger.finer(MessageFormat.format("Removing parent node {0} from list of listeners in {1}.", this, n));
-            n.removeTreeNodeChangeListener(this);
-          }
-        }
         SBMLNode newChild = new SBMLNode(node, isVisible(), acceptedType);
         add(newChild);
         // Correct index
@@ -362,10 +575,21 @@ public class SBMLNode extends DefaultMutableTreeNode implements TreeNodeChangeLi
     stringRepresentation = null;
     stringRepresentation = toString();
 
-    SBMLNode parentNode = (SBMLNode) getParent();
+    // Only the listeners of the removed element are notified.
     TreeNode parent = evt.getPreviousParent();
-    if ((parent == parentNode.getUserObject()) && (evt.getSource() == getUserObject())) {
-      parentNode.remove(this);
+    SBMLNode parentNode = (SBMLNode) getParent();
+    if ((parentNode != null) && (parent == parentNode.getUserObject())
+        && (evt.getSource() == getUserObject())) {
+      if (parentNode.isPage()) {
+        // All following elements have moved to another index. Pages have to
+        // be recomputed, which happens on next access
+        SBMLNode listNode = (SBMLNode) parentNode.getParent();
+        if (listNode != null) {
+          listNode.unloadChildren();
+        }
+      } else {
+        parentNode.remove(this);
+      }
       logger.finer("removing " + evt.getSource());
     }
   }
@@ -401,6 +625,10 @@ public class SBMLNode extends DefaultMutableTreeNode implements TreeNodeChangeLi
    */
   @Override
   public String toString() {
+    if (isPage()) {
+      return MessageFormat.format(messages.getString("LIST_PAGE"), firstIndex + 1,
+        Math.min(lastIndex, getUserObject().getChildCount()));
+    }
     String label = print(getUserObject());
     return (label != null) ? label : super.toString();
   }
@@ -24,12 +24,14 @@ import java.awt.event.MouseListener;
 import java.beans.EventHandler;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Queue;
+import java.util.Set;
 import java.util.logging.Logger;
 
 import javax.swing.JDialog;
@@ -50,6 +52,7 @@ import org.sbml.jsbml.UnitDefinition;
 import org.sbml.jsbml.util.TreeNodeWithChangeSupport;
 import org.sbml.jsbml.util.filters.Filter;
 
+import de.zbit.sbml.util.SBMLSearchIndex;
 import de.zbit.util.progressbar.AbstractProgressBar;
 import de.zbit.util.progressbar.gui.ProgressBarSwing;
 
@@ -120,6 +123,11 @@ public class SBMLTree extends JTree implements ActionListener {
    */
   private TreeNode[] savedState;
 
+  /**
+   * Lazily created, see {@link #getSearchIndex()}.
+   */
+  private SBMLSearchIndex searchIndex;
+
   /**
    * @param savedState the savedState to set
    */
@@ -296,7 +304,7 @@ public class SBMLTree extends JTree implements ActionListener {
     }
     TreeNode node = (TreeNode) parent.getLastPathComponent();
     boolean found = nodesOfInterest == null;
-    if (!found && (node instanceof SBMLNode)) {
+    if (!found && (node instanceof SBMLNode) && !((SBMLNode) node).isPage()) {
       SBMLNode sbmlNode = (SBMLNode) node;
       SBase sbase = ((SBase) sbmlNode.getUserObject());
       found = nodesOfInterest.remove(sbase);
@@ -304,9 +312,17 @@ public class SBMLTree extends JTree implements ActionListener {
         sbmlNode.setBoldFont(found);
       }
     }
-    Enumeration<TreeNode> e = (Enumeration<TreeNode>) node.children();
+    Enumeration<TreeNode> e = null;
+    /*
+     * Nodes of interest have been made visible by a search before, which
+     * creates the children of all visible nodes. Hence, there is nothing
+     * of interest below nodes without children.
+     */
+    if ((nodesOfInterest == null) || !(node instanceof SBMLNode) || ((SBMLNode) node).isChildrenLoaded()) {
+      e = (Enumeration<TreeNode>) node.children();
+    }
     Queue<TreeNode> nodeQueue = new LinkedList<TreeNode>();
-    while (e.hasMoreElements()) {
+    while ((e != null) && e.hasMoreElements()) {
       TreeNode child = e.nextElement();
       expandAll(nodesOfInterest, expand, parent.pathByAddingChild(child),
         progressBar, markHits, setUninterestingNodesInvisible);
@@ -600,12 +616,72 @@ public class SBMLTree extends JTree implements ActionListener {
     }
   }
 
+  /**
+   * Returns an index for a fast plain text search over the displayed
+   * elements. The index is created on first access and kept up to date
+   * when the displayed model changes.
+   *
+   * @return the index or {@code null}, if the root of this tree is not an
+   *         {@link SBase}.
+   */
+  public synchronized SBMLSearchIndex getSearchIndex() {
+    if (searchIndex == null) {
+      Object root = ((SBMLNode) getModel().getRoot()).getUserObject();
+      if (root instanceof SBase) {
+        searchIndex = new SBMLSearchIndex((SBase) root);
+      }
+    }
+    return searchIndex;
+  }
+
   /**
    *
    * @param filter
    * @param progressBar
    */
   public void search(Filter filter, AbstractProgressBar progressBar) {
+    SBMLNode root = (SBMLNode) this.getModel().getRoot();
+    List<? extends TreeNode> list = ((SBase) root.getUserObject()).filter(filter, true, false);
+    Set<TreeNode> visible = SBMLSearchIndex.createIdentitySet();
+    Set<TreeNode> bold = SBMLSearchIndex.createIdentitySet();
+    for (TreeNode node : list) {
+      visible.add(node);
+      if (filter.accepts(node)) {
+        bold.add(node);
+      }
+    }
+    search(visible, bold, progressBar);
+  }
+
+  /**
+   * Shows only the given elements (in bold face) and their ancestors and
+   * hides all other elements.
+   *
+   * @param hits
+   *        the elements to highlight, e.g., from
+   *        {@link SBMLSearchIndex#search(String)}.
+   * @param progressBar
+   */
+  public void search(Collection<? extends TreeNode> hits, AbstractProgressBar progressBar) {
+    Set<TreeNode> visible = SBMLSearchIndex.createIdentitySet();
+    Set<TreeNode> bold = SBMLSearchIndex.createIdentitySet();
+    for (TreeNode node : hits) {
+      bold.add(node);
+      // Ancestors have already been added for a previous hit
+      while ((node != null) && visible.add(node)) {
+        node = node.getParent();
+      }
+    }
+    search(visible, bold, progressBar);
+  }
+
+  /**
+   *
+   * @param visible
+   * @param bold
+   * @param progressBar
+   */
+  private void search(Set<TreeNode> visible, Set<TreeNode> bold, AbstractProgressBar progressBar) {
     SBMLNode.setShowInvisible(true);
     SBMLNode root = (SBMLNode) this.getModel().getRoot();
     if (progressBar != null) {
@@ -615,8 +691,7 @@ public class SBMLTree extends JTree implements ActionListener {
         ((ProgressBarSwing) progressBar).getProgressBar().setVisible(true);
       }
     }
-    List<? extends TreeNode> list = ((SBase) root.getUserObject()).filter(filter, true, false);
-    search(root, filter, list, progressBar);
+    search(root, visible, bold, progressBar);
     reload();
     SBMLNode.setShowInvisible(false);
   }
@@ -624,28 +699,41 @@ public class SBMLTree extends JTree implements ActionListener {
   /**
    *
    * @param node
-   * @param filter
-   * @param list
+   * @param visible
+   * @param bold
    * @param progressBar
-   * @param callNr
-   */
-  private void search(SBMLNode node, Filter filter, List<? extends TreeNode> list, final AbstractProgressBar progressBar) {
-    SBase sbase = ((SBase) node.getUserObject());
-    if (list.size() > 0) {
-      if (list.remove(sbase)) {
-        if (filter.accepts(sbase)) {
-          logger.fine("Changed font face to bold for " + sbase);
-          node.setBoldFont(true);
+   */
+  private void search(SBMLNode node, Set<TreeNode> visible, Set<TreeNode> bold,
+    final AbstractProgressBar progressBar) {
+    TreeNode userObject = node.getUserObject();
+    boolean show;
+    if (node.isPage()) {
+      show = false;
+      for (TreeNode element : node.getPageElements()) {
+        if (visible.contains(element)) {
+          show = true;
+          break;
         }
-        node.setVisible(true);
-      } else {
-        node.setBoldFont(false);
-        node.setVisible(false);
       }
+    } else {
+      show = visible.contains(userObject);
+    }
+    if (show) {
+      if (!node.isPage() && bold.contains(userObject)) {
+        logger.fine("Changed font face to bold for " + userObject);
+        node.setBoldFont(true);
+      }
+      node.setVisible(true);
+    } else {
+      node.setBoldFont(false);
+      node.setVisible(false);
     }
-    for (int i = 0; i < node.getChildCount(); ++i) {
-      SBMLNode child = (SBMLNode) node.getChildAt(i);
-      search(child, filter, list, progressBar);
+    // Children of hidden nodes do not need to be created
+    if (node.isChildrenLoaded() || show) {
+      for (int i = 0; i < node.getChildCount(); ++i) {
+        SBMLNode child = (SBMLNode) node.getChildAt(i);
+        search(child, visible, bold, progressBar);
+      }
     }
     if (progressBar != null) {
       progressBar.DisplayBar();
@@ -669,6 +757,10 @@ public class SBMLTree extends JTree implements ActionListener {
   private void setAllVisible(SBMLNode node) {
     node.setVisible(true);
     node.setBoldFont(false);
+    if (!node.isChildrenLoaded()) {
+      // Children will be created visible
+      return;
+    }
     for (int i = 0; i<node.getChildCount(); i++) {
       TreeNode child = node.getChildAt(i);
       if (child instanceof SBMLNode) {
@@ -16,21 +16,25 @@
 package de.zbit.sbml.gui;
 
 import java.awt.Component;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.ResourceBundle;
 import java.util.concurrent.ExecutionException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.regex.Pattern;
 
 import javax.swing.SwingWorker;
 import javax.swing.tree.TreeNode;
 
+import org.sbml.jsbml.SBase;
 import org.sbml.jsbml.util.filters.OrFilter;
 
 import de.zbit.gui.GUITools;
 import de.zbit.sbml.util.RegexpAssignmentVariableFilter;
 import de.zbit.sbml.util.RegexpNameFilter;
 import de.zbit.sbml.util.RegexpSpeciesReferenceFilter;
+import de.zbit.sbml.util.SBMLSearchIndex;
 import de.zbit.util.ResourceManager;
 import de.zbit.util.progressbar.AbstractProgressBar;
 import de.zbit.util.progressbar.gui.ProgressBarSwing;
@@ -48,6 +52,14 @@ public class SBMLTreeSearcher extends SwingWorker<List<TreeNode>, Void> {
 	 * A {@link Logger} for this class.
 	 */
 	private static final transient Logger logger = Logger.getLogger(SBMLTreeSearcher.class.getName());
+	/**
+	 * Search strings that contain one of these characters are treated as
+	 * regular expressions. All others are looked up in the
+	 * {@link SBMLSearchIndex} of the tree. A plain '.' or '+' is searched
+	 * literally, because it is common in MIRIAM URNs and species names
+	 * (e.g., "obo.chebi" or "NAD+").
+	 */
+	private static final Pattern REGEX_CHARACTERS = Pattern.compile("[*?\\[\\](){}|^$\\\\]");
 	/**
 	 * 
 	 */
@@ -90,6 +102,12 @@ public class SBMLTreeSearcher extends SwingWorker<List<TreeNode>, Void> {
 			SBMLNode.setShowInvisible(true);
 			return null;
 		} else {
+			SBMLSearchIndex index = REGEX_CHARACTERS.matcher(searchString).find() ? null : tree.getSearchIndex();
+			if (index != null) {
+				List<SBase> hits = new ArrayList<SBase>(index.search(searchString));
+				tree.search(hits, progressBar);
+				return new ArrayList<TreeNode>(hits);
+			}
 			String search = ".*" + searchString + ".*";
 			RegexpNameFilter nameFilter = new RegexpNameFilter(search, false);
 			RegexpSpeciesReferenceFilter specFilter = new RegexpSpeciesReferenceFilter(search, false);
@@ -118,7 +118,7 @@ public abstract class QualModelBuilding {
   /**
    * initializes the taxonomy identifier
    */
-  private static void initTaxonomyMap() {
+  protected static void initTaxonomyMap() {
     ncbiTaxonomyMap.put("human", "9606");
     ncbiTaxonomyMap.put("mouse", "10090");
     ncbiTaxonomyMap.put("rat", "10114");
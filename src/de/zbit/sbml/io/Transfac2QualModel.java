@@ -44,6 +44,10 @@ import de.zbit.util.DatabaseIdentifierTools;
 import de.zbit.util.DatabaseIdentifiers.IdentifierDatabases;
 
 /**
+ * Builds a qualitative model from the TRANSFAC database. See
+ * {@link TransfacQualNetworkBuilder} for a faster and less memory consuming
+ * variant for large networks.
+ * 
  * @author Stephanie Hoffmann
  * @version $Rev$
  */
@@ -603,7 +607,7 @@ public class Transfac2QualModel {
 	 * @param database
 	 * @return
 	 */
-	private IdentifierDatabases getIdentifierDatabase(String database) {
+	static IdentifierDatabases getIdentifierDatabase(String database) {
 		if (database.equalsIgnoreCase("swissprot")) {
 			return IdentifierDatabases.UniProt_AC;
 		}
@@ -0,0 +1,1404 @@
+/*
+ * $Id$
+ * $URL$
+ * ---------------------------------------------------------------------
+ * This file is part of the SysBio API library.
+ *
+ * Copyright (C) 2009-2016 by the University of Tuebingen, Germany.
+ *
+ * This library is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation. A copy of the license
+ * agreement is provided in the file named "LICENSE.txt" included with
+ * this software distribution and also available online as
+ * <http://www.gnu.org/licenses/lgpl-3.0-standalone.html>.
+ * ---------------------------------------------------------------------
+ */
+package de.zbit.sbml.io;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.text.MessageFormat;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Logger;
+
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+import org.sbml.jsbml.CVTerm;
+import org.sbml.jsbml.SBO;
+import org.sbml.jsbml.ext.qual.InputTransitionEffect;
+import org.sbml.jsbml.ext.qual.OutputTransitionEffect;
+import org.sbml.jsbml.ext.qual.QualConstants;
+
+import de.zbit.io.OpenFile;
+import de.zbit.util.DatabaseIdentifierTools;
+import de.zbit.util.DatabaseIdentifiers.IdentifierDatabases;
+
+/**
+ * Builds the same qualitative network as {@link Transfac2QualModel}, but
+ * with a fraction of its memory and time:
+ * <ul>
+ * <li>The input files are tokenized with a reusable field splitter, that
+ * only remembers the offsets of the separators, instead of
+ * {@link String#split(String)} with regular expressions.</li>
+ * <li>The genes and binding factors files are read concurrently. The binding
+ * sites file is read concurrently, too, and streamed to the builder through a
+ * bounded queue, such that it is never kept in memory as a whole.</li>
+ * <li>Accession numbers are interned to consecutive integers. All joins
+ * between accession numbers, species and transitions use these integers
+ * (or pairs of them packed into one {@code long}) instead of concatenated
+ * {@link String}s.</li>
+ * <li>Species and transitions are kept as compact records and written with
+ * a StAX {@link XMLStreamWriter}, instead of building a complete
+ * {@link org.sbml.jsbml.SBMLDocument}.</li>
+ * </ul>
+ * Identifiers, SBO terms, annotations and notes are created exactly as in
+ * {@link Transfac2QualModel}. Complexes, interactions and super families
+ * are processed in the order in which they appear in the binding factors
+ * file, hence the numbering of those transitions is reproducible.
+ * 
+ * <p>Typical usage:
+ * <pre>
+ * TransfacQualNetworkBuilder builder = new TransfacQualNetworkBuilder(name, id, organisms);
+ * builder.build(genesAnnotation, bindingFactors, bindingSites);
+ * builder.write(outputFile);
+ * </pre></p>
+ * 
+ * @version $Rev$
+ * @since 1.4
+ */
+public class TransfacQualNetworkBuilder {
+  
+  /**
+   * A {@link Logger} for this class.
+   */
+  private static final transient Logger logger = Logger.getLogger(TransfacQualNetworkBuilder.class.getName());
+  
+  /**
+   * Maximum number of binding sites, that are read ahead of the builder.
+   */
+  private static final int QUEUE_CAPACITY = 4096;
+  
+  /**
+   * Marks the end of the binding sites in the queue.
+   */
+  private static final String[] END = new String[0];
+  
+  /**
+   * Namespace of SBML level 3 version 1 core.
+   */
+  private static final String SBML_NS = "http://www.sbml.org/sbml/level3/version1/core";
+  
+  /**
+   * Namespaces of the annotations.
+   */
+  private static final String XHTML_NS = "http://www.w3.org/1999/xhtml",
+      RDF_NS = "http://www.w3.org/1999/02/22-rdf-syntax-ns#",
+      DCTERMS_NS = "http://purl.org/dc/terms/",
+      BQBIOL_NS = "http://biomodels.net/biology-qualifiers/",
+      BQMODEL_NS = "http://biomodels.net/model-qualifiers/";
+  
+  /**
+   * Shared by all instances. Calls to
+   * {@link XMLOutputFactory#createXMLStreamWriter(OutputStream, String)} are
+   * synchronized on this object.
+   */
+  private static final XMLOutputFactory factory = XMLOutputFactory.newInstance();
+  
+  /**
+   * Splits a line at a separator character, without copying the fields. A
+   * field is only copied when it is requested with {@link #get(int)}.
+   * Instances can be reused for many lines.
+   * 
+   * @version $Rev$
+   * @since 1.4
+   */
+  private static final class Fields {
+    
+    /**
+     * 
+     */
+    private final char separator;
+    
+    /**
+     * The current line.
+     */
+    private String line;
+    
+    /**
+     * Start offsets of the fields in {@link #line}.
+     */
+    private int[] starts = new int[16];
+    
+    /**
+     * Number of fields in {@link #line}.
+     */
+    private int count;
+    
+    /**
+     * @param separator
+     */
+    public Fields(char separator) {
+      super();
+      this.separator = separator;
+    }
+    
+    /**
+     * Splits the given line.
+     * 
+     * @param line
+     * @return this object.
+     */
+    public Fields reset(String line) {
+      this.line = line;
+      count = 0;
+      int start = 0;
+      while (true) {
+        if (count == starts.length) {
+          int[] s = new int[2 * count];
+          System.arraycopy(starts, 0, s, 0, count);
+          starts = s;
+        }
+        starts[count++] = start;
+        int end = line.indexOf(separator, start);
+        if (end < 0) {
+          break;
+        }
+        start = end + 1;
+      }
+      return this;
+    }
+    
+    /**
+     * @return the number of fields in the current line.
+     */
+    public int size() {
+      return count;
+    }
+    
+    /**
+     * @param i
+     * @return the end offset (exclusive) of field {@code i}.
+     */
+    private int end(int i) {
+      return (i + 1 < count) ? starts[i + 1] - 1 : line.length();
+    }
+    
+    /**
+     * @param i
+     * @return a copy of field {@code i}.
+     */
+    public String get(int i) {
+      return line.substring(starts[i], end(i));
+    }
+    
+    /**
+     * @param i
+     * @param s
+     * @return {@code true} if field {@code i} equals {@code s}.
+     */
+    public boolean is(int i, String s) {
+      return (end(i) - starts[i] == s.length()) && line.startsWith(s, starts[i]);
+    }
+    
+    /**
+     * @return copies of all fields.
+     */
+    public String[] toArray() {
+      String[] fields = new String[count];
+      for (int i = 0; i < count; i++) {
+        fields[i] = get(i);
+      }
+      return fields;
+    }
+    
+  }
+  
+  /**
+   * A qualitative species.
+   * 
+   * @version $Rev$
+   * @since 1.4
+   */
+  private static final class QualSpecies {
+    
+    /**
+     * 
+     */
+    public final String id, name;
+    
+    /**
+     * 
+     */
+    public final int index, sbo;
+    
+    /**
+     * 
+     */
+    public final List<CVTerm> cvTerms = new ArrayList<CVTerm>(2);
+    
+    /**
+     * Whether or not this species has been added to the model.
+     */
+    public boolean inModel = false;
+    
+    /**
+     * @param index
+     * @param name
+     * @param sbo
+     */
+    public QualSpecies(int index, String name, int sbo) {
+      super();
+      this.index = index;
+      id = "qs" + index;
+      this.name = name;
+      this.sbo = sbo;
+    }
+    
+  }
+  
+  /**
+   * A transition with its inputs and outputs.
+   * 
+   * @version $Rev$
+   * @since 1.4
+   */
+  private static final class QualTransition {
+    
+    /**
+     * 
+     */
+    public final String id;
+    
+    /**
+     * 
+     */
+    public final int sbo;
+    
+    /**
+     * Identifier, species and effect of every input and output.
+     */
+    public final List<String[]> inputs = new ArrayList<String[]>(2), outputs = new ArrayList<String[]>(2);
+    
+    /**
+     * 
+     */
+    public final List<CVTerm> cvTerms = new ArrayList<CVTerm>(2);
+    
+    /**
+     * Lines of the notes, {@code null} if there are no notes.
+     */
+    public List<String> notes;
+    
+    /**
+     * @param id
+     * @param sbo
+     */
+    public QualTransition(String id, int sbo) {
+      super();
+      this.id = id;
+      this.sbo = sbo;
+    }
+    
+    /**
+     * @param id
+     * @param species
+     * @param effect
+     */
+    public void addInput(String id, QualSpecies species, InputTransitionEffect effect) {
+      inputs.add(new String[] {id, species.id, effect.toString()});
+    }
+    
+    /**
+     * @param id
+     * @param species
+     * @param effect
+     */
+    public void addOutput(String id, QualSpecies species, OutputTransitionEffect effect) {
+      outputs.add(new String[] {id, species.id, effect.toString()});
+    }
+    
+    /**
+     * @param line
+     */
+    public void addNote(String line) {
+      if (notes == null) {
+        notes = new ArrayList<String>(2);
+      }
+      notes.add(line);
+    }
+    
+  }
+  
+  /**
+   * 
+   */
+  private final String modelName, modelID;
+  
+  /**
+   * 
+   */
+  private final String[] organisms;
+  
+  /**
+   * All allowed organisms in one string, see {@link #isModelOrganism(String)}.
+   */
+  private final String allOrganisms;
+  
+  /**
+   * One taxonomy term per organism.
+   */
+  private final Map<String, CVTerm> taxonomyTerms = new HashMap<String, CVTerm>();
+  
+  /**
+   * Interned accession numbers of genes and transcription factors.
+   */
+  private final Map<String, Integer> accessions = new HashMap<String, Integer>();
+  
+  /**
+   * The accession numbers by their interned key.
+   */
+  private final List<String> accessionByKey = new ArrayList<String>();
+  
+  /**
+   * Gene species and transcription factor species, as well as the organism
+   * of every transcription factor, indexed by interned accession number.
+   */
+  private final List<QualSpecies> geneByAc = new ArrayList<QualSpecies>(),
+      tfByAc = new ArrayList<QualSpecies>();
+  
+  /**
+   * 
+   */
+  private final List<String> organismByAc = new ArrayList<String>();
+  
+  /**
+   * Genes by their lower case name.
+   */
+  private final Map<String, QualSpecies> geneByName = new HashMap<String, QualSpecies>();
+  
+  /**
+   * Transcription factors by name and type.
+   */
+  private final Map<String, QualSpecies> tfByNameType = new HashMap<String, QualSpecies>();
+  
+  /**
+   * Complexes, interactions and super families of transcription factors
+   * (interned accession numbers), in the order of the binding factors file.
+   */
+  private final Map<Integer, String[]> complexPrecursors = new LinkedHashMap<Integer, String[]>(),
+      interactingTFs = new LinkedHashMap<Integer, String[]>();
+  
+  /**
+   * 
+   */
+  private final Map<Integer, String> superFamilies = new LinkedHashMap<Integer, String>();
+  
+  /**
+   * Transitions between two species, see {@link #pair(QualSpecies, QualSpecies)}.
+   */
+  private final Map<Long, QualTransition> encodings = new HashMap<Long, QualTransition>(),
+      interactions = new HashMap<Long, QualTransition>(),
+      superFamilyTransitions = new HashMap<Long, QualTransition>(),
+      regulations = new HashMap<Long, QualTransition>();
+  
+  /**
+   * All species in the model, in the order in which they were added.
+   */
+  private final List<QualSpecies> species = new ArrayList<QualSpecies>();
+  
+  /**
+   * All transitions, in the order in which they were created.
+   */
+  private final List<QualTransition> transitions = new ArrayList<QualTransition>();
+  
+  /**
+   * Index for the next species.
+   */
+  private int speciesIndex = 0;
+  
+  /**
+   * Counters for statistics.
+   */
+  private int encodingCnt = 0, regulationCnt = 0, interactionCnt = 0, selfInteractionCnt = 0,
+      complexingCnt = 0, superFamilyCnt = 0;
+  
+  /**
+   * 
+   * @param modelName
+   * @param modelID
+   * @param organisms
+   *        allowed organisms, e.g., "human", "Mammalia".
+   */
+  public TransfacQualNetworkBuilder(String modelName, String modelID, String... organisms) {
+    super();
+    this.modelName = modelName;
+    this.modelID = modelID;
+    this.organisms = organisms;
+    StringBuilder sb = new StringBuilder(",");
+    for (String organism : organisms) {
+      sb.append(organism);
+      sb.append(',');
+    }
+    allOrganisms = sb.toString();
+    QualModelBuilding.initTaxonomyMap();
+  }
+  
+  /**
+   * Reads the given files and creates all species and transitions.
+   * 
+   * @param genesAnnotation
+   * @param bindingFactors
+   * @param bindingSites
+   * @throws IOException
+   *         if a file cannot be read or has an unexpected format. Use
+   *         {@link Throwable#getCause()} to get the original exception.
+   */
+  public void build(final String genesAnnotation, final String bindingFactors,
+    final String bindingSites) throws IOException {
+    ExecutorService pool = Executors.newFixedThreadPool(3);
+    final BlockingQueue<String[]> sites = new ArrayBlockingQueue<String[]>(QUEUE_CAPACITY);
+    try {
+      Future<List<String[]>> genes = pool.submit(new Callable<List<String[]>>() {
+        /* (non-Javadoc)
+         * @see java.util.concurrent.Callable#call()
+         */
+        @Override
+        public List<String[]> call() throws IOException {
+          return readGenesFile(genesAnnotation);
+        }
+      });
+      Future<List<String[]>> factors = pool.submit(new Callable<List<String[]>>() {
+        /* (non-Javadoc)
+         * @see java.util.concurrent.Callable#call()
+         */
+        @Override
+        public List<String[]> call() throws IOException {
+          return readFactorsFile(bindingFactors);
+        }
+      });
+      Future<Void> sitesReader = pool.submit(new Callable<Void>() {
+        /* (non-Javadoc)
+         * @see java.util.concurrent.Callable#call()
+         */
+        @Override
+        public Void call() throws IOException, InterruptedException {
+          boolean interrupted = false;
+          try {
+            readBindingSites(bindingSites, sites);
+          } catch (InterruptedException exc) {
+            interrupted = true;
+            throw exc;
+          } finally {
+            if (interrupted) {
+              // The builder has given up and will not take anything from
+              // the (possibly full) queue.
+              sites.offer(END);
+            } else {
+              sites.put(END);
+            }
+          }
+          return null;
+        }
+      });
+      
+      for (String[] gene : get(genes, genesAnnotation)) {
+        addGene(gene);
+      }
+      for (String[] factor : get(factors, bindingFactors)) {
+        addFactor(factor);
+      }
+      addComplexes();
+      addInteractingTFs();
+      addSuperFamilies();
+      try {
+        for (String[] site = sites.take(); site != END; site = sites.take()) {
+          addBindingSite(site);
+        }
+      } catch (InterruptedException exc) {
+        IOException ex = new IOException("Interrupted while reading " + bindingSites);
+        ex.initCause(exc);
+        throw ex;
+      }
+      get(sitesReader, bindingSites);
+    } finally {
+      pool.shutdownNow();
+      // Unblocks the reader, if it is still waiting for space in the queue
+      sites.clear();
+    }
+    logger.info(MessageFormat.format(
+      "qualSpecies: {0}, transitions: {1} (encoding: {2}, regulation: {3}, interaction: {4}, self interaction: {5}, complexing: {6}, super family: {7})",
+      species.size(), transitions.size(), encodingCnt, regulationCnt, interactionCnt,
+      selfInteractionCnt, complexingCnt, superFamilyCnt));
+  }
+  
+  /**
+   * @param future
+   * @param fileName
+   * @return the result of the given reader.
+   * @throws IOException
+   */
+  private static <T> T get(Future<T> future, String fileName) throws IOException {
+    try {
+      return future.get();
+    } catch (ExecutionException exc) {
+      IOException ex = new IOException("Could not read " + fileName);
+      ex.initCause(exc.getCause());
+      throw ex;
+    } catch (InterruptedException exc) {
+      IOException ex = new IOException("Interrupted while reading " + fileName);
+      ex.initCause(exc);
+      throw ex;
+    }
+  }
+  
+  /**
+   * @param fileName
+   * @return a reader for the given file, which may also be compressed.
+   * @throws FileNotFoundException
+   */
+  private static BufferedReader open(String fileName) throws FileNotFoundException {
+    BufferedReader input = OpenFile.openFile(fileName);
+    if (input == null) {
+      throw new FileNotFoundException(fileName);
+    }
+    return input;
+  }
+  
+  /**
+   * @param fields
+   * @param expected
+   * @param fileName
+   * @param lineNumber
+   * @throws IOException
+   *         if the current line does not have the expected number of
+   *         columns.
+   */
+  private static void checkColumns(Fields fields, int expected, String fileName, int lineNumber) throws IOException {
+    if (fields.size() != expected) {
+      throw new IOException(MessageFormat.format(
+        "{0}, line {1}: expected {2} columns, but found {3}.", fileName, lineNumber, expected, fields.size()));
+    }
+  }
+  
+  /**
+   * Reads the genes annotation file (gene accession number, name, organism,
+   * annotation). May be called concurrently with the other readers.
+   * 
+   * @param fileName
+   * @return all genes of the model organisms.
+   * @throws IOException
+   */
+  private List<String[]> readGenesFile(String fileName) throws IOException {
+    List<String[]> genes = new ArrayList<String[]>();
+    Fields fields = new Fields('\t');
+    BufferedReader input = open(fileName);
+    try {
+      String line = input.readLine(); // header
+      for (int lineNumber = 2; (line = input.readLine()) != null; lineNumber++) {
+        checkColumns(fields.reset(line), 4, fileName, lineNumber);
+        if (isModelOrganism(fields.get(2))) {
+          String[] gene = fields.toArray();
+          gene[1] = gene[1].toLowerCase();
+          genes.add(gene);
+        }
+      }
+    } finally {
+      input.close();
+    }
+    return genes;
+  }
+  
+  /**
+   * Reads the binding factors file. May be called concurrently with the
+   * other readers.
+   * 
+   * @param fileName
+   * @return all binding factors of the model organisms.
+   * @throws IOException
+   */
+  private List<String[]> readFactorsFile(String fileName) throws IOException {
+    List<String[]> factors = new ArrayList<String[]>();
+    Fields fields = new Fields('\t');
+    BufferedReader input = open(fileName);
+    try {
+      String line = input.readLine(); // header
+      for (int lineNumber = 2; (line = input.readLine()) != null; lineNumber++) {
+        checkColumns(fields.reset(line), 12, fileName, lineNumber);
+        if (isModelOrganism(fields.get(2)) && !fields.is(0, "none")) {
+          factors.add(fields.toArray());
+        }
+      }
+    } finally {
+      input.close();
+    }
+    return factors;
+  }
+  
+  /**
+   * Reads the binding sites file and puts the binding sites of the model
+   * organisms into the given queue. May be called concurrently with the
+   * other readers.
+   * 
+   * @param fileName
+   * @param sites
+   * @throws IOException
+   * @throws InterruptedException
+   */
+  private void readBindingSites(String fileName, BlockingQueue<String[]> sites) throws IOException, InterruptedException {
+    Fields fields = new Fields('\t');
+    BufferedReader input = open(fileName);
+    try {
+      String line = input.readLine(); // header
+      for (int lineNumber = 2; (line = input.readLine()) != null; lineNumber++) {
+        checkColumns(fields.reset(line), 7, fileName, lineNumber);
+        String organism = fields.get(2);
+        if (isModelOrganism(organism)) {
+          sites.put(new String[] {organism, fields.get(3), fields.get(5), fields.get(6)});
+        }
+      }
+    } finally {
+      input.close();
+    }
+  }
+  
+  /**
+   * @param organism
+   * @return {@code true} if the given organism is one of the model
+   *         organisms (as in {@link Transfac2QualModel}, this includes
+   *         substrings of the organisms).
+   */
+  private boolean isModelOrganism(String organism) {
+    return (organism != null) && (organism.length() > 0) && allOrganisms.contains(organism);
+  }
+  
+  /**
+   * @param accession
+   * @return the interned accession number.
+   */
+  private int intern(String accession) {
+    Integer key = accessions.get(accession);
+    if (key == null) {
+      key = Integer.valueOf(accessionByKey.size());
+      accessions.put(accession, key);
+      accessionByKey.add(accession);
+    }
+    return key.intValue();
+  }
+  
+  /**
+   * @param table
+   * @param accession
+   * @return the element of the given accession number or {@code null}.
+   */
+  private <T> T lookup(List<T> table, String accession) {
+    Integer key = accessions.get(accession);
+    return ((key == null) || (key.intValue() >= table.size())) ? null : table.get(key.intValue());
+  }
+  
+  /**
+   * @param table
+   * @param key
+   * @param value
+   */
+  private static <T> void set(List<T> table, int key, T value) {
+    while (table.size() <= key) {
+      table.add(null);
+    }
+    table.set(key, value);
+  }
+  
+  /**
+   * @param a
+   * @param b
+   * @return a key for the ordered pair of both species.
+   */
+  private static Long pair(QualSpecies a, QualSpecies b) {
+    return Long.valueOf(((long) a.index << 32) | (b.index & 0xffffffffL));
+  }
+  
+  /**
+   * @param name
+   * @param sbo
+   * @return a new species, that is not yet part of the model.
+   */
+  private QualSpecies createSpecies(String name, int sbo) {
+    return new QualSpecies(speciesIndex++, name, sbo);
+  }
+  
+  /**
+   * @param qs
+   */
+  private void addToModel(QualSpecies qs) {
+    if (!qs.inModel) {
+      qs.inModel = true;
+      species.add(qs);
+    }
+  }
+  
+  /**
+   * @param id
+   * @param sbo
+   * @return a new transition, that is part of the model.
+   */
+  private QualTransition createTransition(String id, int sbo) {
+    QualTransition t = new QualTransition(id, sbo);
+    transitions.add(t);
+    return t;
+  }
+  
+  /**
+   * @param gene
+   *        accession number, lower case name, organism, annotation.
+   */
+  private void addGene(String[] gene) {
+    QualSpecies qs = geneByName.get(gene[1]);
+    if (qs == null) {
+      qs = createSpecies(gene[1], SBO.getGene());
+      geneByName.put(gene[1], qs);
+    }
+    set(geneByAc, intern(gene[0]), qs);
+    if (!gene[3].equals("none")) {
+      addAnnotations(qs.cvTerms, gene[3]);
+    }
+    addTaxonomy(qs.cvTerms, gene[2]);
+  }
+  
+  /**
+   * @param factor
+   *        all columns of the binding factors file.
+   */
+  private void addFactor(String[] factor) {
+    String tfAC = factor[0];               // TF ac (T00000)
+    String tfName = factor[1];             // TF name
+    String organism = factor[2];           // organism
+    String type = factor[3];               // type, e.g., basic, complex
+    String encodGeneAc = factor[5];        // encod. Gene id (G000000)
+    String interacting = factor[8];        // interacting factors (T00000)
+    String complexPrecurser = factor[9];   // complex precurser (T00000)
+    String superFamily = factor[10];       // super family (T00000)
+    String dbIdentifier = factor[11];      // annotation [db: id;]+
+    
+    int key = intern(tfAC);
+    QualSpecies qs;
+    if (!tfName.equals("none")) {
+      String nameType = tfName + '\t' + type;
+      qs = tfByNameType.get(nameType);
+      if (qs == null) {
+        if (type.equalsIgnoreCase("complex")) {
+          qs = createSpecies(tfName, SBO.getComplex());
+          complexPrecursors.put(Integer.valueOf(key), split(complexPrecurser));
+        } else {
+          qs = createSpecies(tfName, SBO.getMacromolecule());
+        }
+        addToModel(qs);
+        tfByNameType.put(nameType, qs);
+      }
+    } else {
+      // transcription factors without a name
+      qs = createSpecies(tfName, SBO.getMacromolecule());
+      addToModel(qs);
+      logger.fine("no name given for transcription factor: " + tfAC + " new Id: " + qs.id);
+    }
+    set(tfByAc, key, qs);
+    
+    if (!dbIdentifier.equalsIgnoreCase("none")) {
+      addAnnotations(qs.cvTerms, dbIdentifier);
+    }
+    set(organismByAc, key, organism);
+    addTaxonomy(qs.cvTerms, organism);
+    
+    if (!encodGeneAc.equalsIgnoreCase("none")) {
+      addEncodingGene(qs, encodGeneAc, organism);
+    }
+    if (!interacting.equalsIgnoreCase("none")) {
+      interactingTFs.put(Integer.valueOf(key), split(interacting));
+    }
+    if (!superFamily.equalsIgnoreCase("none")) {
+      superFamilies.put(Integer.valueOf(key), superFamily);
+    }
+  }
+  
+  /**
+   * Adds the encoding gene and the corresponding transition.
+   * 
+   * @param qsTF
+   * @param encodGeneAc
+   * @param organism
+   */
+  private void addEncodingGene(QualSpecies qsTF, String encodGeneAc, String organism) {
+    QualSpecies qsGene = lookup(geneByAc, encodGeneAc);
+    if (qsGene == null) {
+      logger.fine("unknown encoding gene " + encodGeneAc + " of " + qsTF.id);
+      return;
+    }
+    addToModel(qsGene);
+    Long key = pair(qsGene, qsTF);
+    QualTransition t = encodings.get(key);
+    if (t == null) {
+      t = createTransition("tr" + transitions.size(), SBO.getTranscription());
+      t.addInput(t.id + qsGene.id, qsGene, InputTransitionEffect.consumption);
+      t.addOutput(t.id + qsTF.id, qsTF, OutputTransitionEffect.production);
+      encodingCnt++;
+      encodings.put(key, t);
+    }
+    addTaxonomy(t.cvTerms, organism);
+  }
+  
+  /**
+   * Adds the complexes and the corresponding transitions. Complexes with a
+   * precursor, that is not of a model organism, are skipped.
+   */
+  private void addComplexes() {
+    for (Map.Entry<Integer, String[]> entry : complexPrecursors.entrySet()) {
+      QualSpecies complex = tfByAc.get(entry.getKey().intValue());
+      String[] precursors = entry.getValue();
+      QualSpecies[] inputs = new QualSpecies[precursors.length];
+      boolean complete = true;
+      for (int i = 0; complete && (i < precursors.length); i++) {
+        inputs[i] = lookup(tfByAc, precursors[i]);
+        complete = inputs[i] != null;
+      }
+      if (!complete) {
+        continue;
+      }
+      QualTransition t = createTransition("cx" + transitions.size(), SBO.getStateTransition());
+      t.addOutput(t.id + complex.id + "output", complex, OutputTransitionEffect.production);
+      for (String precursor : precursors) {
+        addTaxonomy(t.cvTerms, lookup(organismByAc, precursor));
+      }
+      String oldId = "";
+      int index = 0;
+      for (QualSpecies qs : inputs) {
+        if (!qs.id.equals(oldId)) {
+          t.addInput(t.id + qs.id + "input", qs, InputTransitionEffect.consumption);
+        } else {
+          t.addInput(t.id + qs.id + "input" + index, qs, InputTransitionEffect.consumption);
+          index++;
+        }
+        oldId = qs.id;
+      }
+      complexingCnt++;
+    }
+  }
+  
+  /**
+   * Adds the interacting transcription factors and the corresponding
+   * transitions.
+   */
+  private void addInteractingTFs() {
+    for (Map.Entry<Integer, String[]> entry : interactingTFs.entrySet()) {
+      int key = entry.getKey().intValue();
+      QualSpecies qsTF = tfByAc.get(key);
+      String organism = organismByAc.get(key);
+      int tf = Integer.parseInt(accessionByKey.get(key).replace("T", ""));
+      for (String interacting : entry.getValue()) {
+        QualSpecies qsInt = lookup(tfByAc, interacting);
+        if (qsInt == null) {
+          // the interacting tf is not of the model organism
+          continue;
+        }
+        String organism2 = lookup(organismByAc, interacting);
+        int ia = Integer.parseInt(interacting.replace("T", ""));
+        if (tf < ia) {
+          // only the first occurrence as interacting species
+          Long pair = pair(qsTF, qsInt);
+          QualTransition t = interactions.get(pair);
+          if (t == null) {
+            t = createTransition("int" + transitions.size(), SBO.getUnknownTransition());
+            t.addInput(t.id + qsTF.id + "input_" + organism, qsTF, InputTransitionEffect.consumption);
+            t.addInput(t.id + qsInt.id + "input_" + organism2, qsInt, InputTransitionEffect.consumption);
+            t.addOutput(t.id + qsTF.id + "output_" + organism, qsTF, OutputTransitionEffect.production);
+            t.addOutput(t.id + qsInt.id + "output_" + organism2, qsInt, OutputTransitionEffect.production);
+            interactionCnt++;
+            interactions.put(pair, t);
+          }
+          addTaxonomy(t.cvTerms, organism);
+          addTaxonomy(t.cvTerms, organism2);
+          t.addNote("tf: " + qsTF.id + "(" + organism + ") interacts with: " + qsInt.id + "(" + organism2 + ")");
+        } else if (tf == ia) {
+          // self interaction
+          QualTransition t = createTransition("int" + transitions.size(), SBO.getUnknownTransition());
+          t.addInput(t.id + qsTF.id + "input", qsTF, InputTransitionEffect.consumption);
+          t.addOutput(t.id + qsInt.id + "output", qsInt, OutputTransitionEffect.production);
+          selfInteractionCnt++;
+          addTaxonomy(t.cvTerms, organism);
+        }
+      }
+    }
+  }
+  
+  /**
+   * Adds the super family molecules and the corresponding transitions.
+   */
+  private void addSuperFamilies() {
+    for (Map.Entry<Integer, String> entry : superFamilies.entrySet()) {
+      int key = entry.getKey().intValue();
+      String sfTF = entry.getValue();
+      QualSpecies qsTF = tfByAc.get(key);
+      QualSpecies qsSF = lookup(tfByAc, sfTF);
+      if ((qsSF != null) && (qsSF != qsTF)) {
+        Long pair = pair(qsTF, qsSF);
+        QualTransition t = superFamilyTransitions.get(pair);
+        if (t == null) {
+          t = createTransition("sf" + transitions.size(), SBO.getStateTransition());
+          t.addInput(t.id + sfTF, qsSF, InputTransitionEffect.none);
+          t.addOutput(t.id + accessionByKey.get(key), qsTF, OutputTransitionEffect.assignmentLevel);
+          superFamilyCnt++;
+          superFamilyTransitions.put(pair, t);
+        }
+        addTaxonomy(t.cvTerms, organismByAc.get(key));
+        addTaxonomy(t.cvTerms, lookup(organismByAc, sfTF));
+      }
+    }
+  }
+  
+  /**
+   * @param site
+   *        organism, regulated gene, binding factors, annotation.
+   */
+  private void addBindingSite(String[] site) {
+    String organism = site[0];
+    QualSpecies qsGene = lookup(geneByAc, site[1]);
+    if (qsGene == null) {
+      logger.fine("unknown regulated gene " + site[1]);
+      return;
+    }
+    String annotation = site[3];
+    for (String bf : split(site[2])) {
+      if (bf.equals("none")) {
+        continue;
+      }
+      QualSpecies qsTF = lookup(tfByAc, bf);
+      if (qsTF == null) {
+        continue;
+      }
+      String organism2 = lookup(organismByAc, bf);
+      addToModel(qsGene);
+      Long pair = pair(qsTF, qsGene);
+      QualTransition t = regulations.get(pair);
+      if (t == null) {
+        t = createTransition("reg" + transitions.size(), SBO.getUnknownTransition());
+        t.addInput(t.id + qsTF.id + "input", qsTF, InputTransitionEffect.none);
+        t.addOutput(t.id + qsGene.id + "output", qsGene, OutputTransitionEffect.assignmentLevel);
+        regulationCnt++;
+        regulations.put(pair, t);
+      }
+      addTaxonomy(t.cvTerms, organism);
+      addTaxonomy(t.cvTerms, organism2);
+      t.addNote("tf: " + qsTF.id + "(" + organism2 + ") regulates gene: " + qsGene.id + "(" + organism + ")");
+      if (!annotation.equalsIgnoreCase("none")) {
+        Fields ac = new Fields(' ');
+        for (String a : split(annotation)) {
+          ac.reset(a);
+          addAnnotation(t.cvTerms, ac.get(0));
+          if (ac.size() > 1) {
+            t.addNote("position of bindingsite " + ac.get(1));
+          }
+        }
+      }
+    }
+  }
+  
+  /**
+   * @param list
+   * @return the elements of the given semicolon separated list.
+   */
+  private static String[] split(String list) {
+    return new Fields(';').reset(list).toArray();
+  }
+  
+  /**
+   * @param cvTerms
+   * @param annotations
+   *        semicolon separated list of "database: identifier".
+   */
+  private static void addAnnotations(List<CVTerm> cvTerms, String annotations) {
+    for (String annotation : split(annotations)) {
+      addAnnotation(cvTerms, annotation);
+    }
+  }
+  
+  /**
+   * @param cvTerms
+   * @param annotation
+   *        "database: identifier", e.g., "EMBL: ABC123".
+   */
+  private static void addAnnotation(List<CVTerm> cvTerms, String annotation) {
+    int pos = annotation.indexOf(": ");
+    if (pos < 0) {
+      return;
+    }
+    IdentifierDatabases idDB = Transfac2QualModel.getIdentifierDatabase(annotation.substring(0, pos));
+    if (idDB != null) {
+      CVTerm term = DatabaseIdentifierTools.getCVTerm(idDB, null, annotation.substring(pos + 2));
+      if (!cvTerms.contains(term)) {
+        cvTerms.add(term);
+      }
+    }
+  }
+  
+  /**
+   * @param cvTerms
+   * @param organism
+   */
+  private void addTaxonomy(List<CVTerm> cvTerms, String organism) {
+    CVTerm term = taxonomyTerms.get(organism);
+    if (term == null) {
+      term = DatabaseIdentifierTools.getCVTerm(IdentifierDatabases.NCBI_Taxonomy, null,
+        QualModelBuilding.ncbiTaxonomyMap.get(organism));
+      taxonomyTerms.put(organism, term);
+    }
+    if (!cvTerms.contains(term)) {
+      cvTerms.add(term);
+    }
+  }
+  
+  /**
+   * @return the number of qualitative species in the model.
+   */
+  public int getSpeciesCount() {
+    return species.size();
+  }
+  
+  /**
+   * @return the number of transitions in the model.
+   */
+  public int getTransitionCount() {
+    return transitions.size();
+  }
+  
+  /**
+   * Writes the model as SBML level 3 version 1 with the qual package.
+   * Missing parent directories are created.
+   * 
+   * @param outputFile
+   * @throws IOException
+   * @throws XMLStreamException
+   */
+  public void write(String outputFile) throws IOException, XMLStreamException {
+    File outFile = new File(outputFile);
+    if (outFile.getParentFile() != null) {
+      outFile.getParentFile().mkdirs();
+    }
+    OutputStream out = new BufferedOutputStream(new FileOutputStream(outFile));
+    try {
+      write(out);
+    } finally {
+      out.close();
+    }
+    logger.info("File '" + outputFile + "' saved!");
+  }
+  
+  /**
+   * Writes the model as SBML level 3 version 1 with the qual package to the
+   * given stream. The stream is flushed, but not closed.
+   * 
+   * @param out
+   * @throws XMLStreamException
+   */
+  public void write(OutputStream out) throws XMLStreamException {
+    XMLStreamWriter writer;
+    synchronized (factory) {
+      writer = factory.createXMLStreamWriter(out, "UTF-8");
+    }
+    try {
+      write(writer);
+    } finally {
+      writer.close();
+    }
+  }
+  
+  /**
+   * @param writer
+   * @throws XMLStreamException
+   */
+  private void write(XMLStreamWriter writer) throws XMLStreamException {
+    String qual = QualConstants.shortLabel;
+    String qualNS = QualConstants.namespaceURI;
+    writer.writeStartDocument("UTF-8", "1.0");
+    newLine(writer, 0);
+    writer.writeComment(" Created by Sysbio-Project version 1 ");
+    newLine(writer, 0);
+    writer.writeStartElement("sbml");
+    writer.writeDefaultNamespace(SBML_NS);
+    writer.writeNamespace(qual, qualNS);
+    writer.writeAttribute("level", "3");
+    writer.writeAttribute("version", "1");
+    writer.writeAttribute(qual, qualNS, "required", "true");
+    
+    newLine(writer, 1);
+    writer.writeStartElement("model");
+    writer.writeAttribute("id", modelID);
+    writer.writeAttribute("metaid", "meta_" + modelID);
+    writer.writeAttribute("name", modelName);
+    
+    // notes with the model name as title
+    newLine(writer, 2);
+    writer.writeStartElement("notes");
+    newLine(writer, 3);
+    writer.writeStartElement("body");
+    writer.writeDefaultNamespace(XHTML_NS);
+    newLine(writer, 4);
+    writer.writeStartElement("h1");
+    writer.writeCharacters(modelName.replace('\n', ' '));
+    writer.writeEndElement();
+    newLine(writer, 3);
+    writer.writeEndElement();
+    newLine(writer, 2);
+    writer.writeEndElement();
+    
+    List<CVTerm> modelTerms = new ArrayList<CVTerm>(organisms.length);
+    for (String organism : organisms) {
+      modelTerms.add(DatabaseIdentifierTools.getCVTerm(IdentifierDatabases.NCBI_Taxonomy, null,
+        QualModelBuilding.ncbiTaxonomyMap.get(organism)));
+    }
+    writeAnnotation(writer, 2, "meta_" + modelID, modelTerms, new Date());
+    
+    if (!species.isEmpty()) {
+      newLine(writer, 2);
+      writer.writeStartElement(qual, "listOfQualitativeSpecies", qualNS);
+      for (QualSpecies qs : species) {
+        boolean annotated = !qs.cvTerms.isEmpty();
+        newLine(writer, 3);
+        if (annotated) {
+          writer.writeStartElement(qual, "qualitativeSpecies", qualNS);
+        } else {
+          writer.writeEmptyElement(qual, "qualitativeSpecies", qualNS);
+        }
+        writer.writeAttribute("metaid", "meta_" + qs.id);
+        writer.writeAttribute("sboTerm", SBO.intToString(qs.sbo));
+        writer.writeAttribute(qual, qualNS, "id", qs.id);
+        writer.writeAttribute(qual, qualNS, "name", qs.name);
+        if (annotated) {
+          writeAnnotation(writer, 4, "meta_" + qs.id, qs.cvTerms, null);
+          newLine(writer, 3);
+          writer.writeEndElement();
+        }
+      }
+      newLine(writer, 2);
+      writer.writeEndElement();
+    }
+    
+    if (!transitions.isEmpty()) {
+      newLine(writer, 2);
+      writer.writeStartElement(qual, "listOfTransitions", qualNS);
+      for (QualTransition t : transitions) {
+        newLine(writer, 3);
+        writer.writeStartElement(qual, "transition", qualNS);
+        writer.writeAttribute("metaid", "meta_" + t.id);
+        writer.writeAttribute("sboTerm", SBO.intToString(t.sbo));
+        writer.writeAttribute(qual, qualNS, "id", t.id);
+        writer.writeAttribute(qual, qualNS, "name", t.id);
+        if (t.notes != null) {
+          writeNotes(writer, 4, t.notes);
+        }
+        if (!t.cvTerms.isEmpty()) {
+          writeAnnotation(writer, 4, "meta_" + t.id, t.cvTerms, null);
+        }
+        writeInputsOrOutputs(writer, "listOfInputs", "input", t.inputs);
+        writeInputsOrOutputs(writer, "listOfOutputs", "output", t.outputs);
+        newLine(writer, 3);
+        writer.writeEndElement();
+      }
+      newLine(writer, 2);
+      writer.writeEndElement();
+    }
+    
+    newLine(writer, 1);
+    writer.writeEndElement(); // model
+    newLine(writer, 0);
+    writer.writeEndElement(); // sbml
+    newLine(writer, 0);
+    writer.writeEndDocument();
+    writer.flush();
+  }
+  
+  /**
+   * @param writer
+   * @param listName
+   * @param elementName
+   * @param elements
+   * @throws XMLStreamException
+   */
+  private static void writeInputsOrOutputs(XMLStreamWriter writer, String listName, String elementName,
+    List<String[]> elements) throws XMLStreamException {
+    if (elements.isEmpty()) {
+      return;
+    }
+    String qual = QualConstants.shortLabel;
+    String qualNS = QualConstants.namespaceURI;
+    newLine(writer, 4);
+    writer.writeStartElement(qual, listName, qualNS);
+    for (String[] element : elements) {
+      newLine(writer, 5);
+      writer.writeEmptyElement(qual, elementName, qualNS);
+      writer.writeAttribute(qual, qualNS, "id", element[0]);
+      writer.writeAttribute(qual, qualNS, "qualitativeSpecies", element[1]);
+      writer.writeAttribute(qual, qualNS, "transitionEffect", element[2]);
+    }
+    newLine(writer, 4);
+    writer.writeEndElement();
+  }
+  
+  /**
+   * Writes the given lines as one XHTML paragraph, separated by line breaks.
+   * 
+   * @param writer
+   * @param depth
+   * @param lines
+   * @throws XMLStreamException
+   */
+  private static void writeNotes(XMLStreamWriter writer, int depth, List<String> lines) throws XMLStreamException {
+    newLine(writer, depth);
+    writer.writeStartElement("notes");
+    newLine(writer, depth + 1);
+    writer.writeStartElement("body");
+    writer.writeDefaultNamespace(XHTML_NS);
+    newLine(writer, depth + 2);
+    writer.writeStartElement("p");
+    for (String line : lines) {
+      writer.writeCharacters(line);
+      writer.writeEmptyElement("br");
+    }
+    writer.writeEndElement();
+    newLine(writer, depth + 1);
+    writer.writeEndElement();
+    newLine(writer, depth);
+    writer.writeEndElement();
+  }
+  
+  /**
+   * Writes the given terms (and creation date) as MIRIAM RDF annotation.
+   * 
+   * @param writer
+   * @param depth
+   * @param metaId
+   * @param cvTerms
+   * @param created
+   *        creation date or {@code null}.
+   * @throws XMLStreamException
+   */
+  private static void writeAnnotation(XMLStreamWriter writer, int depth, String metaId,
+    List<CVTerm> cvTerms, Date created) throws XMLStreamException {
+    newLine(writer, depth);
+    writer.writeStartElement("annotation");
+    newLine(writer, depth + 1);
+    writer.writeStartElement("rdf", "RDF", RDF_NS);
+    writer.writeNamespace("rdf", RDF_NS);
+    writer.writeNamespace("dcterms", DCTERMS_NS);
+    writer.writeNamespace("bqbiol", BQBIOL_NS);
+    writer.writeNamespace("bqmodel", BQMODEL_NS);
+    newLine(writer, depth + 2);
+    writer.writeStartElement("rdf", "Description", RDF_NS);
+    writer.writeAttribute("rdf", RDF_NS, "about", "#" + metaId);
+    if (created != null) {
+      SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss'Z'");
+      format.setTimeZone(TimeZone.getTimeZone("UTC"));
+      newLine(writer, depth + 3);
+      writer.writeStartElement("dcterms", "created", DCTERMS_NS);
+      writer.writeAttribute("rdf", RDF_NS, "parseType", "Resource");
+      newLine(writer, depth + 4);
+      writer.writeStartElement("dcterms", "W3CDTF", DCTERMS_NS);
+      writer.writeCharacters(format.format(created));
+      writer.writeEndElement();
+      newLine(writer, depth + 3);
+      writer.writeEndElement();
+    }
+    for (CVTerm term : cvTerms) {
+      if (term.getResourceCount() == 0) {
+        continue;
+      }
+      String prefix, namespace, qualifier;
+      if (term.isModelQualifier()) {
+        prefix = "bqmodel";
+        namespace = BQMODEL_NS;
+        qualifier = term.getModelQualifierType().getElementNameEquivalent();
+      } else {
+        prefix = "bqbiol";
+        namespace = BQBIOL_NS;
+        qualifier = term.getBiologicalQualifierType().getElementNameEquivalent();
+      }
+      newLine(writer, depth + 3);
+      writer.writeStartElement(prefix, qualifier, namespace);
+      newLine(writer, depth + 4);
+      writer.writeStartElement("rdf", "Bag", RDF_NS);
+      for (String resource : term.getResources()) {
+        newLine(writer, depth + 5);
+        writer.writeEmptyElement("rdf", "li", RDF_NS);
+        writer.writeAttribute("rdf", RDF_NS, "resource", resource);
+      }
+      newLine(writer, depth + 4);
+      writer.writeEndElement();
+      newLine(writer, depth + 3);
+      writer.writeEndElement();
+    }
+    newLine(writer, depth + 2);
+    writer.writeEndElement();
+    newLine(writer, depth + 1);
+    writer.writeEndElement();
+    newLine(writer, depth);
+    writer.writeEndElement();
+  }
+  
+  /**
+   * Writes a line break and indents the next element.
+   * 
+   * @param writer
+   * @param depth
+   * @throws XMLStreamException
+   */
+  private static void newLine(XMLStreamWriter writer, int depth) throws XMLStreamException {
+    StringBuilder sb = new StringBuilder(1 + 2 * depth);
+    sb.append('\n');
+    for (int i = 0; i < depth; i++) {
+      sb.append("  ");
+    }
+    writer.writeCharacters(sb.toString());
+  }
+  
+  /**
+   * 
+   * @param args
+   *        the same arguments as {@link Transfac2QualModel#main(String[])}.
+   * @throws Exception
+   */
+  public static void main(String[] args) throws Exception {
+    if (args.length != 8) {
+      throw new IllegalArgumentException("\n arguments: " +
+          "[model name] " +
+          "[model id] " +
+          "[model creator] " +
+          "[bindingFactor-file] " +
+          "[bindingSites-file] " +
+          "[genesAnnotation-file] " +
+          "[sbml-file] " +
+          "[commaseparated allowed organisms (e.g., human,Mammalia)]");
+    }
+    TransfacQualNetworkBuilder builder = new TransfacQualNetworkBuilder(args[0], args[1], args[7].split(","));
+    builder.build(args[5], args[3], args[4]);
+    builder.write(args[6]);
+  }
+  
+}
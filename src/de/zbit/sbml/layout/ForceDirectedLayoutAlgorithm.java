@@ -0,0 +1,1209 @@
+/*
+ * $Id$
+ * $URL$
+ * ---------------------------------------------------------------------
+ * This file is part of the SysBio API library.
+ *
+ * Copyright (C) 2009-2016 by the University of Tuebingen, Germany.
+ *
+ * This library is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation. A copy of the license
+ * agreement is provided in the file named "LICENSE.txt" included with
+ * this software distribution and also available online as
+ * <http://www.gnu.org/licenses/lgpl-3.0-standalone.html>.
+ * ---------------------------------------------------------------------
+ */
+package de.zbit.sbml.layout;
+
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Logger;
+
+import org.sbml.jsbml.ListOf;
+import org.sbml.jsbml.Reaction;
+import org.sbml.jsbml.Species;
+import org.sbml.jsbml.ext.layout.BoundingBox;
+import org.sbml.jsbml.ext.layout.CompartmentGlyph;
+import org.sbml.jsbml.ext.layout.Curve;
+import org.sbml.jsbml.ext.layout.CurveSegment;
+import org.sbml.jsbml.ext.layout.Dimensions;
+import org.sbml.jsbml.ext.layout.GraphicalObject;
+import org.sbml.jsbml.ext.layout.LineSegment;
+import org.sbml.jsbml.ext.layout.Point;
+import org.sbml.jsbml.ext.layout.ReactionGlyph;
+import org.sbml.jsbml.ext.layout.SpeciesGlyph;
+import org.sbml.jsbml.ext.layout.SpeciesReferenceGlyph;
+import org.sbml.jsbml.ext.layout.SpeciesReferenceRole;
+import org.sbml.jsbml.ext.layout.TextGlyph;
+
+/**
+ * A {@link LayoutAlgorithm} that positions all unlayouted glyphs with a
+ * force-directed model (Fruchterman and Reingold) and does not depend on any
+ * external graph library. It can thus be used on headless systems, e.g.:
+ * <pre>
+ * new LayoutDirector&lt;P&gt;(document, builder, new ForceDirectedLayoutAlgorithm());
+ * </pre>
+ *
+ * <p>Species, reaction and independent text glyphs repel each other, while
+ * every species reference glyph pulls its species and reaction glyph
+ * together. The repulsive forces are approximated with a Barnes-Hut quadtree,
+ * such that one iteration takes O(n log n) time, and are computed in parallel
+ * for large layouts. Already layouted glyphs are kept at their position and
+ * only act on the other glyphs.</p>
+ *
+ * <p>Glyphs of species and reactions, whose compartment has a layouted
+ * {@link CompartmentGlyph}, are kept within the bounding box of this glyph.
+ * Glyphs of the same unlayouted compartment are drawn towards each other and
+ * the bounding box of the {@link CompartmentGlyph} is afterwards created
+ * around them.</p>
+ *
+ * @version $Rev$
+ * @since 1.4
+ */
+public class ForceDirectedLayoutAlgorithm extends SimpleLayoutAlgorithm {
+
+  /**
+   * A {@link Logger} for this class.
+   */
+  private static final transient Logger logger = Logger.getLogger(ForceDirectedLayoutAlgorithm.class.getName());
+
+  /**
+   * Default value for z-coordinates.
+   */
+  private static final double DEFAULT_Z_COORD = 0d;
+
+  /**
+   * Default depth of created dimensions.
+   */
+  private static final double DEFAULT_DEPTH = 1d;
+
+  /**
+   * Default width of a {@link SpeciesGlyph}.
+   */
+  private static final double DEFAULT_SPECIES_WIDTH = 90d;
+
+  /**
+   * Default height of a {@link SpeciesGlyph}.
+   */
+  private static final double DEFAULT_SPECIES_HEIGHT = 45d;
+
+  /**
+   * Approximated width of one character of a {@link TextGlyph}.
+   */
+  private static final double CHARACTER_WIDTH = 7d;
+
+  /**
+   * Default height of a {@link TextGlyph}.
+   */
+  private static final double DEFAULT_TEXT_HEIGHT = 20d;
+
+  /**
+   * Space between the border of a {@link CompartmentGlyph} and its content,
+   * as well as between the layout border and its content.
+   */
+  private static final double MARGIN = 20d;
+
+  /**
+   * Default number of iterations.
+   */
+  public static final int DEFAULT_ITERATIONS = 300;
+
+  /**
+   * Barnes-Hut approximation parameter: a cell of the quadtree is considered
+   * as one body, if the ratio of its size and its distance is below this
+   * value.
+   */
+  static final double THETA = 0.8d;
+
+  /**
+   * Strength of the attraction towards the center of the own (unlayouted)
+   * compartment.
+   */
+  private static final double COMPARTMENT_GRAVITY = 0.05d;
+
+  /**
+   * Strength of the attraction towards the center of the layout, which keeps
+   * unconnected parts together.
+   */
+  private static final double GRAVITY = 0.01d;
+
+  /**
+   * Minimum number of movable glyphs to compute the forces in parallel.
+   */
+  private static final int PARALLEL_THRESHOLD = 1000;
+
+  /**
+   * A glyph during the simulation.
+   */
+  static class Body {
+    /**
+     * The glyph.
+     */
+    final GraphicalObject glyph;
+    /**
+     * Whether this body is not moved.
+     */
+    final boolean fixed;
+    /**
+     * The center and dimensions of this body.
+     */
+    double x, y, width, height;
+    /**
+     * Whether {@link #x} and {@link #y} are already set.
+     */
+    boolean positioned;
+    /**
+     * The compartment, that contains this body (might be {@code null}).
+     */
+    Container container;
+    /**
+     * Adjacent bodies.
+     */
+    Body neighbors[] = new Body[0];
+    /**
+     * Number of used entries in {@link #neighbors}.
+     */
+    int neighborCount = 0;
+    /**
+     * The force acting on this body during the current iteration.
+     */
+    double fx, fy;
+
+    /**
+     * @param glyph
+     * @param fixed
+     */
+    Body(GraphicalObject glyph, boolean fixed) {
+      this.glyph = glyph;
+      this.fixed = fixed;
+    }
+
+    /**
+     * @param neighbor
+     */
+    void addNeighbor(Body neighbor) {
+      if (neighborCount == neighbors.length) {
+        Body newNeighbors[] = new Body[Math.max(2, neighborCount * 2)];
+        System.arraycopy(neighbors, 0, newNeighbors, 0, neighborCount);
+        neighbors = newNeighbors;
+      }
+      neighbors[neighborCount++] = neighbor;
+    }
+  }
+
+  /**
+   * A {@link CompartmentGlyph} during the simulation.
+   */
+  private static class Container {
+    /**
+     * The glyph.
+     */
+    final CompartmentGlyph glyph;
+    /**
+     * Whether the bounding box of {@link #glyph} is given.
+     */
+    final boolean fixed;
+    /**
+     * The bounding box, if {@link #fixed}.
+     */
+    double minX, minY, maxX, maxY;
+    /**
+     * The center of the contained bodies during the current iteration.
+     */
+    double cx, cy;
+    /**
+     * All contained bodies.
+     */
+    final List<Body> members = new ArrayList<Body>();
+
+    /**
+     * @param glyph
+     * @param fixed
+     */
+    Container(CompartmentGlyph glyph, boolean fixed) {
+      this.glyph = glyph;
+      this.fixed = fixed;
+    }
+
+    /**
+     * Moves the given body into the bounding box of this container.
+     *
+     * @param body
+     */
+    void clamp(Body body) {
+      body.x = clamp(body.x, minX + MARGIN + body.width / 2d, maxX - MARGIN - body.width / 2d);
+      body.y = clamp(body.y, minY + MARGIN + body.height / 2d, maxY - MARGIN - body.height / 2d);
+    }
+
+    /**
+     * @param value
+     * @param min
+     * @param max
+     * @return {@code value} restricted to the given interval, or the center
+     *         of the interval if it is empty.
+     */
+    private static double clamp(double value, double min, double max) {
+      if (min > max) {
+        return (min + max) / 2d;
+      }
+      return Math.max(min, Math.min(max, value));
+    }
+  }
+
+  /**
+   * A cell of the Barnes-Hut quadtree.
+   */
+  static class QuadTree {
+    /**
+     * Cells are not split any further below this depth, such that bodies at
+     * the same position do not lead to an infinite recursion.
+     */
+    private static final int MAX_DEPTH = 32;
+    /**
+     * Center and half side length of this cell.
+     */
+    final double cx, cy, half;
+    /**
+     * Number of bodies in this cell and sum of their coordinates.
+     */
+    double mass = 0d, sumX = 0d, sumY = 0d;
+    /**
+     * The first body in a leaf.
+     */
+    Body body;
+    /**
+     * The four quadrants, or {@code null} for a leaf.
+     */
+    QuadTree children[];
+
+    /**
+     * @param cx
+     * @param cy
+     * @param half
+     */
+    QuadTree(double cx, double cy, double half) {
+      this.cx = cx;
+      this.cy = cy;
+      this.half = half;
+    }
+
+    /**
+     * @param b
+     * @param depth
+     */
+    void insert(Body b, int depth) {
+      if ((mass == 0d) && (children == null)) {
+        body = b;
+      } else if (depth < MAX_DEPTH) {
+        if (children == null) {
+          children = new QuadTree[4];
+          Body old = body;
+          body = null;
+          quadrant(old).insert(old, depth + 1);
+        }
+        quadrant(b).insert(b, depth + 1);
+      }
+      mass++;
+      sumX += b.x;
+      sumY += b.y;
+    }
+
+    /**
+     * @param b
+     * @return the child cell for the given body, which is created if
+     *         necessary.
+     */
+    private QuadTree quadrant(Body b) {
+      int i = ((b.x < cx) ? 0 : 1) + ((b.y < cy) ? 0 : 2);
+      if (children[i] == null) {
+        double h = half / 2d;
+        children[i] = new QuadTree((b.x < cx) ? cx - h : cx + h, (b.y < cy) ? cy - h : cy + h, h);
+      }
+      return children[i];
+    }
+
+    /**
+     * Adds the repulsive force of all bodies in this cell on the given body
+     * to its force.
+     *
+     * @param b
+     * @param k2 squared ideal edge length
+     * @param theta the approximation parameter (see {@link #THETA}). All
+     *        bodies are considered separately for {@code 0}.
+     */
+    void repulse(Body b, double k2, double theta) {
+      double m = mass;
+      if ((children == null) && (body == b)) {
+        // body is part of this leaf
+        m--;
+      }
+      if (m <= 0d) {
+        return;
+      }
+      double dx = b.x - sumX / mass;
+      double dy = b.y - sumY / mass;
+      double d2 = dx * dx + dy * dy;
+      if ((children == null) || (!contains(b) && (4d * half * half < theta * theta * d2))) {
+        if (d2 < 1E-4d) {
+          // separate bodies at (nearly) the same position
+          int hash = (b.glyph.getId() != null) ? b.glyph.getId().hashCode() : 0;
+          dx = ((hash & 1) == 0) ? 0.01d : -0.01d;
+          dy = ((hash & 2) == 0) ? 0.01d : -0.01d;
+          d2 = 2E-4d;
+        }
+        double f = m * k2 / d2;
+        b.fx += dx * f;
+        b.fy += dy * f;
+      } else {
+        for (QuadTree child : children) {
+          if (child != null) {
+            child.repulse(b, k2, theta);
+          }
+        }
+      }
+    }
+
+    /**
+     * @param b
+     * @return whether the given body lies within this cell.
+     */
+    private boolean contains(Body b) {
+      return (Math.abs(b.x - cx) <= half) && (Math.abs(b.y - cy) <= half);
+    }
+  }
+
+  /**
+   * All species, reaction and text glyphs, which take part in the simulation.
+   */
+  private List<Body> bodies;
+
+  /**
+   * Mapping of glyph id to the corresponding {@link Body}.
+   */
+  private Map<String, Body> glyphBodyMap;
+
+  /**
+   * Mapping of compartment id to its {@link Container}.
+   */
+  private Map<String, Container> compartmentMap;
+
+  /**
+   * Pairs of species reference glyphs and reaction glyphs, whose bodies
+   * attract each other.
+   */
+  private List<SpeciesReferenceGlyph> edgeReferences;
+
+  /**
+   * @see #edgeReferences
+   */
+  private List<ReactionGlyph> edgeReactions;
+
+  /**
+   * All reaction glyphs, which need positioning.
+   */
+  private Set<ReactionGlyph> reactionNodes;
+
+  /**
+   * Output of the algorithm, i.e. the autolayouted previously unlayouted
+   * glyphs of the input.
+   */
+  private Set<GraphicalObject> output;
+
+  /**
+   * Number of iterations of the simulation.
+   */
+  private int iterations;
+
+  /**
+   * Number of threads to compute the forces.
+   */
+  private int threads;
+
+  /**
+   * Seed of the random initial positions. Every call of
+   * {@link #completeGlyphs()} starts with a new generator with this seed,
+   * such that layouts are reproducible.
+   */
+  private long seed = 0L;
+
+  /**
+   * The bounding box of the whole layout after {@link #completeGlyphs()}.
+   */
+  private double maxX = 0d, maxY = 0d;
+
+  /**
+   * Creates a new instance, that uses all available processors.
+   */
+  public ForceDirectedLayoutAlgorithm() {
+    this(DEFAULT_ITERATIONS, Runtime.getRuntime().availableProcessors());
+  }
+
+  /**
+   * @param iterations number of iterations of the simulation.
+   * @param threads number of threads to compute the forces.
+   */
+  public ForceDirectedLayoutAlgorithm(int iterations, int threads) {
+    super();
+    this.iterations = Math.max(1, iterations);
+    this.threads = Math.max(1, threads);
+    bodies = new ArrayList<Body>();
+    glyphBodyMap = new HashMap<String, Body>();
+    compartmentMap = new HashMap<String, Container>();
+    edgeReferences = new ArrayList<SpeciesReferenceGlyph>();
+    edgeReactions = new ArrayList<ReactionGlyph>();
+    reactionNodes = new HashSet<ReactionGlyph>();
+    output = new HashSet<GraphicalObject>();
+  }
+
+  /**
+   * @return the number of iterations of the simulation.
+   */
+  public int getIterations() {
+    return iterations;
+  }
+
+  /**
+   * @param iterations the number of iterations of the simulation.
+   */
+  public void setIterations(int iterations) {
+    this.iterations = Math.max(1, iterations);
+  }
+
+  /**
+   * @return the seed of the random initial positions.
+   */
+  public long getSeed() {
+    return seed;
+  }
+
+  /**
+   * @param seed the seed of the random initial positions.
+   */
+  public void setSeed(long seed) {
+    this.seed = seed;
+  }
+
+  /**
+   * @return the number of threads to compute the forces.
+   */
+  public int getThreads() {
+    return threads;
+  }
+
+  /**
+   * @param threads the number of threads to compute the forces.
+   */
+  public void setThreads(int threads) {
+    this.threads = Math.max(1, threads);
+  }
+
+  /**
+   * @param glyph
+   * @return {@code true} if the given glyph does not need any layout,
+   *         because it is a text glyph that is placed on another glyph.
+   */
+  private static boolean isDependentText(GraphicalObject glyph) {
+    if (!(glyph instanceof TextGlyph) || LayoutDirector.textGlyphIsIndependent((TextGlyph) glyph)) {
+      return false;
+    }
+    if (!glyph.isSetBoundingBox()) {
+      return true;
+    }
+    // a bounding box of zero size at the origin is considered unset
+    BoundingBox bb = glyph.getBoundingBox();
+    return ((bb.getPosition() == null) || ((bb.getPosition().getX() == 0d) && (bb.getPosition().getY() == 0d)))
+        && ((bb.getDimensions() == null) || ((bb.getDimensions().getWidth() == 0d) && (bb.getDimensions().getHeight() == 0d)));
+  }
+
+  /* (non-Javadoc)
+   * @see de.zbit.sbml.layout.LayoutAlgorithm#addLayoutedGlyph(org.sbml.jsbml.ext.layout.GraphicalObject)
+   */
+  @Override
+  public void addLayoutedGlyph(GraphicalObject glyph) {
+    if (glyphBodyMap.containsKey(glyph.getId()) || isDependentText(glyph)) {
+      return;
+    }
+    logger.fine("add layouted glyph id=" + glyph.getId());
+    correctDimensions(glyph);
+
+    BoundingBox boundingBox = glyph.getBoundingBox();
+    Point position = boundingBox.getPosition();
+    Dimensions dimensions = boundingBox.getDimensions();
+    double x = 0d, y = 0d, width = 0d, height = 0d;
+    if (position != null) {
+      x = position.getX();
+      y = position.getY();
+    } else {
+      logger.warning(MessageFormat.format(
+        "Position of {0} ''{1}'' is undefined. Setting it to origin (0, 0).",
+        glyph.getElementName(), glyph.getId()));
+    }
+    if (dimensions != null) {
+      width = dimensions.getWidth();
+      height = dimensions.getHeight();
+    } else {
+      logger.warning(MessageFormat.format(
+        "Dimensions of {0} ''{1}'' are undefined. Setting it to zero.",
+        glyph.getElementName(), glyph.getId()));
+    }
+
+    if (glyph instanceof CompartmentGlyph) {
+      Container container = new Container((CompartmentGlyph) glyph, true);
+      container.minX = x;
+      container.minY = y;
+      container.maxX = x + width;
+      container.maxY = y + height;
+      registerContainer(container);
+    } else {
+      Body body = new Body(glyph, true);
+      body.width = width;
+      body.height = height;
+      body.x = x + width / 2d;
+      body.y = y + height / 2d;
+      body.positioned = true;
+      registerBody(body);
+    }
+    setOfLayoutedGlyphs.add(glyph);
+  }
+
+  /* (non-Javadoc)
+   * @see de.zbit.sbml.layout.LayoutAlgorithm#addUnlayoutedGlyph(org.sbml.jsbml.ext.layout.GraphicalObject)
+   */
+  @Override
+  public void addUnlayoutedGlyph(GraphicalObject glyph) {
+    if (glyphBodyMap.containsKey(glyph.getId()) || isDependentText(glyph)
+        || (glyph instanceof SpeciesReferenceGlyph)) {
+      // species reference glyphs are only considered as edges
+      return;
+    }
+    logger.fine("add unlayouted glyph id=" + glyph.getId());
+
+    if (glyph instanceof CompartmentGlyph) {
+      registerContainer(new Container((CompartmentGlyph) glyph, false));
+      setOfUnlayoutedGlyphs.add(glyph);
+      return;
+    }
+
+    Body body = new Body(glyph, false);
+    Dimensions dimensions;
+    if (LayoutDirector.glyphHasDimensions(glyph)) {
+      dimensions = glyph.getBoundingBox().getDimensions();
+    } else if (glyph instanceof ReactionGlyph) {
+      dimensions = createReactionGlyphDimension((ReactionGlyph) glyph);
+      if (glyph.isSetBoundingBox()) {
+        glyph.getBoundingBox().setDimensions(dimensions);
+      } else {
+        glyph.createBoundingBox(dimensions);
+      }
+    } else if (glyph instanceof TextGlyph) {
+      dimensions = createTextGlyphDimension((TextGlyph) glyph);
+    } else {
+      dimensions = createSpeciesGlyphDimension();
+    }
+    body.width = dimensions.getWidth();
+    body.height = dimensions.getHeight();
+
+    // partially layouted: position only
+    if (LayoutDirector.glyphHasPosition(glyph)) {
+      Point position = glyph.getBoundingBox().getPosition();
+      body.x = position.getX() + body.width / 2d;
+      body.y = position.getY() + body.height / 2d;
+      body.positioned = true;
+    }
+
+    if (glyph instanceof ReactionGlyph) {
+      reactionNodes.add((ReactionGlyph) glyph);
+    } else {
+      setOfUnlayoutedGlyphs.add(glyph);
+    }
+    registerBody(body);
+  }
+
+  /**
+   * @param body
+   */
+  private void registerBody(Body body) {
+    bodies.add(body);
+    glyphBodyMap.put(body.glyph.getId(), body);
+  }
+
+  /**
+   * @param container
+   */
+  private void registerContainer(Container container) {
+    /*
+     * this can happen when a glyph is graphical information only and not
+     * intended to be used for calculations in the model
+     */
+    if (container.glyph.isSetCompartment()) {
+      compartmentMap.put(container.glyph.getCompartment(), container);
+    }
+  }
+
+  /* (non-Javadoc)
+   * @see de.zbit.sbml.layout.LayoutAlgorithm#addLayoutedEdge(org.sbml.jsbml.ext.layout.SpeciesReferenceGlyph, org.sbml.jsbml.ext.layout.ReactionGlyph)
+   */
+  @Override
+  public void addLayoutedEdge(SpeciesReferenceGlyph srg, ReactionGlyph rg) {
+    // edge creation has to be deferred until all glyphs are known
+    edgeReferences.add(srg);
+    edgeReactions.add(rg);
+    addLayoutedGlyph(rg);
+  }
+
+  /* (non-Javadoc)
+   * @see de.zbit.sbml.layout.LayoutAlgorithm#addUnlayoutedEdge(org.sbml.jsbml.ext.layout.SpeciesReferenceGlyph, org.sbml.jsbml.ext.layout.ReactionGlyph)
+   */
+  @Override
+  public void addUnlayoutedEdge(SpeciesReferenceGlyph srg, ReactionGlyph rg) {
+    edgeReferences.add(srg);
+    edgeReactions.add(rg);
+  }
+
+  /* (non-Javadoc)
+   * @see de.zbit.sbml.layout.LayoutAlgorithm#completeGlyphs()
+   */
+  @Override
+  public Set<GraphicalObject> completeGlyphs() {
+    // (1) create all edges and assign bodies to compartments
+    for (int i = 0; i < edgeReferences.size(); i++) {
+      SpeciesReferenceGlyph srg = edgeReferences.get(i);
+      Body reaction = glyphBodyMap.get(edgeReactions.get(i).getId());
+      Body species = srg.isSetSpeciesGlyph() ? glyphBodyMap.get(srg.getSpeciesGlyph()) : null;
+      if ((reaction != null) && (species != null) && (reaction != species)) {
+        reaction.addNeighbor(species);
+        species.addNeighbor(reaction);
+        output.add(edgeReactions.get(i));
+      }
+    }
+    for (Body body : bodies) {
+      String compartment = getCompartment(body.glyph);
+      body.container = (compartment != null) ? compartmentMap.get(compartment) : null;
+      if (body.container != null) {
+        body.container.members.add(body);
+      }
+    }
+
+    // (2) simulation
+    List<Body> movable = new ArrayList<Body>();
+    for (Body body : bodies) {
+      if (!body.fixed) {
+        movable.add(body);
+      }
+    }
+    if (!movable.isEmpty()) {
+      double k = idealEdgeLength();
+      initializePositions(movable, k, new Random(seed));
+      simulate(movable, k);
+    }
+
+    // (3) copy positions and dimensions to the glyphs
+    for (Body body : movable) {
+      if (!(body.glyph instanceof ReactionGlyph)) {
+        complete(body.glyph, body.x - body.width / 2d, body.y - body.height / 2d, body.width, body.height);
+      }
+    }
+    for (Container container : compartmentMap.values()) {
+      if (!container.fixed) {
+        completeCompartment(container);
+      }
+    }
+
+    // (4) position process nodes
+    for (ReactionGlyph reactionGlyph : reactionNodes) {
+      completeReactionGlyph(reactionGlyph, glyphBodyMap.get(reactionGlyph.getId()));
+    }
+
+    updateLayoutBounds();
+    return output;
+  }
+
+  /**
+   * @param glyph
+   * @return the id of the compartment of the species or reaction of the
+   *         given glyph or {@code null}.
+   */
+  private String getCompartment(GraphicalObject glyph) {
+    /*
+     * instances can be missing when a glyph is graphical information only
+     * and not intended to be used for calculations in the model
+     */
+    if (glyph instanceof SpeciesGlyph) {
+      Species s = (Species) ((SpeciesGlyph) glyph).getSpeciesInstance();
+      if ((s != null) && s.isSetCompartment()) {
+        return s.getCompartment();
+      }
+    } else if (glyph instanceof ReactionGlyph) {
+      Reaction r = (Reaction) ((ReactionGlyph) glyph).getReactionInstance();
+      if ((r != null) && r.isSetCompartment()) {
+        return r.getCompartment();
+      }
+    }
+    return null;
+  }
+
+  /**
+   * @return the desired distance of adjacent bodies, derived from the mean
+   *         size of the bodies.
+   */
+  private double idealEdgeLength() {
+    double sum = 0d;
+    for (Body body : bodies) {
+      sum += Math.max(body.width, body.height);
+    }
+    return Math.max(10d, 1.5d * sum / bodies.size());
+  }
+
+  /**
+   * Places all bodies without position randomly within their compartment.
+   * Bodies of an unlayouted compartment start around a common center.
+   *
+   * @param movable
+   * @param k
+   * @param random
+   */
+  private void initializePositions(List<Body> movable, double k, Random random) {
+    double side = k * Math.sqrt(movable.size());
+    Map<Container, double[]> centers = new HashMap<Container, double[]>();
+    for (Body body : movable) {
+      if (body.positioned) {
+        continue;
+      }
+      Container c = body.container;
+      if ((c != null) && c.fixed) {
+        body.x = c.minX + random.nextDouble() * (c.maxX - c.minX);
+        body.y = c.minY + random.nextDouble() * (c.maxY - c.minY);
+      } else {
+        double cx = 0d, cy = 0d, spread = side;
+        if (c != null) {
+          double center[] = centers.get(c);
+          if (center == null) {
+            center = new double[] {random.nextDouble() * side, random.nextDouble() * side};
+            centers.put(c, center);
+          }
+          cx = center[0] - side / 2d;
+          cy = center[1] - side / 2d;
+          spread = k * Math.sqrt(c.members.size());
+        }
+        body.x = cx + side / 2d + (random.nextDouble() - 0.5d) * spread;
+        body.y = cy + side / 2d + (random.nextDouble() - 0.5d) * spread;
+      }
+      body.positioned = true;
+    }
+  }
+
+  /**
+   * Runs the force-directed simulation.
+   *
+   * @param movable
+   * @param k ideal edge length
+   */
+  private void simulate(final List<Body> movable, final double k) {
+    final int n = movable.size();
+    int nThreads = (n < PARALLEL_THRESHOLD) ? 1 : Math.min(threads, n / (PARALLEL_THRESHOLD / 2));
+    ExecutorService executor = (nThreads > 1) ? Executors.newFixedThreadPool(nThreads) : null;
+    try {
+      double temperature = k * Math.sqrt(n) / 10d;
+      double cooling = temperature / iterations;
+      for (int iteration = 0; iteration < iterations; iteration++) {
+        final QuadTree tree = buildTree(bodies);
+        updateContainerCenters();
+        final double center[] = centerOfMass();
+        if (executor == null) {
+          computeForces(movable, 0, n, tree, k, center);
+        } else {
+          List<Callable<Void>> tasks = new ArrayList<Callable<Void>>(nThreads);
+          int chunk = (n + nThreads - 1) / nThreads;
+          for (int start = 0; start < n; start += chunk) {
+            final int from = start, to = Math.min(n, start + chunk);
+            tasks.add(new Callable<Void>() {
+              /* (non-Javadoc)
+               * @see java.util.concurrent.Callable#call()
+               */
+              @Override
+              public Void call() throws Exception {
+                computeForces(movable, from, to, tree, k, center);
+                return null;
+              }
+            });
+          }
+          for (Future<Void> future : executor.invokeAll(tasks)) {
+            future.get();
+          }
+        }
+        move(movable, Math.max(temperature - iteration * cooling, k / 100d));
+      }
+    } catch (InterruptedException exc) {
+      logger.warning("Layout interrupted, keeping current positions.");
+      Thread.currentThread().interrupt();
+    } catch (ExecutionException exc) {
+      throw new RuntimeException(exc.getCause());
+    } finally {
+      if (executor != null) {
+        executor.shutdown();
+      }
+    }
+  }
+
+  /**
+   * @param bodies
+   * @return a quadtree over all bodies.
+   */
+  static QuadTree buildTree(List<Body> bodies) {
+    double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY;
+    double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+    for (Body body : bodies) {
+      minX = Math.min(minX, body.x);
+      minY = Math.min(minY, body.y);
+      maxX = Math.max(maxX, body.x);
+      maxY = Math.max(maxY, body.y);
+    }
+    QuadTree tree = new QuadTree((minX + maxX) / 2d, (minY + maxY) / 2d,
+      Math.max(maxX - minX, maxY - minY) / 2d + 1d);
+    for (Body body : bodies) {
+      tree.insert(body, 0);
+    }
+    return tree;
+  }
+
+  /**
+   * Computes the centers of all unlayouted compartments.
+   */
+  private void updateContainerCenters() {
+    for (Container c : compartmentMap.values()) {
+      if (!c.fixed && !c.members.isEmpty()) {
+        double sumX = 0d, sumY = 0d;
+        for (Body body : c.members) {
+          sumX += body.x;
+          sumY += body.y;
+        }
+        c.cx = sumX / c.members.size();
+        c.cy = sumY / c.members.size();
+      }
+    }
+  }
+
+  /**
+   * @return the center of all bodies.
+   */
+  private double[] centerOfMass() {
+    double sumX = 0d, sumY = 0d;
+    for (Body body : bodies) {
+      sumX += body.x;
+      sumY += body.y;
+    }
+    return new double[] {sumX / bodies.size(), sumY / bodies.size()};
+  }
+
+  /**
+   * Computes the forces on the bodies {@code from} (inclusive) to {@code to}
+   * (exclusive). Only reads the positions, hence this method can be called
+   * concurrently for disjoint ranges.
+   *
+   * @param movable
+   * @param from
+   * @param to
+   * @param tree
+   * @param k
+   * @param center
+   */
+  private void computeForces(List<Body> movable, int from, int to, QuadTree tree, double k, double center[]) {
+    double k2 = k * k;
+    for (int i = from; i < to; i++) {
+      Body b = movable.get(i);
+      b.fx = 0d;
+      b.fy = 0d;
+      // repulsion
+      tree.repulse(b, k2, THETA);
+      // attraction along edges
+      for (int j = 0; j < b.neighborCount; j++) {
+        Body other = b.neighbors[j];
+        double dx = other.x - b.x;
+        double dy = other.y - b.y;
+        double d = Math.sqrt(dx * dx + dy * dy);
+        b.fx += dx * d / k;
+        b.fy += dy * d / k;
+      }
+      // gravity
+      if ((b.container != null) && !b.container.fixed) {
+        b.fx += (b.container.cx - b.x) * COMPARTMENT_GRAVITY * k;
+        b.fy += (b.container.cy - b.y) * COMPARTMENT_GRAVITY * k;
+      }
+      b.fx += (center[0] - b.x) * GRAVITY * k;
+      b.fy += (center[1] - b.y) * GRAVITY * k;
+    }
+  }
+
+  /**
+   * Moves every body along its force by at most {@code temperature} and
+   * keeps it within its compartment.
+   *
+   * @param movable
+   * @param temperature
+   */
+  private void move(List<Body> movable, double temperature) {
+    for (Body b : movable) {
+      double f = Math.sqrt(b.fx * b.fx + b.fy * b.fy);
+      if (f > 0d) {
+        double step = Math.min(f, temperature) / f;
+        b.x += b.fx * step;
+        b.y += b.fy * step;
+      }
+      if ((b.container != null) && b.container.fixed) {
+        b.container.clamp(b);
+      }
+    }
+  }
+
+  /**
+   * Sets the missing position and dimensions of the given glyph.
+   *
+   * @param glyph
+   * @param x
+   * @param y
+   * @param width
+   * @param height
+   */
+  private void complete(GraphicalObject glyph, double x, double y, double width, double height) {
+    BoundingBox boundingBox = glyph.isSetBoundingBox() ? glyph.getBoundingBox() : glyph.createBoundingBox();
+    if (!LayoutDirector.glyphHasPosition(glyph)) {
+      logger.fine("completing glyph position id=" + glyph.getId());
+      boundingBox.createPosition(x, y, DEFAULT_Z_COORD);
+    }
+    if (!LayoutDirector.glyphHasDimensions(glyph)) {
+      logger.fine("completing glyph dimensions id=" + glyph.getId());
+      boundingBox.createDimensions(width, height, DEFAULT_DEPTH);
+    }
+    output.add(glyph);
+  }
+
+  /**
+   * Creates the bounding box of an unlayouted {@link CompartmentGlyph} around
+   * all its members.
+   *
+   * @param container
+   */
+  private void completeCompartment(Container container) {
+    CompartmentGlyph glyph = container.glyph;
+    if (container.members.isEmpty()) {
+      logger.fine("no content for compartment glyph id=" + glyph.getId());
+      Dimensions dimensions = createCompartmentGlyphDimension(glyph);
+      complete(glyph, 0d, 0d, dimensions.getWidth(), dimensions.getHeight());
+      return;
+    }
+    double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY;
+    double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+    for (Body body : container.members) {
+      minX = Math.min(minX, body.x - body.width / 2d);
+      minY = Math.min(minY, body.y - body.height / 2d);
+      maxX = Math.max(maxX, body.x + body.width / 2d);
+      maxY = Math.max(maxY, body.y + body.height / 2d);
+    }
+    minX -= MARGIN;
+    minY -= MARGIN;
+    maxX += MARGIN;
+    maxY += MARGIN;
+    if (LayoutDirector.glyphHasPosition(glyph)) {
+      // partially layouted: position only
+      Point position = glyph.getBoundingBox().getPosition();
+      minX = position.getX();
+      minY = position.getY();
+    }
+    complete(glyph, minX, minY, Math.max(maxX - minX, MARGIN), Math.max(maxY - minY, MARGIN));
+  }
+
+  /**
+   * Positions the given reaction glyph at its body and computes the docking
+   * points of its species reference glyphs.
+   *
+   * @param reactionGlyph
+   * @param body
+   */
+  private void completeReactionGlyph(ReactionGlyph reactionGlyph, Body body) {
+    double rotationAngle = calculateReactionGlyphRotationAngle(reactionGlyph);
+    reactionGlyph.putUserObject("ROTATION", rotationAngle);
+    BoundingBox boundingBox = reactionGlyph.isSetBoundingBox() ?
+        reactionGlyph.getBoundingBox() : reactionGlyph.createBoundingBox();
+    if (!LayoutDirector.glyphHasPosition(reactionGlyph)) {
+      boundingBox.setPosition(new Point(body.x - body.width / 2d, body.y - body.height / 2d,
+        DEFAULT_Z_COORD, level, version));
+    }
+    output.add(reactionGlyph);
+
+    Point centerPosition = calculateCenter(reactionGlyph);
+    if (reactionGlyph.isSetListOfSpeciesReferenceGlyphs()) {
+      for (SpeciesReferenceGlyph srg : reactionGlyph.getListOfSpeciesReferenceGlyphs()) {
+        Point speciesDockingAtPN = calculateReactionGlyphDockingPoint(reactionGlyph, rotationAngle, srg);
+        // make point relative to center of PN
+        Point relativeDockingAtPN = new Point(speciesDockingAtPN.getX() - centerPosition.getX(),
+          speciesDockingAtPN.getY() - centerPosition.getY(), DEFAULT_Z_COORD);
+        srg.putUserObject(LayoutDirector.PN_RELATIVE_DOCKING_POINT, relativeDockingAtPN);
+      }
+    }
+  }
+
+  /**
+   * Computes the extent of the layout and moves all glyphs to positive
+   * coordinates if no glyph has been layouted before.
+   */
+  private void updateLayoutBounds() {
+    double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY;
+    maxX = 0d;
+    maxY = 0d;
+    List<GraphicalObject> glyphs = new ArrayList<GraphicalObject>();
+    for (Body body : bodies) {
+      glyphs.add(body.glyph);
+    }
+    for (Container container : compartmentMap.values()) {
+      glyphs.add(container.glyph);
+    }
+    for (GraphicalObject glyph : glyphs) {
+      if (glyph.isSetBoundingBox() && (glyph.getBoundingBox().getPosition() != null)
+          && (glyph.getBoundingBox().getDimensions() != null)) {
+        Point position = glyph.getBoundingBox().getPosition();
+        minX = Math.min(minX, position.getX());
+        minY = Math.min(minY, position.getY());
+        maxX = Math.max(maxX, position.getX() + glyph.getBoundingBox().getDimensions().getWidth());
+        maxY = Math.max(maxY, position.getY() + glyph.getBoundingBox().getDimensions().getHeight());
+      }
+    }
+    if (setOfLayoutedGlyphs.isEmpty() && (minX != Double.POSITIVE_INFINITY)) {
+      double dx = MARGIN - minX, dy = MARGIN - minY;
+      for (GraphicalObject glyph : glyphs) {
+        if (glyph.isSetBoundingBox() && (glyph.getBoundingBox().getPosition() != null)) {
+          Point position = glyph.getBoundingBox().getPosition();
+          position.setX(position.getX() + dx);
+          position.setY(position.getY() + dy);
+        }
+      }
+      maxX += dx;
+      maxY += dy;
+    }
+  }
+
+  /* (non-Javadoc)
+   * @see de.zbit.sbml.layout.LayoutAlgorithm#createLayoutDimension()
+   */
+  @Override
+  public Dimensions createLayoutDimension() {
+    return new Dimensions(maxX + MARGIN, maxY + MARGIN, DEFAULT_DEPTH, level, version);
+  }
+
+  /* (non-Javadoc)
+   * @see de.zbit.sbml.layout.LayoutAlgorithm#createGlyphBoundingBox(org.sbml.jsbml.ext.layout.GraphicalObject, org.sbml.jsbml.ext.layout.SpeciesReferenceGlyph)
+   */
+  @Override
+  public BoundingBox createGlyphBoundingBox(GraphicalObject glyph,
+    SpeciesReferenceGlyph specRefGlyph) {
+    if (glyph instanceof ReactionGlyph) {
+      BoundingBox boundingBox = createBoundingBoxWithLevelAndVersion();
+      ReactionGlyph reactionGlyph = (ReactionGlyph) glyph;
+      if (specRefGlyph != null) {
+        boundingBox.setDimensions(createSpeciesReferenceGlyphDimension(reactionGlyph, specRefGlyph));
+        boundingBox.setPosition(createSpeciesReferenceGlyphPosition(reactionGlyph, specRefGlyph));
+      } else {
+        boundingBox.setDimensions(createReactionGlyphDimension(reactionGlyph));
+        boundingBox.setPosition(createReactionGlyphPosition(reactionGlyph));
+      }
+      return boundingBox;
+    }
+    return null;
+  }
+
+  /* (non-Javadoc)
+   * @see de.zbit.sbml.layout.LayoutAlgorithm#createCurve(org.sbml.jsbml.ext.layout.ReactionGlyph, org.sbml.jsbml.ext.layout.SpeciesReferenceGlyph)
+   */
+  @Override
+  public Curve createCurve(ReactionGlyph reactionGlyph, SpeciesReferenceGlyph specRefGlyph) {
+    Curve curve = new Curve(level, version);
+    ListOf<CurveSegment> curveSegmentsList = new ListOf<CurveSegment>(level, version);
+    LineSegment curveSegment = new LineSegment();
+    curveSegment.setLevel(level);
+    curveSegment.setVersion(version);
+
+    if (specRefGlyph.isSetSpeciesGlyph()) {
+      SpeciesGlyph speciesGlyph = specRefGlyph.getSpeciesGlyphInstance();
+      SpeciesReferenceRole specRefRole = specRefGlyph.isSetSpeciesReferenceRole() ?
+          specRefGlyph.getSpeciesReferenceRole() : SpeciesReferenceRole.UNDEFINED;
+      Point sgCurvePoint = calculateSpeciesGlyphDockingPosition(calculateCenter(speciesGlyph),
+        reactionGlyph, specRefRole, speciesGlyph);
+      Point rgCurvePoint = calculateReactionGlyphDockingPoint(reactionGlyph,
+        calculateReactionGlyphRotationAngle(reactionGlyph), specRefGlyph);
+
+      if (specRefRole.equals(SpeciesReferenceRole.PRODUCT) ||
+          specRefRole.equals(SpeciesReferenceRole.SIDEPRODUCT)) {
+        // For products, the curve goes from the reaction glyph to the
+        // species glyph.
+        curveSegment.setStart(rgCurvePoint);
+        curveSegment.setEnd(sgCurvePoint);
+      } else {
+        // For all other species, the curve goes from the species glyph
+        // to the reaction glyph.
+        curveSegment.setStart(sgCurvePoint);
+        curveSegment.setEnd(rgCurvePoint);
+      }
+    }
+    curveSegmentsList.add(curveSegment);
+    curve.setListOfCurveSegments(curveSegmentsList);
+
+    return curve;
+  }
+
+  /* (non-Javadoc)
+   * @see de.zbit.sbml.layout.LayoutAlgorithm#createCompartmentGlyphDimension(org.sbml.jsbml.ext.layout.CompartmentGlyph)
+   */
+  @Override
+  public Dimensions createCompartmentGlyphDimension(CompartmentGlyph previousCompartmentGlyph) {
+    return new Dimensions(DEFAULT_SPECIES_WIDTH + 2d * MARGIN, DEFAULT_SPECIES_HEIGHT + 2d * MARGIN,
+      DEFAULT_DEPTH, level, version);
+  }
+
+  /* (non-Javadoc)
+   * @see de.zbit.sbml.layout.LayoutAlgorithm#createCompartmentGlyphPosition(org.sbml.jsbml.ext.layout.CompartmentGlyph)
+   */
+  @Override
+  @Deprecated
+  public Point createCompartmentGlyphPosition(CompartmentGlyph previousCompartmentGlyph) {
+    return new Point(0d, 0d, DEFAULT_Z_COORD, level, version);
+  }
+
+  /* (non-Javadoc)
+   * @see de.zbit.sbml.layout.LayoutAlgorithm#createSpeciesGlyphDimension()
+   */
+  @Override
+  public Dimensions createSpeciesGlyphDimension() {
+    return new Dimensions(DEFAULT_SPECIES_WIDTH, DEFAULT_SPECIES_HEIGHT, DEFAULT_DEPTH, level, version);
+  }
+
+  /* (non-Javadoc)
+   * @see de.zbit.sbml.layout.LayoutAlgorithm#createSpeciesReferenceGlyphDimension(org.sbml.jsbml.ext.layout.ReactionGlyph, org.sbml.jsbml.ext.layout.SpeciesReferenceGlyph)
+   */
+  @Override
+  public Dimensions createSpeciesReferenceGlyphDimension(ReactionGlyph reactionGlyph,
+    SpeciesReferenceGlyph speciesReferenceGlyph) {
+    return null;
+  }
+
+  /* (non-Javadoc)
+   * @see de.zbit.sbml.layout.LayoutAlgorithm#createTextGlyphDimension(org.sbml.jsbml.ext.layout.TextGlyph)
+   */
+  @Override
+  public Dimensions createTextGlyphDimension(TextGlyph textGlyph) {
+    int length = textGlyph.isSetText() ? textGlyph.getText().length() : 0;
+    return new Dimensions(Math.max(DEFAULT_TEXT_HEIGHT, length * CHARACTER_WIDTH), DEFAULT_TEXT_HEIGHT,
+      DEFAULT_DEPTH, level, version);
+  }
+
+}
@@ -105,6 +105,12 @@
  * {@link de.zbit.sbml.layout.SimpleLayoutAlgorithm#calculateDockingForRoundSpecies}.
  * </ul>
  * 
+ * <p>
+ * {@link de.zbit.sbml.layout.ForceDirectedLayoutAlgorithm} extends it to a complete
+ * implementation, which positions all unlayouted glyphs with a force-directed model
+ * and does not require yFiles (see {@link de.zbit.sbml.layout.y.YLayoutAlgorithm} for
+ * the yFiles-based implementation).
+ * 
  * <h3>Design Notes</h3>
  * 
  * <ul>
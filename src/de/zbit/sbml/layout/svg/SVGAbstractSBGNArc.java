@@ -0,0 +1,130 @@
+/*
+ * $Id$
+ * $URL$
+ * ---------------------------------------------------------------------
+ * This file is part of the SysBio API library.
+ *
+ * Copyright (C) 2009-2016 by the University of Tuebingen, Germany.
+ *
+ * This library is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation. A copy of the license
+ * agreement is provided in the file named "LICENSE.txt" included with
+ * this software distribution and also available online as
+ * <http://www.gnu.org/licenses/lgpl-3.0-standalone.html>.
+ * ---------------------------------------------------------------------
+ */
+package de.zbit.sbml.layout.svg;
+
+import org.sbml.jsbml.ext.layout.Curve;
+import org.sbml.jsbml.ext.layout.CurveSegment;
+
+import de.zbit.sbml.layout.SBGNArc;
+
+/**
+ * Base class of all SVG arcs. An arc is drawn as a path and its decorations
+ * are references to the markers, which are defined once by
+ * {@link SVGLayoutBuilder}.
+ *
+ * <p>By default, a curve is assumed to start at the species and to end at
+ * the process node. Use {@link #setFromProcessNode(boolean)} if the curve
+ * starts at the process node.</p>
+ *
+ * @version $Rev$
+ * @since 1.4
+ */
+public abstract class SVGAbstractSBGNArc implements SBGNArc<SVGElement> {
+
+  /**
+   * Suffix of markers at the start of a path.
+   */
+  public static final String MARKER_START = "-start";
+
+  /**
+   * Suffix of markers at the end of a path.
+   */
+  public static final String MARKER_END = "-end";
+
+  /**
+   * CSS class of all arcs.
+   */
+  public static final String STYLE_CLASS = "arc";
+
+  /**
+   * Whether the curve starts at the process node.
+   */
+  private boolean fromProcessNode = false;
+
+  /**
+   * @return the name of the marker at the species or {@code null}.
+   */
+  public String getSpeciesMarker() {
+    return null;
+  }
+
+  /**
+   * @return the name of the marker at the process node or {@code null}.
+   */
+  public String getProcessNodeMarker() {
+    return null;
+  }
+
+  /**
+   * @return whether the curve starts at the process node.
+   */
+  public boolean isFromProcessNode() {
+    return fromProcessNode;
+  }
+
+  /**
+   * @param fromProcessNode whether the curve starts at the process node.
+   */
+  public void setFromProcessNode(boolean fromProcessNode) {
+    this.fromProcessNode = fromProcessNode;
+  }
+
+  /**
+   * Creates the path element with the markers of this arc.
+   *
+   * @param d path data
+   * @return
+   */
+  protected SVGElement createPath(StringBuilder d) {
+    SVGElement path = SVGShapes.path(d).setAttribute("class", STYLE_CLASS);
+    String start = fromProcessNode ? getProcessNodeMarker() : getSpeciesMarker();
+    String end = fromProcessNode ? getSpeciesMarker() : getProcessNodeMarker();
+    if (start != null) {
+      path.setAttribute("marker-start", "url(#" + start + MARKER_START + ")");
+    }
+    if (end != null) {
+      path.setAttribute("marker-end", "url(#" + end + MARKER_END + ")");
+    }
+    return path;
+  }
+
+  /* (non-Javadoc)
+   * @see de.zbit.sbml.layout.SBGNArc#draw(org.sbml.jsbml.ext.layout.CurveSegment, double)
+   */
+  @Override
+  public SVGElement draw(CurveSegment curveSegment, double lineWidth) {
+    return createPath(SVGShapes.appendSegment(new StringBuilder(), curveSegment, false, true))
+        .setAttribute("stroke-width", lineWidth);
+  }
+
+  /* (non-Javadoc)
+   * @see de.zbit.sbml.layout.SBGNArc#draw(org.sbml.jsbml.ext.layout.Curve, double)
+   */
+  @Override
+  public SVGElement draw(Curve curve, double lineWidth) {
+    return draw(curve).setAttribute("stroke-width", lineWidth);
+  }
+
+  /* (non-Javadoc)
+   * @see de.zbit.sbml.layout.SBGNArc#draw(org.sbml.jsbml.ext.layout.Curve)
+   */
+  @Override
+  public SVGElement draw(Curve curve) {
+    return createPath(SVGShapes.appendCurve(new StringBuilder(), curve, false));
+  }
+
+}
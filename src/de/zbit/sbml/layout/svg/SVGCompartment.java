@@ -0,0 +1,44 @@
+/*
+ * $Id$
+ * $URL$
+ * ---------------------------------------------------------------------
+ * This file is part of the SysBio API library.
+ *
+ * Copyright (C) 2009-2016 by the University of Tuebingen, Germany.
+ *
+ * This library is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation. A copy of the license
+ * agreement is provided in the file named "LICENSE.txt" included with
+ * this software distribution and also available online as
+ * <http://www.gnu.org/licenses/lgpl-3.0-standalone.html>.
+ * ---------------------------------------------------------------------
+ */
+package de.zbit.sbml.layout.svg;
+
+import de.zbit.sbml.layout.Compartment;
+
+/**
+ * SVG implementation of node type {@link Compartment}.
+ *
+ * @version $Rev$
+ * @since 1.4
+ */
+public class SVGCompartment extends Compartment<SVGElement> {
+
+  /**
+   * CSS classes of this node.
+   */
+  public static final String STYLE_CLASS = "compartment";
+
+  /* (non-Javadoc)
+   * @see de.zbit.sbml.layout.SBGNNode#draw(double, double, double, double, double, double)
+   */
+  @Override
+  public SVGElement draw(double x, double y, double z, double width,
+    double height, double depth) {
+    double radius = SVGShapes.cornerRadius(width, height, 2d * SVGShapes.CORNER_RADIUS);
+    return SVGShapes.rect(x, y, width, height, radius).setAttribute("class", STYLE_CLASS);
+  }
+
+}
@@ -0,0 +1,206 @@
+/*
+ * $Id$
+ * $URL$
+ * ---------------------------------------------------------------------
+ * This file is part of the SysBio API library.
+ *
+ * Copyright (C) 2009-2016 by the University of Tuebingen, Germany.
+ *
+ * This library is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation. A copy of the license
+ * agreement is provided in the file named "LICENSE.txt" included with
+ * this software distribution and also available online as
+ * <http://www.gnu.org/licenses/lgpl-3.0-standalone.html>.
+ * ---------------------------------------------------------------------
+ */
+package de.zbit.sbml.layout.svg;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+/**
+ * A lightweight SVG element, i.e., a name, attributes, child elements and an
+ * optional text. Elements are only created for a single glyph and are
+ * immediately written by {@link #write(XMLStreamWriter)}.
+ *
+ * @version $Rev$
+ * @since 1.4
+ */
+public class SVGElement {
+
+  /**
+   * The name of this element, e.g., {@code rect}.
+   */
+  private final String name;
+
+  /**
+   * Alternating names and values of all attributes.
+   */
+  private final List<String> attributes = new ArrayList<String>(8);
+
+  /**
+   * Child elements (might be {@code null}).
+   */
+  private List<SVGElement> children = null;
+
+  /**
+   * Text content (might be {@code null}).
+   */
+  private String text = null;
+
+  /**
+   * @param name the name of this element, e.g., {@code rect}.
+   */
+  public SVGElement(String name) {
+    super();
+    this.name = name;
+  }
+
+  /**
+   * @return the name of this element.
+   */
+  public String getName() {
+    return name;
+  }
+
+  /**
+   * Sets or replaces an attribute.
+   *
+   * @param name
+   * @param value
+   * @return this element.
+   */
+  public SVGElement setAttribute(String name, String value) {
+    for (int i = 0; i < attributes.size(); i += 2) {
+      if (attributes.get(i).equals(name)) {
+        attributes.set(i + 1, value);
+        return this;
+      }
+    }
+    attributes.add(name);
+    attributes.add(value);
+    return this;
+  }
+
+  /**
+   * Sets or replaces a numeric attribute.
+   *
+   * @param name
+   * @param value
+   * @return this element.
+   * @see #format(double)
+   */
+  public SVGElement setAttribute(String name, double value) {
+    return setAttribute(name, format(value));
+  }
+
+  /**
+   * @param name
+   * @return the value of the given attribute or {@code null}.
+   */
+  public String getAttribute(String name) {
+    for (int i = 0; i < attributes.size(); i += 2) {
+      if (attributes.get(i).equals(name)) {
+        return attributes.get(i + 1);
+      }
+    }
+    return null;
+  }
+
+  /**
+   * @param child
+   * @return this element.
+   */
+  public SVGElement addChild(SVGElement child) {
+    if (children == null) {
+      children = new ArrayList<SVGElement>(4);
+    }
+    children.add(child);
+    return this;
+  }
+
+  /**
+   * @return the child elements (never {@code null}).
+   */
+  public List<SVGElement> getChildren() {
+    if (children == null) {
+      return new ArrayList<SVGElement>(0);
+    }
+    return children;
+  }
+
+  /**
+   * @param text the text content of this element.
+   * @return this element.
+   */
+  public SVGElement setText(String text) {
+    this.text = text;
+    return this;
+  }
+
+  /**
+   * @return the text content of this element (might be {@code null}).
+   */
+  public String getText() {
+    return text;
+  }
+
+  /**
+   * Writes this element with all its children.
+   *
+   * @param writer
+   * @throws XMLStreamException
+   */
+  public void write(XMLStreamWriter writer) throws XMLStreamException {
+    if ((children == null) && (text == null)) {
+      writer.writeEmptyElement(name);
+    } else {
+      writer.writeStartElement(name);
+    }
+    for (int i = 0; i < attributes.size(); i += 2) {
+      writer.writeAttribute(attributes.get(i), attributes.get(i + 1));
+    }
+    if ((children != null) || (text != null)) {
+      if (text != null) {
+        writer.writeCharacters(text);
+      }
+      if (children != null) {
+        for (SVGElement child : children) {
+          child.write(writer);
+        }
+      }
+      writer.writeEndElement();
+    }
+  }
+
+  /**
+   * Formats a coordinate with at most two decimal places, which is more than
+   * sufficient for drawing and keeps the output small.
+   *
+   * @param value
+   * @return the shortest representation of the rounded value.
+   */
+  public static String format(double value) {
+    if (Double.isNaN(value) || Double.isInfinite(value)) {
+      return "0";
+    }
+    long rounded = Math.round(value * 100d);
+    if (rounded % 100 == 0) {
+      return Long.toString(rounded / 100);
+    }
+    return Double.toString(rounded / 100d);
+  }
+
+  /* (non-Javadoc)
+   * @see java.lang.Object#toString()
+   */
+  @Override
+  public String toString() {
+    return "<" + name + " " + attributes + ">";
+  }
+
+}
@@ -0,0 +1,901 @@
+/*
+ * $Id$
+ * $URL$
+ * ---------------------------------------------------------------------
+ * This file is part of the SysBio API library.
+ *
+ * Copyright (C) 2009-2016 by the University of Tuebingen, Germany.
+ *
+ * This library is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation. A copy of the license
+ * agreement is provided in the file named "LICENSE.txt" included with
+ * this software distribution and also available online as
+ * <http://www.gnu.org/licenses/lgpl-3.0-standalone.html>.
+ * ---------------------------------------------------------------------
+ */
+package de.zbit.sbml.layout.svg;
+
+import static de.zbit.graph.sbgn.DrawingOptions.FONT;
+import static de.zbit.graph.sbgn.DrawingOptions.FONT_COLOR;
+import static de.zbit.sbml.layout.svg.SVGElement.format;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.text.MessageFormat;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+import org.sbml.jsbml.ListOf;
+import org.sbml.jsbml.NamedSBase;
+import org.sbml.jsbml.SBO;
+import org.sbml.jsbml.SpeciesReference;
+import org.sbml.jsbml.ext.layout.BoundingBox;
+import org.sbml.jsbml.ext.layout.CompartmentGlyph;
+import org.sbml.jsbml.ext.layout.CubicBezier;
+import org.sbml.jsbml.ext.layout.Curve;
+import org.sbml.jsbml.ext.layout.Dimensions;
+import org.sbml.jsbml.ext.layout.GraphicalObject;
+import org.sbml.jsbml.ext.layout.Layout;
+import org.sbml.jsbml.ext.layout.Point;
+import org.sbml.jsbml.ext.layout.ReactionGlyph;
+import org.sbml.jsbml.ext.layout.SpeciesGlyph;
+import org.sbml.jsbml.ext.layout.SpeciesReferenceGlyph;
+import org.sbml.jsbml.ext.layout.TextGlyph;
+import org.sbml.jsbml.util.StringTools;
+
+import de.zbit.graph.sbgn.DrawingOptions;
+import de.zbit.sbml.layout.AbstractLayoutBuilder;
+import de.zbit.sbml.layout.AssociationNode;
+import de.zbit.sbml.layout.Catalysis;
+import de.zbit.sbml.layout.Compartment;
+import de.zbit.sbml.layout.Consumption;
+import de.zbit.sbml.layout.DissociationNode;
+import de.zbit.sbml.layout.Inhibition;
+import de.zbit.sbml.layout.LayoutDirector;
+import de.zbit.sbml.layout.Macromolecule;
+import de.zbit.sbml.layout.Modulation;
+import de.zbit.sbml.layout.NecessaryStimulation;
+import de.zbit.sbml.layout.NucleicAcidFeature;
+import de.zbit.sbml.layout.OmittedProcessNode;
+import de.zbit.sbml.layout.PerturbingAgent;
+import de.zbit.sbml.layout.ProcessNode;
+import de.zbit.sbml.layout.Production;
+import de.zbit.sbml.layout.RenderProcessor;
+import de.zbit.sbml.layout.ReversibleConsumption;
+import de.zbit.sbml.layout.SBGNNode;
+import de.zbit.sbml.layout.SBGNNodeWithCloneMarker;
+import de.zbit.sbml.layout.SBGNProcessNode;
+import de.zbit.sbml.layout.SimpleChemical;
+import de.zbit.sbml.layout.SourceSink;
+import de.zbit.sbml.layout.Stimulation;
+import de.zbit.sbml.layout.UncertainProcessNode;
+import de.zbit.sbml.layout.UnspecifiedNode;
+import de.zbit.util.prefs.Option;
+import de.zbit.util.prefs.SBPreferences;
+import de.zbit.util.progressbar.AbstractProgressBar;
+
+/**
+ * A {@link de.zbit.sbml.layout.LayoutBuilder} that writes a Scalable Vector
+ * Graphics (SVG) document to an {@link OutputStream}. In contrast to the
+ * yFiles-based builder, no intermediate graph is created: every glyph is
+ * converted into a small {@link SVGElement} tree and written immediately.
+ * Hence, memory consumption does not depend on the size of the layout and
+ * no graphical environment is required.
+ *
+ * <p>Colors, line widths and the font are taken from the
+ * {@link DrawingOptions} and written once as a style sheet; markers for the
+ * arc decorations are written once as definitions, which are referenced by
+ * all arcs.</p>
+ *
+ * <p>Typical usage:
+ * <pre>
+ * OutputStream out = new FileOutputStream("layout.svg");
+ * LayoutDirector&lt;OutputStream&gt; director = new LayoutDirector&lt;OutputStream&gt;(
+ *   document, new SVGLayoutBuilder(out), new ForceDirectedLayoutAlgorithm());
+ * director.run();
+ * out.close();
+ * </pre></p>
+ *
+ * @version $Rev$
+ * @since 1.4
+ */
+public class SVGLayoutBuilder extends AbstractLayoutBuilder<OutputStream, SVGElement, SVGElement> {
+
+  /**
+   * A {@link Logger} for this class.
+   */
+  private static final transient Logger logger = Logger.getLogger(SVGLayoutBuilder.class.getName());
+
+  /**
+   * User preferences.
+   */
+  private static final transient SBPreferences prefs = SBPreferences.getPreferencesFor(DrawingOptions.class);
+
+  /**
+   * The SVG name space.
+   */
+  public static final String SVG_NAMESPACE = "http://www.w3.org/2000/svg";
+
+  /**
+   * Margin around the drawing, if the dimensions are derived from the
+   * glyphs.
+   */
+  private static final double MARGIN = 20d;
+
+  /**
+   * Font size of labels, the same as the one used for labels by
+   * {@link de.zbit.sbml.layout.y.YLayoutBuilder}. Only the font family is
+   * taken from {@link DrawingOptions#FONT}.
+   */
+  private static final int FONT_SIZE = 18;
+
+  /**
+   * The product of this builder.
+   */
+  private final OutputStream out;
+
+  /**
+   * Writes to {@link #out}.
+   */
+  private XMLStreamWriter writer;
+
+  /**
+   * The layout, which is currently built.
+   */
+  private Layout layout;
+
+  /**
+   * Whether the document header has already been written. The header is
+   * written lazily, because the dimensions of the layout are not known
+   * before all glyphs have been completed.
+   */
+  private boolean headerWritten;
+
+  /**
+   * Bounding boxes of all glyphs, that have already been written, to
+   * attach labels and arcs.
+   */
+  private Map<String, BoundingBox> id2bounds = new HashMap<String, BoundingBox>();
+
+  /**
+   * List keeping track of progress listeners.
+   */
+  private List<AbstractProgressBar> progressListeners = new LinkedList<AbstractProgressBar>();
+
+  /**
+   * @param out the stream to write the SVG document to. It is flushed, but
+   *        not closed, by {@link #builderEnd()}.
+   */
+  public SVGLayoutBuilder(OutputStream out) {
+    super();
+    this.out = out;
+  }
+
+  /* (non-Javadoc)
+   * @see de.zbit.sbml.layout.LayoutBuilder#addProgressListener(de.zbit.util.progressbar.AbstractProgressBar)
+   */
+  @Override
+  public void addProgressListener(AbstractProgressBar progress) {
+    progressListeners.add(progress);
+  }
+
+  /* (non-Javadoc)
+   * @see de.zbit.sbml.layout.LayoutBuilder#builderStart(org.sbml.jsbml.ext.layout.Layout)
+   */
+  @Override
+  public void builderStart(Layout layout) {
+    this.layout = layout;
+    terminated = false;
+    headerWritten = false;
+    id2bounds.clear();
+    try {
+      writer = XMLOutputFactory.newInstance().createXMLStreamWriter(
+        new BufferedOutputStream(out), "UTF-8");
+    } catch (XMLStreamException exc) {
+      throw new RuntimeException(exc);
+    }
+    int glyphs = count(layout.isSetListOfCompartmentGlyphs() ? layout.getListOfCompartmentGlyphs() : null)
+        + count(layout.isSetListOfSpeciesGlyphs() ? layout.getListOfSpeciesGlyphs() : null)
+        + count(layout.isSetListOfReactionGlyphs() ? layout.getListOfReactionGlyphs() : null)
+        + count(layout.isSetListOfTextGlyphs() ? layout.getListOfTextGlyphs() : null);
+    for (AbstractProgressBar progress : progressListeners) {
+      progress.setNumberOfTotalCalls(glyphs);
+      progress.setCallNr(0);
+    }
+  }
+
+  /**
+   * @param list might be {@code null}
+   * @return the size of the given list.
+   */
+  private static int count(ListOf<?> list) {
+    return list == null ? 0 : list.size();
+  }
+
+  /**
+   * Writes the given element, preceded by the document header, if necessary.
+   *
+   * @param element
+   */
+  private void write(SVGElement element) {
+    try {
+      if (!headerWritten) {
+        writeHeader();
+      }
+      element.write(writer);
+    } catch (XMLStreamException exc) {
+      throw new RuntimeException(exc);
+    }
+  }
+
+  /**
+   * Informs all progress listeners about one more built glyph.
+   */
+  private void progress() {
+    for (AbstractProgressBar progress : progressListeners) {
+      progress.DisplayBar();
+    }
+  }
+
+  /**
+   * Writes the root element, the markers and the style sheet.
+   *
+   * @throws XMLStreamException
+   */
+  private void writeHeader() throws XMLStreamException {
+    headerWritten = true;
+    double x = 0d, y = 0d, width, height;
+    Dimensions dimensions = layout.isSetDimensions() ? layout.getDimensions() : null;
+    if ((dimensions != null) && (dimensions.getWidth() > 0d) && (dimensions.getHeight() > 0d)) {
+      width = dimensions.getWidth();
+      height = dimensions.getHeight();
+    } else {
+      double extent[] = {Double.MAX_VALUE, Double.MAX_VALUE, -Double.MAX_VALUE, -Double.MAX_VALUE};
+      extend(extent, layout.isSetListOfCompartmentGlyphs() ? layout.getListOfCompartmentGlyphs() : null);
+      extend(extent, layout.isSetListOfSpeciesGlyphs() ? layout.getListOfSpeciesGlyphs() : null);
+      extend(extent, layout.isSetListOfReactionGlyphs() ? layout.getListOfReactionGlyphs() : null);
+      extend(extent, layout.isSetListOfTextGlyphs() ? layout.getListOfTextGlyphs() : null);
+      if (extent[0] > extent[2]) {
+        extent = new double[] {0d, 0d, 0d, 0d};
+      }
+      x = extent[0] - MARGIN;
+      y = extent[1] - MARGIN;
+      width = extent[2] - extent[0] + 2d * MARGIN;
+      height = extent[3] - extent[1] + 2d * MARGIN;
+    }
+    writer.writeStartDocument("UTF-8", "1.0");
+    writer.writeStartElement("svg");
+    writer.writeDefaultNamespace(SVG_NAMESPACE);
+    writer.writeAttribute("version", "1.1");
+    writer.writeAttribute("width", format(width));
+    writer.writeAttribute("height", format(height));
+    writer.writeAttribute("viewBox", format(x) + ' ' + format(y) + ' ' + format(width) + ' ' + format(height));
+    if (layout.isSetId()) {
+      writer.writeStartElement("title");
+      writer.writeCharacters(layout.isSetName() ? layout.getName() : layout.getId());
+      writer.writeEndElement();
+    }
+    createDefinitions().write(writer);
+  }
+
+  /**
+   * Extends the given extent ({@code minX, minY, maxX, maxY}) by the
+   * bounding boxes of all given glyphs.
+   *
+   * @param extent
+   * @param glyphs might be {@code null}
+   */
+  private static void extend(double extent[], ListOf<? extends GraphicalObject> glyphs) {
+    if (glyphs == null) {
+      return;
+    }
+    for (GraphicalObject glyph : glyphs) {
+      BoundingBox bb = glyph.isSetBoundingBox() ? glyph.getBoundingBox() : null;
+      if ((bb != null) && bb.isSetPosition()) {
+        Point p = bb.getPosition();
+        Dimensions d = bb.isSetDimensions() ? bb.getDimensions() : null;
+        extent[0] = Math.min(extent[0], p.getX());
+        extent[1] = Math.min(extent[1], p.getY());
+        extent[2] = Math.max(extent[2], p.getX() + (d != null ? d.getWidth() : 0d));
+        extent[3] = Math.max(extent[3], p.getY() + (d != null ? d.getHeight() : 0d));
+      }
+    }
+  }
+
+  /**
+   * @return the definitions of all markers and the style sheet.
+   */
+  private SVGElement createDefinitions() {
+    SVGElement defs = new SVGElement("defs");
+    String arrow = "M0,0L10,5L0,10";
+    String bar = "M10,0L10,10";
+    defs.addChild(marker(SVGProduction.MARKER, SVGShapes.path(arrow + 'Z').setAttribute("class", "filled")));
+    defs.addChild(marker(SVGCatalysis.MARKER, new SVGElement("circle")
+      .setAttribute("cx", 5d).setAttribute("cy", 5d).setAttribute("r", 4.5d)));
+    defs.addChild(marker(SVGInhibition.MARKER, SVGShapes.path(bar)));
+    defs.addChild(marker(SVGModulation.MARKER, SVGShapes.path("M0,5L5,0L10,5L5,10Z")));
+    defs.addChild(marker(SVGStimulation.MARKER, SVGShapes.path(arrow + 'Z')));
+    defs.addChild(marker(SVGNecessaryStimulation.MARKER,
+      SVGShapes.path("M3,0L10,5L3,10Z M0,0L0,10")));
+    SVGElement style = new SVGElement("style").setAttribute("type", "text/css");
+    style.setText(createStyleSheet());
+    defs.addChild(style);
+    return defs;
+  }
+
+  /**
+   * Creates the two markers {@code name + }{@link SVGAbstractSBGNArc#MARKER_END}
+   * and {@code name + }{@link SVGAbstractSBGNArc#MARKER_START}. Shapes have
+   * to be defined for the end of a path, in a 10 x 10 box, pointing to
+   * {@code (10, 5)}.
+   *
+   * @param name
+   * @param shape
+   * @return a group of both markers.
+   */
+  private static SVGElement marker(String name, SVGElement shape) {
+    SVGElement group = new SVGElement("g");
+    SVGElement end = new SVGElement("marker").setAttribute("id", name + SVGAbstractSBGNArc.MARKER_END)
+        .setAttribute("class", "marker").setAttribute("viewBox", "0 0 10 10")
+        .setAttribute("refX", 10d).setAttribute("refY", 5d)
+        .setAttribute("markerUnits", "userSpaceOnUse")
+        .setAttribute("markerWidth", 12d).setAttribute("markerHeight", 12d)
+        .setAttribute("orient", "auto");
+    end.addChild(shape);
+    SVGElement start = new SVGElement("marker").setAttribute("id", name + SVGAbstractSBGNArc.MARKER_START)
+        .setAttribute("class", "marker").setAttribute("viewBox", "0 0 10 10")
+        .setAttribute("refX", 0d).setAttribute("refY", 5d)
+        .setAttribute("markerUnits", "userSpaceOnUse")
+        .setAttribute("markerWidth", 12d).setAttribute("markerHeight", 12d)
+        .setAttribute("orient", "auto");
+    start.addChild(new SVGElement("g").setAttribute("transform", "matrix(-1 0 0 1 10 0)").addChild(shape));
+    group.addChild(end);
+    group.addChild(start);
+    return group;
+  }
+
+  /**
+   * @return a CSS style sheet for all classes used by the nodes and arcs of
+   *         this package.
+   */
+  private static String createStyleSheet() {
+    String lineColor = color(DrawingOptions.DEFAULT_LINE_COLOR);
+    String edgeColor = color(DrawingOptions.EDGE_LINE_COLOR);
+    Font font = FONT.parseOrCast(prefs.get(FONT));
+    StringBuilder css = new StringBuilder();
+    css.append("\n.epn,.process{stroke:").append(lineColor)
+    .append(";stroke-width:").append(format(prefs.getDouble(DrawingOptions.GLYPH_LINE_WIDTH))).append(";}\n");
+    css.append(".process{fill:#ffffff;}\n");
+    css.append(".process text{fill:").append(lineColor).append(";stroke:none;text-anchor:middle;dominant-baseline:central;}\n");
+    css.append(".association circle{fill:").append(lineColor).append(";}\n");
+    css.append(".macromolecule{fill:").append(color(DrawingOptions.MACROMOLECULE_FILL_COLOR)).append(";}\n");
+    css.append(".simple-chemical{fill:").append(color(DrawingOptions.SIMPLE_MOLECULE_FILL_COLOR)).append(";}\n");
+    css.append(".nucleic-acid-feature{fill:").append(color(DrawingOptions.GENE_FILL_COLOR)).append(";}\n");
+    css.append(".perturbing-agent{fill:").append(color(DrawingOptions.PERTURBING_AGENT_FILL_COLOR)).append(";}\n");
+    css.append(".source-sink{fill:").append(color(DrawingOptions.EMPTY_SET_FILL_COLOR)).append(";}\n");
+    css.append(".unspecified{fill:").append(color(DrawingOptions.DEFAULT_FILL_COLOR)).append(";}\n");
+    css.append('.').append(SVGShapes.CLONE_MARKER).append("{fill:").append(lineColor).append(";}\n");
+    css.append(".compartment{fill:");
+    if (prefs.getBoolean(DrawingOptions.COMPARTMENT_FILLED)) {
+      css.append(color(DrawingOptions.COMPARTMENT_FILL_COLOR));
+    } else {
+      css.append("none");
+    }
+    css.append(";stroke:").append(color(DrawingOptions.COMPARTMENT_LINE_COLOR))
+    .append(";stroke-width:").append(format(prefs.getDouble(DrawingOptions.COMPARTMENT_LINE_WIDTH))).append(";}\n");
+    css.append('.').append(SVGAbstractSBGNArc.STYLE_CLASS).append("{fill:none;stroke:").append(edgeColor).append(";}\n");
+    css.append(".marker *{fill:#ffffff;stroke:").append(edgeColor).append(";}\n");
+    css.append(".marker .filled{fill:").append(edgeColor).append(";}\n");
+    css.append("text{font-family:'").append(font.getFamily()).append("';font-size:").append(FONT_SIZE)
+    .append("px;fill:").append(color(FONT_COLOR)).append(";}\n");
+    return css.toString();
+  }
+
+  /**
+   * @param option
+   * @return the hexadecimal representation of the color of the given option.
+   */
+  private static String color(Option<Color> option) {
+    return color(Option.parseOrCast(Color.class, prefs.get(option)));
+  }
+
+  /**
+   * @param color
+   * @return the hexadecimal representation of the given color.
+   */
+  private static String color(Color color) {
+    return String.format("#%06x", color.getRGB() & 0xffffff);
+  }
+
+  /**
+   * Memorizes the bounding box of the given glyph.
+   *
+   * @param glyph
+   */
+  private void putBounds(GraphicalObject glyph) {
+    if (glyph.isSetBoundingBox()) {
+      id2bounds.put(glyph.getId(), glyph.getBoundingBox());
+    }
+  }
+
+  /* (non-Javadoc)
+   * @see de.zbit.sbml.layout.LayoutBuilder#buildCompartment(org.sbml.jsbml.ext.layout.CompartmentGlyph)
+   */
+  @Override
+  public void buildCompartment(CompartmentGlyph compartmentGlyph) {
+    SBGNNode<SVGElement> node = getSBGNNode(SBO.getCompartment());
+    BoundingBox boundingBox = compartmentGlyph.getBoundingBox();
+    Point point = boundingBox.getPosition();
+    Dimensions dimension = boundingBox.getDimensions();
+    SVGElement element = node.draw(point.getX(), point.getY(), point.getZ(),
+      dimension.getWidth(), dimension.getHeight(), dimension.getDepth());
+    element.setAttribute("id", compartmentGlyph.getId());
+    write(element);
+    putBounds(compartmentGlyph);
+    progress();
+  }
+
+  /* (non-Javadoc)
+   * @see de.zbit.sbml.layout.LayoutBuilder#buildEntityPoolNode(org.sbml.jsbml.ext.layout.SpeciesGlyph, boolean)
+   */
+  @Override
+  public void buildEntityPoolNode(SpeciesGlyph speciesGlyph, boolean cloneMarker) {
+    SBGNNode<SVGElement> node = getSBGNNode(speciesGlyph.getSBOTerm());
+    if (node instanceof SBGNNodeWithCloneMarker) {
+      ((SBGNNodeWithCloneMarker<?>) node).setCloneMarker(cloneMarker);
+    }
+    BoundingBox boundingBox = speciesGlyph.getBoundingBox();
+    Point point = boundingBox.getPosition();
+    Dimensions dimension = boundingBox.getDimensions();
+    SVGElement element = node.draw(point.getX(), point.getY(), point.getZ(),
+      dimension.getWidth(), dimension.getHeight(), dimension.getDepth());
+    element.setAttribute("id", speciesGlyph.getId());
+    Color fillColor = RenderProcessor.getRenderFillColor(speciesGlyph);
+    if (fillColor != null) {
+      element.setAttribute("fill", color(fillColor));
+    }
+    logger.fine(MessageFormat.format("building EPN element id={0} sbo={1}",
+      speciesGlyph.getId(), speciesGlyph.getSBOTerm()));
+    write(element);
+    putBounds(speciesGlyph);
+    progress();
+  }
+
+  /* (non-Javadoc)
+   * @see de.zbit.sbml.layout.LayoutBuilder#buildProcessNode(org.sbml.jsbml.ext.layout.ReactionGlyph, double, double)
+   */
+  @Override
+  public void buildProcessNode(ReactionGlyph reactionGlyph, double rotationAngle, double curveWidth) {
+    SBGNProcessNode<SVGElement> processNode;
+    if (reactionGlyph.isSetReaction()) {
+      processNode = getSBGNReactionNode(reactionGlyph.getReactionInstance().getSBOTerm());
+    } else {
+      processNode = getSBGNReactionNode(reactionGlyph.getSBOTerm());
+    }
+    processNode.setLineWidth(prefs.getDouble(DrawingOptions.EDGE_LINE_WIDTH));
+    if ((processNode instanceof SVGProcessNode) && reactionGlyph.isSetUserObjects()
+        && (reactionGlyph.getUserObject(LayoutDirector.NO_WHISKERS) != null)) {
+      ((SVGProcessNode) processNode).setWhiskers(false);
+    }
+
+    SVGElement element;
+    if (reactionGlyph.isSetCurve()) {
+      element = processNode.draw(reactionGlyph.getCurve(), 0d, null);
+    } else {
+      BoundingBox boundingBox = reactionGlyph.getBoundingBox();
+      Point point = boundingBox.getPosition();
+      Dimensions dimension = boundingBox.getDimensions();
+      double x = 0d, y = 0d, z = 0d, width = 1d, height = 1d, depth = 1d;
+      if (point != null) {
+        x = point.getX();
+        y = point.getY();
+        z = point.getZ();
+      } else {
+        logger.warning(MessageFormat.format(
+          "No position given for reaction glyph {0} - using default values",
+          reactionGlyph));
+      }
+      if (dimension != null) {
+        width = dimension.getWidth();
+        height = dimension.getHeight();
+        depth = dimension.getDepth();
+      } else {
+        logger.warning(MessageFormat.format(
+          "No dimension given for reaction glyph {0} - using default values",
+          reactionGlyph));
+      }
+      Point rotationCenter = new Point(x + (width / 2d), y + (height / 2d), z + (depth / 2d));
+      element = processNode.draw(x, y, z, width, height, depth, rotationAngle, rotationCenter);
+    }
+    element.setAttribute("id", reactionGlyph.getId());
+    write(element);
+    putBounds(reactionGlyph);
+    progress();
+  }
+
+  /* (non-Javadoc)
+   * @see de.zbit.sbml.layout.LayoutBuilder#buildConnectingArc(org.sbml.jsbml.ext.layout.SpeciesReferenceGlyph, org.sbml.jsbml.ext.layout.ReactionGlyph, double)
+   */
+  @Override
+  public void buildConnectingArc(SpeciesReferenceGlyph srg, ReactionGlyph reactionGlyph, double curveWidth) {
+    SVGAbstractSBGNArc arc = (SVGAbstractSBGNArc) createArc(srg, reactionGlyph);
+    double center[] = center(id2bounds.get(reactionGlyph.getId()));
+    BoundingBox speciesBounds = id2bounds.get(srg.getSpeciesGlyph());
+
+    SVGElement element;
+    double labelX, labelY;
+    Curve curve = srg.isSetCurve() ? srg.getCurve() : null;
+    if ((curve != null) && (curve.getCurveSegmentCount() > 0)) {
+      Point start = curve.getCurveSegment(0).getStart();
+      Point end = curve.getCurveSegment(curve.getCurveSegmentCount() - 1).getEnd();
+      if ((center != null) && (start != null) && (end != null)) {
+        arc.setFromProcessNode(distance(start, center) < distance(end, center));
+      }
+      element = arc.draw(curve, curveWidth);
+      labelX = (start != null) && (end != null) ? (start.getX() + end.getX()) / 2d : 0d;
+      labelY = (start != null) && (end != null) ? (start.getY() + end.getY()) / 2d : 0d;
+    } else {
+      double speciesCenter[] = center(speciesBounds);
+      if ((center == null) || (speciesCenter == null)) {
+        logger.warning(MessageFormat.format(
+          "Cannot draw species reference glyph ''{0}'' without curve and unknown end points.",
+          srg.getId()));
+        return;
+      }
+      // dock correctly at process node
+      Point relativeDockingAtPN = (Point) srg.getUserObject(LayoutDirector.PN_RELATIVE_DOCKING_POINT);
+      double pnX = center[0], pnY = center[1];
+      if (relativeDockingAtPN != null) {
+        pnX += relativeDockingAtPN.getX();
+        pnY += relativeDockingAtPN.getY();
+      }
+      // dock at the border of the species
+      Dimensions d = speciesBounds.getDimensions();
+      double dx = pnX - speciesCenter[0], dy = pnY - speciesCenter[1];
+      double t = Math.min(
+        dx != 0d ? d.getWidth() / 2d / Math.abs(dx) : Double.MAX_VALUE,
+        dy != 0d ? d.getHeight() / 2d / Math.abs(dy) : Double.MAX_VALUE);
+      t = Math.min(t, 1d);
+      double spX = speciesCenter[0] + t * dx, spY = speciesCenter[1] + t * dy;
+      StringBuilder path = new StringBuilder();
+      SVGShapes.moveTo(path, spX, spY);
+      path.append('L').append(format(pnX)).append(',').append(format(pnY));
+      element = arc.createPath(path).setAttribute("stroke-width", curveWidth);
+      labelX = (spX + pnX) / 2d;
+      labelY = (spY + pnY) / 2d;
+    }
+    element.setAttribute("id", srg.getId());
+    write(element);
+
+    // display stoichiometry labels
+    if (srg.isSetSpeciesReference()) {
+      NamedSBase nsb = srg.getSpeciesReferenceInstance();
+      if (nsb instanceof SpeciesReference) {
+        SpeciesReference specRef = (SpeciesReference) nsb;
+        if (specRef.isSetStoichiometry() && (specRef.getStoichiometry() != 1)) {
+          write(text(labelX, labelY, StringTools.toString(specRef.getStoichiometry()), true));
+        }
+      }
+    }
+  }
+
+  /**
+   * @param bb might be {@code null}
+   * @return the center of the given bounding box or {@code null}.
+   */
+  private static double[] center(BoundingBox bb) {
+    if ((bb == null) || !bb.isSetPosition()) {
+      return null;
+    }
+    Point p = bb.getPosition();
+    Dimensions d = bb.isSetDimensions() ? bb.getDimensions() : null;
+    return new double[] {
+        p.getX() + (d != null ? d.getWidth() / 2d : 0d),
+        p.getY() + (d != null ? d.getHeight() / 2d : 0d)};
+  }
+
+  /**
+   * @param p
+   * @param c
+   * @return the distance between both points.
+   */
+  private static double distance(Point p, double c[]) {
+    return Math.hypot(p.getX() - c[0], p.getY() - c[1]);
+  }
+
+  /**
+   * @param x
+   * @param y
+   * @param text
+   * @param centered whether the text is centered at the given position or
+   *        starts at the given position.
+   * @return a text element.
+   */
+  private static SVGElement text(double x, double y, String text, boolean centered) {
+    SVGElement element = new SVGElement("text").setAttribute("x", x).setAttribute("y", y);
+    if (centered) {
+      element.setAttribute("text-anchor", "middle").setAttribute("dominant-baseline", "central");
+    } else {
+      element.setAttribute("dominant-baseline", "hanging");
+    }
+    return element.setText(text);
+  }
+
+  /* (non-Javadoc)
+   * @see de.zbit.sbml.layout.LayoutBuilder#buildCubicBezier(org.sbml.jsbml.ext.layout.CubicBezier, double)
+   */
+  @Override
+  public void buildCubicBezier(CubicBezier cubicBezier, double lineWidth) {
+    write(SVGShapes.path(SVGShapes.appendSegment(new StringBuilder(), cubicBezier, false, true))
+      .setAttribute("class", SVGAbstractSBGNArc.STYLE_CLASS).setAttribute("stroke-width", lineWidth));
+  }
+
+  /* (non-Javadoc)
+   * @see de.zbit.sbml.layout.LayoutBuilder#buildTextGlyph(org.sbml.jsbml.ext.layout.TextGlyph)
+   */
+  @Override
+  public void buildTextGlyph(TextGlyph textGlyph) {
+    if (textGlyph.isSetText() &&
+        !textGlyph.isSetGraphicalObject() &&
+        !textGlyph.isSetOriginOfText()) {
+      // independent text
+      double c[] = center(textGlyph.getBoundingBox());
+      if (c != null) {
+        write(text(c[0], c[1], textGlyph.getText(), true).setAttribute("id", textGlyph.getId()));
+      }
+    } else if (textGlyph.isSetGraphicalObject() &&
+        (textGlyph.isSetOriginOfText() || textGlyph.isSetText())) {
+      buildTextGlyphAsLabel(textGlyph);
+    } else {
+      logger.warning(MessageFormat.format("illegal text glyph id={0}", textGlyph.getId()));
+    }
+    progress();
+  }
+
+  /**
+   * Writes a text glyph as a label of an already written glyph.
+   *
+   * @param textGlyph
+   */
+  private void buildTextGlyphAsLabel(TextGlyph textGlyph) {
+    NamedSBase namedSBase = null;
+    String text;
+    if (textGlyph.isSetText()) {
+      text = textGlyph.getText();
+    } else {
+      namedSBase = textGlyph.getOriginOfTextInstance();
+      if (namedSBase != null) {
+        text = namedSBase.isSetName() ? namedSBase.getName() : namedSBase.getId();
+      } else {
+        text = textGlyph.getOriginOfText();
+        logger.warning(MessageFormat.format(
+          "No such element defined ''{0}'', using reference id as label.",
+          textGlyph.getOriginOfText()));
+      }
+    }
+
+    SVGElement element;
+    BoundingBox bb = textGlyph.isSetBoundingBox() ? textGlyph.getBoundingBox() : null;
+    if ((bb != null) && bb.isSetPosition() && bb.isSetDimensions() &&
+        !((bb.getDimensions().getWidth() == 0) && (bb.getDimensions().getHeight() == 0) &&
+            (bb.getPosition().getX() == 0) && (bb.getPosition().getY() == 0))) {
+      double c[] = center(bb);
+      element = text(c[0], c[1], text, true);
+    } else {
+      BoundingBox origin = id2bounds.get(textGlyph.getGraphicalObject());
+      double c[] = center(origin);
+      if (c == null) {
+        return;
+      }
+      if (namedSBase instanceof org.sbml.jsbml.Compartment) {
+        Point p = origin.getPosition();
+        element = text(p.getX() + 2d * SVGShapes.CORNER_RADIUS, p.getY() + SVGShapes.CORNER_RADIUS, text, false);
+      } else {
+        element = text(c[0], c[1], text, true);
+      }
+    }
+    write(element.setAttribute("id", textGlyph.getId()));
+  }
+
+  /* (non-Javadoc)
+   * @see de.zbit.sbml.layout.LayoutBuilder#builderEnd()
+   */
+  @Override
+  public void builderEnd() {
+    try {
+      if (!headerWritten) {
+        writeHeader();
+      }
+      writer.writeEndElement();
+      writer.writeEndDocument();
+      writer.close();
+      // XMLStreamWriter.close() does not close the underlying stream.
+      out.flush();
+    } catch (XMLStreamException exc) {
+      throw new RuntimeException(exc);
+    } catch (IOException exc) {
+      throw new RuntimeException(exc);
+    }
+    terminated = true;
+  }
+
+  /* (non-Javadoc)
+   * @see de.zbit.sbml.layout.LayoutBuilder#getProduct()
+   */
+  @Override
+  public OutputStream getProduct() {
+    return out;
+  }
+
+  /* (non-Javadoc)
+   * @see de.zbit.sbml.layout.LayoutFactory#createAssociationNode()
+   */
+  @Override
+  public AssociationNode<SVGElement> createAssociationNode() {
+    return new SVGAssociationNode();
+  }
+
+  /* (non-Javadoc)
+   * @see de.zbit.sbml.layout.LayoutFactory#createCompartment()
+   */
+  @Override
+  public Compartment<SVGElement> createCompartment() {
+    return new SVGCompartment();
+  }
+
+  /* (non-Javadoc)
+   * @see de.zbit.sbml.layout.LayoutFactory#createDissociationNode()
+   */
+  @Override
+  public DissociationNode<SVGElement> createDissociationNode() {
+    return new SVGDissociationNode();
+  }
+
+  /* (non-Javadoc)
+   * @see de.zbit.sbml.layout.LayoutFactory#createMacromolecule()
+   */
+  @Override
+  public Macromolecule<SVGElement> createMacromolecule() {
+    return new SVGMacromolecule();
+  }
+
+  /* (non-Javadoc)
+   * @see de.zbit.sbml.layout.LayoutFactory#createNucleicAcidFeature()
+   */
+  @Override
+  public NucleicAcidFeature<SVGElement> createNucleicAcidFeature() {
+    return new SVGNucleicAcidFeature();
+  }
+
+  /* (non-Javadoc)
+   * @see de.zbit.sbml.layout.LayoutFactory#createOmittedProcessNode()
+   */
+  @Override
+  public OmittedProcessNode<SVGElement> createOmittedProcessNode() {
+    return new SVGOmittedProcessNode();
+  }
+
+  /* (non-Javadoc)
+   * @see de.zbit.sbml.layout.LayoutFactory#createPerturbingAgent()
+   */
+  @Override
+  public PerturbingAgent<SVGElement> createPerturbingAgent() {
+    return new SVGPerturbingAgent();
+  }
+
+  /* (non-Javadoc)
+   * @see de.zbit.sbml.layout.LayoutFactory#createProcessNode()
+   */
+  @Override
+  public ProcessNode<SVGElement> createProcessNode() {
+    return new SVGProcessNode();
+  }
+
+  /* (non-Javadoc)
+   * @see de.zbit.sbml.layout.LayoutFactory#createSimpleChemical()
+   */
+  @Override
+  public SimpleChemical<SVGElement> createSimpleChemical() {
+    return new SVGSimpleChemical();
+  }
+
+  /* (non-Javadoc)
+   * @see de.zbit.sbml.layout.LayoutFactory#createSourceSink()
+   */
+  @Override
+  public SourceSink<SVGElement> createSourceSink() {
+    return new SVGSourceSink();
+  }
+
+  /* (non-Javadoc)
+   * @see de.zbit.sbml.layout.LayoutFactory#createUncertainProcessNode()
+   */
+  @Override
+  public UncertainProcessNode<SVGElement> createUncertainProcessNode() {
+    return new SVGUncertainProcessNode();
+  }
+
+  /* (non-Javadoc)
+   * @see de.zbit.sbml.layout.LayoutFactory#createUnspecifiedNode()
+   */
+  @Override
+  public UnspecifiedNode<SVGElement> createUnspecifiedNode() {
+    return new SVGUnspecifiedNode();
+  }
+
+  /* (non-Javadoc)
+   * @see de.zbit.sbml.layout.LayoutFactory#createCatalysis()
+   */
+  @Override
+  public Catalysis<SVGElement> createCatalysis() {
+    return new SVGCatalysis();
+  }
+
+  /* (non-Javadoc)
+   * @see de.zbit.sbml.layout.LayoutFactory#createConsumption()
+   */
+  @Override
+  public Consumption<SVGElement> createConsumption() {
+    return new SVGConsumption();
+  }
+
+  /* (non-Javadoc)
+   * @see de.zbit.sbml.layout.LayoutFactory#createReversibleConsumption()
+   */
+  @Override
+  public ReversibleConsumption<SVGElement> createReversibleConsumption() {
+    return new SVGReversibleConsumption();
+  }
+
+  /* (non-Javadoc)
+   * @see de.zbit.sbml.layout.LayoutFactory#createInhibition()
+   */
+  @Override
+  public Inhibition<SVGElement> createInhibition() {
+    return new SVGInhibition();
+  }
+
+  /* (non-Javadoc)
+   * @see de.zbit.sbml.layout.LayoutFactory#createModulation()
+   */
+  @Override
+  public Modulation<SVGElement> createModulation() {
+    return new SVGModulation();
+  }
+
+  /* (non-Javadoc)
+   * @see de.zbit.sbml.layout.LayoutFactory#createNecessaryStimulation()
+   */
+  @Override
+  public NecessaryStimulation<SVGElement> createNecessaryStimulation() {
+    return new SVGNecessaryStimulation();
+  }
+
+  /* (non-Javadoc)
+   * @see de.zbit.sbml.layout.LayoutFactory#createProduction()
+   */
+  @Override
+  public Production<SVGElement> createProduction() {
+    return new SVGProduction();
+  }
+
+  /* (non-Javadoc)
+   * @see de.zbit.sbml.layout.LayoutFactory#createStimulation()
+   */
+  @Override
+  public Stimulation<SVGElement> createStimulation() {
+    return new SVGStimulation();
+  }
+
+}
@@ -0,0 +1,51 @@
+/*
+ * $Id$
+ * $URL$
+ * ---------------------------------------------------------------------
+ * This file is part of the SysBio API library.
+ *
+ * Copyright (C) 2009-2016 by the University of Tuebingen, Germany.
+ *
+ * This library is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation. A copy of the license
+ * agreement is provided in the file named "LICENSE.txt" included with
+ * this software distribution and also available online as
+ * <http://www.gnu.org/licenses/lgpl-3.0-standalone.html>.
+ * ---------------------------------------------------------------------
+ */
+package de.zbit.sbml.layout.svg;
+
+import de.zbit.sbml.layout.Macromolecule;
+
+/**
+ * SVG implementation of EPN type {@link Macromolecule}.
+ *
+ * Macromolecules are drawn as rectangles with rounded corners.
+ *
+ * @version $Rev$
+ * @since 1.4
+ */
+public class SVGMacromolecule extends Macromolecule<SVGElement> {
+
+  /**
+   * CSS classes of this node.
+   */
+  public static final String STYLE_CLASS = "epn macromolecule";
+
+  /* (non-Javadoc)
+   * @see de.zbit.sbml.layout.SBGNNode#draw(double, double, double, double, double, double)
+   */
+  @Override
+  public SVGElement draw(double x, double y, double z, double width,
+    double height, double depth) {
+    double radius = SVGShapes.cornerRadius(width, height, SVGShapes.CORNER_RADIUS);
+    SVGElement group = SVGShapes.group(STYLE_CLASS);
+    group.addChild(SVGShapes.rect(x, y, width, height, radius));
+    if (hasCloneMarker()) {
+      group.addChild(SVGShapes.cloneMarker(x, y, width, height, radius));
+    }
+    return group;
+  }
+
+}
@@ -0,0 +1,42 @@
+/*
+ * $Id$
+ * $URL$
+ * ---------------------------------------------------------------------
+ * This file is part of the SysBio API library.
+ *
+ * Copyright (C) 2009-2016 by the University of Tuebingen, Germany.
+ *
+ * This library is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation. A copy of the license
+ * agreement is provided in the file named "LICENSE.txt" included with
+ * this software distribution and also available online as
+ * <http://www.gnu.org/licenses/lgpl-3.0-standalone.html>.
+ * ---------------------------------------------------------------------
+ */
+package de.zbit.sbml.layout.svg;
+
+import de.zbit.sbml.layout.Modulation;
+
+/**
+ * SVG implementation of arc type {@link Modulation}.
+ *
+ * @version $Rev$
+ * @since 1.4
+ */
+public class SVGModulation extends SVGAbstractSBGNArc implements Modulation<SVGElement> {
+
+  /**
+   * Name of the marker of this arc.
+   */
+  public static final String MARKER = "modulation";
+
+  /* (non-Javadoc)
+   * @see de.zbit.sbml.layout.svg.SVGAbstractSBGNArc#getProcessNodeMarker()
+   */
+  @Override
+  public String getProcessNodeMarker() {
+    return MARKER;
+  }
+
+}
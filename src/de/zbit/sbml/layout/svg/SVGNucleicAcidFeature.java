@@ -0,0 +1,59 @@
+/*
+ * $Id$
+ * $URL$
+ * ---------------------------------------------------------------------
+ * This file is part of the SysBio API library.
+ *
+ * Copyright (C) 2009-2016 by the University of Tuebingen, Germany.
+ *
+ * This library is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation. A copy of the license
+ * agreement is provided in the file named "LICENSE.txt" included with
+ * this software distribution and also available online as
+ * <http://www.gnu.org/licenses/lgpl-3.0-standalone.html>.
+ * ---------------------------------------------------------------------
+ */
+package de.zbit.sbml.layout.svg;
+
+import de.zbit.sbml.layout.NucleicAcidFeature;
+
+/**
+ * SVG implementation of EPN type {@link NucleicAcidFeature}.
+ *
+ * Nucleic acid features are drawn as rectangles with rounded lower corners.
+ *
+ * @version $Rev$
+ * @since 1.4
+ */
+public class SVGNucleicAcidFeature extends NucleicAcidFeature<SVGElement> {
+
+  /**
+   * CSS classes of this node.
+   */
+  public static final String STYLE_CLASS = "epn nucleic-acid-feature";
+
+  /* (non-Javadoc)
+   * @see de.zbit.sbml.layout.SBGNNode#draw(double, double, double, double, double, double)
+   */
+  @Override
+  public SVGElement draw(double x, double y, double z, double width,
+    double height, double depth) {
+    double radius = SVGShapes.cornerRadius(width, height, SVGShapes.CORNER_RADIUS);
+    StringBuilder d = new StringBuilder();
+    SVGShapes.moveTo(d, x, y);
+    d.append('H').append(SVGElement.format(x + width));
+    d.append('V').append(SVGElement.format(y + height - radius));
+    SVGShapes.arcTo(d, radius, radius, x + width - radius, y + height, true);
+    d.append('H').append(SVGElement.format(x + radius));
+    SVGShapes.arcTo(d, radius, radius, x, y + height - radius, true);
+    d.append('Z');
+    SVGElement group = SVGShapes.group(STYLE_CLASS);
+    group.addChild(SVGShapes.path(d));
+    if (hasCloneMarker()) {
+      group.addChild(SVGShapes.cloneMarker(x, y, width, height, radius));
+    }
+    return group;
+  }
+
+}
@@ -0,0 +1,75 @@
+/*
+ * $Id$
+ * $URL$
+ * ---------------------------------------------------------------------
+ * This file is part of the SysBio API library.
+ *
+ * Copyright (C) 2009-2016 by the University of Tuebingen, Germany.
+ *
+ * This library is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation. A copy of the license
+ * agreement is provided in the file named "LICENSE.txt" included with
+ * this software distribution and also available online as
+ * <http://www.gnu.org/licenses/lgpl-3.0-standalone.html>.
+ * ---------------------------------------------------------------------
+ */
+package de.zbit.sbml.layout.svg;
+
+import de.zbit.sbml.layout.PerturbingAgent;
+
+/**
+ * SVG implementation of EPN type {@link PerturbingAgent}.
+ *
+ * Perturbing agents are drawn as rectangles with concave left and right
+ * sides.
+ *
+ * @version $Rev$
+ * @since 1.4
+ */
+public class SVGPerturbingAgent extends PerturbingAgent<SVGElement> {
+
+  /**
+   * CSS classes of this node.
+   */
+  public static final String STYLE_CLASS = "epn perturbing-agent";
+
+  /* (non-Javadoc)
+   * @see de.zbit.sbml.layout.SBGNNode#draw(double, double, double, double, double, double)
+   */
+  @Override
+  public SVGElement draw(double x, double y, double z, double width,
+    double height, double depth) {
+    double indent = Math.min(height / 2d, width / 4d);
+    double points[] = {
+        x, y, x + width, y, x + width - indent, y + height / 2d,
+        x + width, y + height, x, y + height, x + indent, y + height / 2d};
+    SVGElement group = SVGShapes.group(STYLE_CLASS);
+    group.addChild(polygon(points));
+    if (hasCloneMarker()) {
+      // lower 30% of the shape, the concave sides are linear
+      double y0 = y + 0.7d * height;
+      double dx = indent * (y + height - y0) / (height / 2d);
+      group.addChild(polygon(new double[] {
+          x + dx, y0, x + width - dx, y0,
+          x + width, y + height, x, y + height}).setAttribute("class", SVGShapes.CLONE_MARKER));
+    }
+    return group;
+  }
+
+  /**
+   * @param points alternating x and y coordinates
+   * @return a polygon element.
+   */
+  private static SVGElement polygon(double points[]) {
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < points.length; i++) {
+      if (i > 0) {
+        sb.append((i % 2 == 0) ? ' ' : ',');
+      }
+      sb.append(SVGElement.format(points[i]));
+    }
+    return new SVGElement("polygon").setAttribute("points", sb.toString());
+  }
+
+}
@@ -0,0 +1,137 @@
+/*
+ * $Id$
+ * $URL$
+ * ---------------------------------------------------------------------
+ * This file is part of the SysBio API library.
+ *
+ * Copyright (C) 2009-2016 by the University of Tuebingen, Germany.
+ *
+ * This library is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation. A copy of the license
+ * agreement is provided in the file named "LICENSE.txt" included with
+ * this software distribution and also available online as
+ * <http://www.gnu.org/licenses/lgpl-3.0-standalone.html>.
+ * ---------------------------------------------------------------------
+ */
+package de.zbit.sbml.layout.svg;
+
+import static de.zbit.sbml.layout.svg.SVGElement.format;
+
+import org.sbml.jsbml.ext.layout.Curve;
+import org.sbml.jsbml.ext.layout.CurveSegment;
+import org.sbml.jsbml.ext.layout.Point;
+
+import de.zbit.sbml.layout.AbstractSBGNProcessNode;
+import de.zbit.sbml.layout.ProcessNode;
+
+/**
+ * SVG implementation of process node of type "reaction", which is the base
+ * class of all other process nodes: a square with an optional whisker on
+ * each side.
+ *
+ * @version $Rev$
+ * @since 1.4
+ */
+public class SVGProcessNode extends AbstractSBGNProcessNode<SVGElement>
+implements ProcessNode<SVGElement> {
+
+  /**
+   * CSS classes of this node.
+   */
+  public static final String STYLE_CLASS = "process";
+
+  /**
+   * Whether to draw the whiskers.
+   */
+  private boolean whiskers = true;
+
+  /**
+   * @return whether the whiskers are drawn.
+   */
+  public boolean isWhiskers() {
+    return whiskers;
+  }
+
+  /**
+   * @param whiskers whether to draw the whiskers.
+   */
+  public void setWhiskers(boolean whiskers) {
+    this.whiskers = whiskers;
+  }
+
+  /**
+   * @return the CSS classes of this node.
+   */
+  protected String getStyleClass() {
+    return STYLE_CLASS;
+  }
+
+  /* (non-Javadoc)
+   * @see de.zbit.sbml.layout.SBGNNode#draw(double, double, double, double, double, double)
+   */
+  @Override
+  public SVGElement draw(double x, double y, double z, double width,
+    double height, double depth) {
+    return draw(x, y, z, width, height, depth, 0d, null);
+  }
+
+  /* (non-Javadoc)
+   * @see de.zbit.sbml.layout.SBGNProcessNode#draw(double, double, double, double, double, double, double, org.sbml.jsbml.ext.layout.Point)
+   */
+  @Override
+  public SVGElement draw(double x, double y, double z, double width,
+    double height, double depth, double rotationAngle,
+    Point rotationCenter) {
+    double cx = x + width / 2d, cy = y + height / 2d;
+    double side = Math.min(width, height);
+    SVGElement group = SVGShapes.group(getStyleClass()).setAttribute("stroke-width", getLineWidth());
+    if (whiskers && (width > side)) {
+      group.addChild(SVGShapes.line(x, cy, cx - side / 2d, cy));
+      group.addChild(SVGShapes.line(cx + side / 2d, cy, x + width, cy));
+    }
+    drawCenter(group, cx, cy, side);
+    if ((rotationAngle % 180d) != 0d) {
+      double rx = (rotationCenter != null) ? rotationCenter.getX() : cx;
+      double ry = (rotationCenter != null) ? rotationCenter.getY() : cy;
+      group.setAttribute("transform",
+        "rotate(" + format(rotationAngle) + ' ' + format(rx) + ' ' + format(ry) + ')');
+    }
+    return group;
+  }
+
+  /**
+   * Draws the center of this node, i.e., everything except for the
+   * whiskers.
+   *
+   * @param group the element to add the shapes to
+   * @param cx
+   * @param cy
+   * @param side the side length of the center
+   */
+  protected void drawCenter(SVGElement group, double cx, double cy, double side) {
+    group.addChild(SVGShapes.rect(cx - side / 2d, cy - side / 2d, side, side, 0d));
+  }
+
+  /* (non-Javadoc)
+   * @see de.zbit.sbml.layout.AbstractSBGNProcessNode#draw(org.sbml.jsbml.ext.layout.Curve, double, org.sbml.jsbml.ext.layout.Point)
+   */
+  @Override
+  public SVGElement draw(Curve curve, double rotationAngle, Point rotationCenter) {
+    return SVGShapes.path(SVGShapes.appendCurve(new StringBuilder(), curve, false))
+        .setAttribute("class", getStyleClass()).setAttribute("fill", "none")
+        .setAttribute("stroke-width", getLineWidth());
+  }
+
+  /* (non-Javadoc)
+   * @see de.zbit.sbml.layout.SBGNProcessNode#drawCurveSegment(org.sbml.jsbml.ext.layout.CurveSegment, double, org.sbml.jsbml.ext.layout.Point)
+   */
+  @Override
+  public SVGElement drawCurveSegment(CurveSegment segment, double rotationAngle,
+    Point rotationCenter) {
+    return SVGShapes.path(SVGShapes.appendSegment(new StringBuilder(), segment, false, true))
+        .setAttribute("class", getStyleClass()).setAttribute("fill", "none")
+        .setAttribute("stroke-width", getLineWidth());
+  }
+
+}
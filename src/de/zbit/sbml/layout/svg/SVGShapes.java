@@ -0,0 +1,258 @@
+/*
+ * $Id$
+ * $URL$
+ * ---------------------------------------------------------------------
+ * This file is part of the SysBio API library.
+ *
+ * Copyright (C) 2009-2016 by the University of Tuebingen, Germany.
+ *
+ * This library is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation. A copy of the license
+ * agreement is provided in the file named "LICENSE.txt" included with
+ * this software distribution and also available online as
+ * <http://www.gnu.org/licenses/lgpl-3.0-standalone.html>.
+ * ---------------------------------------------------------------------
+ */
+package de.zbit.sbml.layout.svg;
+
+import static de.zbit.sbml.layout.svg.SVGElement.format;
+
+import org.sbml.jsbml.ext.layout.CubicBezier;
+import org.sbml.jsbml.ext.layout.Curve;
+import org.sbml.jsbml.ext.layout.CurveSegment;
+import org.sbml.jsbml.ext.layout.Point;
+
+/**
+ * Helper methods to create the basic SVG shapes of SBGN glyphs.
+ *
+ * @version $Rev$
+ * @since 1.4
+ */
+final class SVGShapes {
+
+  /**
+   * Relative height of the area of a glyph that is covered by a clone
+   * marker.
+   */
+  private static final double CLONE_MARKER_HEIGHT = 0.3d;
+
+  /**
+   * Default corner radius of rounded rectangles.
+   */
+  static final double CORNER_RADIUS = 10d;
+
+  /**
+   * CSS class of clone markers.
+   */
+  static final String CLONE_MARKER = "clone-marker";
+
+  /**
+   * Utility class.
+   */
+  private SVGShapes() {
+  }
+
+  /**
+   * @param styleClass the CSS class
+   * @return a new group element.
+   */
+  static SVGElement group(String styleClass) {
+    return new SVGElement("g").setAttribute("class", styleClass);
+  }
+
+  /**
+   * @param x
+   * @param y
+   * @param width
+   * @param height
+   * @param radius corner radius
+   * @return a (rounded) rectangle.
+   */
+  static SVGElement rect(double x, double y, double width, double height, double radius) {
+    SVGElement rect = new SVGElement("rect").setAttribute("x", x).setAttribute("y", y)
+        .setAttribute("width", width).setAttribute("height", height);
+    if (radius > 0d) {
+      rect.setAttribute("rx", radius).setAttribute("ry", radius);
+    }
+    return rect;
+  }
+
+  /**
+   * @param x
+   * @param y
+   * @param width
+   * @param height
+   * @return an ellipse, that fills the given bounding box.
+   */
+  static SVGElement ellipse(double x, double y, double width, double height) {
+    return new SVGElement("ellipse").setAttribute("cx", x + width / 2d).setAttribute("cy", y + height / 2d)
+        .setAttribute("rx", width / 2d).setAttribute("ry", height / 2d);
+  }
+
+  /**
+   * @param x1
+   * @param y1
+   * @param x2
+   * @param y2
+   * @return a line.
+   */
+  static SVGElement line(double x1, double y1, double x2, double y2) {
+    return new SVGElement("line").setAttribute("x1", x1).setAttribute("y1", y1)
+        .setAttribute("x2", x2).setAttribute("y2", y2);
+  }
+
+  /**
+   * @param data
+   * @return a path with the given path data.
+   */
+  static SVGElement path(CharSequence data) {
+    return new SVGElement("path").setAttribute("d", data.toString());
+  }
+
+  /**
+   * @param width
+   * @param height
+   * @param radius
+   * @return the corner radius, that fits into the given dimensions.
+   */
+  static double cornerRadius(double width, double height, double radius) {
+    return Math.max(0d, Math.min(radius, Math.min(width, height) / 2d));
+  }
+
+  /**
+   * Creates the clone marker of a rectangle, whose lower corners are rounded
+   * with the given radius.
+   *
+   * @param x
+   * @param y
+   * @param width
+   * @param height
+   * @param radius
+   * @return the clone marker, i.e., the filled lower part of the shape.
+   */
+  static SVGElement cloneMarker(double x, double y, double width, double height, double radius) {
+    double r = cornerRadius(width, height, radius);
+    double y0 = y + (1d - CLONE_MARKER_HEIGHT) * height;
+    double bottom = y + height;
+    StringBuilder d = new StringBuilder();
+    if (y0 >= bottom - r) {
+      // the marker lies completely within the rounded corners
+      double dy = y0 - (bottom - r);
+      double dx = Math.sqrt(Math.max(0d, r * r - dy * dy));
+      moveTo(d, x + r - dx, y0);
+      d.append('H').append(format(x + width - r + dx));
+      arcTo(d, r, r, x + width - r, bottom, true);
+      d.append('H').append(format(x + r));
+      arcTo(d, r, r, x + r - dx, y0, true);
+    } else {
+      moveTo(d, x, y0);
+      d.append('H').append(format(x + width));
+      d.append('V').append(format(bottom - r));
+      arcTo(d, r, r, x + width - r, bottom, true);
+      d.append('H').append(format(x + r));
+      arcTo(d, r, r, x, bottom - r, true);
+    }
+    d.append('Z');
+    return path(d).setAttribute("class", CLONE_MARKER);
+  }
+
+  /**
+   * Creates the clone marker of an ellipse.
+   *
+   * @param x
+   * @param y
+   * @param width
+   * @param height
+   * @return the clone marker, i.e., the filled lower part of the ellipse.
+   */
+  static SVGElement ellipseCloneMarker(double x, double y, double width, double height) {
+    double rx = width / 2d, ry = height / 2d;
+    double dy = (0.5d - CLONE_MARKER_HEIGHT) * ry * 2d;
+    double dx = rx * Math.sqrt(Math.max(0d, 1d - (dy * dy) / (ry * ry)));
+    double cx = x + rx, y0 = y + ry + dy;
+    StringBuilder d = new StringBuilder();
+    moveTo(d, cx - dx, y0);
+    d.append('H').append(format(cx + dx));
+    arcTo(d, rx, ry, cx - dx, y0, true);
+    d.append('Z');
+    return path(d).setAttribute("class", CLONE_MARKER);
+  }
+
+  /**
+   * Appends the path data of the given curve.
+   *
+   * @param d
+   * @param curve
+   * @param reverse whether to start at the end of the curve
+   * @return the given path data.
+   */
+  static StringBuilder appendCurve(StringBuilder d, Curve curve, boolean reverse) {
+    int n = curve.getCurveSegmentCount();
+    for (int i = 0; i < n; i++) {
+      CurveSegment segment = curve.getCurveSegment(reverse ? n - 1 - i : i);
+      appendSegment(d, segment, reverse, i == 0);
+    }
+    return d;
+  }
+
+  /**
+   * Appends the path data of the given segment.
+   *
+   * @param d
+   * @param segment
+   * @param reverse whether to start at the end of the segment
+   * @param first whether this is the first segment of a path
+   * @return the given path data.
+   */
+  static StringBuilder appendSegment(StringBuilder d, CurveSegment segment, boolean reverse, boolean first) {
+    Point start = reverse ? segment.getEnd() : segment.getStart();
+    Point end = reverse ? segment.getStart() : segment.getEnd();
+    if ((start == null) || (end == null)) {
+      return d;
+    }
+    if (first) {
+      moveTo(d, start.getX(), start.getY());
+    } else {
+      d.append('L').append(format(start.getX())).append(',').append(format(start.getY()));
+    }
+    if (segment instanceof CubicBezier) {
+      CubicBezier cb = (CubicBezier) segment;
+      Point bp1 = reverse ? cb.getBasePoint2() : cb.getBasePoint1();
+      Point bp2 = reverse ? cb.getBasePoint1() : cb.getBasePoint2();
+      if ((bp1 != null) && (bp2 != null)) {
+        d.append('C').append(format(bp1.getX())).append(',').append(format(bp1.getY()))
+        .append(' ').append(format(bp2.getX())).append(',').append(format(bp2.getY()))
+        .append(' ').append(format(end.getX())).append(',').append(format(end.getY()));
+        return d;
+      }
+    }
+    d.append('L').append(format(end.getX())).append(',').append(format(end.getY()));
+    return d;
+  }
+
+  /**
+   * @param d
+   * @param x
+   * @param y
+   */
+  static void moveTo(StringBuilder d, double x, double y) {
+    d.append('M').append(format(x)).append(',').append(format(y));
+  }
+
+  /**
+   * Appends an elliptical arc (less than 180 degrees).
+   *
+   * @param d
+   * @param rx
+   * @param ry
+   * @param x
+   * @param y
+   * @param clockwise
+   */
+  static void arcTo(StringBuilder d, double rx, double ry, double x, double y, boolean clockwise) {
+    d.append('A').append(format(rx)).append(',').append(format(ry)).append(" 0 0 ")
+    .append(clockwise ? '1' : '0').append(' ').append(format(x)).append(',').append(format(y));
+  }
+
+}
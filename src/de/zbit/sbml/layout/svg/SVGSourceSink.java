@@ -0,0 +1,48 @@
+/*
+ * $Id$
+ * $URL$
+ * ---------------------------------------------------------------------
+ * This file is part of the SysBio API library.
+ *
+ * Copyright (C) 2009-2016 by the University of Tuebingen, Germany.
+ *
+ * This library is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation. A copy of the license
+ * agreement is provided in the file named "LICENSE.txt" included with
+ * this software distribution and also available online as
+ * <http://www.gnu.org/licenses/lgpl-3.0-standalone.html>.
+ * ---------------------------------------------------------------------
+ */
+package de.zbit.sbml.layout.svg;
+
+import de.zbit.sbml.layout.SourceSink;
+
+/**
+ * SVG implementation of EPN type {@link SourceSink}.
+ *
+ * Sources and sinks are drawn as circles, which are crossed out.
+ *
+ * @version $Rev$
+ * @since 1.4
+ */
+public class SVGSourceSink extends SourceSink<SVGElement> {
+
+  /**
+   * CSS classes of this node.
+   */
+  public static final String STYLE_CLASS = "epn source-sink";
+
+  /* (non-Javadoc)
+   * @see de.zbit.sbml.layout.SBGNNode#draw(double, double, double, double, double, double)
+   */
+  @Override
+  public SVGElement draw(double x, double y, double z, double width,
+    double height, double depth) {
+    SVGElement group = SVGShapes.group(STYLE_CLASS);
+    group.addChild(SVGShapes.ellipse(x, y, width, height));
+    group.addChild(SVGShapes.line(x, y + height, x + width, y));
+    return group;
+  }
+
+}
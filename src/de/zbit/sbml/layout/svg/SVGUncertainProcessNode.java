@@ -0,0 +1,54 @@
+/*
+ * $Id$
+ * $URL$
+ * ---------------------------------------------------------------------
+ * This file is part of the SysBio API library.
+ *
+ * Copyright (C) 2009-2016 by the University of Tuebingen, Germany.
+ *
+ * This library is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation. A copy of the license
+ * agreement is provided in the file named "LICENSE.txt" included with
+ * this software distribution and also available online as
+ * <http://www.gnu.org/licenses/lgpl-3.0-standalone.html>.
+ * ---------------------------------------------------------------------
+ */
+package de.zbit.sbml.layout.svg;
+
+import de.zbit.sbml.layout.UncertainProcessNode;
+
+/**
+ * SVG implementation of process node type {@link UncertainProcessNode}.
+ *
+ * Uncertain processes are marked with a question mark.
+ *
+ * @version $Rev$
+ * @since 1.4
+ */
+public class SVGUncertainProcessNode extends SVGProcessNode implements UncertainProcessNode<SVGElement> {
+
+  /**
+   * CSS classes of this node.
+   */
+  public static final String STYLE_CLASS = "process uncertain";
+
+  /* (non-Javadoc)
+   * @see de.zbit.sbml.layout.svg.SVGProcessNode#getStyleClass()
+   */
+  @Override
+  protected String getStyleClass() {
+    return STYLE_CLASS;
+  }
+
+  /* (non-Javadoc)
+   * @see de.zbit.sbml.layout.svg.SVGProcessNode#drawCenter(de.zbit.sbml.layout.svg.SVGElement, double, double, double)
+   */
+  @Override
+  protected void drawCenter(SVGElement group, double cx, double cy, double side) {
+    super.drawCenter(group, cx, cy, side);
+    group.addChild(new SVGElement("text").setAttribute("x", cx).setAttribute("y", cy)
+      .setAttribute("font-size", 0.8d * side).setText("?"));
+  }
+
+}
@@ -0,0 +1,48 @@
+/*
+ * $Id$
+ * $URL$
+ * ---------------------------------------------------------------------
+ * This file is part of the SysBio API library.
+ *
+ * Copyright (C) 2009-2016 by the University of Tuebingen, Germany.
+ *
+ * This library is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation. A copy of the license
+ * agreement is provided in the file named "LICENSE.txt" included with
+ * this software distribution and also available online as
+ * <http://www.gnu.org/licenses/lgpl-3.0-standalone.html>.
+ * ---------------------------------------------------------------------
+ */
+package de.zbit.sbml.layout.svg;
+
+import de.zbit.sbml.layout.UnspecifiedNode;
+
+/**
+ * SVG implementation of EPN type {@link UnspecifiedNode}.
+ *
+ * @version $Rev$
+ * @since 1.4
+ */
+public class SVGUnspecifiedNode extends UnspecifiedNode<SVGElement> {
+
+  /**
+   * CSS classes of this node.
+   */
+  public static final String STYLE_CLASS = "epn unspecified";
+
+  /* (non-Javadoc)
+   * @see de.zbit.sbml.layout.SBGNNode#draw(double, double, double, double, double, double)
+   */
+  @Override
+  public SVGElement draw(double x, double y, double z, double width,
+    double height, double depth) {
+    SVGElement group = SVGShapes.group(STYLE_CLASS);
+    group.addChild(SVGShapes.ellipse(x, y, width, height));
+    if (hasCloneMarker()) {
+      group.addChild(SVGShapes.ellipseCloneMarker(x, y, width, height));
+    }
+    return group;
+  }
+
+}
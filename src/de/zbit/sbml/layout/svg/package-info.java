@@ -0,0 +1,33 @@
+/*
+ * $Id$
+ * $URL$
+ * ---------------------------------------------------------------------
+ * This file is part of the SysBio API library.
+ *
+ * Copyright (C) 2009-2016 by the University of Tuebingen, Germany.
+ *
+ * This library is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation. A copy of the license
+ * agreement is provided in the file named "LICENSE.txt" included with
+ * this software distribution and also available online as
+ * <http://www.gnu.org/licenses/lgpl-3.0-standalone.html>.
+ * ---------------------------------------------------------------------
+ */
+
+/**
+ * <p>
+ * This package implements the generic LayoutBuilder and all necessary SBGN
+ * representations for a direct output of Scalable Vector Graphics (SVG),
+ * without any graph library.
+ * <p>
+ * Nodes and arcs are implemented using {@link de.zbit.sbml.layout.svg.SVGElement}.
+ * Every glyph is written to the output stream as soon as it is built by the
+ * {@link de.zbit.sbml.layout.LayoutDirector}.
+ * <p>
+ * The output type is {@link java.io.OutputStream}.
+ * 
+ * @version $Rev$
+ * @since 1.4
+ */
+package de.zbit.sbml.layout.svg;
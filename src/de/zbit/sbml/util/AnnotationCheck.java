@@ -21,8 +21,10 @@ import java.io.IOException;
 import java.util.Arrays;
 import java.util.HashSet;
 import java.util.Hashtable;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.Vector;
 import java.util.logging.Logger;
@@ -42,6 +44,7 @@ import org.sbml.jsbml.Species;
 import org.sbml.jsbml.SpeciesReference;
 import org.sbml.jsbml.util.StringTools;
 
+import de.zbit.util.MolecularFormula;
 import de.zbit.util.StringUtil;
 
 /**
@@ -549,113 +552,8 @@ public class AnnotationCheck {
    */
   public Hashtable<String, Integer> countAtoms(double stoichiometry,
     String formula, int replacement) {
-    Hashtable<String, Integer> atomCount = new Hashtable<String, Integer>();
-    StringBuilder name = new StringBuilder(), number = new StringBuilder();
-    StringBuilder newFormula = new StringBuilder();
-    boolean brackets = false;
-    boolean digitAfter = false;
-    for (int i = 0; i < formula.length(); i++) {
-      char c = formula.charAt(i);
-      if (Character.isLetterOrDigit(c)) {
-        if (brackets) {
-          name.append(c);
-        } else {
-          if (digitAfter) {
-            if (Character.isUpperCase(c)) {
-              if (number.length() == 0) {
-                number.append(1);
-              }
-              Hashtable<String, Integer> inlay = countAtoms(1,
-                name.toString(), replacement);
-              for (String key : inlay.keySet()) {
-                if (!atomCount.containsKey(key)) {
-                  atomCount.put(key, Integer.valueOf(0));
-                }
-                int mult = number.toString().contains("n") ? replacement
-                    : Integer.parseInt(number.toString());
-                int val = (int) (stoichiometry
-                    * inlay.get(key).intValue() * mult);
-                atomCount.put(key, Integer.valueOf(val));
-              }
-              digitAfter = false;
-              System.out.printf("cut:\t%s\t%s", name, number);
-            } else {
-              number.append(c);
-            }
-          }
-          if (!digitAfter) {
-            newFormula.append(c);
-          }
-        }
-      } else if (c == '(') {
-        brackets = true;
-        digitAfter = false;
-        name = new StringBuilder();
-        number = new StringBuilder();
-      } else if (c == ')') {
-        brackets = false;
-        digitAfter = true;
-      }
-    }
-    for (char c : newFormula.toString().toCharArray()) {
-      if (Character.isLetterOrDigit(c)) {
-        if (Character.isUpperCase(c)) {
-          if (name.length() > 0) {
-            if (number.length() == 0) {
-              number.append(1);
-            }
-            if (digitAfter) {
-              Hashtable<String, Integer> inlay = countAtoms(1,
-                name.toString(), replacement);
-              for (String key : inlay.keySet()) {
-                if (!atomCount.containsKey(key)) {
-                  atomCount.put(key, Integer.valueOf(0));
-                }
-                int mult = number.toString().contains("n") ? replacement
-                    : Integer.parseInt(number.toString());
-                int val = (int) (stoichiometry
-                    * inlay.get(key).intValue() * mult);
-                atomCount.put(key, Integer.valueOf(val));
-              }
-              digitAfter = false;
-            } else {
-              String key = name.toString();
-              if (atomCount.containsKey(key)) {
-                atomCount.put(key, (int) (atomCount.get(key)
-                    .intValue() + stoichiometry
-                    * Integer.parseInt(number.toString())));
-              } else {
-                int num = number.toString().contains("n") ? num = replacement
-                    : Integer.parseInt(number.toString());
-                atomCount.put(key, (int) (stoichiometry * num));
-              }
-            }
-          }
-          name = new StringBuilder(Character.toString(c));
-          number = new StringBuilder();
-        } else if (Character.isDigit(c)) {
-          number.append(Character.toString(c));
-        } else {
-          name.append(c);
-        }
-      }
-    }
-    if (name.length() > 0) {
-      String key = name.toString();
-      if (number.length() == 0) {
-        number.append(1);
-      }
-      if (atomCount.containsKey(key)) {
-        atomCount.put(key, atomCount.get(key).intValue()
-          + (int) (stoichiometry * Integer.parseInt(number
-            .toString())));
-      } else {
-        int num = number.toString().contains("n") ? num = replacement
-            : Integer.parseInt(number.toString());
-        atomCount.put(key, (int) (stoichiometry * num));
-      }
-    }
-    return atomCount;
+    return new Hashtable<String, Integer>(MolecularFormula.compile(formula,
+      replacement).toMap(stoichiometry));
   }
   
   /**
@@ -1566,37 +1464,81 @@ public class AnnotationCheck {
     }
   }
   
+  /**
+   * Prints all pairs of reactions with the same reactants and products,
+   * including their stoichiometry. Instead of comparing all pairs of
+   * reactions, the reactions are grouped by their
+   * {@link #getReactionSignature(Reaction)}.
+   * 
+   * @param m
+   */
   public void identifyIdenticalReaction(Model m) {
-    for (int i = 0; i < m.getReactionCount(); i++) {
-      Reaction r1 = m.getReaction(i);
-      for (int j = i + 1; j < m.getReactionCount(); j++) {
-        Reaction r2 = m.getReaction(j);
-        boolean identical = r1.getReactantCount() == r2
-            .getReactantCount()
-            && r1.getProductCount() == r2.getProductCount();
-        if (!identical) {
-          continue;
-        }
-        if (r1.isSetListOfReactants()) {
-          for (SimpleSpeciesReference specRef : r1.getListOfReactants()) {
-            identical &= r2.getListOfReactants().contains(
-              specRef.getSpeciesInstance());
-          }
+    Map<String, List<Reaction>> signature2reactions = new LinkedHashMap<String, List<Reaction>>();
+    if (m.isSetListOfReactions()) {
+      for (Reaction r : m.getListOfReactions()) {
+        String signature = getReactionSignature(r);
+        List<Reaction> reactions = signature2reactions.get(signature);
+        if (reactions == null) {
+          reactions = new LinkedList<Reaction>();
+          signature2reactions.put(signature, reactions);
         }
-        if (r1.isSetListOfProducts()) {
-          for (SimpleSpeciesReference specRef : r1.getListOfProducts()) {
-            identical &= r2.getListOfProducts().contains(
-              specRef.getSpeciesInstance());
+        reactions.add(r);
+      }
+    }
+    for (List<Reaction> reactions : signature2reactions.values()) {
+      if (reactions.size() > 1) {
+        Reaction r[] = reactions.toArray(new Reaction[reactions.size()]);
+        for (int i = 0; i < r.length; i++) {
+          for (int j = i + 1; j < r.length; j++) {
+            System.out.printf("Identical reactions:\t%s\t%s\n", r[i]
+              .getId(), r[j].getId());
           }
         }
-        if (identical) {
-          System.out.printf("Identical reactions:\t%s\t%s\n", r1
-            .getId(), r2.getId());
-        }
       }
     }
   }
   
+  /**
+   * Creates a canonical representation of the reactants and products of the
+   * given reaction: the identifiers of the species together with their
+   * stoichiometry, sorted in lexicographic order. Two reactions have the
+   * same signature if and only if they convert the same amounts of the same
+   * species.
+   * 
+   * @param r
+   * @return the signature of the given reaction.
+   */
+  public static String getReactionSignature(Reaction r) {
+    StringBuilder signature = new StringBuilder();
+    appendSignature(signature, r.isSetListOfReactants() ? r.getListOfReactants() : null);
+    signature.append("->");
+    appendSignature(signature, r.isSetListOfProducts() ? r.getListOfProducts() : null);
+    return signature.toString();
+  }
+  
+  /**
+   * 
+   * @param signature
+   * @param listOfSpecRef
+   *        might be {@code null}.
+   */
+  private static void appendSignature(StringBuilder signature,
+    ListOf<SpeciesReference> listOfSpecRef) {
+    if (listOfSpecRef == null) {
+      return;
+    }
+    String participants[] = new String[listOfSpecRef.size()];
+    for (int i = 0; i < participants.length; i++) {
+      SpeciesReference specRef = listOfSpecRef.get(i);
+      participants[i] = specRef.getSpecies() + '*'
+          + (specRef.isSetStoichiometry() ? StringTools.toString(specRef.getStoichiometry()) : "1");
+    }
+    Arrays.sort(participants);
+    for (String participant : participants) {
+      signature.append(participant).append(' ');
+    }
+  }
+  
   /**
    * 
    * @param m
@@ -90,6 +90,28 @@ public class AnnotationUtils {
     return null;
   }
   
+  /**
+   * Brings the given resource into a canonical form, such that MIRIAM URNs
+   * and identifiers.org URIs that point to the same entry are equal.
+   * 
+   * @param resource
+   *        a MIRIAM URN or an identifiers.org URI.
+   * @return the identifiers.org URI of the given resource or the trimmed
+   *         resource itself, if it is neither a MIRIAM URN nor an
+   *         identifiers.org URI.
+   */
+  public static String normalizeResource(String resource) {
+    String normalized = resource.trim();
+    String uri = convertURN2URI(normalized);
+    if (uri != null) {
+      return uri;
+    }
+    if (normalized.startsWith("https://identifiers.org/")) {
+      return "http" + normalized.substring(5);
+    }
+    return normalized;
+  }
+  
   /**
    * Recursively updates all resources from the MIRIAM URN scheme to
    * identifiers.org within a given {@link CVTerm}, i.e., considering nested terms.
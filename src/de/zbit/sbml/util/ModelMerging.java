@@ -18,9 +18,15 @@ package de.zbit.sbml.util;
 
 import java.io.IOException;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import javax.xml.stream.XMLStreamException;
 
@@ -31,6 +37,7 @@ import org.sbml.jsbml.CVTerm.Qualifier;
 import org.sbml.jsbml.Compartment;
 import org.sbml.jsbml.Model;
 import org.sbml.jsbml.ModifierSpeciesReference;
+import org.sbml.jsbml.NamedSBase;
 import org.sbml.jsbml.Reaction;
 import org.sbml.jsbml.SBMLDocument;
 import org.sbml.jsbml.SBMLException;
@@ -40,138 +47,300 @@ import org.sbml.jsbml.SimpleSpeciesReference;
 import org.sbml.jsbml.Species;
 
 public class ModelMerging {
+  
+  /**
+   * The renamed elements of one input model and the index of their
+   * {@link Qualifier#BQB_IS} annotations.
+   * 
+   * @version $Rev$
+   * @since 1.4
+   */
+  private static class IndexedModel {
+    /**
+     * The source model, released as soon as its elements have been
+     * transferred.
+     */
+    private Model model;
+    /**
+     * Annotation indices of the elements of {@link #model}.
+     */
+    private final Map<String, List<AbstractSBase>> compartmentAnnotationMap = new HashMap<String, List<AbstractSBase>>();
+    private final Map<String, List<AbstractSBase>> speciesAnnotationMap = new HashMap<String, List<AbstractSBase>>();
+    private final Map<String, List<AbstractSBase>> reactionAnnotationMap = new HashMap<String, List<AbstractSBase>>();
+  }
+  
   /**
+   * Merges the given models using one thread per available processor and
+   * writes the result to {@code files/mergedModel.xml}.
    * 
    * @param modelFiles
    * @throws XMLStreamException
    * @throws IOException
    * @throws SBMLException
+   * @see #mergeModels(String[], int)
    */
   public static void mergeModels(String[] modelFiles)
     throws XMLStreamException, IOException, SBMLException {
-    if (modelFiles.length == 0) { return; }
-    
-    SBMLDocument[] docs = new SBMLDocument[modelFiles.length];
-    for (int i = 0; i != modelFiles.length; i++) {
-      docs[i] = (new SBMLReader()).readSBML(modelFiles[i]);
-    }
+    SBMLDocument newDoc = mergeModels(modelFiles, Runtime.getRuntime().availableProcessors());
+    if (newDoc == null) { return; }
+    SBMLWriter w = new SBMLWriter();
+    w.write(newDoc, "files/mergedModel.xml");
+  }
+  
+  /**
+   * Merges the given models into one new model. The files are read and
+   * indexed concurrently, whereas their elements are transferred into the
+   * new model in the order of the given files. At most {@code threads}
+   * documents are read ahead, and every document is released as soon as its
+   * elements have been transferred, such that the memory consumption does
+   * not depend on the number of files.
+   * 
+   * @param modelFiles
+   * @param threads
+   *        the number of files to be read concurrently.
+   * @return the merged document or {@code null} if no files are given.
+   * @throws XMLStreamException
+   * @throws IOException
+   * @throws SBMLException
+   */
+  public static SBMLDocument mergeModels(final String[] modelFiles, int threads)
+    throws XMLStreamException, IOException, SBMLException {
+    if (modelFiles.length == 0) { return null; }
     
-    int level = docs[0].getLevel();
-    int version = docs[0].getVersion();
-    SBMLDocument newDoc = new SBMLDocument(level, version);
-    newDoc.createModel("newModel");
+    ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, threads));
+    LinkedList<Future<IndexedModel>> pending = new LinkedList<Future<IndexedModel>>();
+    int submitted = 0;
     
+    SBMLDocument newDoc = null;
+    int level = -1, version = -1;
     Map<String, List<AbstractSBase>> compartmentAnnotationMap = new HashMap<String, List<AbstractSBase>>();
     Map<String, List<AbstractSBase>> speciesAnnotationMap = new HashMap<String, List<AbstractSBase>>();
     Map<String, List<AbstractSBase>> reactionAnnotationMap = new HashMap<String, List<AbstractSBase>>();
     
-    for (int j = 0; j < docs.length; j++) {
-      Model currentModel = docs[j].getModel();
-      
-      //compartments
-      for (int n = 0; n != currentModel.getCompartmentCount(); n++) {
-        Compartment c = currentModel.getCompartment(n);
-        List<CVTerm> cvTerms = c.getCVTerms();
-        c.setLevel(level);
-        c.setVersion(version);
-        c.setId("C" + j + "_" + n + "_" + c.getId());
-        c.setMetaId(c.getId());
-        
-        newDoc.getModel().addCompartment(c);
-        
-        if (cvTerms.size() != 0) {
-          c.setAnnotation(new Annotation());
-        }
-        
-        for (CVTerm current : cvTerms) {
-          c.addCVTerm(current);
-          if (current.getBiologicalQualifierType().equals(Qualifier.BQB_IS)) {
-            for (String s : current.getResources()) {
-              List<AbstractSBase> list = compartmentAnnotationMap.get(s);
-              if (list == null) {
-                list = new LinkedList<AbstractSBase>();
-              }
-              list.add(c);
-              compartmentAnnotationMap.put(s, list);
+    try {
+      for (int j = 0; j < modelFiles.length; j++) {
+        // read ahead
+        while ((submitted < modelFiles.length) && (pending.size() < Math.max(1, threads))) {
+          final int index = submitted++;
+          pending.add(executor.submit(new Callable<IndexedModel>() {
+            /* (non-Javadoc)
+             * @see java.util.concurrent.Callable#call()
+             */
+            @Override
+            public IndexedModel call() throws Exception {
+              return index(new SBMLReader().readSBML(modelFiles[index]), index);
             }
-          }
+          }));
         }
+        IndexedModel indexed = get(pending.removeFirst());
+        Model currentModel = indexed.model;
+        indexed.model = null;
         
-      }
-      
-      //species
-      for (int n = 0; n != currentModel.getSpeciesCount(); n++) {
-        Species sp = currentModel.getSpecies(n);
-        List<CVTerm> cvTerms = sp.getCVTerms();
-        sp.setLevel(level);
-        sp.setVersion(version);
-        sp.setId("S" + j + "_" + n + "_" + sp.getId());
-        sp.setMetaId(sp.getId());
-        newDoc.getModel().addSpecies(sp);
-        
-        if (cvTerms.size() != 0) {
-          sp.setAnnotation(new Annotation());
+        if (newDoc == null) {
+          level = currentModel.getLevel();
+          version = currentModel.getVersion();
+          newDoc = new SBMLDocument(level, version);
+          newDoc.createModel("newModel");
         }
+        Model newModel = newDoc.getModel();
         
-        for (CVTerm current : cvTerms) {
-          sp.addCVTerm(current);
-          if (current.getBiologicalQualifierType().equals(Qualifier.BQB_IS)) {
-            
-            for (String s : current.getResources()) {
-              List<AbstractSBase> list = speciesAnnotationMap.get(s);
-              if (list == null) {
-                list = new LinkedList<AbstractSBase>();
-              }
-              list.add(sp);
-              speciesAnnotationMap.put(s, list);
-            }
-          }
+        // transfer the elements
+        for (int n = 0; n != currentModel.getCompartmentCount(); n++) {
+          Compartment c = currentModel.getCompartment(n);
+          c.setLevel(level);
+          c.setVersion(version);
+          newModel.addCompartment(c);
         }
-        
-      }
-      
-      //reactions
-      for (int n = 0; n != currentModel.getReactionCount(); n++) {
-        Reaction r = currentModel.getReaction(n);
-        List<CVTerm> cvTerms = r.getCVTerms();
-        r.setLevel(level);
-        r.setVersion(version);
-        r.setId("C" + j + "_" + n + "_" + r.getId());
-        r.setMetaId(r.getId());
-        
-        newDoc.getModel().addReaction(r);
-        if (cvTerms.size() != 0) {
-          r.setAnnotation(new Annotation());
+        for (int n = 0; n != currentModel.getSpeciesCount(); n++) {
+          Species sp = currentModel.getSpecies(n);
+          sp.setLevel(level);
+          sp.setVersion(version);
+          newModel.addSpecies(sp);
         }
-        
-        for (CVTerm current : cvTerms) {
-          r.addCVTerm(current);
-          if (current.getBiologicalQualifierType().equals(Qualifier.BQB_IS)) {
-            
-            for (String s : current.getResources()) {
-              List<AbstractSBase> list = reactionAnnotationMap.get(s);
-              if (list == null) {
-                list = new LinkedList<AbstractSBase>();
-              }
-              list.add(r);
-              reactionAnnotationMap.put(s, list);
-            }
-          }
+        for (int n = 0; n != currentModel.getReactionCount(); n++) {
+          Reaction r = currentModel.getReaction(n);
+          r.setLevel(level);
+          r.setVersion(version);
+          newModel.addReaction(r);
         }
+        
+        // indices are concatenated in the order of the files
+        putAll(compartmentAnnotationMap, indexed.compartmentAnnotationMap);
+        putAll(speciesAnnotationMap, indexed.speciesAnnotationMap);
+        putAll(reactionAnnotationMap, indexed.reactionAnnotationMap);
       }
-      
+    } finally {
+      executor.shutdownNow();
     }
     
     //remove elements with the same annotation and SBOTerm
     
+    //compartments
+    removeDuplicateElements(newDoc, compartmentAnnotationMap);
+    
     //species
     removeDuplicateElements(newDoc, speciesAnnotationMap);
     
     //reactions
     removeDuplicateElements(newDoc, reactionAnnotationMap);
-    SBMLWriter w = new SBMLWriter();
-    w.write(newDoc, "files/mergedModel.xml");
     
+    return newDoc;
+  }
+  
+  /**
+   * Waits for the given result and passes on the exceptions of
+   * {@link #mergeModels(String[], int)}.
+   * 
+   * @param future
+   * @return
+   * @throws XMLStreamException
+   * @throws IOException
+   */
+  private static IndexedModel get(Future<IndexedModel> future)
+    throws XMLStreamException, IOException {
+    try {
+      return future.get();
+    } catch (InterruptedException exc) {
+      Thread.currentThread().interrupt();
+      throw new IOException(exc);
+    } catch (ExecutionException exc) {
+      Throwable cause = exc.getCause();
+      if (cause instanceof XMLStreamException) {
+        throw (XMLStreamException) cause;
+      } else if (cause instanceof IOException) {
+        throw (IOException) cause;
+      } else if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      throw new IOException(cause);
+    }
+  }
+  
+  /**
+   * Appends the lists of the source map to the lists of the target map.
+   * 
+   * @param target
+   * @param source
+   */
+  private static void putAll(Map<String, List<AbstractSBase>> target,
+    Map<String, List<AbstractSBase>> source) {
+    for (Map.Entry<String, List<AbstractSBase>> entry : source.entrySet()) {
+      List<AbstractSBase> list = target.get(entry.getKey());
+      if (list == null) {
+        target.put(entry.getKey(), entry.getValue());
+      } else {
+        list.addAll(entry.getValue());
+      }
+    }
+  }
+  
+  /**
+   * Renames all compartments, species and reactions of the given document
+   * with the prefix of the {@code j}th model, including all references to
+   * compartments and species, and indexes their annotations. Only touches
+   * the given document and can hence be called concurrently for different
+   * documents.
+   * 
+   * @param doc
+   * @param j
+   *        the index of the model.
+   * @return
+   */
+  private static IndexedModel index(SBMLDocument doc, int j) {
+    IndexedModel indexed = new IndexedModel();
+    Model currentModel = doc.getModel();
+    indexed.model = currentModel;
+    Map<String, String> ids = new HashMap<String, String>();
+    
+    //compartments
+    for (int n = 0; n != currentModel.getCompartmentCount(); n++) {
+      Compartment c = currentModel.getCompartment(n);
+      String oldId = c.getId();
+      c.setId("C" + j + "_" + n + "_" + oldId);
+      c.setMetaId(c.getId());
+      ids.put(oldId, c.getId());
+      index(c, indexed.compartmentAnnotationMap);
+    }
+    
+    //species
+    for (int n = 0; n != currentModel.getSpeciesCount(); n++) {
+      Species sp = currentModel.getSpecies(n);
+      String oldId = sp.getId();
+      sp.setId("S" + j + "_" + n + "_" + oldId);
+      sp.setMetaId(sp.getId());
+      ids.put(oldId, sp.getId());
+      if (sp.isSetCompartment() && ids.containsKey(sp.getCompartment())) {
+        sp.setCompartment(ids.get(sp.getCompartment()));
+      }
+      index(sp, indexed.speciesAnnotationMap);
+    }
+    
+    //reactions
+    for (int n = 0; n != currentModel.getReactionCount(); n++) {
+      Reaction r = currentModel.getReaction(n);
+      r.setId("C" + j + "_" + n + "_" + r.getId());
+      r.setMetaId(r.getId());
+      if (r.isSetCompartment() && ids.containsKey(r.getCompartment())) {
+        r.setCompartment(ids.get(r.getCompartment()));
+      }
+      if (r.isSetListOfProducts()) {
+        rename(r.getListOfProducts(), ids);
+      }
+      if (r.isSetListOfReactants()) {
+        rename(r.getListOfReactants(), ids);
+      }
+      if (r.isSetListOfModifiers()) {
+        rename(r.getListOfModifiers(), ids);
+      }
+      index(r, indexed.reactionAnnotationMap);
+    }
+    return indexed;
+  }
+  
+  /**
+   * Lets all given species references point to the renamed species.
+   * 
+   * @param listOfSpeciesReferences
+   * @param ids maps the original identifiers to the new ones.
+   */
+  private static void rename(List<? extends SimpleSpeciesReference> listOfSpeciesReferences,
+    Map<String, String> ids) {
+    for (SimpleSpeciesReference sr : listOfSpeciesReferences) {
+      String newSpeciesId = ids.get(sr.getSpecies());
+      if (newSpeciesId != null) {
+        sr.setSpecies(newSpeciesId);
+      }
+    }
+  }
+  
+  /**
+   * Adds the given element to the given annotation map under each of its
+   * {@link Qualifier#BQB_IS} resources.
+   * 
+   * @param element
+   * @param annotationMap
+   */
+  private static void index(AbstractSBase element,
+    Map<String, List<AbstractSBase>> annotationMap) {
+    List<CVTerm> cvTerms = new LinkedList<CVTerm>(element.getCVTerms());
+    if (cvTerms.size() != 0) {
+      element.setAnnotation(new Annotation());
+    }
+    
+    for (CVTerm current : cvTerms) {
+      element.addCVTerm(current);
+      if (current.getBiologicalQualifierType().equals(Qualifier.BQB_IS)) {
+        for (String s : current.getResources()) {
+          String key = AnnotationUtils.normalizeResource(s);
+          List<AbstractSBase> list = annotationMap.get(key);
+          if (list == null) {
+            list = new LinkedList<AbstractSBase>();
+            annotationMap.put(key, list);
+          }
+          list.add(element);
+        }
+      }
+    }
   }
   
   /**
@@ -219,12 +388,13 @@ public class ModelMerging {
     			if (current.getBiologicalQualifierType().equals(Qualifier.BQB_IS)) {
     				
     				for (String s : current.getResources()) {
-    					List<AbstractSBase> list = speciesAnnotationMap.get(s);
+    					String key = AnnotationUtils.normalizeResource(s);
+    					List<AbstractSBase> list = speciesAnnotationMap.get(key);
     					if (list == null) {
     						list = new LinkedList<AbstractSBase>();
     					}
     					list.add(sp);
-    					speciesAnnotationMap.put(s, list);
+    					speciesAnnotationMap.put(key, list);
     				}
     			}
     		}
@@ -265,13 +435,14 @@ public class ModelMerging {
     				if (current.getBiologicalQualifierType().equals(Qualifier.BQB_IS)) {
     					
     					for (String s : current.getResources()) {
-    						if (s.contains("urn:miriam:kegg.reaction")) {
-    							List<AbstractSBase> list = reactionAnnotationMap.get(s);
+    						String key = AnnotationUtils.normalizeResource(s);
+    						if (key.contains("kegg.reaction")) {
+    							List<AbstractSBase> list = reactionAnnotationMap.get(key);
     							if (list == null) {
     								list = new LinkedList<AbstractSBase>();
     							}
     							list.add(r);
-    							reactionAnnotationMap.put(s, list);
+    							reactionAnnotationMap.put(key, list);
     						}
     					}
     				}
@@ -291,162 +462,180 @@ public class ModelMerging {
     
   }
   
+  /**
+   * Removes elements with the same annotation, SBO term and compartment,
+   * which originate from different models. Within each annotation, all
+   * elements are grouped by their {@link #signature(AbstractSBase)}, such
+   * that every element is only compared to the first element of its group.
+   * All duplicates are merged in one pass by {@link #merge(Map, SBMLDocument)}.
+   * 
+   * @param doc
+   * @param annotationMap
+   */
   private static void removeDuplicateElements(SBMLDocument doc,
     Map<String, List<AbstractSBase>> annotationMap) {
-    
-    for (String term : annotationMap.keySet()) {
-      List<AbstractSBase> elements = annotationMap.get(term);
+    Map<AbstractSBase, AbstractSBase> replacements = new IdentityHashMap<AbstractSBase, AbstractSBase>();
+    for (List<AbstractSBase> elements : annotationMap.values()) {
       if (elements.size() > 1) {
-        for (int n1 = 0; n1 != elements.size(); n1++) {
-          for (int n2 = n1 + 1; n2 != elements.size(); n2++) {
-            if (checkEquality(elements.get(n1), elements.get(n2))) {
-              merge(elements.get(n1), elements.get(n2), doc);
-            }
+        Map<String, AbstractSBase> representatives = new HashMap<String, AbstractSBase>();
+        for (AbstractSBase element : elements) {
+          if (replacements.containsKey(element)) {
+            // already merged because of another annotation
+            continue;
+          }
+          String signature = signature(element);
+          AbstractSBase representative = representatives.get(signature);
+          if (representative == null) {
+            representatives.put(signature, element);
+          } else if (!sameOrigin(representative, element)) {
+            replacements.put(element, representative);
           }
         }
       }
     }
+    merge(replacements, doc);
   }
   
-  private static void merge(AbstractSBase abstractSBase,
-    AbstractSBase abstractSBase2, SBMLDocument doc) {
-  	Model model = doc.getModel();
-    if ((abstractSBase instanceof Reaction)
-        && (abstractSBase2 instanceof Reaction)) {
-      Reaction r = (Reaction) abstractSBase2;
-      model.removeReaction(r);
-      
-    } else if ((abstractSBase instanceof Species)
-        && (abstractSBase2 instanceof Species)) {
-      Species s1 = (Species) abstractSBase;
-      Species s2 = (Species) abstractSBase2;
-      if (model.isSetListOfReactions()) {
-      	for (Reaction r : model.getListOfReactions()) {
-      		if (r.isSetListOfProducts()) {
-      			for (SimpleSpeciesReference sr : r.getListOfProducts()) {
-      				if (sr.getSpeciesInstance() == s2) {
-      					if (r.getId().equals("r0422")) {
-      						System.out.println();
-      					}
-      					sr.setSpecies(s1);
-      				}
-      			}
-      		}
-      		if (r.isSetListOfReactants()) {
-      			for (SimpleSpeciesReference sr : r.getListOfReactants()) {
-      				if (sr.getSpeciesInstance() == s2) {
-      					if (r.getId().equals("r0422")) {
-      						System.out.println();
-      					}
-      					sr.setSpecies(s1);
-      				}
-      			}
-      		}
-      		if (r.isSetListOfModifiers()) {
-      			for (ModifierSpeciesReference sr : r.getListOfModifiers()) {
-      				if (sr.getSpeciesInstance() == s2) {
-      					sr.setSpecies(s1);
-      				}
-      			}
-      		}
-      	}
-      }
-      model.removeSpecies(s2);
-    } else if ((abstractSBase instanceof Compartment)
-        && (abstractSBase2 instanceof Compartment)) {
-      Compartment c1 = (Compartment) abstractSBase;
-      Compartment c2 = (Compartment) abstractSBase2;
-      if (model.isSetListOfSpecies()) {
-      	for (Species s : model.getListOfSpecies()) {
-      		if (s.getCompartmentInstance() == c2) {
-      			s.setCompartment(c1);
-      		}
-      	}
+  /**
+   * Replaces all references to the keys of the given map by references to
+   * the corresponding values and removes the keys from the model afterwards.
+   * 
+   * @param replacements maps duplicates to the elements that remain in the model.
+   * @param doc
+   */
+  private static void merge(Map<AbstractSBase, AbstractSBase> replacements,
+    SBMLDocument doc) {
+    if (replacements.isEmpty()) {
+      return;
+    }
+    // an element might have been merged into an element, which has been merged itself
+    for (Map.Entry<AbstractSBase, AbstractSBase> entry : replacements.entrySet()) {
+      AbstractSBase target = entry.getValue();
+      while (replacements.containsKey(target)) {
+        target = replacements.get(target);
       }
-      if (model.isSetListOfReactions()) {
-      	for (Reaction r : model.getListOfReactions()) {
-      		if (r.getCompartmentInstance() != null
-      				&& r.getCompartmentInstance() == c2) {
-      			r.setCompartment(c1);
-      		}
-      	}
+      entry.setValue(target);
+    }
+    Model model = doc.getModel();
+    if (model.isSetListOfSpecies()) {
+      for (Species s : model.getListOfSpecies()) {
+        AbstractSBase c = replacements.get(s.getCompartmentInstance());
+        if (c != null) {
+          s.setCompartment((Compartment) c);
+        }
       }
-      model.removeCompartment(c2.getId());
     }
-  }
-  
-  private static boolean checkEquality(AbstractSBase abstractSBase,
-    AbstractSBase abstractSBase2) {
-    
-    if (abstractSBase.getSBOTerm() == abstractSBase2.getSBOTerm()) {
-      if ((abstractSBase instanceof Reaction)
-          && (abstractSBase2 instanceof Reaction)) {
-        Reaction r1 = (Reaction) abstractSBase;
-        Reaction r2 = (Reaction) abstractSBase2;
-        if (r1.getId().equals("r0422") || r2.getId().equals("r0422")) {
-          System.out.println();
+    if (model.isSetListOfReactions()) {
+      for (Reaction r : model.getListOfReactions()) {
+        AbstractSBase c = replacements.get(r.getCompartmentInstance());
+        if (c != null) {
+          r.setCompartment((Compartment) c);
         }
-        if (r1.getId().split("_")[0].equals(r2.getId().split("_")[0])) { return false; }
-        
-        //determine compartment of reaction 1
-        Compartment c1 = r1.getCompartmentInstance();
-        if (c1 == null) {
-          if (r1.getReactantCount() > 0) {
-            Species s = r1.getReactant(0).getSpeciesInstance();
-            if (s != null) {
-              c1 = s.getCompartmentInstance();
-            }
-          }
+        if (r.isSetListOfProducts()) {
+          redirect(r.getListOfProducts(), replacements);
         }
-        if (c1 == null) {
-          if (r1.getProductCount() > 0) {
-            Species s = r1.getProduct(0).getSpeciesInstance();
-            if (s != null) {
-              c1 = s.getCompartmentInstance();
-            }
-          }
+        if (r.isSetListOfReactants()) {
+          redirect(r.getListOfReactants(), replacements);
         }
-        //determine compartment of reaction 2
-        Compartment c2 = r2.getCompartmentInstance();
-        if (c2 == null) {
-          if (r2.getReactantCount() > 0) {
-            Species s = r2.getReactant(0).getSpeciesInstance();
-            if (s != null) {
-              c2 = s.getCompartmentInstance();
-            }
-          }
+        if (r.isSetListOfModifiers()) {
+          redirect(r.getListOfModifiers(), replacements);
         }
-        if (c2 == null) {
-          if (r2.getProductCount() > 0) {
-            Species s = r2.getProduct(0).getSpeciesInstance();
-            if (s != null) {
-              c2 = s.getCompartmentInstance();
-            }
-          }
+      }
+    }
+    for (AbstractSBase element : replacements.keySet()) {
+      if (element instanceof Reaction) {
+        model.removeReaction(((Reaction) element).getId());
+      } else if (element instanceof Species) {
+        model.removeSpecies(((Species) element).getId());
+      } else if (element instanceof Compartment) {
+        model.removeCompartment(((Compartment) element).getId());
+      }
+    }
+  }
+  
+  /**
+   * Lets all given species references point to the replacement of their species.
+   * 
+   * @param listOfSpeciesReferences
+   * @param replacements
+   */
+  private static void redirect(List<? extends SimpleSpeciesReference> listOfSpeciesReferences,
+    Map<AbstractSBase, AbstractSBase> replacements) {
+    for (SimpleSpeciesReference sr : listOfSpeciesReferences) {
+      AbstractSBase s = replacements.get(sr.getSpeciesInstance());
+      if (s != null) {
+        sr.setSpecies((Species) s);
+      }
+    }
+  }
+  
+  /**
+   * Two elements are considered equal if they originate from different
+   * models (see {@link #sameOrigin(AbstractSBase, AbstractSBase)}) and have
+   * the same signature, i.e.,
+   * <ul>
+   * <li>compartments have the same SBO term,</li>
+   * <li>species have the same SBO term and compartment (and the same name, if
+   * they have been renamed by {@link #mergeCompartments(String)}),</li>
+   * <li>reactions have the same SBO term and compartment, where the
+   * compartment of a reaction without compartment is the compartment of its
+   * first reactant or product.</li>
+   * </ul>
+   * 
+   * @param element
+   * @return a signature, that is the same for all equal elements.
+   */
+  private static String signature(AbstractSBase element) {
+    StringBuilder signature = new StringBuilder();
+    signature.append(element.getClass().getSimpleName()).append('|');
+    signature.append(element.getSBOTerm()).append('|');
+    Compartment c = null;
+    if (element instanceof Reaction) {
+      Reaction r = (Reaction) element;
+      c = r.getCompartmentInstance();
+      if ((c == null) && (r.getReactantCount() > 0)) {
+        Species s = r.getReactant(0).getSpeciesInstance();
+        if (s != null) {
+          c = s.getCompartmentInstance();
         }
-        if (c1 == c2) { return true; }
-        
-      } else if ((abstractSBase instanceof Species)
-          && (abstractSBase2 instanceof Species)) {
-        Species s1 = (Species) abstractSBase;
-        Species s2 = (Species) abstractSBase2;
-        if (!(s1.getId().startsWith("_"))
-            && (s1.getId().split("_")[0].equals(s2.getId().split("_")[0]))) { return false; }
-        if ((s1.getId().startsWith("_"))
-            && !(s1.getId().split("_")[1].equals(s2.getId().split("_")[1]))) { return false; }
-        if ((s1.getSBOTerm() == s2.getSBOTerm())
-            && (s1.getCompartmentInstance() == s2.getCompartmentInstance())) { return true; }
-      } else if ((abstractSBase instanceof Compartment)
-          && (abstractSBase2 instanceof Compartment)) {
-        if (((Compartment) abstractSBase).getId().split("_")[0]
-            .equals(((Compartment) abstractSBase2).getId().split("_")[0])) {
-          return false;
-        } else {
-          return true;
+      }
+      if ((c == null) && (r.getProductCount() > 0)) {
+        Species s = r.getProduct(0).getSpeciesInstance();
+        if (s != null) {
+          c = s.getCompartmentInstance();
         }
       }
+    } else if (element instanceof Species) {
+      Species s = (Species) element;
+      c = s.getCompartmentInstance();
+      if (s.getId().startsWith("_")) {
+        String parts[] = s.getId().split("_");
+        signature.append(parts.length > 1 ? parts[1] : "").append('|');
+      }
+    }
+    if (c != null) {
+      signature.append(c.getId());
+    }
+    return signature.toString();
+  }
+  
+  /**
+   * Elements are assumed to originate from the same model, if the prefixes
+   * of their identifiers (up to the first underscore) are identical. Species
+   * that have been renamed by {@link #mergeCompartments(String)} have no
+   * origin.
+   * 
+   * @param element1
+   * @param element2
+   * @return
+   */
+  private static boolean sameOrigin(AbstractSBase element1, AbstractSBase element2) {
+    if ((element1 instanceof Species) && ((Species) element1).getId().startsWith("_")) {
+      return false;
     }
-    return false;
+    String id1 = ((NamedSBase) element1).getId();
+    String id2 = ((NamedSBase) element2).getId();
+    return id1.split("_")[0].equals(id2.split("_")[0]);
   }
   
   public static void main(String[] args) throws XMLStreamException,
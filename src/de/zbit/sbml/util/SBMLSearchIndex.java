@@ -0,0 +1,416 @@
+/*
+ * $Id$
+ * $URL$
+ * ---------------------------------------------------------------------
+ * This file is part of the SysBio API library.
+ *
+ * Copyright (C) 2009-2016 by the University of Tuebingen, Germany.
+ *
+ * This library is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation. A copy of the license
+ * agreement is provided in the file named "LICENSE.txt" included with
+ * this software distribution and also available online as
+ * <http://www.gnu.org/licenses/lgpl-3.0-standalone.html>.
+ * ---------------------------------------------------------------------
+ */
+package de.zbit.sbml.util;
+
+import java.beans.PropertyChangeEvent;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import javax.swing.tree.TreeNode;
+
+import org.sbml.jsbml.ASTNode;
+import org.sbml.jsbml.Assignment;
+import org.sbml.jsbml.CVTerm;
+import org.sbml.jsbml.MathContainer;
+import org.sbml.jsbml.NamedSBase;
+import org.sbml.jsbml.SBase;
+import org.sbml.jsbml.SimpleSpeciesReference;
+import org.sbml.jsbml.Variable;
+import org.sbml.jsbml.util.TreeNodeChangeEvent;
+import org.sbml.jsbml.util.TreeNodeChangeListener;
+import org.sbml.jsbml.util.TreeNodeRemovedEvent;
+
+/**
+ * An n-gram index for a case-insensitive substring search over all
+ * {@link SBase}s of a tree. For every element, the index contains
+ * <ul>
+ * <li>its id and name,</li>
+ * <li>the id and name of the referenced species of a
+ * {@link SimpleSpeciesReference},</li>
+ * <li>the id and name of the variable of an {@link Assignment},</li>
+ * <li>the resources of its {@link CVTerm}s (MIRIAM annotations) and</li>
+ * <li>the identifiers in its math (see {@link MathContainer}).</li>
+ * </ul>
+ * This covers the same attributes as {@link RegexpNameFilter},
+ * {@link RegexpSpeciesReferenceFilter} and
+ * {@link RegexpAssignmentVariableFilter}.
+ * 
+ * <p>The index is built once and registers itself as
+ * {@link TreeNodeChangeListener} on the indexed tree, such that it is kept up
+ * to date when elements are added, removed or changed. Call
+ * {@link #dispose()} to unregister it. All methods are synchronized.</p>
+ * 
+ * @version $Rev$
+ * @since 1.4
+ */
+public class SBMLSearchIndex implements TreeNodeChangeListener {
+  
+  /**
+   * Maximum length of the indexed n-grams. Queries up to this length are
+   * answered directly from the index, longer queries by intersecting the
+   * n-grams of the query.
+   */
+  private static final int N = 3;
+  
+  /**
+   * @return a new {@link Set} that compares its elements by identity.
+   */
+  public static <T> Set<T> createIdentitySet() {
+    return Collections.newSetFromMap(new IdentityHashMap<T, Boolean>());
+  }
+  
+  /**
+   * The root of the indexed tree.
+   */
+  private final SBase root;
+  
+  /**
+   * All elements that contain a certain n-gram.
+   */
+  private final Map<String, Set<SBase>> grams = new HashMap<String, Set<SBase>>();
+  
+  /**
+   * The indexed texts (lower case) of every element.
+   */
+  private final Map<SBase, String[]> texts = new IdentityHashMap<SBase, String[]>();
+  
+  /**
+   * Indexes all elements below (and including) the given root.
+   * 
+   * @param root
+   */
+  public SBMLSearchIndex(SBase root) {
+    super();
+    this.root = root;
+    addTree(root);
+    root.addTreeNodeChangeListener(this);
+  }
+  
+  /**
+   * Unregisters this index from the indexed tree. The index will not be
+   * updated anymore afterwards.
+   */
+  public void dispose() {
+    root.removeTreeNodeChangeListener(this);
+  }
+  
+  /**
+   * @return the number of indexed elements.
+   */
+  public synchronized int size() {
+    return texts.size();
+  }
+  
+  /**
+   * Returns all elements, that contain the given query in one of their
+   * indexed texts, ignoring case. The effort depends on the number of
+   * elements, that contain the rarest n-gram of the query, not on the size
+   * of the tree.
+   * 
+   * @param query plain text (no regular expression).
+   * @return all matching elements, compared by identity. Empty, if
+   *         {@code query} is empty.
+   */
+  public synchronized Set<SBase> search(String query) {
+    Set<SBase> hits = createIdentitySet();
+    query = query.toLowerCase(Locale.ENGLISH);
+    if (query.length() == 0) {
+      return hits;
+    }
+    if (query.length() <= N) {
+      Set<SBase> elements = grams.get(query);
+      if (elements != null) {
+        hits.addAll(elements);
+      }
+      return hits;
+    }
+    
+    // Start with the rarest n-gram
+    Set<SBase> candidates = null;
+    for (int i = 0; i + N <= query.length(); i++) {
+      Set<SBase> elements = grams.get(query.substring(i, i + N));
+      if (elements == null) {
+        return hits;
+      }
+      if ((candidates == null) || (elements.size() < candidates.size())) {
+        candidates = elements;
+      }
+    }
+    for (SBase candidate : candidates) {
+      for (String text : texts.get(candidate)) {
+        if (text.contains(query)) {
+          hits.add(candidate);
+          break;
+        }
+      }
+    }
+    return hits;
+  }
+  
+  /**
+   * (Re-)indexes the given element and all its descendants.
+   * 
+   * @param node
+   */
+  private synchronized void addTree(TreeNode node) {
+    if (node instanceof SBase) {
+      add((SBase) node);
+    }
+    for (int i = 0; i < node.getChildCount(); i++) {
+      addTree(node.getChildAt(i));
+    }
+  }
+  
+  /**
+   * Removes the given element and all its descendants from the index.
+   * 
+   * @param node
+   */
+  private synchronized void removeTree(TreeNode node) {
+    if (node instanceof SBase) {
+      remove((SBase) node);
+    }
+    for (int i = 0; i < node.getChildCount(); i++) {
+      removeTree(node.getChildAt(i));
+    }
+  }
+  
+  /**
+   * (Re-)indexes a single element.
+   * 
+   * @param sbase
+   */
+  private void add(SBase sbase) {
+    remove(sbase);
+    Set<String> text = new LinkedHashSet<String>();
+    collectTexts(sbase, text);
+    if (text.isEmpty()) {
+      return;
+    }
+    String[] lowerCase = new String[text.size()];
+    int i = 0;
+    for (String t : text) {
+      lowerCase[i++] = t.toLowerCase(Locale.ENGLISH);
+    }
+    texts.put(sbase, lowerCase);
+    for (String gram : getGrams(lowerCase)) {
+      Set<SBase> elements = grams.get(gram);
+      if (elements == null) {
+        elements = createIdentitySet();
+        grams.put(gram, elements);
+      }
+      elements.add(sbase);
+    }
+  }
+  
+  /**
+   * Removes a single element from the index.
+   * 
+   * @param sbase
+   */
+  private void remove(SBase sbase) {
+    String[] text = texts.remove(sbase);
+    if (text == null) {
+      return;
+    }
+    for (String gram : getGrams(text)) {
+      Set<SBase> elements = grams.get(gram);
+      if (elements != null) {
+        elements.remove(sbase);
+        if (elements.isEmpty()) {
+          grams.remove(gram);
+        }
+      }
+    }
+  }
+  
+  /**
+   * @param text
+   * @return all substrings of the given texts with a length of 1 to
+   *         {@link #N}.
+   */
+  private static Set<String> getGrams(String[] text) {
+    Set<String> ret = new LinkedHashSet<String>();
+    for (String t : text) {
+      for (int n = 1; n <= N; n++) {
+        for (int i = 0; i + n <= t.length(); i++) {
+          ret.add(t.substring(i, i + n));
+        }
+      }
+    }
+    return ret;
+  }
+  
+  /**
+   * Collects all searchable texts of the given element.
+   * 
+   * @param sbase
+   * @param text
+   */
+  private static void collectTexts(SBase sbase, Set<String> text) {
+    if (sbase instanceof NamedSBase) {
+      NamedSBase nsb = (NamedSBase) sbase;
+      addText(nsb.getId(), text);
+      addText(nsb.getName(), text);
+    }
+    if (sbase instanceof SimpleSpeciesReference) {
+      SimpleSpeciesReference specRef = (SimpleSpeciesReference) sbase;
+      if (specRef.isSetSpecies()) {
+        addText(specRef.getSpecies(), text);
+        if (specRef.getSpeciesInstance() != null) {
+          addText(specRef.getSpeciesInstance().getName(), text);
+        }
+      }
+    }
+    if (sbase instanceof Assignment) {
+      Assignment assignment = (Assignment) sbase;
+      if (assignment.isSetVariable()) {
+        addText(assignment.getVariable(), text);
+        Variable variable = assignment.getVariableInstance();
+        if (variable != null) {
+          addText(variable.getName(), text);
+        }
+      }
+    }
+    if (sbase.isSetAnnotation()) {
+      for (CVTerm term : sbase.getCVTerms()) {
+        for (String resource : term.getResources()) {
+          addText(resource, text);
+        }
+      }
+    }
+    if ((sbase instanceof MathContainer) && ((MathContainer) sbase).isSetMath()) {
+      collectIdentifiers(((MathContainer) sbase).getMath(), text);
+    }
+  }
+  
+  /**
+   * Collects the names of all identifiers and user-defined functions in the
+   * given formula.
+   * 
+   * @param math
+   * @param text
+   */
+  private static void collectIdentifiers(ASTNode math, Set<String> text) {
+    List<ASTNode> stack = new ArrayList<ASTNode>();
+    stack.add(math);
+    while (!stack.isEmpty()) {
+      ASTNode node = stack.remove(stack.size() - 1);
+      if (node.isName() || (node.getType() == ASTNode.Type.FUNCTION)) {
+        addText(node.getName(), text);
+      }
+      for (int i = 0; i < node.getChildCount(); i++) {
+        stack.add(node.getChild(i));
+      }
+    }
+  }
+  
+  /**
+   * @param s
+   * @param text
+   */
+  private static void addText(String s, Set<String> text) {
+    if ((s != null) && (s.length() > 0)) {
+      text.add(s);
+    }
+  }
+  
+  /**
+   * @param node
+   * @return the given node, if it is an {@link SBase}, or its closest
+   *         {@link SBase} ancestor (e.g., for {@link CVTerm}s or
+   *         {@link ASTNode}s).
+   */
+  private static SBase getSBase(Object node) {
+    while ((node instanceof TreeNode) && !(node instanceof SBase)) {
+      node = ((TreeNode) node).getParent();
+    }
+    return (node instanceof SBase) ? (SBase) node : null;
+  }
+  
+  /* (non-Javadoc)
+   * @see org.sbml.jsbml.util.TreeNodeChangeListener#nodeAdded(javax.swing.tree.TreeNode)
+   */
+  @Override
+  public void nodeAdded(TreeNode node) {
+    if (node instanceof SBase) {
+      addTree(node);
+    } else {
+      // e.g., a CVTerm or the math of an element
+      SBase sbase = getSBase(node);
+      if (sbase != null) {
+        synchronized (this) {
+          add(sbase);
+        }
+      }
+    }
+  }
+  
+  /* (non-Javadoc)
+   * @see org.sbml.jsbml.util.TreeNodeChangeListener#nodeRemoved(org.sbml.jsbml.util.TreeNodeRemovedEvent)
+   */
+  @Override
+  public void nodeRemoved(TreeNodeRemovedEvent evt) {
+    TreeNode node = evt.getSource();
+    if (node instanceof SBase) {
+      removeTree(node);
+    } else {
+      SBase sbase = getSBase(evt.getPreviousParent());
+      if (sbase != null) {
+        synchronized (this) {
+          if (texts.containsKey(sbase)) {
+            add(sbase);
+          }
+        }
+      }
+    }
+  }
+  
+  /* (non-Javadoc)
+   * @see java.beans.PropertyChangeListener#propertyChange(java.beans.PropertyChangeEvent)
+   */
+  @Override
+  public void propertyChange(PropertyChangeEvent evt) {
+    if (TreeNodeChangeEvent.userObject.equals(evt.getPropertyName())) {
+      return;
+    }
+    SBase sbase = getSBase(evt.getSource());
+    if (sbase != null) {
+      synchronized (this) {
+        add(sbase);
+        if (TreeNodeChangeEvent.name.equals(evt.getPropertyName())
+            && (evt.getOldValue() instanceof String)) {
+          // Species references and assignments contain the name of the
+          // referenced element, too.
+          for (SBase hit : search((String) evt.getOldValue())) {
+            if ((hit instanceof SimpleSpeciesReference) || (hit instanceof Assignment)) {
+              add(hit);
+            }
+          }
+        }
+      }
+    }
+  }
+  
+}
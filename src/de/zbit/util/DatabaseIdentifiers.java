@@ -17,6 +17,7 @@
 package de.zbit.util;
 
 import java.text.MessageFormat;
+import java.util.EnumMap;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.logging.Level;
@@ -61,6 +62,14 @@ public class DatabaseIdentifiers {
    */
   private static Map<String, IdentifierDatabases> officialNames = new HashMap<String, IdentifierDatabases>();
   
+  /**
+   * Caches the compiled "IS" patterns (see
+   * {@link #getRegularExpressionForIdentifier(IdentifierDatabases, boolean)})
+   * of every {@link IdentifierDatabases}, such that each regular expression
+   * is compiled only once.
+   */
+  private static Map<IdentifierDatabases, Pattern> patternMap = new EnumMap<IdentifierDatabases, Pattern>(IdentifierDatabases.class);
+  
   
   /**
    * An enumeration of different databases with identifiers in aplhabetical order.
@@ -696,6 +705,10 @@ public class DatabaseIdentifiers {
     
     for (IdentifierDatabases db : IdentifierDatabases.values()) {
       officialNames.put(db.getOfficialName(), db);
+      String regEx = getRegularExpressionForIdentifier(db, false);
+      if (regEx != null) {
+        patternMap.put(db, Pattern.compile(regEx));
+      }
     }
   }
   
@@ -733,6 +746,17 @@ public class DatabaseIdentifiers {
     return regExMap.get(identifier);
   }
   
+  /**
+   * Returns the precompiled pattern of
+   * {@link #getRegularExpressionForIdentifier(IdentifierDatabases, boolean)}
+   * with {@code contains = false}.
+   * @param identifier
+   * @return compiled {@link Pattern} or {@code null}, if none available.
+   */
+  public static Pattern getPatternForIdentifier(IdentifierDatabases identifier) {
+    return patternMap.get(identifier);
+  }
+  
   /**
    * Returns the corresponding miriam urn to the enterede database identifier.
    * <i>Note: this is just the prefix, to which the real identifier still need
@@ -824,15 +848,15 @@ public class DatabaseIdentifiers {
     }
     
     // Get RegEx
-    String regEx = getRegularExpressionForIdentifier(database, false);
-    if (regEx == null) {
+    Pattern pattern = patternMap.get(database);
+    if (pattern == null) {
       // unknown => in doubt, return true.
       log.warning(MessageFormat.format("Missing regular expression for database ''{0}''.", database));
       return true;
     }
     
     // Check if id is correct
-    return (Pattern.matches(regEx, id));
+    return pattern.matcher(id).matches();
   }
   
   /**
@@ -859,7 +883,8 @@ public class DatabaseIdentifiers {
     }
     
     // Check if id is correct
-    if (Pattern.matches(regEx, id)) {
+    Pattern pattern = patternMap.get(database);
+    if (pattern.matcher(id).matches()) {
       // Perfect match.
       return id;
     }
@@ -892,7 +917,7 @@ public class DatabaseIdentifiers {
       String prefix = regEx.substring(1, posDdb);
       if (Pattern.matches("\\w+", prefix)) {
         String newId = String.format("%s%s%s", prefix, PrefixAndNumberDivisor, id);
-        if (Pattern.matches(regEx, newId)) {
+        if (pattern.matcher(newId).matches()) {
           return newId;
         }
       }
@@ -900,7 +925,7 @@ public class DatabaseIdentifiers {
       // database has no prefix but the id has one
       // (This is very often the case for all KEGG identifiers).
       String newId = id.substring(posDid+1);
-      if (Pattern.matches(regEx, newId)) {
+      if (pattern.matcher(newId).matches()) {
         // Trim prefix and check id id is now ok.
         return newId;
       }
@@ -912,12 +937,12 @@ public class DatabaseIdentifiers {
     if (mDB.matches() && !mID.matches()) {
       String prefix = mDB.group(1);
       String newId = String.format("%s%s", prefix, id);
-      if (Pattern.matches(regEx, newId)) {
+      if (pattern.matcher(newId).matches()) {
         return newId;
       }
     }
     if (mID.matches() && !mDB.matches()) {
-      if (Pattern.matches(regEx, mID.group(2))) {
+      if (pattern.matcher(mID.group(2)).matches()) {
         // Trim prefix and check id id is now ok.
         return mID.group(2);
       }
@@ -0,0 +1,219 @@
+/*
+ * $Id$
+ * $URL$
+ * ---------------------------------------------------------------------
+ * This file is part of the SysBio API library.
+ *
+ * Copyright (C) 2009-2016 by the University of Tuebingen, Germany.
+ *
+ * This library is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation. A copy of the license
+ * agreement is provided in the file named "LICENSE.txt" included with
+ * this software distribution and also available online as
+ * <http://www.gnu.org/licenses/lgpl-3.0-standalone.html>.
+ * ---------------------------------------------------------------------
+ */
+package de.zbit.util;
+
+/**
+ * Fast computation of the (unit cost) Levenshtein distance between two
+ * strings.
+ *
+ * <p>If the shorter string has at most 64 characters, the bit-parallel
+ * algorithm of Myers (1999), as formulated by Hyyr&ouml; (2001) for global
+ * edit distances, is used. It needs {@code O(n)} word operations and no
+ * matrix at all. Longer strings are aligned with a banded dynamic programming
+ * approach in linear space. Both variants support a distance bound, beyond
+ * which the computation is terminated early.</p>
+ *
+ * <p>For weighted and affine gap costs, see
+ * {@link StringUtil#globalAlignment(char[], char[], int, int)}.</p>
+ *
+ * @version $Rev$
+ * @since 1.4
+ * @see de.zbit.collection.BKTree
+ */
+public class EditDistance {
+
+  /**
+   * Maximal length of the shorter string for the bit-parallel algorithm.
+   */
+  private static final int WORD_SIZE = 64;
+
+  /**
+   * Hidden, because this class contains only static methods.
+   */
+  private EditDistance() {
+    super();
+  }
+
+  /**
+   * Computes the Levenshtein distance of both strings.
+   *
+   * @param a
+   * @param b
+   * @return the minimal number of insertions, deletions and substitutions
+   *         required to transform {@code a} into {@code b}.
+   */
+  public static int levenshtein(CharSequence a, CharSequence b) {
+    return levenshtein(a, b, Integer.MAX_VALUE);
+  }
+
+  /**
+   * Computes the Levenshtein distance of both strings, if it does not exceed
+   * {@code maxDistance}.
+   *
+   * @param a
+   * @param b
+   * @param maxDistance the maximal distance of interest.
+   * @return the Levenshtein distance, or any value greater than
+   *         {@code maxDistance}, if the distance exceeds this bound.
+   */
+  public static int levenshtein(CharSequence a, CharSequence b, int maxDistance) {
+    // Let a be the shorter one
+    if (a.length() > b.length()) {
+      CharSequence tmp = a;
+      a = b;
+      b = tmp;
+    }
+    if (b.length() - a.length() > maxDistance) {
+      return maxDistance < Integer.MAX_VALUE ? maxDistance + 1 : maxDistance;
+    }
+    if (a.length() == 0) {
+      return b.length();
+    }
+    if (a.length() <= WORD_SIZE) {
+      return myers(a, b, maxDistance);
+    }
+    return banded(a, b, maxDistance);
+  }
+
+  /**
+   * Bit-parallel computation of the edit distance.
+   *
+   * @param pattern at most {@link #WORD_SIZE} characters.
+   * @param text
+   * @param maxDistance
+   * @return
+   */
+  private static int myers(CharSequence pattern, CharSequence text, int maxDistance) {
+    int m = pattern.length();
+    int n = text.length();
+
+    // Bit masks of the positions of each character in the pattern
+    long[] peqAscii = new long[128];
+    char[] otherChars = null;
+    long[] otherMasks = null;
+    int others = 0;
+    for (int i = 0; i < m; i++) {
+      char c = pattern.charAt(i);
+      if (c < 128) {
+        peqAscii[c] |= 1L << i;
+      } else {
+        if (otherChars == null) {
+          otherChars = new char[m];
+          otherMasks = new long[m];
+        }
+        int k = 0;
+        while ((k < others) && (otherChars[k] != c)) {
+          k++;
+        }
+        if (k == others) {
+          otherChars[others++] = c;
+        }
+        otherMasks[k] |= 1L << i;
+      }
+    }
+
+    long pv = m == WORD_SIZE ? -1L : (1L << m) - 1;
+    long mv = 0L;
+    long last = 1L << (m - 1);
+    int score = m;
+    for (int j = 0; j < n; j++) {
+      char c = text.charAt(j);
+      long eq = 0L;
+      if (c < 128) {
+        eq = peqAscii[c];
+      } else {
+        for (int k = 0; k < others; k++) {
+          if (otherChars[k] == c) {
+            eq = otherMasks[k];
+            break;
+          }
+        }
+      }
+      long xv = eq | mv;
+      long xh = (((eq & pv) + pv) ^ pv) | eq;
+      long ph = mv | ~(xh | pv);
+      long mh = pv & xh;
+      if ((ph & last) != 0) {
+        score++;
+      } else if ((mh & last) != 0) {
+        score--;
+      }
+      // The top row of the matrix increases by one in every column
+      ph = (ph << 1) | 1L;
+      mh = mh << 1;
+      pv = mh | ~(xv | ph);
+      mv = ph & xv;
+
+      // The score can decrease by at most one per remaining column
+      if (score - (n - j - 1) > maxDistance) {
+        return maxDistance + 1;
+      }
+    }
+    return score;
+  }
+
+  /**
+   * Banded dynamic programming in linear space. Only cells within
+   * {@code maxDistance} of the main diagonal are computed.
+   *
+   * @param a the shorter string.
+   * @param b
+   * @param maxDistance
+   * @return
+   */
+  private static int banded(CharSequence a, CharSequence b, int maxDistance) {
+    int n = a.length();
+    int m = b.length();
+    int band = (int) Math.min(maxDistance, (long) Math.max(n, m));
+    int inf = Integer.MAX_VALUE / 2;
+    int[] prev = new int[m + 1];
+    int[] cur = new int[m + 1];
+    for (int j = 0; j <= m; j++) {
+      prev[j] = j <= band ? j : inf;
+    }
+    for (int i = 1; i <= n; i++) {
+      int from = Math.max(1, i - band);
+      int to = (int) Math.min(m, (long) i + band);
+      cur[0] = i <= band ? i : inf;
+      if (from > 1) {
+        cur[from - 1] = inf;
+      }
+      int rowMin = cur[0];
+      char ca = a.charAt(i - 1);
+      for (int j = from; j <= to; j++) {
+        int cost = prev[j - 1] + (ca == b.charAt(j - 1) ? 0 : 1);
+        cost = Math.min(cost, prev[j] + 1);
+        cost = Math.min(cost, cur[j - 1] + 1);
+        cur[j] = cost;
+        if (cost < rowMin) {
+          rowMin = cost;
+        }
+      }
+      if (to < m) {
+        cur[to + 1] = inf;
+      }
+      if (rowMin > maxDistance) {
+        return maxDistance + 1;
+      }
+      int[] tmp = prev;
+      prev = cur;
+      cur = tmp;
+    }
+    return prev[m] > maxDistance ? maxDistance + 1 : prev[m];
+  }
+
+}
@@ -0,0 +1,298 @@
+/*
+ * $Id$
+ * $URL$
+ * ---------------------------------------------------------------------
+ * This file is part of the SysBio API library.
+ *
+ * Copyright (C) 2009-2016 by the University of Tuebingen, Germany.
+ *
+ * This library is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation. A copy of the license
+ * agreement is provided in the file named "LICENSE.txt" included with
+ * this software distribution and also available online as
+ * <http://www.gnu.org/licenses/lgpl-3.0-standalone.html>.
+ * ---------------------------------------------------------------------
+ */
+package de.zbit.util;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import de.zbit.util.DatabaseIdentifiers.IdentifierDatabases;
+
+/**
+ * Classifies strings according to the regular expressions of all
+ * {@link IdentifierDatabases} (see {@link DatabaseIdentifiers}) and returns
+ * every matching database in one pass.
+ *
+ * <p>All expressions are compiled once. Databases that share the same
+ * expression (e.g., all databases with pure numeric identifiers) are
+ * evaluated together. Expressions that start with a literal prefix (e.g.,
+ * {@code "GO:"}, {@code "HMDB"} or {@code "REACT_"}) are only evaluated if
+ * the string starts with this prefix. Hence, most strings are only tested
+ * against a small fraction of all expressions.</p>
+ *
+ * <p>Instances are immutable and thread-safe. Use {@link #getInstance()} to
+ * get a classifier over all {@link IdentifierDatabases}.</p>
+ *
+ * @version $Rev$
+ * @since 1.4
+ */
+public class IdentifierClassifier {
+
+  /**
+   * A compiled expression and all databases that use it.
+   */
+  private static class Candidate {
+    /**
+     * Literal prefix that each matching string must start with. Empty if
+     * the expression has no such prefix.
+     */
+    final String prefix;
+    /**
+     * Compiled expression (full match required).
+     */
+    final Pattern pattern;
+    /**
+     * All databases with this expression.
+     */
+    final Set<IdentifierDatabases> databases;
+
+    /**
+     * @param prefix
+     * @param pattern
+     * @param databases
+     */
+    Candidate(String prefix, Pattern pattern, Set<IdentifierDatabases> databases) {
+      this.prefix = prefix;
+      this.pattern = pattern;
+      this.databases = databases;
+    }
+  }
+
+  /**
+   * Classifier over all {@link IdentifierDatabases}.
+   */
+  private static IdentifierClassifier instance = null;
+
+  /**
+   * Candidates that have a literal prefix, by the first character of their
+   * prefix.
+   */
+  private final Map<Character, List<Candidate>> prefixed;
+
+  /**
+   * Candidates without a literal prefix. These are evaluated for every
+   * string.
+   */
+  private final List<Candidate> unprefixed;
+
+  /**
+   * Creates a classifier over all {@link IdentifierDatabases} that have a
+   * regular expression.
+   */
+  public IdentifierClassifier() {
+    this(EnumSet.allOf(IdentifierDatabases.class));
+  }
+
+  /**
+   * Creates a classifier over the given databases. Databases without a
+   * regular expression are ignored.
+   *
+   * @param databases
+   */
+  public IdentifierClassifier(Collection<IdentifierDatabases> databases) {
+    super();
+    // Group databases by identical expressions
+    Map<String, Set<IdentifierDatabases>> byRegEx = new LinkedHashMap<String, Set<IdentifierDatabases>>();
+    for (IdentifierDatabases db : databases) {
+      String regEx = DatabaseIdentifiers.getPlainRegularExpressionForIdentifier(db);
+      if (regEx == null) {
+        continue;
+      }
+      Set<IdentifierDatabases> set = byRegEx.get(regEx);
+      if (set == null) {
+        set = EnumSet.noneOf(IdentifierDatabases.class);
+        byRegEx.put(regEx, set);
+      }
+      set.add(db);
+    }
+
+    prefixed = new HashMap<Character, List<Candidate>>();
+    unprefixed = new ArrayList<Candidate>();
+    for (Map.Entry<String, Set<IdentifierDatabases>> entry : byRegEx.entrySet()) {
+      String prefix = getLiteralPrefix(entry.getKey());
+      Candidate c = new Candidate(prefix,
+        DatabaseIdentifiers.getPatternForIdentifier(entry.getValue().iterator().next()),
+        Collections.unmodifiableSet(entry.getValue()));
+      if (prefix.length() > 0) {
+        Character first = Character.valueOf(prefix.charAt(0));
+        List<Candidate> list = prefixed.get(first);
+        if (list == null) {
+          list = new ArrayList<Candidate>();
+          prefixed.put(first, list);
+        }
+        list.add(c);
+      } else {
+        unprefixed.add(c);
+      }
+    }
+  }
+
+  /**
+   * @return a shared classifier over all {@link IdentifierDatabases}.
+   */
+  public static synchronized IdentifierClassifier getInstance() {
+    if (instance == null) {
+      instance = new IdentifierClassifier();
+    }
+    return instance;
+  }
+
+  /**
+   * Extracts the literal characters at the beginning of a regular
+   * expression, that every matching string must start with.
+   *
+   * @param regEx
+   * @return the literal prefix or an empty {@link String}.
+   */
+  static String getLiteralPrefix(String regEx) {
+    // A top-level alternative allows strings with a different start
+    int depth = 0;
+    for (int i = 0; i < regEx.length(); i++) {
+      char c = regEx.charAt(i);
+      if (c == '\\') {
+        i++;
+      } else if ((c == '(') || (c == '[')) {
+        depth++;
+      } else if ((c == ')') || (c == ']')) {
+        depth--;
+      } else if ((c == '|') && (depth == 0)) {
+        return "";
+      }
+    }
+
+    int start = regEx.startsWith("^") ? 1 : 0;
+    int end = start;
+    while ((end < regEx.length()) && isLiteral(regEx.charAt(end))) {
+      end++;
+    }
+    // A quantifier makes the last literal optional or repeatable
+    if ((end < regEx.length()) && (end > start) && "*+?{".indexOf(regEx.charAt(end)) >= 0) {
+      end--;
+    }
+    return regEx.substring(start, end);
+  }
+
+  /**
+   * @param c
+   * @return {@code true} if {@code c} has no special meaning in a regular
+   *         expression.
+   */
+  private static boolean isLiteral(char c) {
+    return Character.isLetterOrDigit(c) || (c == ':') || (c == '_');
+  }
+
+  /**
+   * Returns all databases, whose regular expression matches the given
+   * identifier.
+   *
+   * @param id
+   * @return a (possibly empty) set of matching databases.
+   */
+  public Set<IdentifierDatabases> classify(String id) {
+    Set<IdentifierDatabases> ret = EnumSet.noneOf(IdentifierDatabases.class);
+    if ((id == null) || (id.length() < 1)) {
+      return ret;
+    }
+    List<Candidate> candidates = prefixed.get(Character.valueOf(id.charAt(0)));
+    if (candidates != null) {
+      for (Candidate c : candidates) {
+        if (id.startsWith(c.prefix) && c.pattern.matcher(id).matches()) {
+          ret.addAll(c.databases);
+        }
+      }
+    }
+    for (Candidate c : unprefixed) {
+      if (c.pattern.matcher(id).matches()) {
+        ret.addAll(c.databases);
+      }
+    }
+    return ret;
+  }
+
+  /**
+   * Classifies all values of a column and counts, for each database, the
+   * number of values that match its regular expression. Each distinct value
+   * is classified only once. {@code null} and empty values are skipped.
+   *
+   * @param values
+   * @return number of matching values for each database with at least one
+   *         match.
+   */
+  public Map<IdentifierDatabases, Integer> classifyColumn(Iterable<String> values) {
+    Map<String, Set<IdentifierDatabases>> seen = new HashMap<String, Set<IdentifierDatabases>>();
+    int[] counts = new int[IdentifierDatabases.values().length];
+    for (String value : values) {
+      if ((value == null) || (value.length() < 1)) {
+        continue;
+      }
+      Set<IdentifierDatabases> dbs = seen.get(value);
+      if (dbs == null) {
+        dbs = classify(value);
+        seen.put(value, dbs);
+      }
+      for (IdentifierDatabases db : dbs) {
+        counts[db.ordinal()]++;
+      }
+    }
+
+    Map<IdentifierDatabases, Integer> ret = new EnumMap<IdentifierDatabases, Integer>(IdentifierDatabases.class);
+    for (IdentifierDatabases db : IdentifierDatabases.values()) {
+      if (counts[db.ordinal()] > 0) {
+        ret.put(db, Integer.valueOf(counts[db.ordinal()]));
+      }
+    }
+    return ret;
+  }
+
+  /**
+   * Classifies all columns of a table (e.g., as returned by
+   * {@link de.zbit.io.csv.CSVReader#getData()}).
+   *
+   * @param rows the table, as array of rows. Rows may have different lengths
+   *        or be {@code null}.
+   * @return for each column, the number of matching values for each database
+   *         with at least one match (see {@link #classifyColumn(Iterable)}).
+   */
+  public List<Map<IdentifierDatabases, Integer>> classifyColumns(String[][] rows) {
+    int columns = 0;
+    for (String[] row : rows) {
+      if (row != null) {
+        columns = Math.max(columns, row.length);
+      }
+    }
+    List<Map<IdentifierDatabases, Integer>> ret = new ArrayList<Map<IdentifierDatabases, Integer>>(columns);
+    for (int col = 0; col < columns; col++) {
+      List<String> values = new ArrayList<String>(rows.length);
+      for (String[] row : rows) {
+        if ((row != null) && (col < row.length)) {
+          values.add(row[col]);
+        }
+      }
+      ret.add(classifyColumn(values));
+    }
+    return ret;
+  }
+
+}
@@ -0,0 +1,485 @@
+/*
+ * $Id$
+ * $URL$
+ * ---------------------------------------------------------------------
+ * This file is part of the SysBio API library.
+ *
+ * Copyright (C) 2009-2016 by the University of Tuebingen, Germany.
+ *
+ * This library is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation. A copy of the license
+ * agreement is provided in the file named "LICENSE.txt" included with
+ * this software distribution and also available online as
+ * <http://www.gnu.org/licenses/lgpl-3.0-standalone.html>.
+ * ---------------------------------------------------------------------
+ */
+package de.zbit.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * An immutable, compiled empirical formula (e.g., "C6H12O6" or
+ * "C12H22O11(C6H10O5)n"), represented as vector of element counts.
+ *
+ * <p>Elements are identified by a process-wide index, which contains all
+ * elements of the periodic table and is extended by other symbols that occur
+ * in formulas (e.g., "R" for residues), up to {@link #MAX_SYMBOLS} symbols.
+ * All further unknown symbols are counted as {@link #UNKNOWN_SYMBOL}.
+ * Parenthesized groups may be nested
+ * and are followed by an optional multiplier. The polymer index "n" (also
+ * as "2n", "n+1" or "n-1") is replaced by a given number.</p>
+ *
+ * <p>The most recently compiled formulas are cached by formula and
+ * replacement, such that frequently used formulas are parsed only once. Use a {@link Counter} to sum up formulas
+ * with stoichiometric coefficients and to compare both sides of a reaction.</p>
+ *
+ * @version $Rev$
+ * @since 1.4
+ */
+public final class MolecularFormula {
+
+  /**
+   * All elements of the periodic table, ordered by atomic number. Only
+   * copernicium ("Cn") is omitted, because "CnH2n" denotes a polymer.
+   */
+  private static final String[] PERIODIC_TABLE = {"H", "He", "Li", "Be",
+    "B", "C", "N", "O", "F", "Ne", "Na", "Mg", "Al", "Si", "P", "S", "Cl",
+    "Ar", "K", "Ca", "Sc", "Ti", "V", "Cr", "Mn", "Fe", "Co", "Ni", "Cu",
+    "Zn", "Ga", "Ge", "As", "Se", "Br", "Kr", "Rb", "Sr", "Y", "Zr", "Nb",
+    "Mo", "Tc", "Ru", "Rh", "Pd", "Ag", "Cd", "In", "Sn", "Sb", "Te", "I",
+    "Xe", "Cs", "Ba", "La", "Ce", "Pr", "Nd", "Pm", "Sm", "Eu", "Gd", "Tb",
+    "Dy", "Ho", "Er", "Tm", "Yb", "Lu", "Hf", "Ta", "W", "Re", "Os", "Ir",
+    "Pt", "Au", "Hg", "Tl", "Pb", "Bi", "Po", "At", "Rn", "Fr", "Ra", "Ac",
+    "Th", "Pa", "U", "Np", "Pu", "Am", "Cm", "Bk", "Cf", "Es", "Fm", "Md",
+    "No", "Lr", "Rf", "Db", "Sg", "Bh", "Hs", "Mt", "Ds", "Rg", "Nh", "Fl",
+    "Mc", "Lv", "Ts", "Og"};
+
+  /**
+   * Maximum number of element symbols, including the periodic table.
+   */
+  public static final int MAX_SYMBOLS = 1024;
+
+  /**
+   * Symbol for all unknown symbols, that occur after {@link #MAX_SYMBOLS}
+   * symbols have been registered.
+   */
+  public static final String UNKNOWN_SYMBOL = "?";
+
+  /**
+   * Maximum number of cached formulas.
+   */
+  private static final int CACHE_SIZE = 4096;
+
+  /**
+   * Element symbols by index.
+   */
+  private static final List<String> symbols = new ArrayList<String>();
+
+  /**
+   * Index of each element symbol in {@link #symbols}.
+   */
+  private static final Map<String, Integer> symbolIndex = new HashMap<String, Integer>();
+
+  static {
+    for (String symbol : PERIODIC_TABLE) {
+      register(symbol);
+    }
+    register(UNKNOWN_SYMBOL);
+  }
+
+  /**
+   * Compiled formulas by replacement and formula, least recently used first.
+   */
+  private static final Map<String, MolecularFormula> cache = new LinkedHashMap<String, MolecularFormula>(64, 0.75f, true) {
+    private static final long serialVersionUID = -3207423400531426178L;
+
+    /* (non-Javadoc)
+     * @see java.util.LinkedHashMap#removeEldestEntry(java.util.Map.Entry)
+     */
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<String, MolecularFormula> eldest) {
+      return size() > CACHE_SIZE;
+    }
+  };
+
+  /**
+   * The original formula.
+   */
+  private final String formula;
+
+  /**
+   * Indices of all contained elements, in ascending order.
+   */
+  private final int[] elements;
+
+  /**
+   * Number of atoms for each element in {@link #elements}.
+   */
+  private final int[] counts;
+
+  /**
+   * @param formula
+   * @param elements
+   * @param counts
+   */
+  private MolecularFormula(String formula, int[] elements, int[] counts) {
+    super();
+    this.formula = formula;
+    this.elements = elements;
+    this.counts = counts;
+  }
+
+  /**
+   * @param symbol
+   * @return the index of the element symbol or -1 if the symbol is unknown.
+   */
+  public static synchronized int getElementIndex(String symbol) {
+    Integer idx = symbolIndex.get(symbol);
+    return idx != null ? idx.intValue() : -1;
+  }
+
+  /**
+   * Returns the index of an element symbol and registers unknown symbols.
+   * If {@link #MAX_SYMBOLS} symbols are already registered, the index of
+   * {@link #UNKNOWN_SYMBOL} is returned for unknown symbols.
+   *
+   * @param symbol
+   * @return
+   */
+  private static synchronized int register(String symbol) {
+    Integer idx = symbolIndex.get(symbol);
+    if (idx == null) {
+      if (symbols.size() >= MAX_SYMBOLS) {
+        return symbolIndex.get(UNKNOWN_SYMBOL).intValue();
+      }
+      idx = Integer.valueOf(symbols.size());
+      symbols.add(symbol);
+      symbolIndex.put(symbol, idx);
+    }
+    return idx.intValue();
+  }
+
+  /**
+   * @param index
+   * @return the element symbol for the given index.
+   */
+  public static synchronized String getElementSymbol(int index) {
+    return symbols.get(index);
+  }
+
+  /**
+   * @return the number of known element symbols.
+   */
+  private static synchronized int getNumberOfElements() {
+    return symbols.size();
+  }
+
+  /**
+   * @param symbol
+   * @return {@code true} if the symbol is a known element or has been seen
+   *         in a formula before.
+   */
+  private static synchronized boolean isKnownSymbol(String symbol) {
+    return symbolIndex.containsKey(symbol);
+  }
+
+  /**
+   * Compiles the given formula or returns the cached result.
+   *
+   * @param formula e.g., "C6H12O6".
+   * @param replacement number to be used as a replacement of "n" in the
+   *        formula.
+   * @return
+   */
+  public static MolecularFormula compile(String formula, int replacement) {
+    String key = replacement + ":" + formula;
+    MolecularFormula f;
+    synchronized (cache) {
+      f = cache.get(key);
+    }
+    if (f == null) {
+      f = new Parser(formula, replacement).parse();
+      synchronized (cache) {
+        cache.put(key, f);
+      }
+    }
+    return f;
+  }
+
+  /**
+   * Recursive descent parser for empirical formulas.
+   */
+  private static class Parser {
+    /**
+     * The formula.
+     */
+    private final String s;
+    /**
+     * Replacement of "n".
+     */
+    private final int replacement;
+    /**
+     * Current position in {@link #s}.
+     */
+    private int pos = 0;
+
+    /**
+     * @param s
+     * @param replacement
+     */
+    Parser(String s, int replacement) {
+      this.s = s;
+      this.replacement = replacement;
+    }
+
+    /**
+     * @return the compiled formula.
+     */
+    MolecularFormula parse() {
+      Map<Integer, int[]> sum = new TreeMap<Integer, int[]>();
+      parseGroup(sum);
+      int[] elements = new int[sum.size()];
+      int[] counts = new int[sum.size()];
+      int i = 0;
+      for (Map.Entry<Integer, int[]> e : sum.entrySet()) {
+        elements[i] = e.getKey().intValue();
+        counts[i] = e.getValue()[0];
+        i++;
+      }
+      return new MolecularFormula(s, elements, counts);
+    }
+
+    /**
+     * Parses until the end of the formula or a closing bracket and adds
+     * all elements to {@code sum}.
+     *
+     * @param sum
+     */
+    private void parseGroup(Map<Integer, int[]> sum) {
+      while (pos < s.length()) {
+        char c = s.charAt(pos);
+        if (c == '(') {
+          pos++;
+          Map<Integer, int[]> inner = new TreeMap<Integer, int[]>();
+          parseGroup(inner);
+          int mult = parseCount();
+          for (Map.Entry<Integer, int[]> e : inner.entrySet()) {
+            add(sum, e.getKey(), e.getValue()[0] * mult);
+          }
+        } else if (c == ')') {
+          pos++;
+          return;
+        } else if (Character.isUpperCase(c)) {
+          int start = pos++;
+          while ((pos < s.length()) && Character.isLowerCase(s.charAt(pos))) {
+            pos++;
+          }
+          String symbol = s.substring(start, pos);
+          if ((symbol.length() > 1) && symbol.endsWith("n") && !isKnownSymbol(symbol)) {
+            // Polymer index, e.g. "CnH2n"
+            symbol = symbol.substring(0, symbol.length() - 1);
+            pos--;
+          }
+          add(sum, Integer.valueOf(register(symbol)), parseCount());
+        } else {
+          // Charges, separators, whitespace, etc.
+          pos++;
+        }
+      }
+    }
+
+    /**
+     * Parses a number of atoms or groups, e.g., "12", "n", "2n" or "n+1".
+     *
+     * @return the number, or 1 if no number is given.
+     */
+    private int parseCount() {
+      int start = pos;
+      int number = parseDigits();
+      if ((pos < s.length()) && (s.charAt(pos) == 'n')) {
+        pos++;
+        number = (pos - 1 > start ? number : 1) * replacement;
+        if ((pos + 1 < s.length()) && ((s.charAt(pos) == '+') || (s.charAt(pos) == '-'))
+            && Character.isDigit(s.charAt(pos + 1))) {
+          char sign = s.charAt(pos++);
+          int offset = parseDigits();
+          number += sign == '+' ? offset : -offset;
+        }
+        return number;
+      }
+      return pos > start ? number : 1;
+    }
+
+    /**
+     * @return the number at the current position (0 if there is none).
+     */
+    private int parseDigits() {
+      int number = 0;
+      while ((pos < s.length()) && Character.isDigit(s.charAt(pos))) {
+        number = number * 10 + Character.digit(s.charAt(pos), 10);
+        pos++;
+      }
+      return number;
+    }
+
+    /**
+     * @param sum
+     * @param element
+     * @param count
+     */
+    private static void add(Map<Integer, int[]> sum, Integer element, int count) {
+      int[] c = sum.get(element);
+      if (c == null) {
+        sum.put(element, new int[] {count});
+      } else {
+        c[0] += count;
+      }
+    }
+  }
+
+  /**
+   * @return the original formula.
+   */
+  public String getFormula() {
+    return formula;
+  }
+
+  /**
+   * @param symbol
+   * @return the number of atoms of the given element.
+   */
+  public int getCount(String symbol) {
+    int element = getElementIndex(symbol);
+    int idx = element < 0 ? -1 : Arrays.binarySearch(elements, element);
+    return idx < 0 ? 0 : counts[idx];
+  }
+
+  /**
+   * @param stoichiometry
+   * @return the number of atoms of all contained elements, each multiplied
+   *         with {@code stoichiometry}, by element symbol.
+   */
+  public Map<String, Integer> toMap(double stoichiometry) {
+    Counter c = new Counter();
+    c.add(this, stoichiometry);
+    return c.toMap();
+  }
+
+  /* (non-Javadoc)
+   * @see java.lang.Object#toString()
+   */
+  @Override
+  public String toString() {
+    return toMap(1d).toString();
+  }
+
+  /**
+   * Sums up the atoms of multiple {@link MolecularFormula}s, e.g., all
+   * substrates of a reaction.
+   *
+   * @version $Rev$
+   * @since 1.4
+   */
+  public static final class Counter {
+    /**
+     * Number of atoms by element index.
+     */
+    private int[] counts = new int[getNumberOfElements()];
+    /**
+     * Marks all elements that occur in any of the added formulas.
+     */
+    private boolean[] present = new boolean[counts.length];
+    /**
+     * {@code true} if no formula has been added.
+     */
+    private boolean empty = true;
+
+    /**
+     * Adds all atoms of the formula, multiplied with
+     * {@code stoichiometry}. The product is truncated to an integer for
+     * each element.
+     *
+     * @param f
+     * @param stoichiometry
+     */
+    public void add(MolecularFormula f, double stoichiometry) {
+      if ((f.elements.length > 0) && (f.elements[f.elements.length - 1] >= counts.length)) {
+        int size = Math.max(f.elements[f.elements.length - 1] + 1, counts.length * 2);
+        counts = Arrays.copyOf(counts, size);
+        present = Arrays.copyOf(present, size);
+      }
+      for (int i = 0; i < f.elements.length; i++) {
+        counts[f.elements[i]] += (int) (stoichiometry * f.counts[i]);
+        present[f.elements[i]] = true;
+      }
+      empty &= f.elements.length == 0;
+    }
+
+    /**
+     * Removes all atoms.
+     */
+    public void clear() {
+      Arrays.fill(counts, 0);
+      Arrays.fill(present, false);
+      empty = true;
+    }
+
+    /**
+     * @return {@code true} if this counter contains no element.
+     */
+    public boolean isEmpty() {
+      return empty;
+    }
+
+    /**
+     * @param symbol
+     * @return the number of atoms of the given element.
+     */
+    public int getCount(String symbol) {
+      int idx = getElementIndex(symbol);
+      return (idx >= 0) && (idx < counts.length) ? counts[idx] : 0;
+    }
+
+    /**
+     * @return the number of atoms of all contained elements, by element
+     *         symbol.
+     */
+    public Map<String, Integer> toMap() {
+      Map<String, Integer> ret = new TreeMap<String, Integer>();
+      for (int i = 0; i < counts.length; i++) {
+        if (present[i]) {
+          ret.put(getElementSymbol(i), Integer.valueOf(counts[i]));
+        }
+      }
+      return ret;
+    }
+
+    /**
+     * Calculates the difference of both counters.
+     *
+     * @param other
+     * @return for each element with a different number of atoms, the number
+     *         of atoms in this counter minus the number in {@code other}.
+     */
+    public Map<String, Integer> difference(Counter other) {
+      Map<String, Integer> ret = new TreeMap<String, Integer>();
+      int size = Math.max(counts.length, other.counts.length);
+      for (int i = 0; i < size; i++) {
+        int left = i < counts.length ? counts[i] : 0;
+        int right = i < other.counts.length ? other.counts[i] : 0;
+        if (left != right) {
+          ret.put(getElementSymbol(i), Integer.valueOf(left - right));
+        }
+      }
+      return ret;
+    }
+  }
+
+}
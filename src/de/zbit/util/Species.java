@@ -643,18 +643,19 @@ public class Species implements Serializable, Comparable<Object>, CSVwriteable,
   }
   
   /**
-   * Searches for a specific species and retrieves a complete list
-   * of species from KEGG.
+   * Searches for a specific species in the complete list of species
+   * from KEGG (see {@link SpeciesIndex#getInstance()}).
    * @param species
    * @return
    * @throws IOException
    */
   public static Species search(String species) throws IOException {
-    return search(Species.generateSpeciesDataStructure(), species, -1);
+    return SpeciesIndex.getInstance().get(species, -1);
   }
   
   /**
-   * Get the given species
+   * Get the given species. Uses the process-wide {@link SpeciesIndex}
+   * instead of generating and scanning the species list on every call.
    * @see #search(List, String, int)
    * @param identifier String identifying the species (e.g. "human" or "homo sapiens" or "hsa)
    * @param nameTypeToSearch Identifier type to search (-1 for all, else one of the included
@@ -663,7 +664,7 @@ public class Species implements Serializable, Comparable<Object>, CSVwriteable,
    * @throws IOException
    */
   public static Species get(String identifier, int nameTypeToSearch) throws IOException {
-    return search(Species.generateSpeciesDataStructure(), identifier, nameTypeToSearch);
+    return SpeciesIndex.getInstance().get(identifier, nameTypeToSearch);
   }
   
   /**
@@ -0,0 +1,460 @@
+/*
+ * $Id$
+ * $URL$
+ * ---------------------------------------------------------------------
+ * This file is part of the SysBio API library.
+ *
+ * Copyright (C) 2009-2016 by the University of Tuebingen, Germany.
+ *
+ * This library is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation. A copy of the license
+ * agreement is provided in the file named "LICENSE.txt" included with
+ * this software distribution and also available online as
+ * <http://www.gnu.org/licenses/lgpl-3.0-standalone.html>.
+ * ---------------------------------------------------------------------
+ */
+package de.zbit.util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import de.zbit.resources.Resource;
+
+/**
+ * An immutable index over a list of {@link Species}, that allows constant
+ * time lookups by KEGG abbreviation, NCBI taxonomy id, scientific name,
+ * common name, UniProt extension, Ensembl name and synonyms.
+ *
+ * <p>The results are the same as {@link Species#search(List, String, int)}
+ * would return on the same list, i.e., if multiple species match an
+ * identifier, the first one in the list is returned. Numeric identifiers
+ * are, as in {@link Species#matchesIdentifier(String)}, only compared to the
+ * {@link Species#NCBI_TAX_ID} of species that have one.</p>
+ *
+ * <p>A process-wide instance, based on {@link Species#generateSpeciesDataStructure()},
+ * is available via {@link #getInstance()}. It is built lazily and stored in a
+ * compact binary form in the temporary directory (see {@link #getCacheFile()}),
+ * such that subsequent program starts do not have to parse the species list
+ * again.</p>
+ *
+ * @version $Rev$
+ * @since 1.4
+ */
+public class SpeciesIndex {
+
+  /**
+   * A {@link Logger} for this class.
+   */
+  private static final transient Logger log = Logger.getLogger(SpeciesIndex.class.getName());
+
+  /**
+   * Name of the resource, from which the process-wide instance is built.
+   */
+  private static final String SPECIES_RESOURCE = "speclist.txt";
+
+  /**
+   * Version of the binary format, written by {@link #writeBinary(OutputStream)}.
+   */
+  private static final int BINARY_VERSION = 1;
+
+  /**
+   * The process-wide instance.
+   */
+  private static SpeciesIndex instance = null;
+
+  /**
+   * All indexed species, in the original order.
+   */
+  private final List<Species> species;
+
+  /**
+   * NCBI taxonomy id to index in {@link #species}.
+   */
+  private final Map<Integer, Integer> taxonomyIds;
+
+  /**
+   * Lower case KEGG abbreviation to index in {@link #species}.
+   */
+  private final Map<String, Integer> keggAbbrs;
+
+  /**
+   * Lower case UniProt extension to index in {@link #species}.
+   */
+  private final Map<String, Integer> uniprotExtensions;
+
+  /**
+   * Lower case scientific name, common name, Ensembl name, KEGG abbreviation
+   * and synonyms to index in {@link #species}.
+   */
+  private final Map<String, Integer> names;
+
+  /**
+   * {@code true} if at least one species has no NCBI taxonomy id. Numeric
+   * identifiers may then also match the names of this species.
+   */
+  private final boolean incompleteTaxonomyIds;
+
+  /**
+   * Builds an index on the given list. The list is copied, such that later
+   * modifications of the list do not affect this index.
+   *
+   * @param all
+   */
+  public SpeciesIndex(List<Species> all) {
+    super();
+    species = Collections.unmodifiableList(new ArrayList<Species>(all));
+    taxonomyIds = new HashMap<Integer, Integer>(species.size() * 2);
+    keggAbbrs = new HashMap<String, Integer>(species.size() * 2);
+    uniprotExtensions = new HashMap<String, Integer>(species.size() * 2);
+    names = new HashMap<String, Integer>(species.size() * 8);
+
+    boolean incomplete = false;
+    for (int i = species.size() - 1; i >= 0; i--) {
+      // Iterate backwards, such that the first species in the list wins
+      Integer idx = Integer.valueOf(i);
+      Species s = species.get(i);
+      if (s.getNCBITaxonID() != null) {
+        taxonomyIds.put(s.getNCBITaxonID(), idx);
+      } else {
+        incomplete = true;
+      }
+      put(keggAbbrs, s.getKeggAbbr(), idx);
+      put(uniprotExtensions, s.getUniprotExtension(), idx);
+      put(names, s.getScientificName(), idx);
+      put(names, s.getCommonName(), idx);
+      if (s.getScientificName() != null) {
+        put(names, s.getEnsemblName(), idx);
+      }
+      put(names, s.getKeggAbbr(), idx);
+      if (s.getSynonyms() != null) {
+        for (String synonym : s.getSynonyms()) {
+          put(names, synonym, idx);
+        }
+      }
+    }
+    incompleteTaxonomyIds = incomplete;
+  }
+
+  /**
+   * @param map
+   * @param key
+   * @param idx
+   */
+  private static void put(Map<String, Integer> map, String key, Integer idx) {
+    if (key != null) {
+      map.put(key.toLowerCase(Locale.ENGLISH), idx);
+    }
+  }
+
+  /**
+   * Returns the process-wide index over all species from
+   * {@link Species#generateSpeciesDataStructure()}. On the first call, the
+   * index is either loaded from {@link #getCacheFile()} or built and then
+   * written to this file.
+   *
+   * @return
+   * @throws IOException if the species list could not be generated.
+   */
+  public static synchronized SpeciesIndex getInstance() throws IOException {
+    if (instance == null) {
+      File cache = null;
+      try {
+        cache = getCacheFile();
+      } catch (IOException e) {
+        log.log(Level.FINE, "Could not read " + SPECIES_RESOURCE, e);
+      }
+      if ((cache != null) && cache.exists()) {
+        try {
+          instance = readBinary(new FileInputStream(cache));
+          log.config("Loaded species index from " + cache.getAbsolutePath());
+        } catch (IOException e) {
+          log.log(Level.WARNING, "Error reading " + cache.getAbsolutePath(), e);
+        }
+      }
+      if (instance == null) {
+        instance = new SpeciesIndex(Species.generateSpeciesDataStructure());
+        if (cache != null) {
+          writeCache(instance, cache);
+        }
+      }
+    }
+    return instance;
+  }
+
+  /**
+   * Returns the file, in which the process-wide instance is cached. The file
+   * is located in the temporary directory of the current user and its name
+   * contains the checksum of the species list and the version of the binary
+   * format. Hence, a cached index is never used after the species list or
+   * the format has changed.
+   *
+   * @return
+   * @throws IOException if the species list could not be read.
+   */
+  static File getCacheFile() throws IOException {
+    InputStream in = Resource.class.getResourceAsStream(SPECIES_RESOURCE);
+    if (in == null) {
+      throw new IOException("Resource not found: " + SPECIES_RESOURCE);
+    }
+    CRC32 crc = new CRC32();
+    try {
+      byte[] buffer = new byte[8192];
+      int read;
+      while ((read = in.read(buffer)) > 0) {
+        crc.update(buffer, 0, read);
+      }
+    } finally {
+      in.close();
+    }
+    String user = System.getProperty("user.name", "").replaceAll("\\W", "");
+    return new File(System.getProperty("java.io.tmpdir"), String.format(
+      "speciesIndex-%s-v%d-%08x.dat", user, BINARY_VERSION, crc.getValue()));
+  }
+
+  /**
+   * Writes the given index to a temporary file, which is then renamed to
+   * {@code cache}. Concurrent processes do therefore never read a partially
+   * written file. Errors are only logged.
+   *
+   * @param index
+   * @param cache
+   */
+  private static void writeCache(SpeciesIndex index, File cache) {
+    File tmp = null;
+    try {
+      tmp = File.createTempFile(cache.getName(), ".tmp", cache.getParentFile());
+      index.writeBinary(new FileOutputStream(tmp));
+      if (!tmp.renameTo(cache)) {
+        throw new IOException("Could not rename " + tmp + " to " + cache);
+      }
+      log.config("Wrote species index to " + cache.getAbsolutePath());
+    } catch (IOException e) {
+      log.log(Level.FINE, "Could not write " + cache, e);
+    } finally {
+      if ((tmp != null) && tmp.exists()) {
+        tmp.delete();
+      }
+    }
+  }
+
+  /**
+   * @return an unmodifiable list of all indexed species.
+   */
+  public List<Species> getAll() {
+    return species;
+  }
+
+  /**
+   * @return number of indexed species.
+   */
+  public int size() {
+    return species.size();
+  }
+
+  /**
+   * Get the species for the given identifier.
+   *
+   * @param identifier String identifying the species (e.g. "human" or "homo
+   *        sapiens" or "hsa" or "9606")
+   * @return the species object representing the species, or {@code null} if
+   *         not found.
+   * @see #get(String, int)
+   */
+  public Species get(String identifier) {
+    return get(identifier, -1);
+  }
+
+  /**
+   * Get the species for the given identifier.
+   *
+   * @param identifier String identifying the species (e.g. "human" or "homo
+   *        sapiens" or "hsa" or "9606")
+   * @param nameTypeToSearch Identifier type to search (-1 for all, else one
+   *        of the final static ints in {@link Species}, e.g.
+   *        {@link Species#COMMON_NAME}). As in
+   *        {@link Species#search(List, String, int)}, only the UniProt
+   *        extension is restricted by this parameter.
+   * @return the species object representing the species, or {@code null} if
+   *         not found.
+   */
+  public Species get(String identifier, int nameTypeToSearch) {
+    if (identifier == null) {
+      return null;
+    }
+
+    // Integer? => NCBI Taxonomy ID
+    if (Utils.isNumber(identifier, true)) {
+      try {
+        if (incompleteTaxonomyIds) {
+          // Species without taxonomy id might match by name. This is
+          // rare enough to use the linear search.
+          return Species.search(species, identifier.trim(), nameTypeToSearch);
+        }
+        Integer idx = taxonomyIds.get(Integer.valueOf(identifier.trim()));
+        return idx != null ? species.get(idx.intValue()) : null;
+      } catch (NumberFormatException e) {
+        // Too large for an integer, can not be a taxonomy id.
+        return null;
+      }
+    }
+
+    // First try with exact string. Second try with replacing
+    // spaces and dots. (e.g. "C. elegans" => "Celegans"
+    // => Ensembl name matches).
+    String exact = identifier.toLowerCase(Locale.ENGLISH);
+    String stripped = identifier.replaceAll("\\W", "").toLowerCase(Locale.ENGLISH);
+    int best = Integer.MAX_VALUE;
+    best = min(best, names.get(exact));
+    best = min(best, names.get(stripped));
+    if ((nameTypeToSearch == Species.UNIPROT_EXTENSION) || (nameTypeToSearch == -1)) {
+      best = min(best, uniprotExtensions.get(exact));
+      best = min(best, uniprotExtensions.get(stripped));
+    }
+    return best < species.size() ? species.get(best) : null;
+  }
+
+  /**
+   * @param current
+   * @param candidate
+   * @return
+   */
+  private static int min(int current, Integer candidate) {
+    return candidate == null ? current : Math.min(current, candidate.intValue());
+  }
+
+  /**
+   * @param keggAbbr e.g. "hsa"
+   * @return the species with the given KEGG abbreviation or {@code null}.
+   */
+  public Species getByKeggAbbr(String keggAbbr) {
+    Integer idx = keggAbbr != null ? keggAbbrs.get(keggAbbr.toLowerCase(Locale.ENGLISH)) : null;
+    return idx != null ? species.get(idx.intValue()) : null;
+  }
+
+  /**
+   * @param taxonomyId
+   * @return the species with the given NCBI taxonomy id or {@code null}.
+   */
+  public Species getByTaxonomyId(int taxonomyId) {
+    Integer idx = taxonomyIds.get(Integer.valueOf(taxonomyId));
+    return idx != null ? species.get(idx.intValue()) : null;
+  }
+
+  /**
+   * Writes this index in a compact binary (gzipped) form. The stream is
+   * closed afterwards.
+   *
+   * @param out
+   * @throws IOException
+   * @see #readBinary(InputStream)
+   */
+  public void writeBinary(OutputStream out) throws IOException {
+    DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(out)));
+    try {
+      dos.writeInt(BINARY_VERSION);
+      dos.writeInt(species.size());
+      for (Species s : species) {
+        writeString(dos, s.getKeggAbbr());
+        writeString(dos, s.getScientificName());
+        writeString(dos, s.getUniprotExtension());
+        writeString(dos, s.getCommonName());
+        dos.writeInt(s.getNCBITaxonID() != null ? s.getNCBITaxonID().intValue() : -1);
+        List<String> synonyms = s.getSynonyms();
+        dos.writeInt(synonyms != null ? synonyms.size() : 0);
+        if (synonyms != null) {
+          for (String synonym : synonyms) {
+            writeString(dos, synonym);
+          }
+        }
+      }
+    } finally {
+      dos.close();
+    }
+  }
+
+  /**
+   * Reads an index, previously written with {@link #writeBinary(OutputStream)}.
+   * The stream is closed afterwards.
+   *
+   * @param in
+   * @return
+   * @throws IOException
+   */
+  public static SpeciesIndex readBinary(InputStream in) throws IOException {
+    DataInputStream dis = new DataInputStream(new BufferedInputStream(new GZIPInputStream(in)));
+    try {
+      int version = dis.readInt();
+      if (version != BINARY_VERSION) {
+        throw new IOException("Unsupported species index version " + version);
+      }
+      int size = dis.readInt();
+      List<Species> all = new ArrayList<Species>(size);
+      for (int i = 0; i < size; i++) {
+        String keggAbbr = readString(dis);
+        String scientificName = readString(dis);
+        String uniprotExtension = readString(dis);
+        String commonName = readString(dis);
+        int taxonomyId = dis.readInt();
+        Species s = new Species(keggAbbr, scientificName, uniprotExtension, commonName, null);
+        if (taxonomyId >= 0) {
+          s.ncbi_tax_id = Integer.valueOf(taxonomyId);
+        }
+        int synonyms = dis.readInt();
+        for (int j = 0; j < synonyms; j++) {
+          s.addSynonym(readString(dis));
+        }
+        all.add(s);
+      }
+      return new SpeciesIndex(all);
+    } finally {
+      dis.close();
+    }
+  }
+
+  /**
+   * Writes a nullable {@link String}.
+   *
+   * @param dos
+   * @param s
+   * @throws IOException
+   */
+  private static void writeString(DataOutputStream dos, String s) throws IOException {
+    dos.writeBoolean(s != null);
+    if (s != null) {
+      dos.writeUTF(s);
+    }
+  }
+
+  /**
+   * Reads a {@link String}, written with
+   * {@link #writeString(DataOutputStream, String)}.
+   *
+   * @param dis
+   * @return
+   * @throws IOException
+   */
+  private static String readString(DataInputStream dis) throws IOException {
+    return dis.readBoolean() ? dis.readUTF() : null;
+  }
+
+}
@@ -30,6 +30,7 @@ import java.util.Vector;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+import de.zbit.collection.BKTree;
 import de.zbit.util.objectwrapper.ValuePair;
 
 /**
@@ -696,25 +697,62 @@ public class StringUtil {
   }
   
   /**
-   * Returns the most similar String from a list of given Strings
+   * Returns the most similar String from a list of given Strings, according
+   * to {@link #globalAlignment(char[], char[], int, int)} with an indel
+   * penalty of 2 and a gap extension penalty of 1. Alignments are terminated
+   * as soon as they cannot beat the best previous synonym. For repeated
+   * lookups in very large synonym lists, see
+   * {@link #getMostSimilarString(String, BKTree)}.
    * 
    * @param s
    * @param synonyms
    * @return
    */
   public static String getMostSimilarString(String s, String... synonyms) {
-    int dist[] = new int[synonyms.length];
+    char[] query = s.toCharArray();
+    int minDist = Integer.MAX_VALUE;
     int min = 0;
-    for (int i = 0; i < dist.length; i++) {
-      dist[i] = globalAlignment(s.toCharArray(), synonyms[i].toCharArray(), 2,
-        1);
-      if (dist[i] < dist[min]) {
+    for (int i = 0; i < synonyms.length; i++) {
+      int dist = globalAlignment(query, synonyms[i].toCharArray(), 2, 1, minDist);
+      if (dist < minDist) {
+        minDist = dist;
         min = i;
       }
     }
     return synonyms[min];
   }
   
+  /**
+   * Same as {@link #getMostSimilarString(String, String...)}, but only
+   * aligns {@code s} against those synonyms in the given {@link BKTree},
+   * that might beat the best alignment so far. Every edit operation costs at
+   * least 1 in these alignments, hence the costs of an alignment are at least
+   * the Levenshtein distance, which is used to search the tree. Among equally
+   * similar synonyms, the one with the lowest Levenshtein distance (and then
+   * the alphabetically first one) is returned.
+   * 
+   * @param s
+   * @param synonyms
+   * @return the most similar synonym, or {@code null} if the tree is empty.
+   */
+  public static String getMostSimilarString(String s, BKTree synonyms) {
+    List<ValuePair<String, Integer>> nearest = synonyms.getMostSimilar(s, 1);
+    if (nearest.isEmpty()) {
+      return null;
+    }
+    char[] query = s.toCharArray();
+    String best = nearest.get(0).getA();
+    int minDist = globalAlignment(query, best.toCharArray(), 2, 1);
+    for (ValuePair<String, Integer> candidate : synonyms.search(s, minDist - 1)) {
+      int dist = globalAlignment(query, candidate.getA().toCharArray(), 2, 1, minDist);
+      if (dist < minDist) {
+        minDist = dist;
+        best = candidate.getA();
+      }
+    }
+    return best;
+  }
+  
   /**
    * Returns the number as a word. Zero is converted to "no". Only positive
    * numbers from 1 to twelve can be converted. All other numbers are just
@@ -761,6 +799,10 @@ public class StringUtil {
   }
   
   /**
+   * Computes the costs of a global alignment of both sequences. If the gap
+   * extension penalty differs from the indel penalty, affine gap costs are
+   * used (Gotoh). Mismatches cost twice the indel penalty. Only two rows of
+   * the cost matrices are kept in memory.
    * 
    * @param squery
    * @param ssubject
@@ -770,180 +812,84 @@ public class StringUtil {
    */
   public static int globalAlignment(char squery[], char ssubject[],
     int indel, int gapExt) {
-    int insert = indel, delete = indel, match = 0, replace = insert
-        + delete, i, j;
-    int costMatrix[][] = new int[squery.length + 1][ssubject.length + 1]; // Matrix
-    // CostMatrix
-    
-    /*
-     * Variables for the traceback
-     */
-    StringBuffer[] align = { new StringBuffer(), new StringBuffer() };
-    StringBuffer path = new StringBuffer();
-    
-    // construct the matrix:
-    costMatrix[0][0] = 0;
+    return globalAlignment(squery, ssubject, indel, gapExt, Integer.MAX_VALUE);
+  }
+  
+  /**
+   * Same as {@link #globalAlignment(char[], char[], int, int)}, but stops
+   * as soon as every alignment would cost at least {@code bound}.
+   * 
+   * @param squery
+   * @param ssubject
+   * @param indel
+   * @param gapExt
+   * @param bound
+   * @return the alignment costs, or {@link Integer#MAX_VALUE} if they are
+   *         not lower than {@code bound}.
+   */
+  private static int globalAlignment(char squery[], char ssubject[],
+    int indel, int gapExt, int bound) {
+    int insert = indel, delete = indel, match = 0, replace = insert + delete;
+    int n = squery.length, m = ssubject.length, i, j;
+    int[] prev = new int[m + 1]; // Previous row of the cost matrix
+    int[] cur = new int[m + 1];  // Current row of the cost matrix
     
-    /*
-     * If we want to have affine gap penalties, we have to initialise
-     * additional matrices: If this is not necessary, we won't do that
-     * (because it's expensive).
-     */
     if ((gapExt != delete) || (gapExt != insert)) {
-      
-      int[][] E = new int[squery.length + 1][ssubject.length + 1]; // Inserts
-      int[][] F = new int[squery.length + 1][ssubject.length + 1]; // Deletes
-      
-      E[0][0] = F[0][0] = Integer.MAX_VALUE; // Double.MAX_VALUE;
-      for (i = 1; i <= squery.length; i++) {
-        // costMatrix[i][0] = costMatrix[i-1][0] + delete;
-        E[i][0] = Integer.MAX_VALUE; // Double.POSITIVE_INFINITY;
-        costMatrix[i][0] = F[i][0] = delete + i * gapExt;
-      }
-      for (j = 1; j <= ssubject.length; j++) {
-        // costMatrix[0][j] = costMatrix[0][j - 1] + insert;
-        F[0][j] = Integer.MAX_VALUE; // Double.POSITIVE_INFINITY;
-        costMatrix[0][j] = E[0][j] = insert + j * gapExt;
-      }
-      for (i = 1; i <= squery.length; i++) {
-        for (j = 1; j <= ssubject.length; j++) {
-          E[i][j] = Math.min(E[i][j - 1], costMatrix[i][j - 1]
-              + insert)
-              + gapExt;
-          F[i][j] = Math.min(F[i - 1][j], costMatrix[i - 1][j]
-              + delete)
-              + gapExt;
-          costMatrix[i][j] = min(E[i][j], F[i][j],
-            costMatrix[i - 1][j - 1]
-                - ((squery[i-1] == ssubject[j-1]) ? -match
-                    : -replace));
-        }
-      }
       /*
-       * Traceback for affine gap penalties.
+       * Affine gap penalties: E holds the costs of alignments ending with an
+       * insert (only the current cell is required), F those ending with a
+       * delete (one value per column).
        */
-      boolean[] gap_extend = { false, false };
-      j = costMatrix[costMatrix.length - 1].length - 1;
-      
-      for (i = costMatrix.length - 1; i > 0;) {
-        do {
-          // only Insert.
-          if (i == 0) {
-            align[0].insert(0, '~');
-            align[1].insert(0, ssubject[j--]);
-            path.insert(0, ' ');
-            
-            // only Delete.
-          } else if (j == 0) {
-            align[0].insert(0, squery[--i]);
-            align[1].insert(0, '~');
-            path.insert(0, ' ');
-            
-            // Match/Replace
-          } else if ((costMatrix[i][j] == costMatrix[i - 1][j - 1]
-              - ((squery[i-1] == ssubject[j-1]) ? -match : -replace))
-              && !(gap_extend[0] || gap_extend[1])) {
-            if (squery[i-1] == ssubject[j-1]) {
-              path.insert(0, '|');
-            } else {
-              path.insert(0, ' ');
-            }
-            align[0].insert(0, squery[--i]);
-            align[1].insert(0, ssubject[--j]);
-            
-            // Insert || finish gap if extended gap is
-            // opened
-          } else if (costMatrix[i][j] == E[i][j] || gap_extend[0]) {
-            // check if gap has been extended or freshly
-            // opened
-            gap_extend[0] = (E[i][j] != costMatrix[i][j - 1]
-                + insert + gapExt);
-            
-            align[0].insert(0, '-');
-            align[1].insert(0, ssubject[--j]);
-            path.insert(0, ' ');
-            
-            // Delete || finish gap if extended gap is
-            // opened
-          } else {
-            // check if gap has been extended or freshly
-            // opened
-            gap_extend[1] = (F[i][j] != costMatrix[i - 1][j]
-                + delete + gapExt);
-            
-            align[0].insert(0, squery[--i]);
-            align[1].insert(0, '-');
-            path.insert(0, ' ');
-          }
-        } while (j > 0);
+      int[] F = new int[m + 1];
+      prev[0] = 0;
+      F[0] = Integer.MAX_VALUE;
+      for (j = 1; j <= m; j++) {
+        prev[j] = insert + j * gapExt;
+        F[j] = Integer.MAX_VALUE;
       }
+      for (i = 1; i <= n; i++) {
+        cur[0] = F[0] = delete + i * gapExt;
+        int E = Integer.MAX_VALUE;
+        int rowMin = cur[0];
+        for (j = 1; j <= m; j++) {
+          E = Math.min(E, cur[j - 1] + insert) + gapExt;
+          F[j] = Math.min(F[j], prev[j] + delete) + gapExt;
+          cur[j] = min(E, F[j], prev[j - 1]
+              + ((squery[i - 1] == ssubject[j - 1]) ? match : replace));
+          rowMin = Math.min(rowMin, cur[j]);
+        }
+        if (rowMin >= bound) {
+          return Integer.MAX_VALUE;
+        }
+        int[] tmp = prev;
+        prev = cur;
+        cur = tmp;
+      }
+    } else {
       /*
        * No affine gap penalties, constant gap penalties, which is much
        * faster and needs less memory.
        */
-    } else {
-      for (i = 1; i <= squery.length; i++) {
-        costMatrix[i][0] = costMatrix[i - 1][0] + delete;
-      }
-      for (j = 1; j <= ssubject.length; j++) {
-        costMatrix[0][j] = costMatrix[0][j - 1] + insert;
+      for (j = 0; j <= m; j++) {
+        prev[j] = j * insert;
       }
-      for (i = 1; i <= squery.length; i++) {
-        for (j = 1; j <= ssubject.length; j++) {
-          costMatrix[i][j] = min(costMatrix[i - 1][j]
-              + delete, costMatrix[i][j - 1] + insert,
-              costMatrix[i - 1][j - 1]
-                  - ((squery[i-1] == ssubject[j-1]) ? -match
-                      : -replace));
+      for (i = 1; i <= n; i++) {
+        cur[0] = i * delete;
+        int rowMin = cur[0];
+        for (j = 1; j <= m; j++) {
+          cur[j] = min(prev[j] + delete, cur[j - 1] + insert, prev[j - 1]
+              + ((squery[i - 1] == ssubject[j - 1]) ? match : replace));
+          rowMin = Math.min(rowMin, cur[j]);
         }
-      }
-      /*
-       * Traceback for constant gap penalties.
-       */
-      j = costMatrix[costMatrix.length - 1].length - 1;
-      for (i = costMatrix.length - 1; i > 0;) {
-        do {
-          // only Insert.
-          if (i == 0) {
-            align[0].insert(0, '~');
-            align[1].insert(0, ssubject[j--]);
-            path.insert(0, ' ');
-            
-            // only Delete.
-          } else if (j == 0) {
-            align[0].insert(0, squery[i--]);
-            align[1].insert(0, '~');
-            path.insert(0, ' ');
-            
-            // Match/Replace
-          } else if (costMatrix[i][j] == costMatrix[i - 1][j - 1]
-              - ((squery[i-1] == ssubject[j-1]) ? -match : -replace)) {
-            
-            if (squery[i-1] == ssubject[j-1]) {
-              path.insert(0, '|');
-            } else {
-              path.insert(0, ' ');
-            }
-            align[0].insert(0, squery[i--]);
-            align[1].insert(0, ssubject[j--]);
-            
-            // Insert
-          } else if (costMatrix[i][j] == costMatrix[i][j - 1]
-              + insert) {
-            align[0].insert(0, '-');
-            align[1].insert(0, ssubject[j--]);
-            path.insert(0, ' ');
-            
-            // Delete
-          } else {
-            align[0].insert(0, squery[i--]);
-            align[1].insert(0, '-');
-            path.insert(0, ' ');
-          }
-        } while (j > 0);
+        if (rowMin >= bound) {
+          return Integer.MAX_VALUE;
+        }
+        int[] tmp = prev;
+        prev = cur;
+        cur = tmp;
       }
     }
-    return costMatrix[costMatrix.length - 1][costMatrix[costMatrix.length - 1].length - 1];
+    return prev[m] < bound ? prev[m] : Integer.MAX_VALUE;
   }
   
   /**
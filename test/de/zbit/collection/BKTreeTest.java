@@ -0,0 +1,167 @@
+/*
+ * $Id$
+ * $URL$
+ * ---------------------------------------------------------------------
+ * This file is part of the SysBio API library.
+ *
+ * Copyright (C) 2009-2016 by the University of Tuebingen, Germany.
+ *
+ * This library is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation. A copy of the license
+ * agreement is provided in the file named "LICENSE.txt" included with
+ * this software distribution and also available online as
+ * <http://www.gnu.org/licenses/lgpl-3.0-standalone.html>.
+ * ---------------------------------------------------------------------
+ */
+package de.zbit.collection;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import de.zbit.util.EditDistance;
+import de.zbit.util.StringUtil;
+import de.zbit.util.objectwrapper.ValuePair;
+
+/**
+ * Compares the searches of a {@link BKTree} with a linear scan.
+ *
+ * @version $Rev$
+ * @since 1.4
+ */
+public class BKTreeTest {
+
+  /**
+   * Distinct random words.
+   */
+  private List<String> words;
+
+  /**
+   * Contains all {@link #words}.
+   */
+  private BKTree tree;
+
+  /**
+   * Random queries.
+   */
+  private List<String> queries;
+
+  /**
+   * @param rnd
+   * @return a random word of 1 to 12 characters.
+   */
+  private static String randomWord(Random rnd) {
+    String alphabet = "abcdeilnorst äß";
+    int length = 1 + rnd.nextInt(12);
+    StringBuilder sb = new StringBuilder(length);
+    for (int i = 0; i < length; i++) {
+      sb.append(alphabet.charAt(rnd.nextInt(alphabet.length())));
+    }
+    return sb.toString();
+  }
+
+  @Before
+  public void setUp() {
+    Random rnd = new Random(12345);
+    Set<String> set = new LinkedHashSet<String>();
+    while (set.size() < 2000) {
+      set.add(randomWord(rnd));
+    }
+    words = new ArrayList<String>(set);
+    tree = new BKTree();
+    tree.addAll(words);
+    // Duplicates are ignored
+    tree.addAll(words.subList(0, 100));
+    queries = new ArrayList<String>();
+    for (int i = 0; i < 50; i++) {
+      queries.add(randomWord(rnd));
+    }
+    queries.add(words.get(17));
+    queries.add("");
+  }
+
+  /**
+   * @param query
+   * @return all words with their distance to {@code query}, sorted by
+   *         distance and then alphabetically.
+   */
+  private List<ValuePair<String, Integer>> linearScan(String query) {
+    List<ValuePair<String, Integer>> ret = new ArrayList<ValuePair<String, Integer>>();
+    for (String word : words) {
+      ret.add(new ValuePair<String, Integer>(word, Integer.valueOf(EditDistance.levenshtein(query, word))));
+    }
+    Collections.sort(ret, new Comparator<ValuePair<String, Integer>>() {
+      /* (non-Javadoc)
+       * @see java.util.Comparator#compare(java.lang.Object, java.lang.Object)
+       */
+      @Override
+      public int compare(ValuePair<String, Integer> o1, ValuePair<String, Integer> o2) {
+        int c = o1.getB().compareTo(o2.getB());
+        return c != 0 ? c : o1.getA().compareTo(o2.getA());
+      }
+    });
+    return ret;
+  }
+
+  /**
+   * Test method for {@link BKTree#search(String, int)}.
+   */
+  @Test
+  public void testSearch() {
+    assertEquals(words.size(), tree.size());
+    for (String query : queries) {
+      List<ValuePair<String, Integer>> all = linearScan(query);
+      for (int maxDistance = 0; maxDistance <= 4; maxDistance++) {
+        List<ValuePair<String, Integer>> expected = new ArrayList<ValuePair<String, Integer>>();
+        for (ValuePair<String, Integer> p : all) {
+          if (p.getB().intValue() <= maxDistance) {
+            expected.add(p);
+          }
+        }
+        assertEquals(query + ", " + maxDistance, expected, tree.search(query, maxDistance));
+      }
+    }
+  }
+
+  /**
+   * Test method for {@link BKTree#getMostSimilar(String, int)}.
+   */
+  @Test
+  public void testGetMostSimilar() {
+    for (String query : queries) {
+      List<ValuePair<String, Integer>> all = linearScan(query);
+      for (int k : new int[] {1, 5, 20}) {
+        assertEquals(query + ", " + k, all.subList(0, k), tree.getMostSimilar(query, k));
+      }
+    }
+    assertEquals(0, new BKTree().getMostSimilar("a", 3).size());
+  }
+
+  /**
+   * Test method for {@link StringUtil#getMostSimilarString(String, BKTree)}.
+   */
+  @Test
+  public void testGetMostSimilarString() {
+    String[] synonyms = words.toArray(new String[words.size()]);
+    for (String query : queries) {
+      String expected = StringUtil.getMostSimilarString(query, synonyms);
+      String actual = StringUtil.getMostSimilarString(query, tree);
+      // Ties might be broken differently
+      assertEquals(query, StringUtil.globalAlignment(query.toCharArray(), expected.toCharArray(), 2, 1),
+        StringUtil.globalAlignment(query.toCharArray(), actual.toCharArray(), 2, 1));
+    }
+    assertNull(StringUtil.getMostSimilarString("a", new BKTree()));
+  }
+
+}
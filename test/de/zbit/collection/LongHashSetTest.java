@@ -0,0 +1,88 @@
+/*
+ * $Id$
+ * $URL$
+ * ---------------------------------------------------------------------
+ * This file is part of the SysBio API library.
+ *
+ * Copyright (C) 2009-2016 by the University of Tuebingen, Germany.
+ *
+ * This library is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation. A copy of the license
+ * agreement is provided in the file named "LICENSE.txt" included with
+ * this software distribution and also available online as
+ * <http://www.gnu.org/licenses/lgpl-3.0-standalone.html>.
+ * ---------------------------------------------------------------------
+ */
+package de.zbit.collection;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+/**
+ * @version $Rev$
+ * @since 1.4
+ */
+public class LongHashSetTest {
+  
+  /**
+   * Test method for {@link LongHashSet#add(long)} and
+   * {@link LongHashSet#contains(long)}.
+   */
+  @Test
+  public void testAddAndContains() {
+    LongHashSet set = new LongHashSet();
+    Set<Long> reference = new HashSet<Long>();
+    Random random = new Random(42);
+    for (int i = 0; i < 10000; i++) {
+      long value = random.nextInt(5000);
+      assertEquals(reference.add(value), set.add(value));
+    }
+    assertEquals(reference.size(), set.size());
+    for (long value = -10; value < 5010; value++) {
+      assertEquals(reference.contains(value), set.contains(value));
+    }
+  }
+  
+  /**
+   * Values, that are used internally to mark empty slots, must be allowed,
+   * too.
+   */
+  @Test
+  public void testSpecialValues() {
+    LongHashSet set = new LongHashSet(1);
+    assertTrue(set.isEmpty());
+    assertFalse(set.contains(Long.MIN_VALUE));
+    assertTrue(set.add(Long.MIN_VALUE));
+    assertFalse(set.add(Long.MIN_VALUE));
+    assertTrue(set.add(0L));
+    assertTrue(set.add(Long.MAX_VALUE));
+    assertEquals(3, set.size());
+    long[] values = set.toArray();
+    Arrays.sort(values);
+    assertTrue(Arrays.equals(new long[] {Long.MIN_VALUE, 0L, Long.MAX_VALUE}, values));
+  }
+  
+  /**
+   * Test method for {@link LongHashSet#pair(int, int)}.
+   */
+  @Test
+  public void testPair() {
+    LongHashSet set = new LongHashSet();
+    set.add(LongHashSet.pair(1, 2));
+    set.add(LongHashSet.pair(-1, 7));
+    assertTrue(set.contains(LongHashSet.pair(1, 2)));
+    assertFalse(set.contains(LongHashSet.pair(2, 1)));
+    assertTrue(set.contains(LongHashSet.pair(-1, 7)));
+    assertFalse(set.contains(LongHashSet.pair(-1, 6)));
+  }
+  
+}
@@ -0,0 +1,186 @@
+/*
+ * $Id$
+ * $URL$
+ * ---------------------------------------------------------------------
+ * This file is part of the SysBio API library.
+ *
+ * Copyright (C) 2009-2016 by the University of Tuebingen, Germany.
+ *
+ * This library is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation. A copy of the license
+ * agreement is provided in the file named "LICENSE.txt" included with
+ * this software distribution and also available online as
+ * <http://www.gnu.org/licenses/lgpl-3.0-standalone.html>.
+ * ---------------------------------------------------------------------
+ */
+package de.zbit.dbfetch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import uk.ac.ebi.webservices.jaxws.stubs.wsdbfetch.DbfParamsException;
+import uk.ac.ebi.webservices.jaxws.stubs.wsdbfetch.DbfParamsException_Exception;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the batch queries of the {@link DBFetcher} against a local stub
+ * service.
+ * 
+ * @version $Rev$
+ * @since 1.4
+ */
+public class DBFetcherTest {
+  
+  /**
+   * Answers batch queries from a map instead of WSDbfetch.
+   */
+  private static class StubFetcher extends UniProtFetcher {
+    private static final long serialVersionUID = 1L;
+    /**
+     * Entries by identifier.
+     */
+    private final Map<String, String> entries = new HashMap<String, String>();
+    /**
+     * Batches with more identifiers fail.
+     */
+    private int maxIDs = Integer.MAX_VALUE;
+    /**
+     * Every query fails once.
+     */
+    private boolean failFirst = false;
+    private final Set<String> failed = new HashSet<String>();
+    /**
+     * Every query fails, as if the service was down.
+     */
+    private boolean down = false;
+    /**
+     * Number of queries.
+     */
+    private int queries = 0;
+    
+    public void addEntry(String id, String ac) {
+      String entry = "ID   " + id + "   Reviewed;   100 AA.\nAC   " + ac + ";\nDE   Entry " + id + "\n//\n";
+      entries.put(id, entry);
+      entries.put(ac, entry);
+    }
+    
+    /* (non-Javadoc)
+     * @see de.zbit.dbfetch.DBFetcher#fetchBatch(java.lang.String)
+     */
+    @Override
+    protected String fetchBatch(String queryString) throws Exception {
+      String[] ids = queryString.split(",");
+      synchronized (this) {
+        queries++;
+        if (down) {
+          throw new Exception("Service unavailable");
+        }
+        if (ids.length > maxIDs) {
+          throw new DbfParamsException_Exception("Too many identifiers", new DbfParamsException());
+        }
+        if (failFirst && failed.add(queryString)) {
+          throw new Exception("Temporary failure");
+        }
+      }
+      StringBuilder sb = new StringBuilder();
+      for (String id : ids) {
+        String entry = entries.get(id);
+        if (entry != null) {
+          sb.append(entry);
+        }
+      }
+      return sb.toString();
+    }
+  }
+  
+  private StubFetcher fetcher;
+  private long retryDelay;
+  
+  @Before
+  public void setUp() {
+    retryDelay = DBFetcher.retryDelay;
+    DBFetcher.retryDelay = 1;
+    fetcher = new StubFetcher();
+    for (int i = 0; i < 250; i++) {
+      fetcher.addEntry(String.format("P%d_MOUSE", i), String.format("Q%05d", i));
+    }
+  }
+  
+  @After
+  public void tearDown() {
+    DBFetcher.retryDelay = retryDelay;
+  }
+  
+  @Test
+  public void allFound() {
+    String[] ids = new String[250];
+    for (int i = 0; i < ids.length; i++) {
+      ids[i] = String.format("P%d_MOUSE", i);
+    }
+    String[] ret = fetcher.getInformations(ids);
+    for (int i = 0; i < ids.length; i++) {
+      assertTrue(ret[i].startsWith("ID   " + ids[i] + " "));
+    }
+  }
+  
+  @Test
+  public void mapping() {
+    String[] ids = new String[] {"P1_MOUSE", "1_MOUSE", "Q00002", "P2_MOUSE", "UNKNOWN", "Q00010"};
+    String[] ret = fetcher.getInformations(ids);
+    assertTrue(ret[0].startsWith("ID   P1_MOUSE "));
+    assertNull(ret[1]);
+    assertTrue(ret[2].startsWith("ID   P2_MOUSE "));
+    assertEquals(ret[2], ret[3]);
+    assertNull(ret[4]);
+    assertTrue(ret[5].startsWith("ID   P10_MOUSE "));
+  }
+  
+  @Test
+  public void adaptiveBatchSize() {
+    fetcher.maxIDs = 10;
+    String[] ids = new String[200];
+    for (int i = 0; i < ids.length; i++) {
+      ids[i] = String.format("Q%05d", i);
+    }
+    String[] ret = fetcher.getInformations(ids);
+    for (int i = 0; i < ids.length; i++) {
+      assertTrue(ret[i].startsWith(String.format("ID   P%d_MOUSE ", i)));
+    }
+  }
+  
+  @Test
+  public void retry() {
+    fetcher.failFirst = true;
+    String[] ids = new String[] {"P1_MOUSE", "P2_MOUSE", "P3_MOUSE"};
+    String[] ret = fetcher.getInformations(ids);
+    for (int i = 0; i < ids.length; i++) {
+      assertTrue(ret[i].startsWith("ID   " + ids[i] + " "));
+    }
+  }
+  
+  @Test
+  public void serviceDown() {
+    fetcher.down = true;
+    String[] ids = new String[250];
+    for (int i = 0; i < ids.length; i++) {
+      ids[i] = String.format("P%d_MOUSE", i);
+    }
+    String[] ret = fetcher.getInformations(ids);
+    for (int i = 0; i < ids.length; i++) {
+      assertNull(ret[i]);
+    }
+    // Failed batches are repeated, but neither split nor continued.
+    assertTrue("queries: " + fetcher.queries, fetcher.queries <= DBFetcher.concurrentQueries * 3);
+  }
+  
+}
@@ -0,0 +1,180 @@
+/*
+ * $Id$
+ * $URL$
+ * ---------------------------------------------------------------------
+ * This file is part of the SysBio API library.
+ *
+ * Copyright (C) 2009-2016 by the University of Tuebingen, Germany.
+ *
+ * This library is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation. A copy of the license
+ * agreement is provided in the file named "LICENSE.txt" included with
+ * this software distribution and also available online as
+ * <http://www.gnu.org/licenses/lgpl-3.0-standalone.html>.
+ * ---------------------------------------------------------------------
+ */
+package de.zbit.dbfetch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import de.zbit.cache.InfoManagement;
+
+/**
+ * @version $Rev$
+ * @since 1.4
+ */
+public class UniProtFlatFileFetcherTest {
+
+  /**
+   * A small UniProt flat file with three entries.
+   */
+  private static final File SAMPLE = new File("files/uniprotSample.dat");
+
+  /**
+   * Temporary directory for the flat files and their indices.
+   */
+  private File dir;
+
+  /**
+   * @throws IOException
+   */
+  @Before
+  public void setUp() throws IOException {
+    dir = File.createTempFile("UniProtFlatFileFetcherTest", "");
+    dir.delete();
+    dir.mkdir();
+  }
+
+  /**
+   *
+   */
+  @After
+  public void tearDown() {
+    for (File f : dir.listFiles()) {
+      f.delete();
+    }
+    dir.delete();
+  }
+
+  /**
+   * Copies {@link #SAMPLE} into {@link #dir}.
+   *
+   * @param name
+   * @param gzip
+   * @return the copy.
+   * @throws IOException
+   */
+  private File copySample(String name, boolean gzip) throws IOException {
+    File file = new File(dir, name);
+    InputStream in = new FileInputStream(SAMPLE);
+    OutputStream out = new FileOutputStream(file);
+    if (gzip) {
+      out = new GZIPOutputStream(out);
+    }
+    byte[] buffer = new byte[8192];
+    int read;
+    while ((read = in.read(buffer)) > 0) {
+      out.write(buffer, 0, read);
+    }
+    in.close();
+    out.close();
+    return file;
+  }
+
+  /**
+   * Checks the lookups of the {@link InfoManagement} contract.
+   *
+   * @param fetcher
+   */
+  private static void assertSampleEntries(UniProtFlatFileFetcher fetcher) {
+    assertEquals(3, fetcher.getNumberOfEntries());
+
+    // By primary and secondary accession and by entry name
+    String p53 = fetcher.getInformation("P04637");
+    assertTrue(p53.startsWith("ID   P53_HUMAN "));
+    assertTrue(p53.endsWith("\n//\n"));
+    assertEquals(p53, fetcher.getInformation("Q15086"));
+    assertEquals(p53, fetcher.getInformation("P53_HUMAN"));
+    assertEquals(p53, fetcher.getInformation("p53_human"));
+    assertTrue(fetcher.getInformation("P02340").contains("OS   Mus musculus (Mouse)."));
+
+    // Missing keys
+    assertFalse(fetcher.contains("P99999"));
+    assertNull(fetcher.getInformation("P99999"));
+    String[] infos = fetcher.getInformations(new String[] {"INS_HUMAN", "P99999", "Q9QUP3"});
+    assertEquals(3, infos.length);
+    assertTrue(infos[0].startsWith("ID   INS_HUMAN "));
+    assertNull(infos[1]);
+    assertTrue(infos[2].startsWith("ID   P53_MOUSE "));
+
+    // Cross references
+    assertEquals("[7157]", Arrays.toString(fetcher.getCrossReferences("P04637", "GeneID")));
+    assertEquals("[NP_000198.1, NM_000207.2, NP_001172026.1, NM_001185097.1]",
+      Arrays.toString(fetcher.getCrossReferences("P01308", "RefSeq")));
+    assertEquals(0, fetcher.getCrossReferences("P01308", "Ensembl").length);
+    assertNull(fetcher.getCrossReferences("P99999", "GeneID"));
+  }
+
+  /**
+   * Test method for an uncompressed flat file. The second instance must
+   * reuse the index.
+   *
+   * @throws IOException
+   */
+  @Test
+  public void testFlatFile() throws IOException {
+    File file = copySample("sample.dat", false);
+    assertSampleEntries(new UniProtFlatFileFetcher(file, 2));
+    File index = new File(dir, "sample.dat.idx");
+    assertTrue(index.exists());
+    long modified = index.lastModified();
+    assertSampleEntries(new UniProtFlatFileFetcher(file, 2));
+    assertEquals(modified, index.lastModified());
+  }
+
+  /**
+   * Test method for a gzipped flat file.
+   *
+   * @throws IOException
+   */
+  @Test
+  public void testGzippedFlatFile() throws IOException {
+    File file = copySample("sample.dat.gz", true);
+    assertSampleEntries(new UniProtFlatFileFetcher(file, 1));
+    assertTrue(new File(dir, "sample.dat").exists());
+    assertTrue(new File(dir, "sample.dat.idx").exists());
+  }
+
+  /**
+   * A deserialized instance must open the flat file and index again.
+   *
+   * @throws IOException
+   */
+  @Test
+  public void testSerialization() throws IOException {
+    UniProtFlatFileFetcher fetcher = new UniProtFlatFileFetcher(copySample("sample.dat", false), 2);
+    fetcher.getInformation("P04637");
+    File cache = new File(dir, "fetcher.dat");
+    assertTrue(InfoManagement.saveToFilesystem(cache.getPath(), fetcher));
+    UniProtFlatFileFetcher loaded = (UniProtFlatFileFetcher) InfoManagement.loadFromFilesystem(cache);
+    assertSampleEntries(loaded);
+  }
+
+}
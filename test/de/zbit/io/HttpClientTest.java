@@ -0,0 +1,313 @@
+/*
+ * $Id$
+ * $URL$
+ * ---------------------------------------------------------------------
+ * This file is part of the SysBio API library.
+ *
+ * Copyright (C) 2009-2016 by the University of Tuebingen, Germany.
+ *
+ * This library is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation. A copy of the license
+ * agreement is provided in the file named "LICENSE.txt" included with
+ * this software distribution and also available online as
+ * <http://www.gnu.org/licenses/lgpl-3.0-standalone.html>.
+ * ---------------------------------------------------------------------
+ */
+package de.zbit.io;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Tests the {@link HttpClient} against a local HTTP stub.
+ * 
+ * @version $Rev$
+ * @since 1.4
+ */
+public class HttpClientTest {
+  
+  private HttpServer server;
+  
+  private ExecutorService executor;
+  
+  private String base;
+  
+  private HttpClient client;
+  
+  /**
+   * Number of requests per path.
+   */
+  private final AtomicInteger requests = new AtomicInteger();
+  
+  /**
+   * Remote ports of all requests.
+   */
+  private final Set<Integer> ports = Collections.synchronizedSet(new HashSet<Integer>());
+  
+  /**
+   * The Accept-Encoding header of the last request.
+   */
+  private volatile String acceptEncoding;
+  
+  /**
+   * @param path
+   * @return the gzipped content of "/gz/..." files.
+   * @throws IOException
+   */
+  private static byte[] gzip(String path) throws IOException {
+    ByteArrayOutputStream bs = new ByteArrayOutputStream();
+    GZIPOutputStream gz = new GZIPOutputStream(bs);
+    gz.write(("content of " + path).getBytes("UTF-8"));
+    gz.close();
+    return bs.toByteArray();
+  }
+  
+  /**
+   * Answers "/text/..." with the path, "/slow/..." after a delay,
+   * "/gz/..." with a gzipped file, "/html/..." with a large HTML page,
+   * and everything else with 404. Responses are gzipped on request. Like
+   * some web servers, "/gz/..." files are declared as gzip encoded, if the
+   * client accepts it.
+   */
+  private class Handler implements HttpHandler {
+    /* (non-Javadoc)
+     * @see com.sun.net.httpserver.HttpHandler#handle(com.sun.net.httpserver.HttpExchange)
+     */
+    @Override
+    public void handle(HttpExchange exchange) throws IOException {
+      requests.incrementAndGet();
+      ports.add(Integer.valueOf(exchange.getRemoteAddress().getPort()));
+      String path = exchange.getRequestURI().getPath();
+      String encoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+      acceptEncoding = encoding;
+      if (path.startsWith("/gz/")) {
+        byte[] body = gzip(path);
+        if ((encoding != null) && encoding.contains("gzip")) {
+          exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+        }
+        exchange.sendResponseHeaders(200, body.length);
+        exchange.getResponseBody().write(body);
+        exchange.close();
+        return;
+      }
+      if (path.startsWith("/html/")) {
+        StringBuilder sb = new StringBuilder("<html><body>");
+        while (sb.length() < 4 << 20) {
+          sb.append("<p>content of ").append(path).append("</p>\n");
+        }
+        sb.append("</body></html>");
+        byte[] body = sb.toString().getBytes("UTF-8");
+        try {
+          exchange.sendResponseHeaders(200, body.length);
+          exchange.getResponseBody().write(body);
+        } catch (IOException e) {
+          // The client disconnected
+        }
+        exchange.close();
+        return;
+      }
+      if (!path.startsWith("/text/") && !path.startsWith("/slow/")) {
+        exchange.sendResponseHeaders(404, -1);
+        exchange.close();
+        return;
+      }
+      if (path.startsWith("/slow/")) {
+        try {
+          Thread.sleep(300);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+      byte[] body = ("content of " + path).getBytes("UTF-8");
+      if ((encoding != null) && encoding.contains("gzip")) {
+        ByteArrayOutputStream bs = new ByteArrayOutputStream();
+        GZIPOutputStream gz = new GZIPOutputStream(bs);
+        gz.write(body);
+        gz.close();
+        exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+        body = bs.toByteArray();
+      }
+      if (exchange.getRequestMethod().equals("HEAD")) {
+        exchange.getResponseHeaders().set("Content-Length", Integer.toString(body.length));
+        exchange.sendResponseHeaders(200, -1);
+      } else {
+        exchange.sendResponseHeaders(200, body.length);
+        OutputStream out = exchange.getResponseBody();
+        out.write(body);
+        out.close();
+      }
+      exchange.close();
+    }
+  }
+  
+  @Before
+  public void setUp() throws IOException {
+    server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+    server.createContext("/", new Handler());
+    executor = Executors.newCachedThreadPool();
+    server.setExecutor(executor);
+    server.start();
+    base = "http://127.0.0.1:" + server.getAddress().getPort();
+    client = new HttpClient(4, 5000, 5000);
+  }
+  
+  @After
+  public void tearDown() {
+    server.stop(0);
+    executor.shutdownNow();
+  }
+  
+  /**
+   * Test method for {@link HttpClient#get(String)}.
+   * 
+   * @throws IOException
+   */
+  @Test
+  public void testGet() throws IOException {
+    assertEquals("content of /text/a", new String(client.get(base + "/text/a"), "UTF-8"));
+    assertNull(client.get(base + "/missing"));
+    assertEquals("content of /text/b", new String(client.get(base + "/text/b"), "UTF-8"));
+    assertEquals("gzip", acceptEncoding);
+    assertEquals(3, requests.get());
+  }
+  
+  /**
+   * Sequential requests must re-use the same connection.
+   * 
+   * @throws IOException
+   */
+  @Test
+  public void testKeepAlive() throws IOException {
+    for (int i = 0; i < 10; i++) {
+      client.get(base + "/text/" + i);
+    }
+    assertEquals(10, requests.get());
+    assertEquals(1, ports.size());
+  }
+  
+  /**
+   * Concurrent requests for the same address must only be sent once.
+   * 
+   * @throws Exception
+   */
+  @Test
+  public void testDeduplication() throws Exception {
+    ExecutorService pool = Executors.newFixedThreadPool(4);
+    try {
+      List<Future<byte[]>> futures = new ArrayList<Future<byte[]>>();
+      for (int i = 0; i < 4; i++) {
+        futures.add(pool.submit(new Callable<byte[]>() {
+          /* (non-Javadoc)
+           * @see java.util.concurrent.Callable#call()
+           */
+          @Override
+          public byte[] call() throws Exception {
+            return client.get(base + "/slow/x");
+          }
+        }));
+      }
+      for (Future<byte[]> f : futures) {
+        assertEquals("content of /slow/x", new String(f.get(), "UTF-8"));
+      }
+    } finally {
+      pool.shutdownNow();
+    }
+    assertEquals(1, requests.get());
+  }
+  
+  /**
+   * Test method for {@link HttpClient#download(String, OutputStream)} and
+   * {@link HttpClient#getContentLength(String)}.
+   * 
+   * @throws IOException
+   */
+  @Test
+  public void testDownload() throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    assertEquals(200, client.download(base + "/text/file", out));
+    assertEquals("content of /text/file", out.toString("UTF-8"));
+    assertEquals("content of /text/file".length(), client.getContentLength(base + "/text/file"));
+    assertEquals(-1, client.getContentLength(base + "/missing"));
+    
+    out = new ByteArrayOutputStream();
+    assertTrue(client.download(base + "/missing", out) >= 400);
+    assertEquals(0, out.size());
+    
+    // Downloads are not compressed
+    out = new ByteArrayOutputStream();
+    assertEquals(200, client.download(base + "/text/file", out));
+    assertEquals("identity", acceptEncoding);
+  }
+  
+  /**
+   * {@link FileDownload} must use the shared client.
+   * 
+   * @throws IOException
+   */
+  @Test
+  public void testFileDownload() throws IOException {
+    HttpClient.setDefault(client);
+    try {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      FileDownload.download(base + "/text/fd", out, false);
+      assertEquals("content of /text/fd", out.toString("UTF-8"));
+      assertEquals(1, requests.get());
+      
+      // Compressed files must be stored as they are
+      out = new ByteArrayOutputStream();
+      FileDownload.download(base + "/gz/file.gz", out, false);
+      assertArrayEquals(gzip("/gz/file.gz"), out.toByteArray());
+    } finally {
+      HttpClient.setDefault(null);
+    }
+  }
+  
+  /**
+   * {@link FileDownload#isHTMLcontent(String)} must only read the
+   * beginning of a response and release the request afterwards.
+   * 
+   * @throws IOException
+   */
+  @Test
+  public void testIsHTMLcontent() throws IOException {
+    client = new HttpClient(1, 5000, 5000);
+    HttpClient.setDefault(client);
+    try {
+      assertTrue(FileDownload.isHTMLcontent(base + "/html/page"));
+      assertFalse(FileDownload.isHTMLcontent(base + "/text/page"));
+      assertTrue(FileDownload.isHTMLcontent(base + "/html/page"));
+      assertEquals("content of /text/a", new String(client.get(base + "/text/a"), "UTF-8"));
+    } finally {
+      HttpClient.setDefault(null);
+    }
+  }
+  
+}
@@ -0,0 +1,165 @@
+/*
+ * $Id$
+ * $URL$
+ * ---------------------------------------------------------------------
+ * This file is part of the SysBio API library.
+ *
+ * Copyright (C) 2009-2016 by the University of Tuebingen, Germany.
+ *
+ * This library is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation. A copy of the license
+ * agreement is provided in the file named "LICENSE.txt" included with
+ * this software distribution and also available online as
+ * <http://www.gnu.org/licenses/lgpl-3.0-standalone.html>.
+ * ---------------------------------------------------------------------
+ */
+package de.zbit.io.filefilter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import de.zbit.io.filefilter.SBFileFilter.FileType;
+
+/**
+ * @version $Rev$
+ * @since 1.4
+ */
+public class FileHeadProbeTest {
+  
+  private static final String SBML = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+      + "<sbml xmlns=\"http://www.sbml.org/sbml/level3/version1/core\" level=\"3\" version=\"1\">\n"
+      + "  <model id=\"m1\"/>\n</sbml>\n";
+  
+  private File dir;
+  
+  @Before
+  public void setUp() throws IOException {
+    FileHeadProbe.clearCache();
+    dir = File.createTempFile("FileHeadProbeTest", "");
+    dir.delete();
+    dir.mkdir();
+  }
+  
+  @After
+  public void tearDown() {
+    for (File f : dir.listFiles()) {
+      f.delete();
+    }
+    dir.delete();
+    FileHeadProbe.clearCache();
+  }
+  
+  /**
+   * @param name
+   * @param gzip
+   * @return a copy of files/kgmlSample.xml.
+   * @throws IOException
+   */
+  private File copyKGML(String name, boolean gzip) throws IOException {
+    File file = new File(dir, name);
+    InputStream in = new FileInputStream("files/kgmlSample.xml");
+    OutputStream out = new FileOutputStream(file);
+    if (gzip) {
+      out = new GZIPOutputStream(out);
+    }
+    byte[] buffer = new byte[8192];
+    int n;
+    while ((n = in.read(buffer)) >= 0) {
+      out.write(buffer, 0, n);
+    }
+    in.close();
+    out.close();
+    return file;
+  }
+  
+  /**
+   * @param file
+   * @param content
+   * @throws IOException
+   */
+  private static void write(File file, String content) throws IOException {
+    OutputStream out = new FileOutputStream(file);
+    out.write(content.getBytes("UTF-8"));
+    out.close();
+  }
+  
+  /**
+   * Test method for {@link FileHeadProbe#matches(FileType)}.
+   * 
+   * @throws IOException
+   */
+  @Test
+  public void testMatches() throws IOException {
+    FileHeadProbe kgml = FileHeadProbe.probe(copyKGML("sample.xml", false));
+    assertTrue(kgml.matches(FileType.KGML_FILES));
+    assertFalse(kgml.matches(FileType.SBML_FILES));
+    // Types without a line pattern always match
+    assertEquals(FileHeadProbe.getLinePattern(FileType.CSV_FILES) == null,
+      kgml.matches(FileType.CSV_FILES));
+    
+    File sbmlFile = new File(dir, "model.xml");
+    write(sbmlFile, SBML);
+    FileHeadProbe sbml = FileHeadProbe.probe(sbmlFile);
+    assertTrue(sbml.matches(FileType.SBML_FILES));
+    assertFalse(sbml.matches(FileType.KGML_FILES));
+    
+    File text = new File(dir, "text.txt");
+    write(text, "Neither KGML nor SBML\n");
+    FileHeadProbe probe = FileHeadProbe.probe(text);
+    assertFalse(probe.matches(FileType.KGML_FILES));
+    assertFalse(probe.matches(FileType.SBML_FILES));
+    
+    assertFalse(FileHeadProbe.probe(new File(dir, "missing.xml")).matches(FileType.SBML_FILES));
+  }
+  
+  /**
+   * Gzipped files are decompressed in memory.
+   * 
+   * @throws IOException
+   */
+  @Test
+  public void testGzip() throws IOException {
+    FileHeadProbe probe = FileHeadProbe.probe(copyKGML("sample.xml.gz", true));
+    assertEquals("GZ", probe.getFormat().getShortName().toUpperCase());
+    assertTrue(probe.matches(FileType.KGML_FILES));
+    assertFalse(probe.matches(FileType.SBML_FILES));
+  }
+  
+  /**
+   * Probes are reused until the file is modified.
+   * 
+   * @throws IOException
+   */
+  @Test
+  public void testCache() throws IOException {
+    File file = new File(dir, "model.xml");
+    write(file, SBML);
+    FileHeadProbe probe = FileHeadProbe.probe(file);
+    assertSame(probe, FileHeadProbe.probe(file));
+    
+    write(file, "no model\n");
+    FileHeadProbe modified = FileHeadProbe.probe(file);
+    assertNotSame(probe, modified);
+    assertFalse(modified.matches(FileType.SBML_FILES));
+    
+    FileHeadProbe.clearCache();
+    assertNotSame(modified, FileHeadProbe.probe(file));
+  }
+  
+}
@@ -0,0 +1,197 @@
+/*
+ * $Id$
+ * $URL$
+ * ---------------------------------------------------------------------
+ * This file is part of the SysBio API library.
+ *
+ * Copyright (C) 2009-2016 by the University of Tuebingen, Germany.
+ *
+ * This library is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation. A copy of the license
+ * agreement is provided in the file named "LICENSE.txt" included with
+ * this software distribution and also available online as
+ * <http://www.gnu.org/licenses/lgpl-3.0-standalone.html>.
+ * ---------------------------------------------------------------------
+ */
+package de.zbit.kegg;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+import org.junit.Test;
+
+import de.zbit.kegg.parser.KeggParser;
+import de.zbit.kegg.parser.pathway.Entry;
+import de.zbit.kegg.parser.pathway.EntryType;
+import de.zbit.kegg.parser.pathway.Graphics;
+import de.zbit.kegg.parser.pathway.GraphicsType;
+import de.zbit.kegg.parser.pathway.Pathway;
+import de.zbit.kegg.parser.pathway.Reaction;
+import de.zbit.kegg.parser.pathway.ReactionComponent;
+import de.zbit.kegg.parser.pathway.ReactionType;
+import de.zbit.kegg.parser.pathway.Relation;
+import de.zbit.kegg.parser.pathway.RelationType;
+import de.zbit.kegg.parser.pathway.SubType;
+
+/**
+ * Compares the orphan removal with a {@link ConnectivityIndex} with
+ * {@link KeggTools#isOrphan(Pathway, Entry, boolean, boolean)}.
+ *
+ * @version $Rev$
+ * @since 1.4
+ */
+public class ConnectivityIndexTest {
+
+  /**
+   * A bundled KGML document.
+   */
+  private static final String KGML_FILE = "files/kgmlSample.xml";
+
+  /**
+   * @param p
+   * @param id
+   * @param name
+   * @param type
+   * @return the new entry.
+   */
+  private static Entry addEntry(Pathway p, int id, String name, EntryType type) {
+    Entry e = new Entry(p, id, name, type);
+    p.addEntry(e);
+    return e;
+  }
+
+  /**
+   * Creates a small pathway with entries, that are connected by reactions
+   * (by id, by name in a different case, or as enzyme), by relations (as
+   * entry or as subtype value), by group membership, and a few orphans.
+   *
+   * @return the pathway.
+   */
+  private static Pathway createPathway() {
+    Pathway p = new Pathway("path:hsa00010", "hsa", 10, "Glycolysis");
+    addEntry(p, 1, "cpd:C00031", EntryType.compound);
+    addEntry(p, 2, "cpd:C00092", EntryType.compound);
+    p.addEntry(new Entry(p, 3, "hsa:3098", EntryType.gene, null, "rn:R00299"));
+    addEntry(p, 4, "hsa:2645", EntryType.gene);
+    addEntry(p, 5, "hsa:3101", EntryType.gene);
+    addEntry(p, 6, "hsa:3099", EntryType.gene);
+    addEntry(p, 7, "undefined", EntryType.group).addComponents(Arrays.asList(
+      Integer.valueOf(8), Integer.valueOf(9)));
+    addEntry(p, 8, "hsa:5213", EntryType.gene);
+    addEntry(p, 9, "hsa:5214", EntryType.gene);
+    addEntry(p, 10, "cpd:C00118", EntryType.compound);
+    addEntry(p, 11, "undefined", EntryType.group).addComponent(Integer.valueOf(12));
+    addEntry(p, 12, "hsa:2821", EntryType.gene);
+    p.addEntry(new Entry(p, 13, "cpd:C00111", EntryType.compound,
+      new Graphics("line", 0, 0, GraphicsType.line, 10, 10, null, null, false)));
+    // Only matched by name, which must not depend on the default locale.
+    addEntry(p, 14, "gl:glis", EntryType.compound);
+
+    Reaction r = new Reaction(p, Integer.valueOf(100), "rn:R00299", ReactionType.irreversible);
+    r.addSubstrate(new ReactionComponent(Integer.valueOf(1), "cpd:C00031"));
+    r.addProduct(new ReactionComponent("CPD:C00092"));
+    p.addReaction(r);
+    r = new Reaction(p, Integer.valueOf(101), "rn:R99999", ReactionType.reversible);
+    r.addSubstrate(new ReactionComponent("GL:GLIS"));
+    r.addProduct(new ReactionComponent(Integer.valueOf(1), "cpd:C00031"));
+    p.addReaction(r);
+
+    p.addRelation(new Relation(4, 5, RelationType.PPrel));
+    p.addRelation(new Relation(7, 4, RelationType.PPrel, new SubType(SubType.COMPOUND, "6")));
+    return p;
+  }
+
+  /**
+   * @param p
+   * @return the ids of all entries.
+   */
+  private static List<Integer> getIds(Pathway p) {
+    List<Integer> ids = new ArrayList<Integer>();
+    for (Entry e : p.getEntries()) {
+      ids.add(Integer.valueOf(e.getId()));
+    }
+    return ids;
+  }
+
+  /**
+   * Removes the orphans from {@code expected} with the previous loop over
+   * {@link KeggTools#isOrphan(Pathway, Entry, boolean, boolean)} and from
+   * {@code actual} with {@link KeggTools#removeOrphans(Pathway, boolean, boolean)}.
+   *
+   * @param expected
+   * @param actual
+   * @param considerRelations
+   * @param considerReactions
+   * @return the ids of the removed entries.
+   */
+  private static List<Integer> compareRemoval(Pathway expected, Pathway actual,
+    boolean considerRelations, boolean considerReactions) {
+    String msg = considerRelations + ", " + considerReactions;
+    ConnectivityIndex index = new ConnectivityIndex(actual);
+    for (int i = 0; i < expected.getEntries().size(); i++) {
+      Entry e = expected.getEntries().get(i);
+      assertEquals(msg + ", " + e.getId(), KeggTools.isOrphan(expected, e, considerRelations, considerReactions),
+        index.isOrphan(actual.getEntries().get(i), considerRelations, considerReactions));
+    }
+
+    List<Entry> toRemove = new ArrayList<Entry>();
+    for (Entry e : expected.getEntries()) {
+      if (KeggTools.isOrphan(expected, e, considerRelations, considerReactions)) {
+        toRemove.add(e);
+      }
+    }
+    List<Integer> removed = new ArrayList<Integer>();
+    for (Entry e : toRemove) {
+      removed.add(Integer.valueOf(e.getId()));
+    }
+    expected.removeEntries(toRemove);
+    KeggTools.removeOrphans(actual, considerRelations, considerReactions);
+    assertEquals(msg, getIds(expected), getIds(actual));
+    return removed;
+  }
+
+  /**
+   * Test method for {@link KeggTools#removeOrphans(Pathway, boolean, boolean)}
+   * on a small pathway.
+   */
+  @Test
+  public void testRemoveOrphans() {
+    Locale locale = Locale.getDefault();
+    try {
+      for (Locale l : new Locale[] {Locale.ENGLISH, new Locale("tr", "TR")}) {
+        Locale.setDefault(l);
+        assertEquals(Arrays.asList(Integer.valueOf(10), Integer.valueOf(11), Integer.valueOf(12)),
+          compareRemoval(createPathway(), createPathway(), true, true));
+        for (boolean considerRelations : new boolean[] {false, true}) {
+          for (boolean considerReactions : new boolean[] {false, true}) {
+            compareRemoval(createPathway(), createPathway(), considerRelations, considerReactions);
+          }
+        }
+      }
+    } finally {
+      Locale.setDefault(locale);
+    }
+  }
+
+  /**
+   * Test method for {@link KeggTools#removeOrphans(Pathway, boolean, boolean)}
+   * on a bundled KGML document.
+   *
+   * @throws Exception
+   */
+  @Test
+  public void testRemoveOrphansFromFile() throws Exception {
+    for (boolean considerRelations : new boolean[] {false, true}) {
+      for (boolean considerReactions : new boolean[] {false, true}) {
+        compareRemoval(KeggParser.parse(KGML_FILE).get(0), KeggParser.parse(KGML_FILE).get(0),
+          considerRelations, considerReactions);
+      }
+    }
+  }
+
+}
@@ -0,0 +1,212 @@
+/*
+ * $Id$
+ * $URL$
+ * ---------------------------------------------------------------------
+ * This file is part of the SysBio API library.
+ *
+ * Copyright (C) 2009-2016 by the University of Tuebingen, Germany.
+ *
+ * This library is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation. A copy of the license
+ * agreement is provided in the file named "LICENSE.txt" included with
+ * this software distribution and also available online as
+ * <http://www.gnu.org/licenses/lgpl-3.0-standalone.html>.
+ * ---------------------------------------------------------------------
+ */
+package de.zbit.kegg;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import de.zbit.kegg.api.KeggAdaptor;
+import de.zbit.kegg.api.KeggMirror;
+import de.zbit.kegg.api.KeggMirrorAdaptor;
+
+/**
+ * Tests the {@link KeggMirror} and {@link KeggMirrorAdaptor} with small
+ * fixture dumps.
+ * 
+ * @version $Rev$
+ * @since 1.4
+ */
+public class KeggMirrorTest {
+  
+  private static final String GENE_10458 = "ENTRY       10458             CDS       T01001\n"
+      + "NAME        BAIAP2, BAP2, IRSP53\n"
+      + "DEFINITION  BAR/IMD domain containing adaptor protein 2\n"
+      + "///\n";
+  
+  private static final String GENE_7529 = "ENTRY       7529              CDS       T01001\n"
+      + "NAME        YWHAB, GW128, HEL-S-1, HS1, KCIP-1, YWHAA\n"
+      + "DEFINITION  tyrosine 3-monooxygenase/tryptophan 5-monooxygenase activation protein beta\n"
+      + "///\n";
+  
+  private static final String COMPOUND_C00001 = "ENTRY       C00001                      Compound\n"
+      + "NAME        H2O;\n"
+      + "            Water\n"
+      + "FORMULA     H2O\n"
+      + "///\n";
+  
+  private File directory;
+  
+  private KeggMirror mirror;
+  
+  /**
+   * @param name
+   * @param content
+   * @return the path of the new fixture file.
+   * @throws IOException
+   */
+  private String write(String name, String content) throws IOException {
+    File file = new File(directory, name);
+    FileWriter out = new FileWriter(file);
+    out.write(content);
+    out.close();
+    return file.getPath();
+  }
+  
+  /**
+   * @param dir
+   */
+  private static void delete(File dir) {
+    File[] files = dir.listFiles();
+    if (files != null) {
+      for (File file : files) {
+        delete(file);
+      }
+    }
+    dir.delete();
+  }
+  
+  @Before
+  public void setUp() throws IOException {
+    directory = File.createTempFile("kegg", "");
+    directory.delete();
+    directory.mkdirs();
+    mirror = new KeggMirror(new File(directory, "mirror"));
+    mirror.importEntries(write("hsa", GENE_10458 + "\n" + GENE_7529), "hsa");
+    mirror.importEntries(write("compound", COMPOUND_C00001), "compound");
+    mirror.importList(write("list_hsa", "hsa:10458\tBAIAP2, BAP2, IRSP53; BAR/IMD domain containing adaptor protein 2\n"
+        + "hsa:7529\tYWHAB, GW128; tyrosine 3-monooxygenase\n"), "hsa");
+    mirror.importList(write("list_compound", "cpd:C00001\tH2O; Water\ncpd:C00002\tATP; Adenosine 5'-triphosphate\n"), "compound");
+    mirror.importList(write("list_pathway_hsa", "path:hsa04110\tCell cycle - Homo sapiens (human)\n"
+        + "path:hsa04520\tAdherens junction - Homo sapiens (human)\n"), "pathway/hsa");
+    mirror.importLink(write("link_pathway_hsa", "hsa:7529\tpath:hsa04110\nhsa:10458\tpath:hsa04520\nhsa:7529\tpath:hsa04114\n"),
+      "pathway", "hsa");
+    mirror.importConv(write("conv_hsa_ncbi", "ncbi-geneid:10458\thsa:10458\nncbi-geneid:7529\thsa:7529\n"), "hsa", "ncbi-geneid");
+  }
+  
+  @After
+  public void tearDown() {
+    delete(directory);
+  }
+  
+  /**
+   * Test method for {@link KeggMirror#query(String, String...)} with the
+   * {@code get} operation.
+   */
+  @Test
+  public void testGet() {
+    assertEquals(GENE_7529 + GENE_10458, mirror.query("get", "hsa:7529+HSA:10458"));
+    assertEquals(COMPOUND_C00001, mirror.query("get", "cpd:C00001"));
+    assertEquals(COMPOUND_C00001, mirror.query("get", "compound:c00001"));
+    assertEquals(COMPOUND_C00001, mirror.query("get", "C00001"));
+    // imported database, unknown entry
+    assertEquals("", mirror.query("get", "hsa:1"));
+    // not imported database
+    assertNull(mirror.query("get", "mmu:436049"));
+    // unsupported option
+    assertNull(mirror.query("get", "hsa:10458", "aaseq"));
+  }
+  
+  /**
+   * Test method for the {@code list} and {@code find} operations.
+   */
+  @Test
+  public void testListAndFind() {
+    assertTrue(mirror.query("list", "compound").startsWith("cpd:C00001\tH2O; Water\n"));
+    assertEquals(mirror.query("list", "compound"), mirror.query("list", "cpd"));
+    assertEquals(2, mirror.query("list", "pathway", "hsa").split("\n").length);
+    assertEquals("hsa:7529\tYWHAB, GW128; tyrosine 3-monooxygenase\n", mirror.query("list", "hsa:7529"));
+    assertEquals("cpd:C00002\tATP; Adenosine 5'-triphosphate\ncpd:C00001\tH2O; Water\n", mirror.query("list", "C00002+cpd:C00001"));
+    assertEquals("path:hsa04110\tCell cycle - Homo sapiens (human)\n", mirror.query("list", "path:hsa04110"));
+    assertNull(mirror.query("list", "mmu"));
+    
+    assertEquals("hsa:10458\tBAIAP2, BAP2, IRSP53; BAR/IMD domain containing adaptor protein 2\n",
+      mirror.query("find", "genes", "bar/imd+BAIAP2"));
+    assertEquals("cpd:C00001\tH2O; Water\n", mirror.query("find", "compound", "water"));
+    assertEquals("", mirror.query("find", "compound", "glucose"));
+    assertNull(mirror.query("find", "reaction", "water"));
+  }
+  
+  /**
+   * Test method for the {@code conv} and {@code link} operations.
+   */
+  @Test
+  public void testConvAndLink() {
+    assertEquals("hsa:7529\tpath:hsa04110\nhsa:7529\tpath:hsa04114\nhsa:10458\tpath:hsa04520\n",
+      mirror.query("link", "pathway", "hsa:7529+hsa:10458"));
+    assertEquals("path:hsa04520\thsa:10458\n", mirror.query("link", "hsa", "path:hsa04520"));
+    assertEquals("", mirror.query("link", "compound", "hsa:7529"));
+    assertEquals(3, mirror.query("link", "pathway", "hsa").split("\n").length);
+    assertTrue(mirror.query("link", "hsa", "pathway").startsWith("path:hsa04110\thsa:7529\n"));
+    
+    assertEquals("ncbi-geneid:7529\thsa:7529\n", mirror.query("conv", "genes", "ncbi-geneid:7529"));
+    assertEquals("hsa:10458\tncbi-geneid:10458\n", mirror.query("conv", "ncbi-geneid", "hsa:10458"));
+    assertNull(mirror.query("conv", "compound", "chebi"));
+  }
+  
+  /**
+   * An imported mirror must be readable after re-opening.
+   * 
+   * @throws IOException
+   */
+  @Test
+  public void testReopen() throws IOException {
+    KeggMirror reopened = new KeggMirror(mirror.getDirectory());
+    assertEquals(3, reopened.getNumberOfEntries());
+    assertEquals(GENE_10458, reopened.query("get", "hsa:10458"));
+    assertEquals(mirror.query("link", "pathway", "hsa:7529"), reopened.query("link", "pathway", "hsa:7529"));
+    
+    // Replace an entry
+    String changed = GENE_10458.replace("BAIAP2, ", "");
+    reopened.importEntries(write("hsa_new", changed), "hsa");
+    assertEquals(changed, reopened.query("get", "hsa:10458"));
+    assertEquals(GENE_7529, reopened.query("get", "hsa:7529"));
+    
+    // Replace a table, the rows of the old table must not be found
+    reopened.importLink(write("link_pathway_hsa_new", "hsa:10458\tpath:hsa04520\n"), "pathway", "hsa");
+    assertEquals("", reopened.query("link", "pathway", "hsa:7529"));
+    assertEquals("path:hsa04520\thsa:10458\n", reopened.query("link", "hsa", "path:hsa04520"));
+    assertEquals("hsa:10458\tpath:hsa04520\n", new KeggMirror(mirror.getDirectory()).query("link", "pathway", "hsa:10458"));
+    assertFalse(new File(mirror.getDirectory(), KeggMirror.INDEX_FILE + ".tmp").exists());
+  }
+  
+  /**
+   * Test method for the methods of {@link KeggAdaptor}, answered by a
+   * {@link KeggMirrorAdaptor}.
+   */
+  @Test
+  public void testAdaptor() throws IOException {
+    KeggAdaptor adap = new KeggMirrorAdaptor(mirror);
+    assertEquals(GENE_10458, adap.get("HSA:10458"));
+    assertEquals("", adap.get("mmu:436049"));
+    assertEquals(Arrays.asList("path:hsa04110", "path:hsa04114"), Arrays.asList(adap.getPathwaysByGenes("hsa:7529")));
+    assertEquals("hsa:7529\tYWHAB, GW128; tyrosine 3-monooxygenase\n", adap.getIdentifier("hsa:7529"));
+    assertEquals("ncbi-geneid:10458\thsa:10458\n", adap.convert("genes", "NCBI-GeneID:10458"));
+    assertEquals(2, adap.getPathways("hsa").length);
+  }
+  
+}
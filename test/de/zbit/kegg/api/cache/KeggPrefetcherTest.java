@@ -0,0 +1,197 @@
+/*
+ * $Id$
+ * $URL$
+ * ---------------------------------------------------------------------
+ * This file is part of the SysBio API library.
+ *
+ * Copyright (C) 2009-2016 by the University of Tuebingen, Germany.
+ *
+ * This library is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation. A copy of the license
+ * agreement is provided in the file named "LICENSE.txt" included with
+ * this software distribution and also available online as
+ * <http://www.gnu.org/licenses/lgpl-3.0-standalone.html>.
+ * ---------------------------------------------------------------------
+ */
+package de.zbit.kegg.api.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.Test;
+
+import de.zbit.kegg.api.KeggAdaptor;
+
+/**
+ * Prefetches reactions and their compounds from a stub {@link KeggAdaptor}.
+ *
+ * @version $Rev$
+ * @since 1.4
+ */
+public class KeggPrefetcherTest {
+
+  /**
+   * Number of reactions.
+   */
+  private static final int REACTIONS = 25;
+
+  /**
+   * Answers every query without network access and records all queries.
+   */
+  private static class StubAdaptor extends KeggAdaptor {
+
+    /**
+     * Number of queries per identifier.
+     */
+    private final Map<String, Integer> fetched = new HashMap<String, Integer>();
+
+    /**
+     * Identifiers, for which the listener has been called.
+     */
+    private final Set<String> notified = Collections.synchronizedSet(new HashSet<String>());
+
+    /**
+     * Errors, that occurred within the worker threads.
+     */
+    private final List<String> errors = Collections.synchronizedList(new ArrayList<String>());
+
+    /**
+     * Number of running queries.
+     */
+    private int running = 0;
+
+    /* (non-Javadoc)
+     * @see de.zbit.kegg.api.KeggAdaptor#getWithReturnInformation(java.lang.String)
+     */
+    @Override
+    public String getWithReturnInformation(String ids) throws TimeoutException {
+      synchronized (this) {
+        if (++running > 1) {
+          errors.add("Concurrent queries: " + ids);
+        }
+      }
+      try {
+        // Give other queries a chance to interfere.
+        Thread.sleep(2);
+        StringBuilder sb = new StringBuilder();
+        for (String id : ids.split(" ")) {
+          synchronized (this) {
+            Integer count = fetched.get(id);
+            fetched.put(id, Integer.valueOf(count == null ? 1 : count.intValue() + 1));
+          }
+          if (id.startsWith("cpd:") && !id.equals("cpd:C00000")
+              && !notified.contains(getReaction(getNumber(id) - 1))
+              && !notified.contains(getReaction(getNumber(id)))) {
+            errors.add(id + " has been fetched before its reactions");
+          }
+          sb.append("ENTRY       ").append(id.substring(id.indexOf(':') + 1)).append("            Compound\n");
+          sb.append("NAME        ").append(id).append('\n');
+          sb.append("///\n");
+        }
+        return sb.toString();
+      } catch (InterruptedException exc) {
+        throw new TimeoutException(exc.getMessage());
+      } finally {
+        synchronized (this) {
+          running--;
+        }
+      }
+    }
+  }
+
+  /**
+   * @param i
+   * @return the identifier of the {@code i}th reaction.
+   */
+  private static String getReaction(int i) {
+    return String.format("rn:R%05d", Integer.valueOf(i));
+  }
+
+  /**
+   * @param i
+   * @return the identifier of the {@code i}th compound.
+   */
+  private static String getCompound(int i) {
+    return String.format("cpd:C%05d", Integer.valueOf(i));
+  }
+
+  /**
+   * @param id
+   * @return the number of a reaction or compound.
+   */
+  private static int getNumber(String id) {
+    return Integer.parseInt(id.substring(id.indexOf(':') + 2));
+  }
+
+  /**
+   * Test method for {@link KeggPrefetcher#submit(java.util.Collection)}.
+   * The {@code i}th reaction depends on the compounds {@code i} and
+   * {@code i + 1}, such that consecutive reactions share one compound.
+   *
+   * @throws Exception
+   */
+  @Test
+  public void testDependencies() throws Exception {
+    final StubAdaptor adaptor = new StubAdaptor();
+    KeggInfoManagement manager = new KeggInfoManagement(1000, adaptor);
+    final Map<String, Integer> listened = new HashMap<String, Integer>();
+    KeggPrefetcher fetcher = new KeggPrefetcher(manager, new KeggPrefetcher.Listener() {
+      /* (non-Javadoc)
+       * @see de.zbit.kegg.api.cache.KeggPrefetcher.Listener#fetched(java.lang.String, de.zbit.kegg.api.cache.KeggPrefetcher)
+       */
+      @Override
+      public void fetched(String id, KeggPrefetcher fetcher) {
+        synchronized (listened) {
+          Integer count = listened.get(id);
+          listened.put(id, Integer.valueOf(count == null ? 1 : count.intValue() + 1));
+        }
+        if (fetcher.get(id).getName() == null) {
+          adaptor.errors.add("No information about " + id);
+        }
+        if (id.startsWith("rn:")) {
+          adaptor.notified.add(id);
+          int i = getNumber(id);
+          fetcher.submit(Arrays.asList(getCompound(i), getCompound(i + 1)));
+        }
+      }
+    }, null, 4);
+
+    List<String> ids = new ArrayList<String>();
+    for (int i = 0; i < REACTIONS; i++) {
+      ids.add(getReaction(i));
+    }
+    // Submitted before its reaction, i.e., not a dependent identifier.
+    ids.add(getCompound(0));
+    fetcher.submit(ids);
+    // Identifiers, that have been submitted before, are ignored.
+    fetcher.submit(ids.subList(0, 5));
+    fetcher.awaitCompletion();
+
+    assertEquals(adaptor.errors.toString(), 0, adaptor.errors.size());
+    assertEquals(2 * REACTIONS + 1, adaptor.fetched.size());
+    for (Map.Entry<String, Integer> entry : adaptor.fetched.entrySet()) {
+      assertEquals(entry.getKey(), 1, entry.getValue().intValue());
+    }
+    assertEquals(adaptor.fetched, listened);
+    for (int i = 0; i <= REACTIONS; i++) {
+      assertTrue(getCompound(i), manager.getInformation(getCompound(i)) != null);
+    }
+    // All information has been cached.
+    assertEquals(2 * REACTIONS + 1, adaptor.fetched.size());
+    for (Integer count : adaptor.fetched.values()) {
+      assertEquals(1, count.intValue());
+    }
+  }
+
+}
@@ -0,0 +1,98 @@
+/*
+ * $Id$
+ * $URL$
+ * ---------------------------------------------------------------------
+ * This file is part of the SysBio API library.
+ *
+ * Copyright (C) 2009-2016 by the University of Tuebingen, Germany.
+ *
+ * This library is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation. A copy of the license
+ * agreement is provided in the file named "LICENSE.txt" included with
+ * this software distribution and also available online as
+ * <http://www.gnu.org/licenses/lgpl-3.0-standalone.html>.
+ * ---------------------------------------------------------------------
+ */
+package de.zbit.kegg.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+import de.zbit.kegg.io.KEGGtranslatorBatch.TimedTask;
+
+/**
+ * @version $Rev$
+ * @since 1.4
+ */
+public class KEGGtranslatorBatchTest {
+
+  /**
+   * A task that hangs must be cancelled after the timeout, even if other
+   * tasks keep finishing in the meantime.
+   */
+  @Test
+  public void testTimeoutWhileOtherTasksFinish() {
+    final AtomicLong cancelled = new AtomicLong();
+    final AtomicLong lastFinished = new AtomicLong();
+    List<TimedTask<Integer>> tasks = new ArrayList<TimedTask<Integer>>();
+    List<String> names = new ArrayList<String>();
+    tasks.add(new TimedTask<Integer>() {
+      /* (non-Javadoc)
+       * @see de.zbit.kegg.io.KEGGtranslatorBatch.TimedTask#process()
+       */
+      @Override
+      protected Integer process() throws Exception {
+        try {
+          Thread.sleep(60000);
+        } catch (InterruptedException e) {
+          cancelled.set(System.currentTimeMillis());
+          throw e;
+        }
+        return Integer.valueOf(-1);
+      }
+    });
+    names.add("hanging");
+    for (int i = 0; i < 40; i++) {
+      final int n = i;
+      tasks.add(new TimedTask<Integer>() {
+        /* (non-Javadoc)
+         * @see de.zbit.kegg.io.KEGGtranslatorBatch.TimedTask#process()
+         */
+        @Override
+        protected Integer process() throws Exception {
+          Thread.sleep(50);
+          lastFinished.set(System.currentTimeMillis());
+          return Integer.valueOf(n);
+        }
+      });
+      names.add("task" + i);
+    }
+
+    KEGGtranslatorBatch batch = new KEGGtranslatorBatch(null, null);
+    batch.setTimeout(200);
+    ExecutorService pool = Executors.newFixedThreadPool(2);
+    try {
+      List<Integer> results = batch.invokeAll(pool, names, tasks, "test");
+      assertEquals(tasks.size(), results.size());
+      assertNull(results.get(0));
+      for (int i = 1; i < results.size(); i++) {
+        assertEquals(Integer.valueOf(i - 1), results.get(i));
+      }
+      assertTrue(cancelled.get() > 0);
+      assertTrue(cancelled.get() < lastFinished.get());
+    } finally {
+      pool.shutdownNow();
+    }
+  }
+
+}
@@ -0,0 +1,148 @@
+/*
+ * $Id$
+ * $URL$
+ * ---------------------------------------------------------------------
+ * This file is part of the SysBio API library.
+ *
+ * Copyright (C) 2009-2016 by the University of Tuebingen, Germany.
+ *
+ * This library is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation. A copy of the license
+ * agreement is provided in the file named "LICENSE.txt" included with
+ * this software distribution and also available online as
+ * <http://www.gnu.org/licenses/lgpl-3.0-standalone.html>.
+ * ---------------------------------------------------------------------
+ */
+package de.zbit.kegg.parser;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.InputStreamReader;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import de.zbit.kegg.KGMLStreamWriter;
+import de.zbit.kegg.parser.pathway.Entry;
+import de.zbit.kegg.parser.pathway.Pathway;
+import de.zbit.kegg.parser.pathway.Reaction;
+import de.zbit.kegg.parser.pathway.ReactionComponent;
+import de.zbit.kegg.parser.pathway.ReactionType;
+import de.zbit.kegg.parser.pathway.Relation;
+
+/**
+ * Writes a parsed KGML document with the {@link KGMLStreamWriter} and parses
+ * the written document again.
+ *
+ * @version $Rev$
+ * @since 1.4
+ */
+public class KGMLStreamWriterTest {
+
+  /**
+   * A bundled KGML document.
+   */
+  private static final String KGML_FILE = "files/kgmlSample.xml";
+
+  /**
+   * @param expected
+   * @param actual
+   */
+  private static void assertSamePathway(Pathway expected, Pathway actual) {
+    assertEquals(expected.getName(), actual.getName());
+    assertEquals(expected.getEntries().size(), actual.getEntries().size());
+    for (int i = 0; i < expected.getEntries().size(); i++) {
+      Entry e = expected.getEntries().get(i);
+      Entry a = actual.getEntries().get(i);
+      assertEquals(e, a);
+      assertEquals(e.getGraphics(), a.getGraphics());
+      assertEquals(e.getMoreGraphics(), a.getMoreGraphics());
+      assertEquals(e.getClass(), a.getClass());
+    }
+    assertEquals(expected.getRelations().size(), actual.getRelations().size());
+    for (int i = 0; i < expected.getRelations().size(); i++) {
+      Relation r = expected.getRelations().get(i);
+      assertEquals(r, actual.getRelations().get(i));
+      assertEquals(r.toString(), actual.getRelations().get(i).toString());
+    }
+    assertEquals(expected.getReactions().size(), actual.getReactions().size());
+    for (int i = 0; i < expected.getReactions().size(); i++) {
+      Reaction r = expected.getReactions().get(i);
+      Reaction a = actual.getReactions().get(i);
+      assertEquals(r.getName(), a.getName());
+      assertEquals(r.getType(), a.getType());
+      assertEquals(r.getSubstrates().size(), a.getSubstrates().size());
+      assertEquals(r.getProducts().size(), a.getProducts().size());
+    }
+    for (int i = 0; i < expected.getReactions().size(); i++) {
+      Reaction r = expected.getReactions().get(i);
+      assertEquals(r.toString(), actual.getReactions().get(i).toString());
+    }
+    assertEquals(expected, actual);
+  }
+
+  /**
+   * Test method for {@link KGMLStreamWriter#write(Pathway, java.io.OutputStream, boolean)}.
+   *
+   * @throws Exception
+   */
+  @Test
+  public void testRoundTrip() throws Exception {
+    List<Pathway> parsed = KeggStreamParser.parse(KGML_FILE);
+    assertEquals(1, parsed.size());
+    Pathway expected = parsed.get(0);
+    assertEquals(136, expected.getEntries().size());
+    assertEquals(171, expected.getRelations().size());
+    // The sample does not contain any reactions.
+    Reaction r = new Reaction(expected, Integer.valueOf(2), "rn:R01602", ReactionType.reversible);
+    r.addSubstrate(new ReactionComponent(Integer.valueOf(1), "cpd:C00338"));
+    r.addProduct(new ReactionComponent(Integer.valueOf(7), "cpd:C00165"));
+    expected.addReaction(r);
+    r = new Reaction(expected, Integer.valueOf(3), "rn:R02740", ReactionType.irreversible);
+    r.addSubstrate(new ReactionComponent(Integer.valueOf(7), "cpd:C00165"));
+    r.addProduct(new ReactionComponent(Integer.valueOf(8), "cpd:C00575"));
+    expected.addReaction(r);
+
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    KGMLStreamWriter.write(expected, out, false);
+    List<Pathway> written = KeggStreamParser.parse(new InputStreamReader(
+      new ByteArrayInputStream(out.toByteArray()), "UTF-8"));
+    assertEquals(1, written.size());
+    assertSamePathway(expected, written.get(0));
+  }
+
+  /**
+   * Test method for {@link KGMLStreamWriter#write(List, File, boolean, int)}.
+   *
+   * @throws Exception
+   */
+  @Test
+  public void testWriteFiles() throws Exception {
+    Pathway expected = KeggStreamParser.parse(KGML_FILE).get(0);
+    File dir = File.createTempFile("KGMLStreamWriterTest", "");
+    dir.delete();
+    try {
+      List<File> files = KGMLStreamWriter.write(Arrays.asList(expected), dir, false, 2);
+      assertEquals(1, files.size());
+      assertTrue(files.get(0).exists());
+      List<Pathway> written = KeggStreamParser.parse(files.get(0).getPath());
+      assertEquals(1, written.size());
+      assertSamePathway(expected, written.get(0));
+    } finally {
+      File[] files = dir.listFiles();
+      if (files != null) {
+        for (File f : files) {
+          f.delete();
+        }
+      }
+      dir.delete();
+    }
+  }
+
+}
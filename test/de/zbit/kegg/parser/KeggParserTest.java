@@ -0,0 +1,96 @@
+/*
+ * $Id$
+ * $URL$
+ * ---------------------------------------------------------------------
+ * This file is part of the SysBio API library.
+ *
+ * Copyright (C) 2009-2016 by the University of Tuebingen, Germany.
+ *
+ * This library is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation. A copy of the license
+ * agreement is provided in the file named "LICENSE.txt" included with
+ * this software distribution and also available online as
+ * <http://www.gnu.org/licenses/lgpl-3.0-standalone.html>.
+ * ---------------------------------------------------------------------
+ */
+package de.zbit.kegg.parser;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Test;
+
+import de.zbit.kegg.parser.pathway.Entry;
+import de.zbit.kegg.parser.pathway.Pathway;
+import de.zbit.kegg.parser.pathway.Reaction;
+import de.zbit.kegg.parser.pathway.Relation;
+
+/**
+ * @version $Rev$
+ * @since 1.4
+ */
+public class KeggParserTest {
+
+  /**
+   * A bundled KGML document.
+   */
+  private static final String KGML_FILE = "files/kgmlSample.xml";
+
+  /**
+   * Restores the default settings.
+   */
+  @After
+  public void tearDown() {
+    KeggParser.useStreamingParser = true;
+    KeggParser.offlineVersion = false;
+  }
+
+  /**
+   * The {@link KeggStreamParser} must create the same {@link Pathway} as the
+   * DOM based {@link KeggParser}.
+   *
+   * @throws Exception
+   */
+  @Test
+  public void testStreamingParser() throws Exception {
+    KeggParser.useStreamingParser = true;
+    List<Pathway> streamed = KeggParser.parse(KGML_FILE);
+    // Do not download the DTD
+    KeggParser.useStreamingParser = false;
+    KeggParser.offlineVersion = true;
+    List<Pathway> dom = KeggParser.parse(KGML_FILE);
+
+    assertEquals(1, dom.size());
+    assertEquals(dom.size(), streamed.size());
+    Pathway expected = dom.get(0);
+    Pathway actual = streamed.get(0);
+    assertTrue(expected.getEntries().size() > 0);
+    assertTrue(expected.getRelations().size() > 0);
+    assertEquals(expected.getEntries().size(), actual.getEntries().size());
+    for (int i = 0; i < expected.getEntries().size(); i++) {
+      Entry e = expected.getEntries().get(i);
+      Entry a = actual.getEntries().get(i);
+      assertEquals(e, a);
+      assertEquals(e.getGraphics(), a.getGraphics());
+      assertEquals(e.getMoreGraphics(), a.getMoreGraphics());
+      assertEquals(e.getClass(), a.getClass());
+    }
+    assertEquals(expected.getRelations().size(), actual.getRelations().size());
+    for (int i = 0; i < expected.getRelations().size(); i++) {
+      Relation r = expected.getRelations().get(i);
+      assertEquals(r, actual.getRelations().get(i));
+      assertEquals(r.toString(), actual.getRelations().get(i).toString());
+    }
+    assertEquals(expected.getReactions().size(), actual.getReactions().size());
+    for (int i = 0; i < expected.getReactions().size(); i++) {
+      Reaction r = expected.getReactions().get(i);
+      assertEquals(r.toString(), actual.getReactions().get(i).toString());
+    }
+    assertEquals(expected, actual);
+  }
+
+}
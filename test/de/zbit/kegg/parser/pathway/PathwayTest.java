@@ -0,0 +1,185 @@
+/*
+ * $Id$
+ * $URL$
+ * ---------------------------------------------------------------------
+ * This file is part of the SysBio API library.
+ *
+ * Copyright (C) 2009-2016 by the University of Tuebingen, Germany.
+ *
+ * This library is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation. A copy of the license
+ * agreement is provided in the file named "LICENSE.txt" included with
+ * this software distribution and also available online as
+ * <http://www.gnu.org/licenses/lgpl-3.0-standalone.html>.
+ * ---------------------------------------------------------------------
+ */
+package de.zbit.kegg.parser.pathway;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Checks, that the entry index of a {@link Pathway} stays consistent with
+ * its entry list when entries are removed.
+ *
+ * @version $Rev$
+ * @since 1.4
+ */
+public class PathwayTest {
+
+  /**
+   * @param p
+   * @param id
+   * @param name
+   * @param reaction may be {@code null}.
+   * @return the new entry.
+   */
+  private static Entry addEntry(Pathway p, int id, String name, String reaction) {
+    Entry e = new Entry(p, id, name, EntryType.gene, null, reaction);
+    p.addEntry(e);
+    return e;
+  }
+
+  /**
+   * Creates a pathway with the entries 1 to 6. Entries 2 and 3 catalyze
+   * reactions, entries 4 and 5 share their name, and entry 6 has the
+   * maximum id.
+   *
+   * @return the pathway.
+   */
+  private static Pathway createPathway() {
+    Pathway p = new Pathway("path:hsa00010", "hsa", 10, "Glycolysis");
+    addEntry(p, 1, "hsa:1", null);
+    addEntry(p, 2, "hsa:2", "rn:R00001 rn:R00002");
+    addEntry(p, 3, "hsa:3", "rn:R00001");
+    addEntry(p, 4, "hsa:10 hsa:11", null);
+    addEntry(p, 5, "hsa:10 hsa:11", null);
+    addEntry(p, 6, "hsa:6", "rn:R00003");
+    return p;
+  }
+
+  /**
+   * @param p
+   * @return the ids of all entries.
+   */
+  private static List<Integer> getIds(Pathway p) {
+    List<Integer> ids = new ArrayList<Integer>();
+    for (Entry e : p.getEntries()) {
+      ids.add(Integer.valueOf(e.getId()));
+    }
+    return ids;
+  }
+
+  /**
+   * Checks the pathway after the entries 2, 4 and 6 have been removed.
+   *
+   * @param p
+   * @param removed the removed entries.
+   */
+  private static void checkRemoved(Pathway p, List<Entry> removed) {
+    assertEquals(Arrays.asList(Integer.valueOf(1), Integer.valueOf(3), Integer.valueOf(5)), getIds(p));
+    for (Entry e : p.getEntries()) {
+      assertSame(e, p.getEntryForId(e.getId()));
+      assertTrue(p.containsEntry(e));
+    }
+    for (Entry e : removed) {
+      assertNull(p.getEntryForId(e.getId()));
+      assertFalse(p.containsEntry(e));
+      assertEquals(Entry.removedNodeName, e.getName());
+    }
+    assertEquals(5, p.getMaxEntryId());
+
+    Entry e3 = p.getEntryForId(3);
+    Entry e5 = p.getEntryForId(5);
+    assertEquals(Collections.singleton(e3), new HashSet<Entry>(p.getReactionModifiers("rn:R00001")));
+    assertNull(p.getReactionModifiers("rn:R00002"));
+    assertNull(p.getReactionModifiers("rn:R00003"));
+
+    // The entry with the same name is still found by its whole and split name.
+    for (String name : new String[] {"hsa:10 hsa:11", "hsa:10", "hsa:11"}) {
+      Collection<Entry> entries = p.getEntriesForName(name);
+      assertEquals(name, Collections.singleton(e5), new HashSet<Entry>(entries));
+    }
+    assertNull(p.getEntriesForName("hsa:2"));
+    assertNull(p.getEntriesForName("hsa:6"));
+    assertNull(p.getEntriesForName(Entry.removedNodeName));
+  }
+
+  /**
+   * Test method for {@link Pathway#removeEntries(Collection)}.
+   */
+  @Test
+  public void testRemoveEntries() {
+    Pathway p = createPathway();
+    List<Entry> removed = Arrays.asList(p.getEntryForId(6), p.getEntryForId(2), p.getEntryForId(4));
+    List<Entry> toRemove = new ArrayList<Entry>(removed);
+    // Duplicates and entries of other pathways are ignored.
+    toRemove.add(p.getEntryForId(2));
+    Pathway other = createPathway();
+    toRemove.add(other.getEntryForId(1));
+    p.removeEntries(toRemove);
+    checkRemoved(p, removed);
+    assertEquals(6, other.getEntries().size());
+    assertSame(other.getEntries().get(0), other.getEntryForId(1));
+
+    // Removing nothing changes nothing.
+    p.removeEntries(new ArrayList<Entry>());
+    p.removeEntries(removed);
+    checkRemoved(p, removed);
+
+    // Ids of removed entries can be used again.
+    Entry e6 = addEntry(p, 6, "hsa:6", "rn:R00003");
+    assertSame(e6, p.getEntryForId(6));
+    assertEquals(6, p.getMaxEntryId());
+    assertEquals(Collections.singleton(e6), new HashSet<Entry>(p.getReactionModifiers("rn:R00003")));
+
+    p.removeEntries(new ArrayList<Entry>(p.getEntries()));
+    assertTrue(p.getEntries().isEmpty());
+    assertEquals(0, p.getMaxEntryId());
+    assertNull(p.getEntryForId(1));
+    assertNull(p.getReactionModifiers("rn:R00001"));
+    assertNull(p.getEntriesForName("hsa:10"));
+  }
+
+  /**
+   * Test method for {@link Pathway#removeEntry(Entry)}, which must lead to
+   * the same state as {@link Pathway#removeEntries(Collection)}.
+   */
+  @Test
+  public void testRemoveEntry() {
+    Pathway p = createPathway();
+    List<Entry> removed = Arrays.asList(p.getEntryForId(6), p.getEntryForId(2), p.getEntryForId(4));
+    for (Entry e : removed) {
+      p.removeEntry(e);
+    }
+    checkRemoved(p, removed);
+  }
+
+  /**
+   * Entries, that share an id, must not remove each other from the index.
+   */
+  @Test
+  public void testRemoveEntryWithSharedId() {
+    Pathway p = createPathway();
+    Entry e1 = p.getEntryForId(1);
+    Entry duplicate = addEntry(p, 1, "hsa:100", null);
+    assertSame(duplicate, p.getEntryForId(1));
+    p.removeEntries(Collections.singleton(e1));
+    assertSame(duplicate, p.getEntryForId(1));
+    assertTrue(p.containsEntry(duplicate));
+  }
+
+}
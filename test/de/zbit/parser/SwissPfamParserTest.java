@@ -16,12 +16,186 @@
  */
 package de.zbit.parser;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
 /**
+ * Parses a small synthetic swisspfam file, whose records are split into
+ * several tasks.
  * 
  * @version $Rev$
  */
 public class SwissPfamParserTest {
   
+  /**
+   * A bundled swisspfam file.
+   */
+  private static final String PFAM_FILE = "files/swisspfamSample.txt";
+  
+  /**
+   * Directory of the output files.
+   */
+  private File dir;
+  
+  @Before
+  public void setUp() {
+    dir = new File(System.getProperty("java.io.tmpdir"), "SwissPfamParserTest" + System.nanoTime());
+    dir.mkdirs();
+  }
+  
+  @After
+  public void tearDown() {
+    File[] files = dir.listFiles();
+    if (files != null) {
+      for (File f : files) {
+        f.delete();
+      }
+    }
+    dir.delete();
+  }
+  
+  /**
+   * @param name
+   * @return the path of a new output file.
+   */
+  private String getPath(String name) {
+    return new File(dir, name).getPath();
+  }
+  
+  /**
+   * @param path
+   * @return all lines of the given file.
+   * @throws IOException
+   */
+  private static List<String> readLines(String path) throws IOException {
+    List<String> lines = new ArrayList<String>();
+    BufferedReader br = new BufferedReader(new FileReader(path));
+    try {
+      String line;
+      while ((line = br.readLine()) != null) {
+        lines.add(line);
+      }
+    } finally {
+      br.close();
+    }
+    return lines;
+  }
+  
+  /**
+   * @param species
+   * @param includeAC
+   * @param includeBPNo
+   * @param includePBDomains
+   * @param numberOfThreads
+   * @param linesPerTask
+   * @return the lines written by
+   * {@link SwisspfamParser#parseFile(String, String, String, boolean, boolean, boolean, int)}.
+   * @throws IOException
+   */
+  private List<String> parse(String species, boolean includeAC, boolean includeBPNo,
+    boolean includePBDomains, int numberOfThreads, int linesPerTask) throws IOException {
+    String out = getPath("prot_dom" + System.nanoTime() + ".txt");
+    SwisspfamParser sp = new SwisspfamParser();
+    sp.linesPerTask = linesPerTask;
+    sp.parseFile(PFAM_FILE, out, species, includeAC, includeBPNo, includePBDomains, numberOfThreads);
+    return readLines(out);
+  }
+  
+  /**
+   * Test method for
+   * {@link SwisspfamParser#parseFile(String, String, String, boolean, boolean, boolean, int)}
+   * with all columns and domains.
+   * 
+   * @throws IOException
+   */
+  @Test
+  public void testParseFile() throws IOException {
+    List<String> lines = parse(null, true, true, true, 1, 1000);
+    assertEquals(22, lines.size());
+    assertEquals("006L_IIV6\tQ91G88\tPF12299\t231\t324", lines.get(0));
+    assertEquals("006L_IIV6\tQ91G88\tPF04383\t19\t126", lines.get(1));
+    // Several ranges of one domain
+    assertEquals("11011_ASFM2\tP0C9J5\tPF01639\t1\t111", lines.get(2));
+    assertEquals("11011_ASFM2\tP0C9J5\tPF01639\t165\t274", lines.get(3));
+    assertTrue(lines.contains("A4_HUMAN\tP05067\tPB001234\t330\t340"));
+    assertTrue(lines.contains("NOHIT_HUMAN\tQ00000\tPB000009\t1\t100"));
+    
+    lines = parse(null, false, false, false, 1, 1000);
+    assertEquals("006L_IIV6\tPF12299\t", lines.get(0));
+    assertEquals("11011_ASFM2\tPF01639\t", lines.get(2));
+    for (String line : lines) {
+      assertFalse(line, line.contains("\tPB") || line.startsWith("NOHIT_HUMAN"));
+    }
+  }
+  
+  /**
+   * Test method for
+   * {@link SwisspfamParser#parseFile(String, String, String, boolean, boolean, boolean, int)}
+   * with one or several threads, and tasks of different sizes.
+   * 
+   * @throws IOException
+   */
+  @Test
+  public void testThreads() throws IOException {
+    for (boolean includeAC : new boolean[] {false, true}) {
+      for (boolean includeBPNo : new boolean[] {false, true}) {
+        for (boolean includePBDomains : new boolean[] {false, true}) {
+          List<String> expected = parse(null, includeAC, includeBPNo, includePBDomains, 1, 1000);
+          assertFalse(expected.isEmpty());
+          // Tasks are split at every, at some, or at no header line.
+          for (int linesPerTask : new int[] {1, 3, 7}) {
+            for (int threads : new int[] {1, 2, 4}) {
+              String msg = includeAC + ", " + includeBPNo + ", " + includePBDomains
+                  + ", lines: " + linesPerTask + ", threads: " + threads;
+              assertEquals(msg, expected, parse(null, includeAC, includeBPNo, includePBDomains, threads, linesPerTask));
+            }
+          }
+        }
+      }
+    }
+  }
+  
+  /**
+   * Compares the species filter of
+   * {@link SwisspfamParser#parseFile(String, String, String, boolean, boolean, boolean, int)}
+   * with {@link SwisspfamParser#getSpeciesProtDomFile(String, String, String)}.
+   * 
+   * @throws IOException
+   */
+  @Test
+  public void testSpecies() throws IOException {
+    SwisspfamParser sp = new SwisspfamParser();
+    for (boolean includeAC : new boolean[] {false, true}) {
+      String all = getPath("prot_dom_" + includeAC + ".txt");
+      sp.parseFile(PFAM_FILE, all, null, includeAC, true, true, 1);
+      for (String species : new String[] {"_HUMAN", "_MOUSE", "_IIV6", "_YEAST"}) {
+        String filtered = getPath("prot_dom_" + includeAC + species + ".txt");
+        sp.getSpeciesProtDomFile(all, filtered, species);
+        List<String> expected = readLines(filtered);
+        assertEquals(includeAC + species, expected, parse(species, includeAC, true, true, 3, 3));
+        for (String line : expected) {
+          assertTrue(line, line.substring(0, line.indexOf('\t')).endsWith(species));
+        }
+      }
+    }
+    List<String> human = parse("_HUMAN", false, true, true, 2, 1);
+    assertTrue(human.contains("ABL1_HUMAN\tPB000777\t600\t700"));
+    assertFalse(human.toString(), human.toString().contains("_HUMANX"));
+    assertEquals(3, parse("_IIV6", false, true, true, 2, 1).size());
+  }
+  
   /**
    * @param args
    */
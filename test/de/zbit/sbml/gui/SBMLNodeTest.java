@@ -0,0 +1,122 @@
+/*
+ * $Id$
+ * $URL$
+ * ---------------------------------------------------------------------
+ * This file is part of the SysBio API library.
+ *
+ * Copyright (C) 2009-2016 by the University of Tuebingen, Germany.
+ *
+ * This library is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation. A copy of the license
+ * agreement is provided in the file named "LICENSE.txt" included with
+ * this software distribution and also available online as
+ * <http://www.gnu.org/licenses/lgpl-3.0-standalone.html>.
+ * ---------------------------------------------------------------------
+ */
+package de.zbit.sbml.gui;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.sbml.jsbml.Compartment;
+import org.sbml.jsbml.Model;
+import org.sbml.jsbml.SBMLDocument;
+import org.sbml.jsbml.Species;
+
+/**
+ * Tests the pages of long {@link org.sbml.jsbml.ListOf}s.
+ * 
+ * @version $Rev$
+ * @since 1.4
+ */
+public class SBMLNodeTest {
+  
+  private int pageSize;
+  private Model model;
+  private Compartment compartment;
+  private SBMLNode listNode;
+  
+  @Before
+  public void setUp() {
+    pageSize = SBMLNode.getPageSize();
+    SBMLNode.setPageSize(2);
+    SBMLDocument doc = new SBMLDocument(3, 1);
+    model = doc.createModel("m1");
+    compartment = model.createCompartment("c1");
+    for (int i = 1; i <= 5; i++) {
+      model.createSpecies("s" + i, compartment);
+    }
+    listNode = new SBMLNode(model.getListOfSpecies());
+  }
+  
+  @After
+  public void tearDown() {
+    SBMLNode.setPageSize(pageSize);
+  }
+  
+  /**
+   * Creates the nodes of all pages.
+   * 
+   * @return the ids of the species on all pages.
+   */
+  private List<String> getDisplayedIds() {
+    List<String> ids = new ArrayList<String>();
+    for (int i = 0; i < listNode.getChildCount(); i++) {
+      SBMLNode page = (SBMLNode) listNode.getChildAt(i);
+      assertTrue(page.isPage());
+      assertTrue(page.getChildCount() <= 2);
+      for (int j = 0; j < page.getChildCount(); j++) {
+        ids.add(((Species) ((SBMLNode) page.getChildAt(j)).getUserObject()).getId());
+      }
+    }
+    return ids;
+  }
+  
+  /**
+   * Removed elements must not shift the following elements out of their
+   * pages, regardless whether their page has been expanded or not.
+   */
+  @Test
+  public void testRemove() {
+    assertEquals(Arrays.asList("s1", "s2", "s3", "s4", "s5"), getDisplayedIds());
+    assertEquals(3, listNode.getChildCount());
+    
+    // The node of s2 exists
+    model.removeSpecies("s2");
+    assertEquals(2, listNode.getChildCount());
+    
+    // Only the pages, but no element nodes exist
+    model.removeSpecies("s4");
+    assertEquals(Arrays.asList("s1", "s3", "s5"), getDisplayedIds());
+    
+    // Short lists are not split
+    model.removeSpecies("s1");
+    assertEquals(2, listNode.getChildCount());
+    assertFalse(((SBMLNode) listNode.getChildAt(0)).isPage());
+  }
+  
+  /**
+   * Added elements appear on the pages, without the node of the list
+   * listening to them.
+   */
+  @Test
+  public void testAdd() {
+    getDisplayedIds();
+    model.removeSpecies("s5");
+    assertEquals(2, listNode.getChildCount());
+    Species s6 = model.createSpecies("s6", compartment);
+    assertFalse(s6.getListOfTreeNodeChangeListeners().contains(listNode));
+    assertEquals(Arrays.asList("s1", "s2", "s3", "s4", "s6"), getDisplayedIds());
+    assertEquals(3, listNode.getChildCount());
+  }
+  
+}
@@ -0,0 +1,227 @@
+/*
+ * $Id$
+ * $URL$
+ * ---------------------------------------------------------------------
+ * This file is part of the SysBio API library.
+ *
+ * Copyright (C) 2009-2016 by the University of Tuebingen, Germany.
+ *
+ * This library is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation. A copy of the license
+ * agreement is provided in the file named "LICENSE.txt" included with
+ * this software distribution and also available online as
+ * <http://www.gnu.org/licenses/lgpl-3.0-standalone.html>.
+ * ---------------------------------------------------------------------
+ */
+package de.zbit.sbml.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.sbml.jsbml.ext.qual.QualConstants;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+/**
+ * Builds a network from a small excerpt of the TRANSFAC extraction files
+ * (see files/transfacExtractionScripts). It contains genes and factors of
+ * another organism and a binding site of an unknown gene, which must be
+ * skipped.
+ * 
+ * @version $Rev$
+ * @since 1.4
+ */
+public class TransfacQualNetworkBuilderTest {
+  
+  private static final String DIR = "files/transfacSample/";
+  
+  private TransfacQualNetworkBuilder builder;
+  
+  /**
+   * The written qualitative species, name by id.
+   */
+  private Map<String, String> species;
+  
+  /**
+   * The written transitions: the inputs and outputs of every transition,
+   * as "id species effect".
+   */
+  private Map<String, List<String>> transitions;
+  
+  @Before
+  public void setUp() throws Exception {
+    builder = new TransfacQualNetworkBuilder("Test", "test", "human");
+    builder.build(DIR + "genesAnnotation.txt", DIR + "bindingFactors.txt", DIR + "bindingSites.txt");
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    builder.write(out);
+    
+    DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+    factory.setNamespaceAware(true);
+    Document doc = factory.newDocumentBuilder().parse(new ByteArrayInputStream(out.toByteArray()));
+    String ns = QualConstants.namespaceURI;
+    
+    species = new LinkedHashMap<String, String>();
+    NodeList list = doc.getElementsByTagNameNS(ns, "qualitativeSpecies");
+    for (int i = 0; i < list.getLength(); i++) {
+      Element qs = (Element) list.item(i);
+      species.put(qs.getAttributeNS(ns, "id"), qs.getAttributeNS(ns, "name"));
+    }
+    
+    transitions = new LinkedHashMap<String, List<String>>();
+    list = doc.getElementsByTagNameNS(ns, "transition");
+    for (int i = 0; i < list.getLength(); i++) {
+      Element t = (Element) list.item(i);
+      List<String> elements = new ArrayList<String>();
+      for (String type : new String[] {"input", "output"}) {
+        NodeList io = t.getElementsByTagNameNS(ns, type);
+        for (int j = 0; j < io.getLength(); j++) {
+          Element e = (Element) io.item(j);
+          elements.add(type + ' ' + e.getAttributeNS(ns, "id") + ' '
+              + e.getAttributeNS(ns, "qualitativeSpecies") + ' '
+              + e.getAttributeNS(ns, "transitionEffect"));
+        }
+      }
+      transitions.put(t.getAttributeNS(ns, "id"), elements);
+    }
+  }
+  
+  /**
+   * @param id
+   * @param expected
+   */
+  private void assertTransition(String id, String... expected) {
+    List<String> elements = transitions.get(id);
+    assertEquals(id, expected.length, elements.size());
+    for (int i = 0; i < expected.length; i++) {
+      assertEquals(expected[i], elements.get(i));
+    }
+  }
+  
+  /**
+   * Test method for {@link TransfacQualNetworkBuilder#getSpeciesCount()}
+   * and the written species.
+   */
+  @Test
+  public void testSpecies() {
+    assertEquals(10, builder.getSpeciesCount());
+    assertEquals(10, species.size());
+    // Transcription factors in file order, genes when they are first used
+    String[][] expected = {{"qs5", "p53"}, {"qs0", "tp53"}, {"qs6", "c-Jun"},
+        {"qs3", "jun"}, {"qs7", "c-Fos"}, {"qs4", "fos"}, {"qs8", "AP-1"},
+        {"qs9", "p53-iso"}, {"qs1", "mdm2"}, {"qs2", "cdkn1a"}};
+    int i = 0;
+    for (Map.Entry<String, String> entry : species.entrySet()) {
+      assertEquals(expected[i][0], entry.getKey());
+      assertEquals(expected[i][1], entry.getValue());
+      i++;
+    }
+  }
+  
+  /**
+   * Test method for {@link TransfacQualNetworkBuilder#getTransitionCount()}
+   * and the written transitions.
+   */
+  @Test
+  public void testTransitions() {
+    assertEquals(9, builder.getTransitionCount());
+    assertEquals(9, transitions.size());
+    
+    // Encoding genes
+    assertTransition("tr0", "input tr0qs0 qs0 consumption", "output tr0qs5 qs5 production");
+    assertTransition("tr1", "input tr1qs3 qs3 consumption", "output tr1qs6 qs6 production");
+    assertTransition("tr2", "input tr2qs4 qs4 consumption", "output tr2qs7 qs7 production");
+    
+    // Complex AP-1 of c-Jun and c-Fos
+    assertTransition("cx3", "input cx3qs6input qs6 consumption",
+      "input cx3qs7input qs7 consumption", "output cx3qs8output qs8 production");
+    
+    // Interaction of c-Jun and c-Fos, only once
+    assertTransition("int4", "input int4qs6input_human qs6 consumption",
+      "input int4qs7input_human qs7 consumption",
+      "output int4qs6output_human qs6 production",
+      "output int4qs7output_human qs7 production");
+    
+    // Super family
+    assertTransition("sf5", "input sf5T00001 qs5 none", "output sf5T00006 qs9 assignmentLevel");
+    
+    // Regulations, the second binding site of p53 at MDM2 is merged
+    assertTransition("reg6", "input reg6qs5input qs5 none", "output reg6qs1output qs1 assignmentLevel");
+    assertTransition("reg7", "input reg7qs5input qs5 none", "output reg7qs2output qs2 assignmentLevel");
+    assertTransition("reg8", "input reg8qs8input qs8 none", "output reg8qs2output qs2 assignmentLevel");
+  }
+  
+  /**
+   * @return {@code true} if a thread is still running the builder.
+   */
+  private static boolean isBuilderThreadAlive() {
+    for (StackTraceElement[] trace : Thread.getAllStackTraces().values()) {
+      for (StackTraceElement element : trace) {
+        if (element.getClassName().startsWith(TransfacQualNetworkBuilder.class.getName() + '$')) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+  
+  /**
+   * A failed build must not leave the binding sites reader blocked on the
+   * full queue.
+   * 
+   * @throws Exception
+   */
+  @Test
+  public void testMalformedGenesFile() throws Exception {
+    File genes = File.createTempFile("genesAnnotation", ".txt");
+    File sites = File.createTempFile("bindingSites", ".txt");
+    try {
+      Writer w = new FileWriter(genes);
+      w.write("gene_ac\tgene_name\torganism\tannotation\n");
+      for (int i = 0; i < 100000; i++) {
+        w.write(String.format("G%06d\tGENE%d\thuman\tnone\n", i, i));
+      }
+      w.write("G999999\tmissing columns\n");
+      w.close();
+      w = new FileWriter(sites);
+      w.write("regulation_ac\tregulation_id\torganism\tregulated_gene_ac\tregulated_gene_name\tbinding_factors\tannotation\n");
+      for (int i = 0; i < 10000; i++) {
+        w.write(String.format("R%05d\tHS$GENE%d_01\thuman\tG%06d\tGENE%d\tT00001\tnone\n", i, i, i, i));
+      }
+      w.close();
+      
+      try {
+        new TransfacQualNetworkBuilder("Test", "test", "human").build(genes.getPath(),
+          DIR + "bindingFactors.txt", sites.getPath());
+        fail("malformed genes file accepted");
+      } catch (IOException exc) {
+        // expected
+      }
+      for (int i = 0; (i < 50) && isBuilderThreadAlive(); i++) {
+        Thread.sleep(100);
+      }
+      assertFalse(isBuilderThreadAlive());
+    } finally {
+      genes.delete();
+      sites.delete();
+    }
+  }
+  
+}
@@ -0,0 +1,235 @@
+/*
+ * $Id$
+ * $URL$
+ * ---------------------------------------------------------------------
+ * This file is part of the SysBio API library.
+ *
+ * Copyright (C) 2009-2016 by the University of Tuebingen, Germany.
+ *
+ * This library is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation. A copy of the license
+ * agreement is provided in the file named "LICENSE.txt" included with
+ * this software distribution and also available online as
+ * <http://www.gnu.org/licenses/lgpl-3.0-standalone.html>.
+ * ---------------------------------------------------------------------
+ */
+package de.zbit.sbml.layout;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+import org.sbml.jsbml.Compartment;
+import org.sbml.jsbml.Model;
+import org.sbml.jsbml.Reaction;
+import org.sbml.jsbml.SBMLDocument;
+import org.sbml.jsbml.Species;
+import org.sbml.jsbml.ext.layout.BoundingBox;
+import org.sbml.jsbml.ext.layout.CompartmentGlyph;
+import org.sbml.jsbml.ext.layout.Layout;
+import org.sbml.jsbml.ext.layout.LayoutConstants;
+import org.sbml.jsbml.ext.layout.LayoutModelPlugin;
+import org.sbml.jsbml.ext.layout.ReactionGlyph;
+import org.sbml.jsbml.ext.layout.SpeciesGlyph;
+import org.sbml.jsbml.ext.layout.SpeciesReferenceGlyph;
+import org.sbml.jsbml.ext.layout.TextGlyph;
+
+import de.zbit.sbml.layout.ForceDirectedLayoutAlgorithm.Body;
+import de.zbit.sbml.layout.ForceDirectedLayoutAlgorithm.QuadTree;
+
+/**
+ * @version $Rev$
+ * @since 1.4
+ */
+public class ForceDirectedLayoutAlgorithmTest {
+
+  /**
+   * Number of species per compartment.
+   */
+  private static final int SPECIES = 6;
+
+  /**
+   * Creates a model with two compartments, each with a chain of reactions
+   * between its species, and one reaction between both compartments. The
+   * compartment glyphs are layouted next to each other, all other glyphs are
+   * not layouted.
+   *
+   * @return the layout of the model.
+   */
+  private static Layout createLayout() {
+    SBMLDocument doc = new SBMLDocument(3, 1);
+    Model model = doc.createModel("model");
+    for (String c : new String[] {"c1", "c2"}) {
+      Compartment compartment = model.createCompartment(c);
+      compartment.setConstant(true);
+      for (int i = 0; i < SPECIES; i++) {
+        Species s = model.createSpecies(c + "_s" + i, compartment);
+        if (i > 0) {
+          createReaction(model, c + "_r" + i, c + "_s" + (i - 1), s.getId());
+        }
+      }
+    }
+    createReaction(model, "transport", "c1_s0", "c2_s0");
+    new GlyphCreator(model).create();
+
+    String namespace = LayoutConstants.getNamespaceURI(model.getLevel(), model.getVersion());
+    Layout layout = ((LayoutModelPlugin) model.getExtension(namespace)).getLayout(0);
+    double x = 0d;
+    for (CompartmentGlyph cg : layout.getListOfCompartmentGlyphs()) {
+      BoundingBox bb = cg.isSetBoundingBox() ? cg.getBoundingBox() : cg.createBoundingBox();
+      bb.createPosition(x, 0d, 0d);
+      bb.createDimensions(400d, 400d, 1d);
+      x += 500d;
+    }
+    return layout;
+  }
+
+  /**
+   * @param model
+   * @param id
+   * @param reactant
+   * @param product
+   */
+  private static void createReaction(Model model, String id, String reactant, String product) {
+    Reaction r = model.createReaction(id);
+    r.setReversible(false);
+    r.setFast(false);
+    r.createReactant(model.getSpecies(reactant)).setConstant(false);
+    r.createProduct(model.getSpecies(product)).setConstant(false);
+  }
+
+  /**
+   * Passes all glyphs to the algorithm, in the same way as the
+   * {@link LayoutDirector}, and completes them.
+   *
+   * @param layout
+   * @param seed
+   */
+  private static void layout(Layout layout, long seed) {
+    ForceDirectedLayoutAlgorithm algorithm = new ForceDirectedLayoutAlgorithm(100, 1);
+    algorithm.setSeed(seed);
+    algorithm.setLayout(layout);
+    for (CompartmentGlyph cg : layout.getListOfCompartmentGlyphs()) {
+      algorithm.addLayoutedGlyph(cg);
+    }
+    for (SpeciesGlyph sg : layout.getListOfSpeciesGlyphs()) {
+      algorithm.addUnlayoutedGlyph(sg);
+    }
+    if (layout.isSetListOfTextGlyphs()) {
+      for (TextGlyph tg : layout.getListOfTextGlyphs()) {
+        algorithm.addUnlayoutedGlyph(tg);
+      }
+    }
+    for (ReactionGlyph rg : layout.getListOfReactionGlyphs()) {
+      algorithm.addUnlayoutedGlyph(rg);
+      for (SpeciesReferenceGlyph srg : rg.getListOfSpeciesReferenceGlyphs()) {
+        algorithm.addUnlayoutedEdge(srg, rg);
+      }
+    }
+    algorithm.completeGlyphs();
+  }
+
+  /**
+   * @param layout
+   * @return the positions of all species glyphs.
+   */
+  private static List<Double> getPositions(Layout layout) {
+    List<Double> positions = new ArrayList<Double>();
+    for (SpeciesGlyph sg : layout.getListOfSpeciesGlyphs()) {
+      positions.add(Double.valueOf(sg.getBoundingBox().getPosition().getX()));
+      positions.add(Double.valueOf(sg.getBoundingBox().getPosition().getY()));
+    }
+    return positions;
+  }
+
+  /**
+   * Layouts with the same seed must be equal, also if the algorithm is
+   * reused.
+   */
+  @Test
+  public void testDeterminism() {
+    Layout a = createLayout(), b = createLayout(), c = createLayout();
+    layout(a, 42L);
+    layout(b, 42L);
+    layout(c, 43L);
+    assertEquals(getPositions(a), getPositions(b));
+    assertFalse(getPositions(a).equals(getPositions(c)));
+  }
+
+  /**
+   * Species glyphs must remain within their layouted compartment glyphs.
+   */
+  @Test
+  public void testFixedCompartments() {
+    Layout layout = createLayout();
+    layout(layout, 0L);
+    Model model = layout.getModel();
+    assertEquals(2 * SPECIES, model.getSpeciesCount());
+    for (SpeciesGlyph sg : layout.getListOfSpeciesGlyphs()) {
+      String compartment = model.getSpecies(sg.getSpecies()).getCompartment();
+      CompartmentGlyph cg = null;
+      for (CompartmentGlyph g : layout.getListOfCompartmentGlyphs()) {
+        if (g.getCompartment().equals(compartment)) {
+          cg = g;
+        }
+      }
+      BoundingBox outer = cg.getBoundingBox();
+      BoundingBox inner = sg.getBoundingBox();
+      double x = inner.getPosition().getX(), y = inner.getPosition().getY();
+      assertTrue(sg.getId(), x >= outer.getPosition().getX());
+      assertTrue(sg.getId(), y >= outer.getPosition().getY());
+      assertTrue(sg.getId(), x + inner.getDimensions().getWidth()
+        <= outer.getPosition().getX() + outer.getDimensions().getWidth());
+      assertTrue(sg.getId(), y + inner.getDimensions().getHeight()
+        <= outer.getPosition().getY() + outer.getDimensions().getHeight());
+    }
+  }
+
+  /**
+   * The repulsive forces computed with the quadtree must equal those of all
+   * pairs of bodies, if no cell is approximated, and must be close to them
+   * with the default approximation.
+   */
+  @Test
+  public void testQuadTreeForces() {
+    Random rnd = new Random(1L);
+    List<Body> bodies = new ArrayList<Body>();
+    for (int i = 0; i < 60; i++) {
+      Body body = new Body(null, false);
+      body.x = rnd.nextDouble() * 500d;
+      body.y = rnd.nextDouble() * 500d;
+      bodies.add(body);
+    }
+    double k2 = 100d * 100d;
+    QuadTree tree = ForceDirectedLayoutAlgorithm.buildTree(bodies);
+    for (Body b : bodies) {
+      double fx = 0d, fy = 0d, magnitude = 0d;
+      for (Body other : bodies) {
+        if (other != b) {
+          double dx = b.x - other.x, dy = b.y - other.y;
+          double d2 = dx * dx + dy * dy;
+          fx += dx * k2 / d2;
+          fy += dy * k2 / d2;
+          magnitude += k2 / Math.sqrt(d2);
+        }
+      }
+      b.fx = 0d;
+      b.fy = 0d;
+      tree.repulse(b, k2, 0d);
+      assertEquals(fx, b.fx, 1E-9 * magnitude);
+      assertEquals(fy, b.fy, 1E-9 * magnitude);
+
+      b.fx = 0d;
+      b.fy = 0d;
+      tree.repulse(b, k2, ForceDirectedLayoutAlgorithm.THETA);
+      assertTrue(Math.sqrt((b.fx - fx) * (b.fx - fx) + (b.fy - fy) * (b.fy - fy)) < 0.05d * magnitude);
+    }
+  }
+
+}
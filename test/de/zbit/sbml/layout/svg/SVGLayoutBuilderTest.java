@@ -0,0 +1,214 @@
+/*
+ * $Id$
+ * $URL$
+ * ---------------------------------------------------------------------
+ * This file is part of the SysBio API library.
+ *
+ * Copyright (C) 2009-2016 by the University of Tuebingen, Germany.
+ *
+ * This library is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation. A copy of the license
+ * agreement is provided in the file named "LICENSE.txt" included with
+ * this software distribution and also available online as
+ * <http://www.gnu.org/licenses/lgpl-3.0-standalone.html>.
+ * ---------------------------------------------------------------------
+ */
+package de.zbit.sbml.layout.svg;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import org.junit.Test;
+import org.sbml.jsbml.Compartment;
+import org.sbml.jsbml.Model;
+import org.sbml.jsbml.Reaction;
+import org.sbml.jsbml.SBMLDocument;
+import org.sbml.jsbml.SBO;
+import org.sbml.jsbml.Species;
+import org.sbml.jsbml.ext.layout.BoundingBox;
+import org.sbml.jsbml.ext.layout.CompartmentGlyph;
+import org.sbml.jsbml.ext.layout.Layout;
+import org.sbml.jsbml.ext.layout.LayoutConstants;
+import org.sbml.jsbml.ext.layout.LayoutModelPlugin;
+import org.sbml.jsbml.ext.layout.ReactionGlyph;
+import org.sbml.jsbml.ext.layout.SpeciesGlyph;
+import org.sbml.jsbml.ext.layout.SpeciesReferenceGlyph;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+import de.zbit.sbml.layout.ForceDirectedLayoutAlgorithm;
+import de.zbit.sbml.layout.GlyphCreator;
+import de.zbit.sbml.layout.LayoutDirector;
+
+/**
+ * Writes the layout of a small model with the {@link SVGLayoutBuilder} and
+ * parses the written document again.
+ *
+ * @version $Rev$
+ * @since 1.4
+ */
+public class SVGLayoutBuilderTest {
+
+  /**
+   * Matches the marker references of an arc.
+   */
+  private static final Pattern MARKER_URL = Pattern.compile("url\\(#([^)]+)\\)");
+
+  /**
+   * Creates a model with one compartment, a chain of two reactions and an
+   * inhibitor of the second reaction, and the layout of this model.
+   *
+   * @return the document.
+   */
+  private static SBMLDocument createDocument() {
+    SBMLDocument doc = new SBMLDocument(3, 1);
+    Model model = doc.createModel("model");
+    Compartment c = model.createCompartment("cytosol");
+    c.setConstant(true);
+    for (String id : new String[] {"a", "b", "c", "i"}) {
+      Species s = model.createSpecies(id, c);
+      s.setSBOTerm(SBO.getSimpleMolecule());
+    }
+    createReaction(model, "r1", "a", "b");
+    Reaction r = createReaction(model, "r2", "b", "c");
+    r.createModifier(model.getSpecies("i")).setSBOTerm(SBO.getInhibitor());
+    new GlyphCreator(model).create();
+
+    CompartmentGlyph cg = getLayout(doc).getListOfCompartmentGlyphs().get(0);
+    BoundingBox bb = cg.isSetBoundingBox() ? cg.getBoundingBox() : cg.createBoundingBox();
+    bb.createPosition(0d, 0d, 0d);
+    bb.createDimensions(400d, 400d, 1d);
+    return doc;
+  }
+
+  /**
+   * @param model
+   * @param id
+   * @param reactant
+   * @param product
+   * @return the new reaction.
+   */
+  private static Reaction createReaction(Model model, String id, String reactant, String product) {
+    Reaction r = model.createReaction(id);
+    r.setReversible(false);
+    r.setFast(false);
+    r.createReactant(model.getSpecies(reactant)).setConstant(false);
+    r.createProduct(model.getSpecies(product)).setConstant(false);
+    return r;
+  }
+
+  /**
+   * @param doc
+   * @return the first layout of the model.
+   */
+  private static Layout getLayout(SBMLDocument doc) {
+    String namespace = LayoutConstants.getNamespaceURI(doc.getLevel(), doc.getVersion());
+    return ((LayoutModelPlugin) doc.getModel().getExtension(namespace)).getLayout(0);
+  }
+
+  /**
+   * @param root
+   * @return all elements with an id, by their id.
+   */
+  private static Map<String, Element> getElementsById(Element root) {
+    Map<String, Element> elements = new HashMap<String, Element>();
+    NodeList nodes = root.getElementsByTagName("*");
+    for (int i = 0; i < nodes.getLength(); i++) {
+      Element element = (Element) nodes.item(i);
+      if (element.hasAttribute("id")) {
+        // Ids must be unique within the document.
+        assertNull(element.getAttribute("id"), elements.put(element.getAttribute("id"), element));
+      }
+    }
+    return elements;
+  }
+
+  /**
+   * Test method for {@link SVGLayoutBuilder}.
+   *
+   * @throws Exception
+   */
+  @Test
+  public void testWrite() throws Exception {
+    SBMLDocument sbml = createDocument();
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    LayoutDirector<OutputStream> director = new LayoutDirector<OutputStream>(sbml,
+        new SVGLayoutBuilder(out), new ForceDirectedLayoutAlgorithm());
+    director.run();
+
+    // Fails, if the document is not well-formed.
+    DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+    factory.setNamespaceAware(true);
+    Document svg = factory.newDocumentBuilder().parse(new ByteArrayInputStream(out.toByteArray()));
+    Element root = svg.getDocumentElement();
+    assertEquals("svg", root.getLocalName());
+    assertEquals(SVGLayoutBuilder.SVG_NAMESPACE, root.getNamespaceURI());
+    assertEquals(1, root.getElementsByTagName("defs").getLength());
+
+    Map<String, Element> elements = getElementsById(root);
+    Layout layout = getLayout(sbml);
+    assertEquals(1, layout.getCompartmentGlyphCount());
+    for (CompartmentGlyph cg : layout.getListOfCompartmentGlyphs()) {
+      assertNotNull(cg.getId(), elements.get(cg.getId()));
+    }
+    assertEquals(4, layout.getSpeciesGlyphCount());
+    for (SpeciesGlyph sg : layout.getListOfSpeciesGlyphs()) {
+      assertNotNull(sg.getId(), elements.get(sg.getId()));
+    }
+    assertEquals(2, layout.getReactionGlyphCount());
+    int arcs = 0;
+    for (ReactionGlyph rg : layout.getListOfReactionGlyphs()) {
+      assertNotNull(rg.getId(), elements.get(rg.getId()));
+      for (SpeciesReferenceGlyph srg : rg.getListOfSpeciesReferenceGlyphs()) {
+        Element arc = elements.get(srg.getId());
+        assertNotNull(srg.getId(), arc);
+        assertTrue(srg.getId(), arc.getAttribute("class").contains(SVGAbstractSBGNArc.STYLE_CLASS));
+        arcs++;
+      }
+    }
+    assertEquals(5, arcs);
+
+    // All markers are defined, and every referenced marker exists.
+    for (String marker : new String[] {SVGProduction.MARKER, SVGCatalysis.MARKER,
+        SVGInhibition.MARKER, SVGModulation.MARKER, SVGStimulation.MARKER,
+        SVGNecessaryStimulation.MARKER}) {
+      for (String suffix : new String[] {SVGAbstractSBGNArc.MARKER_START, SVGAbstractSBGNArc.MARKER_END}) {
+        Element element = elements.get(marker + suffix);
+        assertNotNull(marker + suffix, element);
+        assertEquals("marker", element.getLocalName());
+      }
+    }
+    Set<String> referenced = new HashSet<String>();
+    NodeList nodes = root.getElementsByTagName("*");
+    for (int i = 0; i < nodes.getLength(); i++) {
+      Element element = (Element) nodes.item(i);
+      for (String attribute : new String[] {"marker-start", "marker-end"}) {
+        if (element.hasAttribute(attribute)) {
+          Matcher m = MARKER_URL.matcher(element.getAttribute(attribute));
+          assertTrue(element.getAttribute(attribute), m.matches());
+          assertNotNull(m.group(1), elements.get(m.group(1)));
+          referenced.add(m.group(1).substring(0, m.group(1).lastIndexOf('-')));
+        }
+      }
+    }
+    assertTrue(referenced.toString(), referenced.contains(SVGProduction.MARKER));
+    assertTrue(referenced.toString(), referenced.contains(SVGInhibition.MARKER));
+  }
+
+}
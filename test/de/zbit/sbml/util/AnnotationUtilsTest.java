@@ -0,0 +1,49 @@
+/*
+ * $Id$
+ * $URL$
+ * ---------------------------------------------------------------------
+ * This file is part of the SysBio API library.
+ *
+ * Copyright (C) 2009-2016 by the University of Tuebingen, Germany.
+ *
+ * This library is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation. A copy of the license
+ * agreement is provided in the file named "LICENSE.txt" included with
+ * this software distribution and also available online as
+ * <http://www.gnu.org/licenses/lgpl-3.0-standalone.html>.
+ * ---------------------------------------------------------------------
+ */
+package de.zbit.sbml.util;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+/**
+ * @version $Rev$
+ * @since 1.4
+ */
+public class AnnotationUtilsTest {
+
+  /**
+   * Test method for {@link AnnotationUtils#normalizeResource(String)}.
+   */
+  @Test
+  public void testNormalizeResource() {
+    String expected = "http://identifiers.org/kegg.compound/C00031";
+    assertEquals(expected, AnnotationUtils.normalizeResource("urn:miriam:kegg.compound:C00031"));
+    assertEquals(expected, AnnotationUtils.normalizeResource("http://identifiers.org/kegg.compound/C00031"));
+    assertEquals(expected, AnnotationUtils.normalizeResource("https://identifiers.org/kegg.compound/C00031"));
+    assertEquals(expected, AnnotationUtils.normalizeResource(" urn:miriam:kegg.compound:C00031\n"));
+    // Escaped colons within the identifier
+    assertEquals("http://identifiers.org/obo.go/GO:0005829",
+      AnnotationUtils.normalizeResource("urn:miriam:obo.go:GO%3A0005829"));
+    assertEquals("http://identifiers.org/obo.go/GO:0005829",
+      AnnotationUtils.normalizeResource("https://identifiers.org/obo.go/GO:0005829"));
+    // Other resources are only trimmed.
+    assertEquals("http://www.genome.jp/dbget-bin/www_bget?C00031",
+      AnnotationUtils.normalizeResource("http://www.genome.jp/dbget-bin/www_bget?C00031 "));
+  }
+
+}
@@ -0,0 +1,258 @@
+/*
+ * $Id$
+ * $URL$
+ * ---------------------------------------------------------------------
+ * This file is part of the SysBio API library.
+ *
+ * Copyright (C) 2009-2016 by the University of Tuebingen, Germany.
+ *
+ * This library is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation. A copy of the license
+ * agreement is provided in the file named "LICENSE.txt" included with
+ * this software distribution and also available online as
+ * <http://www.gnu.org/licenses/lgpl-3.0-standalone.html>.
+ * ---------------------------------------------------------------------
+ */
+package de.zbit.sbml.util;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.sbml.jsbml.CVTerm;
+import org.sbml.jsbml.Compartment;
+import org.sbml.jsbml.Model;
+import org.sbml.jsbml.Reaction;
+import org.sbml.jsbml.SBMLDocument;
+import org.sbml.jsbml.SBMLWriter;
+import org.sbml.jsbml.SBO;
+import org.sbml.jsbml.Species;
+
+/**
+ * Merges small models, whose elements are annotated with different forms of
+ * the same resources, with {@link ModelMerging}.
+ *
+ * @version $Rev$
+ * @since 1.4
+ */
+public class ModelMergingTest {
+
+  /**
+   * Directory of the model files.
+   */
+  private File dir;
+
+  @Before
+  public void setUp() {
+    dir = new File(System.getProperty("java.io.tmpdir"), "ModelMergingTest" + System.nanoTime());
+    dir.mkdirs();
+  }
+
+  @After
+  public void tearDown() {
+    File[] files = dir.listFiles();
+    if (files != null) {
+      for (File f : files) {
+        f.delete();
+      }
+    }
+    dir.delete();
+  }
+
+  /**
+   * @param model
+   * @param id
+   * @param resource
+   * @return the new compartment.
+   */
+  private static Compartment createCompartment(Model model, String id, String resource) {
+    Compartment c = model.createCompartment(id);
+    c.setMetaId("meta_" + id);
+    c.setConstant(true);
+    c.addCVTerm(new CVTerm(CVTerm.Qualifier.BQB_IS, resource));
+    return c;
+  }
+
+  /**
+   * @param compartment
+   * @param id
+   * @param sboTerm
+   * @param resource
+   * @return the new species.
+   */
+  private static Species createSpecies(Compartment compartment, String id, int sboTerm, String resource) {
+    Species s = compartment.getModel().createSpecies(id, compartment);
+    s.setMetaId("meta_" + id);
+    s.setSBOTerm(sboTerm);
+    s.addCVTerm(new CVTerm(CVTerm.Qualifier.BQB_IS, resource));
+    return s;
+  }
+
+  /**
+   * @param model
+   * @param id
+   * @param resource
+   * @param reactant
+   * @param product
+   * @return the new reaction.
+   */
+  private static Reaction createReaction(Model model, String id, String resource,
+    String reactant, String product) {
+    Reaction r = model.createReaction(id);
+    r.setMetaId("meta_" + id);
+    r.setSBOTerm(SBO.getStateTransition());
+    r.setReversible(false);
+    r.createReactant(model.getSpecies(reactant));
+    r.createProduct(model.getSpecies(product));
+    r.addCVTerm(new CVTerm(CVTerm.Qualifier.BQB_IS, resource));
+    return r;
+  }
+
+  /**
+   * @param doc
+   * @param name
+   * @return the path of the written file.
+   * @throws Exception
+   */
+  private String write(SBMLDocument doc, String name) throws Exception {
+    File file = new File(dir, name);
+    new SBMLWriter().write(doc, file.getPath());
+    return file.getPath();
+  }
+
+  /**
+   * @param model
+   * @return the identifiers of all compartments.
+   */
+  private static List<String> getCompartmentIds(Model model) {
+    List<String> ids = new ArrayList<String>();
+    for (Compartment c : model.getListOfCompartments()) {
+      ids.add(c.getId());
+    }
+    return ids;
+  }
+
+  /**
+   * @param model
+   * @return the identifiers of all species.
+   */
+  private static List<String> getSpeciesIds(Model model) {
+    List<String> ids = new ArrayList<String>();
+    for (Species s : model.getListOfSpecies()) {
+      ids.add(s.getId());
+    }
+    return ids;
+  }
+
+  /**
+   * @param model
+   * @return the identifiers of all reactions.
+   */
+  private static List<String> getReactionIds(Model model) {
+    List<String> ids = new ArrayList<String>();
+    for (Reaction r : model.getListOfReactions()) {
+      ids.add(r.getId());
+    }
+    return ids;
+  }
+
+  /**
+   * Test method for {@link ModelMerging#mergeModels(String[], int)} with
+   * duplicate species and reactions, whose annotations use MIRIAM URNs and
+   * identifiers.org URIs.
+   *
+   * @throws Exception
+   */
+  @Test
+  public void testMergeDuplicates() throws Exception {
+    SBMLDocument doc = new SBMLDocument(3, 1);
+    Model model = doc.createModel("first");
+    Compartment c = createCompartment(model, "cytosol", "urn:miriam:obo.go:GO%3A0005829");
+    createSpecies(c, "glc", SBO.getSimpleMolecule(), "urn:miriam:kegg.compound:C00031");
+    createSpecies(c, "g6p", SBO.getSimpleMolecule(), "urn:miriam:kegg.compound:C00092");
+    // Duplicates within one model are kept.
+    createSpecies(c, "glucose", SBO.getSimpleMolecule(), "urn:miriam:kegg.compound:C00031");
+    createReaction(model, "hk", "urn:miriam:kegg.reaction:R00299", "glc", "g6p");
+    String first = write(doc, "first.xml");
+
+    doc = new SBMLDocument(3, 1);
+    model = doc.createModel("second");
+    c = createCompartment(model, "cytoplasm", "http://identifiers.org/obo.go/GO:0005829");
+    Compartment nucleus = createCompartment(model, "nucleus", "http://identifiers.org/obo.go/GO:0005634");
+    createSpecies(c, "glc", SBO.getSimpleMolecule(), "http://identifiers.org/kegg.compound/C00031");
+    createSpecies(c, "g6p", SBO.getSimpleMolecule(), " https://identifiers.org/kegg.compound/C00092");
+    // Different SBO term
+    createSpecies(c, "glcProtein", SBO.getMacromolecule(), "http://identifiers.org/kegg.compound/C00031");
+    // Different compartment
+    createSpecies(nucleus, "glcNucleus", SBO.getSimpleMolecule(), "http://identifiers.org/kegg.compound/C00031");
+    createReaction(model, "hk", "https://identifiers.org/kegg.reaction/R00299", "glc", "g6p");
+    createReaction(model, "pgi", "http://identifiers.org/kegg.reaction/R00771", "g6p", "glcProtein");
+    String second = write(doc, "second.xml");
+
+    Model merged = ModelMerging.mergeModels(new String[] {first, second}, 1).getModel();
+    assertEquals(Arrays.asList("C0_0_cytosol", "C1_1_nucleus"), getCompartmentIds(merged));
+    assertEquals(Arrays.asList("S0_0_glc", "S0_1_g6p", "S0_2_glucose", "S1_2_glcProtein",
+      "S1_3_glcNucleus"), getSpeciesIds(merged));
+    assertEquals(Arrays.asList("C0_0_hk", "C1_1_pgi"), getReactionIds(merged));
+    // References to removed elements are redirected.
+    assertEquals("C0_0_cytosol", merged.getSpecies("S1_2_glcProtein").getCompartment());
+    assertEquals("C1_1_nucleus", merged.getSpecies("S1_3_glcNucleus").getCompartment());
+    Reaction pgi = merged.getReaction("C1_1_pgi");
+    assertEquals("S0_1_g6p", pgi.getReactant(0).getSpecies());
+    assertEquals("S1_2_glcProtein", pgi.getProduct(0).getSpecies());
+    Reaction hk = merged.getReaction("C0_0_hk");
+    assertEquals("S0_0_glc", hk.getReactant(0).getSpecies());
+    assertEquals("S0_1_g6p", hk.getProduct(0).getSpecies());
+  }
+
+  /**
+   * Test method for {@link ModelMerging#mergeModels(String[], int)} with
+   * different numbers of threads.
+   *
+   * @throws Exception
+   */
+  @Test
+  public void testThreads() throws Exception {
+    String compounds[] = {"C00031", "C00092", "C00085", "C00354", "C00111", "C00118", "C00236", "C00197"};
+    String files[] = new String[3];
+    for (int i = 0; i < files.length; i++) {
+      SBMLDocument doc = new SBMLDocument(3, 1);
+      Model model = doc.createModel("model" + i);
+      Compartment c = createCompartment(model, "cytosol", "urn:miriam:obo.go:GO%3A0005829");
+      // Consecutive models share two compounds and one reaction.
+      for (int j = 2 * i; j < 2 * i + 4; j++) {
+        createSpecies(c, "s" + j, SBO.getSimpleMolecule(), "urn:miriam:kegg.compound:" + compounds[j]);
+      }
+      for (int j = 2 * i; j < 2 * i + 3; j++) {
+        createReaction(model, "r" + j, "urn:miriam:kegg.reaction:R0" + j, "s" + j, "s" + (j + 1));
+      }
+      files[i] = write(doc, "model" + i + ".xml");
+    }
+
+    SBMLDocument expected = ModelMerging.mergeModels(files, 1);
+    List<String> species = getSpeciesIds(expected.getModel());
+    List<String> sorted = new ArrayList<String>(species);
+    Collections.sort(sorted);
+    // Elements are transferred in the order of the files.
+    assertEquals(sorted, species);
+    assertEquals(Arrays.asList("C0_0_cytosol"), getCompartmentIds(expected.getModel()));
+    assertEquals(Arrays.asList("S0_0_s0", "S0_1_s1", "S0_2_s2", "S0_3_s3", "S1_2_s4",
+      "S1_3_s5", "S2_2_s6", "S2_3_s7"), species);
+    assertEquals(7, expected.getModel().getReactionCount());
+
+    String xml = new SBMLWriter().writeSBMLToString(expected);
+    for (int threads : new int[] {2, 3, 8}) {
+      SBMLDocument actual = ModelMerging.mergeModels(files, threads);
+      assertEquals("threads: " + threads, xml, new SBMLWriter().writeSBMLToString(actual));
+    }
+  }
+
+}
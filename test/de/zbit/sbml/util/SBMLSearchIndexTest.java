@@ -0,0 +1,162 @@
+/*
+ * $Id$
+ * $URL$
+ * ---------------------------------------------------------------------
+ * This file is part of the SysBio API library.
+ *
+ * Copyright (C) 2009-2016 by the University of Tuebingen, Germany.
+ *
+ * This library is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation. A copy of the license
+ * agreement is provided in the file named "LICENSE.txt" included with
+ * this software distribution and also available online as
+ * <http://www.gnu.org/licenses/lgpl-3.0-standalone.html>.
+ * ---------------------------------------------------------------------
+ */
+package de.zbit.sbml.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.sbml.jsbml.CVTerm;
+import org.sbml.jsbml.Compartment;
+import org.sbml.jsbml.Model;
+import org.sbml.jsbml.Reaction;
+import org.sbml.jsbml.SBMLDocument;
+import org.sbml.jsbml.SBase;
+import org.sbml.jsbml.Species;
+import org.sbml.jsbml.SpeciesReference;
+
+/**
+ * @version $Rev$
+ * @since 1.4
+ */
+public class SBMLSearchIndexTest {
+  
+  private Model model;
+  private Compartment cytosol;
+  private Species atp, nad;
+  private Reaction reaction;
+  private SpeciesReference reactant;
+  private SBMLSearchIndex index;
+  
+  @Before
+  public void setUp() {
+    SBMLDocument doc = new SBMLDocument(3, 1);
+    model = doc.createModel("m1");
+    cytosol = model.createCompartment("c1");
+    cytosol.setName("Cytosol");
+    atp = model.createSpecies("s1", cytosol);
+    atp.setName("ATP");
+    atp.addCVTerm(new CVTerm(CVTerm.Qualifier.BQB_IS, "urn:miriam:obo.chebi:CHEBI%3A15422"));
+    nad = model.createSpecies("s2", cytosol);
+    nad.setName("NAD+");
+    reaction = model.createReaction("r1");
+    reaction.setName("Kinase");
+    reactant = reaction.createReactant(atp);
+    index = new SBMLSearchIndex(doc);
+  }
+  
+  /**
+   * Asserts that {@link SBMLSearchIndex#search(String)} returns exactly
+   * the given elements.
+   * 
+   * @param query
+   * @param expected
+   */
+  private void assertHits(String query, SBase... expected) {
+    Set<SBase> hits = index.search(query);
+    assertEquals(query, expected.length, hits.size());
+    for (SBase sbase : expected) {
+      assertTrue(query, hits.contains(sbase));
+    }
+  }
+  
+  /**
+   * Queries up to the n-gram length are answered from the index directly.
+   */
+  @Test
+  public void testShortQueries() {
+    assertHits("");
+    assertHits("x");
+    assertHits("+", nad);
+    assertHits("tp", atp, reactant);
+    assertHits("s2", nad);
+    assertHits("r1", reaction);
+    assertHits("c1", cytosol);
+    assertHits("nad", nad);
+  }
+  
+  /**
+   * Queries longer than the n-gram length, including plain dots, which
+   * are not treated as regular expression.
+   */
+  @Test
+  public void testLongQueries() {
+    assertHits("cytosol", cytosol);
+    assertHits("nad+", nad);
+    assertHits("kinas", reaction);
+    assertHits("obo.chebi", atp);
+    assertHits("obo_chebi");
+    assertHits("cytosolic");
+  }
+  
+  /**
+   * The search ignores case.
+   */
+  @Test
+  public void testCaseInsensitive() {
+    assertHits("ATP", atp, reactant);
+    assertHits("aTp", atp, reactant);
+    assertHits("KINASE", reaction);
+    assertHits("Kinase", reaction);
+    assertHits("CHEBI%3a15422", atp);
+  }
+  
+  /**
+   * The index is updated when an element is renamed.
+   */
+  @Test
+  public void testRename() {
+    atp.setName("Adenosine triphosphate");
+    assertHits("atp");
+    assertHits("triphosph", atp, reactant);
+    cytosol.setName("Nucleus");
+    assertHits("cytosol");
+    assertHits("NUC", cytosol);
+  }
+  
+  /**
+   * The index is updated when elements or annotations are removed.
+   */
+  @Test
+  public void testRemove() {
+    int size = index.size();
+    model.removeReaction(reaction);
+    assertHits("atp", atp);
+    assertHits("kinase");
+    assertEquals(size - 2, index.size());
+    atp.removeCVTerm(0);
+    assertHits("chebi");
+    model.removeSpecies(nad);
+    assertHits("nad");
+    assertHits("s2");
+    assertEquals(size - 3, index.size());
+  }
+  
+  /**
+   * A disposed index is not updated anymore.
+   */
+  @Test
+  public void testDispose() {
+    index.dispose();
+    atp.setName("Adenosine triphosphate");
+    assertHits("atp", atp, reactant);
+  }
+  
+}
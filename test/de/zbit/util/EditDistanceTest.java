@@ -0,0 +1,168 @@
+/*
+ * $Id$
+ * $URL$
+ * ---------------------------------------------------------------------
+ * This file is part of the SysBio API library.
+ *
+ * Copyright (C) 2009-2016 by the University of Tuebingen, Germany.
+ *
+ * This library is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation. A copy of the license
+ * agreement is provided in the file named "LICENSE.txt" included with
+ * this software distribution and also available online as
+ * <http://www.gnu.org/licenses/lgpl-3.0-standalone.html>.
+ * ---------------------------------------------------------------------
+ */
+package de.zbit.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Compares {@link EditDistance} with the plain dynamic programming
+ * computation of the Levenshtein distance.
+ *
+ * @version $Rev$
+ * @since 1.4
+ */
+public class EditDistanceTest {
+
+  /**
+   * Characters of the random strings, including non-ASCII ones.
+   */
+  private static final String ALPHABET = "acgtACGT äößα中";
+
+  /**
+   * The full dynamic programming matrix.
+   *
+   * @param a
+   * @param b
+   * @return the Levenshtein distance of both strings.
+   */
+  static int levenshtein(String a, String b) {
+    int[][] d = new int[a.length() + 1][b.length() + 1];
+    for (int i = 0; i <= a.length(); i++) {
+      d[i][0] = i;
+    }
+    for (int j = 0; j <= b.length(); j++) {
+      d[0][j] = j;
+    }
+    for (int i = 1; i <= a.length(); i++) {
+      for (int j = 1; j <= b.length(); j++) {
+        int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+        d[i][j] = Math.min(d[i - 1][j - 1] + cost, Math.min(d[i - 1][j], d[i][j - 1]) + 1);
+      }
+    }
+    return d[a.length()][b.length()];
+  }
+
+  /**
+   * @param rnd
+   * @param length
+   * @param alphabet number of characters of {@link #ALPHABET} to use.
+   * @return
+   */
+  static String random(Random rnd, int length, int alphabet) {
+    StringBuilder sb = new StringBuilder(length);
+    for (int i = 0; i < length; i++) {
+      sb.append(ALPHABET.charAt(rnd.nextInt(alphabet)));
+    }
+    return sb.toString();
+  }
+
+  /**
+   * @param rnd
+   * @param s
+   * @param edits
+   * @return {@code s} with about {@code edits} random edit operations.
+   */
+  private static String mutate(Random rnd, String s, int edits) {
+    StringBuilder sb = new StringBuilder(s);
+    for (int i = 0; i < edits; i++) {
+      int pos = rnd.nextInt(sb.length() + 1);
+      char c = ALPHABET.charAt(rnd.nextInt(ALPHABET.length()));
+      switch (rnd.nextInt(3)) {
+        case 0:
+          sb.insert(pos, c);
+          break;
+        case 1:
+          if (pos < sb.length()) {
+            sb.deleteCharAt(pos);
+          }
+          break;
+        default:
+          if (pos < sb.length()) {
+            sb.setCharAt(pos, c);
+          }
+      }
+    }
+    return sb.toString();
+  }
+
+  /**
+   * @param a
+   * @param b
+   */
+  private static void check(String a, String b) {
+    int expected = levenshtein(a, b);
+    String msg = '"' + a + "\" vs. \"" + b + '"';
+    assertEquals(msg, expected, EditDistance.levenshtein(a, b));
+    assertEquals(msg, expected, EditDistance.levenshtein(b, a));
+    for (int bound : new int[] {0, 1, expected - 1, expected, expected + 1}) {
+      if (bound < 0) {
+        continue;
+      }
+      int d = EditDistance.levenshtein(a, b, bound);
+      if (expected <= bound) {
+        assertEquals(msg + ", bound " + bound, expected, d);
+      } else {
+        assertTrue(msg + ", bound " + bound, d > bound);
+      }
+    }
+  }
+
+  /**
+   * Test method for {@link EditDistance#levenshtein(CharSequence, CharSequence)}
+   * with special cases.
+   */
+  @Test
+  public void testSpecialCases() {
+    check("", "");
+    check("", "abc");
+    check("abc", "");
+    check("kitten", "sitting");
+    check("äöü", "aou");
+    check("ß中α", "中ßα");
+    Random rnd = new Random(42);
+    // Pattern lengths around the word size of the bit-parallel algorithm
+    for (int length : new int[] {63, 64, 65, 128, 129}) {
+      String a = random(rnd, length, ALPHABET.length());
+      check(a, a);
+      check(a, mutate(rnd, a, 5));
+      check(a, random(rnd, length, ALPHABET.length()));
+      check(a, random(rnd, 3, ALPHABET.length()));
+      check(a, "");
+    }
+  }
+
+  /**
+   * Test method for {@link EditDistance#levenshtein(CharSequence, CharSequence, int)}
+   * with random strings.
+   */
+  @Test
+  public void testRandom() {
+    Random rnd = new Random(4711);
+    for (int i = 0; i < 2000; i++) {
+      int alphabet = 2 + rnd.nextInt(ALPHABET.length() - 1);
+      String a = random(rnd, rnd.nextInt(150), alphabet);
+      String b = rnd.nextBoolean() ? mutate(rnd, a, rnd.nextInt(20)) : random(rnd, rnd.nextInt(150), alphabet);
+      check(a, b);
+    }
+  }
+
+}
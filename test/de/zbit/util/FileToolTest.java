@@ -17,7 +17,25 @@
 
 package de.zbit.util;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
 
 import de.zbit.io.FileTools;
 
@@ -27,6 +45,164 @@ import de.zbit.io.FileTools;
  */
 public class FileToolTest {
   
+  /**
+   * Input file of the tests.
+   */
+  private File in;
+  
+  /**
+   * Output file of the tests.
+   */
+  private File out;
+  
+  /**
+   * Lines in {@link #in}.
+   */
+  private List<String> lines;
+  
+  /**
+   * Writes 20000 lines with a random key in the first and the line number in
+   * the second column.
+   * 
+   * @throws IOException
+   */
+  @Before
+  public void setUp() throws IOException {
+    in = File.createTempFile("FileToolTest", ".in.txt");
+    out = File.createTempFile("FileToolTest", ".out.txt");
+    lines = new ArrayList<String>();
+    Random random = new Random(42);
+    for (int i = 0; i < 20000; i++) {
+      lines.add("key" + random.nextInt(100) + '\t' + i);
+    }
+    write(in, lines);
+  }
+  
+  /**
+   * 
+   */
+  @After
+  public void tearDown() {
+    in.delete();
+    out.delete();
+  }
+  
+  /**
+   * @param file
+   * @param lines
+   * @throws IOException
+   */
+  private static void write(File file, List<String> lines) throws IOException {
+    BufferedWriter bw = new BufferedWriter(new FileWriter(file));
+    for (String line : lines) {
+      bw.append(line).append('\n');
+    }
+    bw.close();
+  }
+  
+  /**
+   * @param reader is closed by this method.
+   * @return
+   * @throws IOException
+   */
+  private static List<String> read(BufferedReader reader) throws IOException {
+    List<String> lines = new ArrayList<String>();
+    String line;
+    while ((line = reader.readLine()) != null) {
+      lines.add(line);
+    }
+    reader.close();
+    return lines;
+  }
+  
+  /**
+   * The external sort must be stable and must result in the same order as
+   * an in-memory sort, also if several runs have to be merged.
+   * 
+   * @throws IOException
+   */
+  @Test
+  public void testSortFileExternal() throws IOException {
+    FileTools.sortFileExternal(in.getPath(), out.getPath(), 0, "\t", null, 1 << 17, 3);
+    
+    List<String> expected = new ArrayList<String>(lines);
+    Collections.sort(expected, new Comparator<String>() {
+      /* (non-Javadoc)
+       * @see java.util.Comparator#compare(java.lang.Object, java.lang.Object)
+       */
+      @Override
+      public int compare(String o1, String o2) {
+        return o1.substring(0, o1.indexOf('\t')).compareTo(o2.substring(0, o2.indexOf('\t')));
+      }
+    });
+    assertEquals(expected, read(new BufferedReader(new FileReader(out))));
+  }
+  
+  /**
+   * Exceptions in the sorting threads must be reported to the caller.
+   */
+  @Test
+  public void testSortFileExternalError() {
+    try {
+      FileTools.sortFileExternal(in.getPath(), out.getPath(), 0, "\t", new Comparator<String>() {
+        /* (non-Javadoc)
+         * @see java.util.Comparator#compare(java.lang.Object, java.lang.Object)
+         */
+        @Override
+        public int compare(String o1, String o2) {
+          throw new IllegalStateException();
+        }
+      }, 1 << 17, 2);
+      assertTrue(false);
+    } catch (IOException e) {
+      assertTrue(e.getCause() instanceof IllegalStateException);
+    }
+  }
+  
+  /**
+   * The shuffled file must be a permutation of the input. The memory limit
+   * is so small, that the buckets have to be shuffled recursively.
+   * 
+   * @throws IOException
+   */
+  @Test
+  public void testShuffleFileExternal() throws IOException {
+    FileTools.shuffleFileExternal(in.getPath(), out.getPath(), new Random(1), 1000);
+    
+    List<String> shuffled = read(new BufferedReader(new FileReader(out)));
+    assertFalse(lines.equals(shuffled));
+    List<String> expected = new ArrayList<String>(lines);
+    Collections.sort(expected);
+    Collections.sort(shuffled);
+    assertEquals(expected, shuffled);
+  }
+  
+  /**
+   * Reading all slices must result in the original lines.
+   * 
+   * @throws IOException
+   */
+  @Test
+  public void testSplitFileAtLineBoundaries() throws IOException {
+    long[] offsets = FileTools.splitFileAtLineBoundaries(in, 7);
+    assertEquals(8, offsets.length);
+    assertEquals(0, offsets[0]);
+    assertEquals(in.length(), offsets[offsets.length - 1]);
+    
+    List<String> actual = new ArrayList<String>();
+    for (int i = 0; i < offsets.length - 1; i++) {
+      assertTrue(offsets[i] < offsets[i + 1]);
+      actual.addAll(read(FileTools.openFileSlice(in, offsets[i], offsets[i + 1])));
+    }
+    assertEquals(lines, actual);
+    
+    // More slices than lines
+    write(in, lines.subList(0, 3));
+    offsets = FileTools.splitFileAtLineBoundaries(in, 100);
+    assertEquals(4, offsets.length);
+    assertEquals(lines.get(1), read(FileTools.openFileSlice(in, offsets[1], offsets[2])).get(0));
+  }
+  
   /**
    * Just for testing.
    * @param args
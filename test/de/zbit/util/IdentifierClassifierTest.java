@@ -0,0 +1,138 @@
+/*
+ * $Id$
+ * $URL$
+ * ---------------------------------------------------------------------
+ * This file is part of the SysBio API library.
+ *
+ * Copyright (C) 2009-2016 by the University of Tuebingen, Germany.
+ *
+ * This library is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation. A copy of the license
+ * agreement is provided in the file named "LICENSE.txt" included with
+ * this software distribution and also available online as
+ * <http://www.gnu.org/licenses/lgpl-3.0-standalone.html>.
+ * ---------------------------------------------------------------------
+ */
+package de.zbit.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import org.junit.Test;
+
+import de.zbit.io.PatternForColumnGuessing;
+import de.zbit.io.csv.CSVReader;
+import de.zbit.mapper.MappingUtils;
+import de.zbit.util.DatabaseIdentifiers.IdentifierDatabases;
+
+/**
+ * @version $Rev$
+ * @since 1.4
+ */
+public class IdentifierClassifierTest {
+
+  /**
+   * Identifiers of various databases and some invalid ones.
+   */
+  private static final String[] SAMPLE_IDS = {"9606", "672", "P12345",
+    "Q9Y6K9-2", "GO:0008150", "HMDB00001", "HMDB0000001", "C00001", "D00001",
+    "hsa:1234", "hsa00010", "ko:K00001", "K00001", "R00001", "ENSG00000139618",
+    "ENSMUST00000000001", "NM_000546", "NP_000537", "CHEBI:15377",
+    "REACT_1234", "1.1.1.1", "EC 1.1.1.1", "TP53", "InChI=1S/H2O/h1H2",
+    "XLOVOYDTQXSFXW-UHFFFAOYSA-N", "LMFA01010001", "SBO:0000001", "", "foo bar",
+    "1abc", "ECO:0000001", "MI:0001", "12345678901234567890"};
+
+  /**
+   * {@link IdentifierClassifier#classify(String)} must return the same
+   * databases as {@link DatabaseIdentifiers#checkID(IdentifierDatabases, String)}.
+   */
+  @Test
+  public void testClassify() {
+    IdentifierClassifier classifier = IdentifierClassifier.getInstance();
+    for (String id : SAMPLE_IDS) {
+      Set<IdentifierDatabases> expected = EnumSet.noneOf(IdentifierDatabases.class);
+      for (IdentifierDatabases db : IdentifierDatabases.values()) {
+        if ((DatabaseIdentifiers.getPatternForIdentifier(db) != null) && DatabaseIdentifiers.checkID(db, id)) {
+          expected.add(db);
+        }
+      }
+      assertEquals(id, expected, classifier.classify(id));
+    }
+  }
+
+  /**
+   * Test method for {@link IdentifierClassifier#classifyColumns(String[][])}.
+   */
+  @Test
+  public void testClassifyColumns() {
+    String[][] rows = {{"GO:0008150", "9606"}, {"GO:0003674", "foo bar"},
+      null, {"GO:0005575"}};
+    List<Map<IdentifierDatabases, Integer>> columns = IdentifierClassifier.getInstance().classifyColumns(rows);
+    assertEquals(2, columns.size());
+    assertEquals(Integer.valueOf(3), columns.get(0).get(IdentifierDatabases.GeneOntology));
+    assertEquals(Integer.valueOf(1), columns.get(1).get(IdentifierDatabases.NCBI_Taxonomy));
+    assertFalse(columns.get(1).containsKey(IdentifierDatabases.GeneOntology));
+  }
+
+  /**
+   * {@link CSVReader#getColumnByMatchingContent(String[], int, int)} must
+   * count the same matches as the plain regular expressions.
+   *
+   * @throws IOException
+   */
+  @Test
+  public void testGetColumnByMatchingContent() throws IOException {
+    File file = File.createTempFile("IdentifierClassifierTest", ".txt");
+    try {
+      BufferedWriter bw = new BufferedWriter(new FileWriter(file));
+      // Empty cells and spaces would change the detected columns
+      List<String> cells = new ArrayList<String>();
+      for (String id : SAMPLE_IDS) {
+        if ((id.length() > 0) && (id.indexOf(' ') < 0)) {
+          cells.add(id);
+        }
+      }
+      for (int i = 0; i < 20; i++) {
+        bw.append(cells.get(i % cells.size())).append('\t');
+        bw.append(cells.get((3 * i + 1) % cells.size())).append('\t');
+        bw.append(Integer.toString(i)).append('\t');
+        bw.append("ILMN_" + i).append('\n');
+      }
+      bw.close();
+
+      String[] regex = Arrays.copyOf(MappingUtils.getRegularExpressionsFor(null),
+        MappingUtils.getRegularExpressionsFor(null).length + 2);
+      regex[regex.length - 2] = DatabaseIdentifiers.getRegularExpressionForIdentifier(IdentifierDatabases.GeneOntology, false);
+      regex[regex.length - 1] = regex[0];
+      CSVReader reader = new CSVReader(file.getPath(), false);
+      PatternForColumnGuessing[] actual = reader.getColumnByMatchingContent(regex, 0, 0);
+
+      String[][] data = reader.getData();
+      for (int i = 0; i < regex.length; i++) {
+        PatternForColumnGuessing expected = new PatternForColumnGuessing(
+          regex[i] != null ? Pattern.compile(regex[i]) : null, reader.getNumberOfColumns());
+        for (String[] line : data) {
+          expected.countMatches(line);
+        }
+        assertEquals(regex[i], Arrays.toString(expected.getMatchesForAllColumns()),
+          Arrays.toString(actual[i].getMatchesForAllColumns()));
+      }
+    } finally {
+      file.delete();
+    }
+  }
+
+}
@@ -0,0 +1,135 @@
+/*
+ * $Id$
+ * $URL$
+ * ---------------------------------------------------------------------
+ * This file is part of the SysBio API library.
+ *
+ * Copyright (C) 2009-2016 by the University of Tuebingen, Germany.
+ *
+ * This library is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation. A copy of the license
+ * agreement is provided in the file named "LICENSE.txt" included with
+ * this software distribution and also available online as
+ * <http://www.gnu.org/licenses/lgpl-3.0-standalone.html>.
+ * ---------------------------------------------------------------------
+ */
+package de.zbit.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.junit.Test;
+
+/**
+ * @version $Rev$
+ * @since 1.4
+ */
+public class MolecularFormulaTest {
+
+  /**
+   * Nested groups with multipliers.
+   */
+  @Test
+  public void testGroups() {
+    MolecularFormula f = MolecularFormula.compile("Fe2(SO4)3", 1);
+    assertEquals(2, f.getCount("Fe"));
+    assertEquals(3, f.getCount("S"));
+    assertEquals(12, f.getCount("O"));
+    assertEquals(0, f.getCount("H"));
+    assertEquals("{Fe=2, O=12, S=3}", f.toString());
+
+    f = MolecularFormula.compile("K4[Fe(CN)6]", 1);
+    assertEquals(6, f.getCount("C"));
+    assertEquals(6, f.getCount("N"));
+  }
+
+  /**
+   * The polymer index "n" is replaced by the given number.
+   */
+  @Test
+  public void testPolymers() {
+    MolecularFormula f = MolecularFormula.compile("(C6H10O5)n", 3);
+    assertEquals(18, f.getCount("C"));
+    assertEquals(30, f.getCount("H"));
+    assertEquals(15, f.getCount("O"));
+
+    // "Cn" is not copernicium here
+    f = MolecularFormula.compile("CnH2n", 4);
+    assertEquals(4, f.getCount("C"));
+    assertEquals(8, f.getCount("H"));
+    assertEquals(0, f.getCount("Cn"));
+
+    f = MolecularFormula.compile("H2O(C2H4)n+1", 2);
+    assertEquals(6, f.getCount("C"));
+    assertEquals(14, f.getCount("H"));
+
+    // Same formula, other replacement
+    assertEquals(10, MolecularFormula.compile("CnH2n", 5).getCount("H"));
+  }
+
+  /**
+   * Residues and other symbols, that are not part of the periodic table.
+   */
+  @Test
+  public void testResidues() {
+    MolecularFormula f = MolecularFormula.compile("C5H7NO3R2", 1);
+    assertEquals(2, f.getCount("R"));
+    assertEquals(5, f.getCount("C"));
+    Map<String, Integer> expected = new TreeMap<String, Integer>();
+    expected.put("C", 5);
+    expected.put("H", 7);
+    expected.put("N", 1);
+    expected.put("O", 3);
+    expected.put("R", 2);
+    assertEquals(expected, f.toMap(1d));
+    expected.put("R", 4);
+    expected.put("C", 10);
+    expected.put("H", 14);
+    expected.put("N", 2);
+    expected.put("O", 6);
+    assertEquals(expected, f.toMap(2d));
+  }
+
+  /**
+   * Elements that occur on one side only must be reported.
+   */
+  @Test
+  public void testDifference() {
+    MolecularFormula.Counter left = new MolecularFormula.Counter();
+    left.add(MolecularFormula.compile("C6H12O6", 1), 1d);
+    left.add(MolecularFormula.compile("H2O", 1), 2d);
+    MolecularFormula.Counter right = new MolecularFormula.Counter();
+    right.add(MolecularFormula.compile("C6H12O6", 1), 1d);
+    right.add(MolecularFormula.compile("H2O", 1), 2d);
+    right.add(MolecularFormula.compile("Na+", 1), 1d);
+    assertTrue(left.difference(left).isEmpty());
+    Map<String, Integer> defect = left.difference(right);
+    assertEquals(1, defect.size());
+    assertEquals(Integer.valueOf(-1), defect.get("Na"));
+    assertEquals(1, right.getCount("Na"));
+    assertEquals(0, left.getCount("Na"));
+    assertTrue(left.toMap().get("Na") == null);
+
+    right.clear();
+    assertTrue(right.isEmpty());
+    assertEquals(0, right.getCount("Na"));
+  }
+
+  /**
+   * Lookups of unknown symbols must not register them.
+   */
+  @Test
+  public void testLookupWithoutSideEffects() {
+    MolecularFormula f = MolecularFormula.compile("H2O", 1);
+    assertEquals(-1, MolecularFormula.getElementIndex("Qq"));
+    assertEquals(0, f.getCount("Qq"));
+    assertEquals(0, new MolecularFormula.Counter().getCount("Qq"));
+    assertEquals(-1, MolecularFormula.getElementIndex("Qq"));
+    assertEquals("H", MolecularFormula.getElementSymbol(MolecularFormula.getElementIndex("H")));
+  }
+
+}
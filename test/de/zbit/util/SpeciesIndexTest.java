@@ -0,0 +1,186 @@
+/*
+ * $Id$
+ * $URL$
+ * ---------------------------------------------------------------------
+ * This file is part of the SysBio API library.
+ *
+ * Copyright (C) 2009-2016 by the University of Tuebingen, Germany.
+ *
+ * This library is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation. A copy of the license
+ * agreement is provided in the file named "LICENSE.txt" included with
+ * this software distribution and also available online as
+ * <http://www.gnu.org/licenses/lgpl-3.0-standalone.html>.
+ * ---------------------------------------------------------------------
+ */
+package de.zbit.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @version $Rev$
+ * @since 1.4
+ */
+public class SpeciesIndexTest {
+
+  /**
+   * Species to index.
+   */
+  private List<Species> all;
+
+  /**
+   * Identifiers to look up.
+   */
+  private List<String> identifiers;
+
+  /**
+   * Builds a small species list. The complete list from
+   * {@link Species#generateSpeciesDataStructure()} requires KEGG.
+   */
+  @Before
+  public void setUp() {
+    all = new ArrayList<Species>();
+    all.add(new Species("Homo sapiens", "_HUMAN", "human", "hsa", 9606));
+    all.add(new Species("Mus musculus", "_MOUSE", "mouse", "mmu", 10090));
+    all.add(new Species("Caenorhabditis elegans", "_CAEEL", "nematode", "cel", 6239));
+    all.add(new Species("Oryza sativa subsp. indica", "_ORYSI", "rice", "osa", 39946));
+    all.add(new Species("Oryza sativa subsp. japonica", "_ORYSJ", "rice", "dosa", 39947));
+    all.add(new Species("Escherichia coli (strain K12)", "_ECOLI", "E. coli", "eco", 83333));
+    all.add(new Species("Rattus norvegicus", "_RAT", "rat", "rno", 10116));
+    all.get(0).addSynonym("Man");
+    all.get(3).addSynonym("INDICA");
+    identifiers = new ArrayList<String>(Arrays.asList("human", "Homo sapiens",
+      "HOMO SAPIENS", "hsa", "9606", "10090", "C. elegans", "MOUSE", "unknown",
+      "999999999", "", "Rice", "indica", "INDICA", "Celegans",
+      "c_elegans", "man", "E. COLI", "ECOLI", "_rat"));
+    for (int i = 0; i < all.size(); i++) {
+      Species s = all.get(i);
+      identifiers.add(s.getScientificName());
+      identifiers.add(s.getCommonName());
+      identifiers.add(s.getKeggAbbr());
+      identifiers.add(s.getUniprotExtension());
+      identifiers.add(s.getEnsemblName());
+      if (s.getNCBITaxonID() != null) {
+        identifiers.add(s.getNCBITaxonID().toString());
+      }
+    }
+  }
+
+  /**
+   * Asserts that the index returns the same species as the linear
+   * {@link Species#search(List, String, int)}.
+   *
+   * @param index
+   */
+  private void assertSameAsSearch(SpeciesIndex index) {
+    for (String identifier : identifiers) {
+      if (identifier != null) {
+        assertEquals(Species.search(all, identifier, -1), index.get(identifier));
+      }
+    }
+  }
+
+  /**
+   * Test method for {@link SpeciesIndex#get(String)}.
+   */
+  @Test
+  public void testGet() {
+    SpeciesIndex index = new SpeciesIndex(all);
+    assertEquals(all.size(), index.size());
+    assertSameAsSearch(index);
+    assertEquals("Homo sapiens", index.get("9606").getScientificName());
+    assertEquals("Homo sapiens", index.getByKeggAbbr("HSA").getScientificName());
+    assertEquals("Homo sapiens", index.getByTaxonomyId(9606).getScientificName());
+    assertNull(index.get("99999999999"));
+    assertNull(index.get(null));
+    assertNull(index.getByKeggAbbr(null));
+  }
+
+  /**
+   * Lower casing must not depend on the default locale, e.g., the Turkish
+   * dotless i.
+   */
+  @Test
+  public void testTurkishLocale() {
+    Locale defaultLocale = Locale.getDefault();
+    try {
+      Locale.setDefault(new Locale("tr", "TR"));
+      SpeciesIndex index = new SpeciesIndex(all);
+      assertEquals("Homo sapiens", index.get("HOMO SAPIENS").getScientificName());
+      assertEquals("Homo sapiens", index.get("HUMAN").getScientificName());
+      assertEquals(all.get(3), index.get("INDICA"));
+      assertEquals(all.get(3), index.get("_ORYSI"));
+      assertSameAsSearch(index);
+    } finally {
+      Locale.setDefault(defaultLocale);
+    }
+  }
+
+  /**
+   * Numeric identifiers are only compared to the taxonomy id, unless a
+   * species does not have one.
+   */
+  @Test
+  public void testNumericIdentifiers() {
+    Species withId = new Species("Species one", "ONE", "one", "abc", 1);
+    withId.addSynonym("42");
+    Species withoutId = new Species("xyz", "Species two", "TWO", "two", "4711");
+
+    SpeciesIndex index = new SpeciesIndex(Arrays.asList(withId));
+    assertEquals(withId, index.get("1"));
+    assertNull(index.get("42"));
+
+    List<Species> list = Arrays.asList(withId, withoutId);
+    index = new SpeciesIndex(list);
+    assertEquals(withId, index.get("1"));
+    assertNull(index.get("42"));
+    assertEquals(withoutId, index.get("4711"));
+    assertEquals(Species.search(list, "4711", -1), index.get("4711"));
+  }
+
+  /**
+   * Test method for {@link SpeciesIndex#writeBinary(java.io.OutputStream)}
+   * and {@link SpeciesIndex#readBinary(java.io.InputStream)}.
+   *
+   * @throws IOException
+   */
+  @Test
+  public void testBinary() throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    new SpeciesIndex(all).writeBinary(out);
+    SpeciesIndex index = SpeciesIndex.readBinary(new ByteArrayInputStream(out.toByteArray()));
+    assertEquals(all.size(), index.size());
+    assertSameAsSearch(index);
+  }
+
+  /**
+   * The cache must not be written to the working directory and its name
+   * must depend on the content of the species list.
+   *
+   * @throws IOException
+   */
+  @Test
+  public void testCacheFile() throws IOException {
+    File cache = SpeciesIndex.getCacheFile();
+    assertEquals(new File(System.getProperty("java.io.tmpdir")).getAbsoluteFile(),
+      cache.getParentFile().getAbsoluteFile());
+    assertEquals(cache, SpeciesIndex.getCacheFile());
+    assertTrue(cache.getName().matches("speciesIndex-.*-v\\d+-[0-9a-f]{8}\\.dat"));
+  }
+
+}